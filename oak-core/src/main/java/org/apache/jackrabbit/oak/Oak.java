@@ -687,6 +687,8 @@ public class Oak {
         for (Observer observer : observers) {
             regs.add(registerObserver(whiteboard, observer));
         }
+        // drop cached query plans once index definitions change
+        regs.add(registerObserver(whiteboard, queryEngineSettings.getPlanCache()));
 
         RepositoryManager repositoryManager = new RepositoryManager(whiteboard);
         regs.add(registerMBean(whiteboard, RepositoryManagementMBean.class, repositoryManager,
@@ -207,4 +207,12 @@ public interface IndexStatsMBean {
      */
     String getLatestErrorTime();
 
+    /**
+     * @return the progress of the latest reindex run by this indexing job:
+     *         the traversed and estimated number of nodes, the estimated
+     *         remaining time and the throughput per worker thread. An empty
+     *         string if there was no reindex.
+     */
+    String getReindexProgress();
+
 }
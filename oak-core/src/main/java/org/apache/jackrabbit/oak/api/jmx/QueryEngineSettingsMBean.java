@@ -50,5 +50,60 @@ public interface QueryEngineSettingsMBean {
      * @param limitReads the new limit
      */
     void setLimitReads(long limitReads);
-    
+
+    /**
+     * Get the number of times the index of a query was taken from the plan
+     * cache, so that only that index had to be asked for its cost.
+     *
+     * @return the number of plan cache hits
+     */
+    long getPlanCacheHitCount();
+
+    /**
+     * Get the number of times a cacheable query was planned by asking all
+     * indexes for their cost.
+     *
+     * @return the number of plan cache misses
+     */
+    long getPlanCacheMissCount();
+
+    /**
+     * Get the total time spent planning cacheable queries.
+     *
+     * @return the planning time in milliseconds
+     */
+    long getPlanningTimeMillis();
+
+    /**
+     * Get the number of times the SQL-2 conversion of an XPath statement was
+     * taken from the statement cache.
+     *
+     * @return the number of statement cache hits
+     */
+    long getStatementCacheHitCount();
+
+    /**
+     * Get the number of times an XPath statement had to be converted to
+     * SQL-2.
+     *
+     * @return the number of statement cache misses
+     */
+    long getStatementCacheMissCount();
+
+    /**
+     * Get the maximum number of XPath statements whose conversion to SQL-2
+     * is cached.
+     *
+     * @return the size of the statement cache, 0 if it is disabled
+     */
+    int getStatementCacheSize();
+
+    /**
+     * Change the size of the statement cache. The statements cached so far
+     * are dropped.
+     *
+     * @param statementCacheSize the new size, 0 to disable the cache
+     */
+    void setStatementCacheSize(int statementCacheSize);
+
 }
@@ -34,6 +34,8 @@ import java.util.Map;
 import javax.annotation.Nonnull;
 import javax.security.auth.Subject;
 
+import com.google.common.collect.ImmutableMap;
+
 import org.apache.jackrabbit.oak.api.Blob;
 import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.jackrabbit.oak.api.ContentSession;
@@ -41,9 +43,11 @@ import org.apache.jackrabbit.oak.api.QueryEngine;
 import org.apache.jackrabbit.oak.api.Root;
 import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.plugins.index.diffindex.UUIDDiffIndexProviderWrapper;
+import org.apache.jackrabbit.oak.plugins.observation.ChangeCollectorProvider;
 import org.apache.jackrabbit.oak.query.ExecutionContext;
 import org.apache.jackrabbit.oak.query.QueryEngineImpl;
 import org.apache.jackrabbit.oak.query.QueryEngineSettings;
+import org.apache.jackrabbit.oak.spi.commit.CommitContext;
 import org.apache.jackrabbit.oak.spi.commit.CommitHook;
 import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
 import org.apache.jackrabbit.oak.spi.commit.CompositeEditorProvider;
@@ -52,6 +56,7 @@ import org.apache.jackrabbit.oak.spi.commit.EditorHook;
 import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
 import org.apache.jackrabbit.oak.spi.commit.MoveTracker;
 import org.apache.jackrabbit.oak.spi.commit.PostValidationHook;
+import org.apache.jackrabbit.oak.spi.commit.SimpleCommitContext;
 import org.apache.jackrabbit.oak.spi.commit.ValidatorProvider;
 import org.apache.jackrabbit.oak.spi.query.QueryIndexProvider;
 import org.apache.jackrabbit.oak.spi.security.Context;
@@ -65,6 +70,13 @@ import org.apache.jackrabbit.oak.spi.state.NodeStore;
 
 class MutableRoot implements Root {
 
+    /**
+     * Records a summary of the changes of each commit in its
+     * {@link CommitContext}, for observers to filter on.
+     */
+    private static final CommitHook CHANGE_COLLECTOR =
+            new EditorHook(new ChangeCollectorProvider());
+
     /**
      * The underlying store to which this root belongs
      */
@@ -243,7 +255,7 @@ class MutableRoot implements Root {
         checkLive();
         ContentSession session = getContentSession();
         CommitInfo commitInfo = new CommitInfo(
-                session.toString(), session.getAuthInfo().getUserID(), info);
+                session.toString(), session.getAuthInfo().getUserID(), withCommitContext(info));
         store.merge(builder, getCommitHook(), commitInfo);
         secureBuilder.baseChanged();
         modCount = 0;
@@ -258,6 +270,20 @@ class MutableRoot implements Root {
         commit(Collections.<String, Object>emptyMap());
     }
 
+    /**
+     * Add a fresh {@link CommitContext} to the passed info map, unless the
+     * caller already provided one.
+     */
+    private static Map<String, Object> withCommitContext(Map<String, Object> info) {
+        if (info.containsKey(CommitContext.NAME)) {
+            return info;
+        }
+        return ImmutableMap.<String, Object>builder()
+                .putAll(info)
+                .put(CommitContext.NAME, new SimpleCommitContext())
+                .build();
+    }
+
     /**
      * Combine the globally defined commit hook(s) and the hooks and validators defined by the
      * various security related configurations.
@@ -287,6 +313,10 @@ class MutableRoot implements Root {
         }
         hooks.addAll(postValidationHooks);
 
+        // collect the changes last, so that the changes of all
+        // other hooks are included
+        hooks.add(CHANGE_COLLECTOR);
+
         return CompositeHook.compose(hooks);
     }
 
@@ -99,6 +99,12 @@ public class  BlobGC extends AnnotatedStandardMBean implements BlobGCMBean {
         return gcOp.getStatus().toCompositeData();
     }
     
+    @Nonnull
+    @Override
+    public String getBlobGCProgress() {
+        return blobGarbageCollector.getProgress();
+    }
+
     @Override 
     public TabularData getGlobalMarkStats() {
         TabularDataSupport tds;
@@ -54,6 +54,15 @@ public interface BlobGCMBean {
      */
     @Nonnull
     CompositeData getBlobGCStatus();
+
+    /**
+     * Progress of the ongoing or last data store garbage collection or
+     * consistency check, e.g. the number of blob references marked.
+     *
+     * @return  the progress of the operation
+     */
+    @Nonnull
+    String getBlobGCProgress();
     
     /**
      * Show details of the data Store garbage collection process.
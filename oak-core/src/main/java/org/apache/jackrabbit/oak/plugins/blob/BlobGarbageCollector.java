@@ -47,4 +47,12 @@ public interface BlobGarbageCollector {
      * @throws Exception
      */
     long checkConsistency() throws Exception;
+
+    /**
+     * Returns a description of the progress of the ongoing or last
+     * garbage collection or consistency check.
+     *
+     * @return the progress
+     */
+    String getProgress();
 }
@@ -85,6 +85,16 @@ public class GarbageCollectorFileState implements Closeable{
         return markedRefs;
     }
 
+    /**
+     * Gets a new file storing a partition of the marked references.
+     *
+     * @param partition the number of the partition
+     * @return the file for the marked references of the partition
+     */
+    public File newMarkedRefsPartition(int partition) {
+        return new File(home, markedRefs.getName() + "-" + partition);
+    }
+
     /**
      * Gets the file storing the available references.
      * 
@@ -155,6 +165,19 @@ public class GarbageCollectorFileState implements Closeable{
                 files,
                 output, lexComparator, true);        
     }
+
+    /**
+     * Merges the given files, each sorted with the given comparator.
+     *
+     * @param files the sorted files to merge
+     * @param output the file to write the merged lines to
+     * @param comparator to compare
+     * @throws IOException
+     */
+    public static void merge(List<File> files, File output, Comparator<String> comparator)
+            throws IOException {
+        ExternalSort.mergeSortedFiles(files, output, comparator, true);
+    }
     
     public static File copy(InputStream stream) throws IOException {
         File file = createTempFile();
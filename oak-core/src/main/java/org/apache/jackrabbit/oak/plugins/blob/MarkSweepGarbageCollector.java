@@ -31,13 +31,22 @@ import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.google.common.base.Charsets;
 import com.google.common.base.Function;
@@ -52,6 +61,7 @@ import com.google.common.collect.PeekingIterator;
 import com.google.common.io.Closeables;
 import com.google.common.io.Files;
 import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.RateLimiter;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.LineIterator;
 import org.apache.jackrabbit.core.data.DataRecord;
@@ -60,11 +70,19 @@ import org.apache.jackrabbit.oak.commons.IOUtils;
 import org.apache.jackrabbit.oak.plugins.blob.datastore.SharedDataStoreUtils;
 import org.apache.jackrabbit.oak.plugins.blob.datastore.SharedDataStoreUtils.SharedStoreRecordType;
 import org.apache.jackrabbit.oak.spi.blob.GarbageCollectableBlobStore;
+import org.apache.jackrabbit.oak.stats.MeterStats;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
+import org.apache.jackrabbit.oak.stats.StatsOptions;
+import org.apache.jackrabbit.oak.stats.TimerStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.collect.Lists.newArrayList;
 
 /**
@@ -85,6 +103,38 @@ public class MarkSweepGarbageCollector implements BlobGarbageCollector {
     public static final int DEFAULT_BATCH_COUNT = 2048;
     
     public static final String DELIM = ",";
+
+    /**
+     * The default number of threads used to collect blob references in the
+     * mark phase. Parallel collection is only possible when the
+     * {@link BlobReferenceRetriever} is a {@link PartitionedBlobReferenceRetriever}.
+     */
+    public static final int DEFAULT_MARK_THREADS = Integer.getInteger("oak.blob.gc.markThreads", 1);
+
+    /**
+     * The default number of threads deleting garbage blobs in the sweep phase.
+     */
+    public static final int DEFAULT_SWEEP_THREADS = Integer.getInteger("oak.blob.gc.sweepThreads", 1);
+
+    /**
+     * The default maximum number of blobs deleted per second in the sweep
+     * phase. A value less or equal to zero does not limit the rate.
+     */
+    public static final int DEFAULT_MAX_DELETES_PER_SECOND = Integer.getInteger("oak.blob.gc.maxDeletesPerSecond", 0);
+
+    private static final String MARK_REFERENCES = "BLOB_GC_MARK_REFERENCES";
+    private static final String MARK_TIME = "BLOB_GC_MARK_TIME";
+    private static final String SWEEP_CANDIDATES = "BLOB_GC_SWEEP_CANDIDATES";
+    private static final String SWEEP_DELETES = "BLOB_GC_SWEEP_DELETES";
+    private static final String SWEEP_TIME = "BLOB_GC_SWEEP_TIME";
+    private static final String DELETE_BATCH_TIME = "BLOB_GC_DELETE_BATCH_TIME";
+
+    private static final Comparator<String> ID_COMPARATOR = new Comparator<String>() {
+        @Override
+        public int compare(String s1, String s2) {
+            return s1.split(DELIM)[0].compareTo(s2.split(DELIM)[0]);
+        }
+    };
     
     /** The last modified time before current time of blobs to consider for garbage collection. */
     private final long maxLastModifiedInterval;
@@ -104,6 +154,37 @@ public class MarkSweepGarbageCollector implements BlobGarbageCollector {
 
     private final String root;
 
+    /** The number of threads collecting references in the mark phase. */
+    private final int markThreads;
+
+    /** The number of references collected by the current mark phase. */
+    private final AtomicLong markedCount = new AtomicLong();
+
+    /** The number of partitions of the current mark phase, 0 if not partitioned. */
+    private final AtomicInteger markPartitions = new AtomicInteger();
+
+    /** The number of partitions done by the current mark phase. */
+    private final AtomicInteger markPartitionsDone = new AtomicInteger();
+
+    /** The number of threads deleting blobs in the sweep phase. */
+    private int sweepThreads = DEFAULT_SWEEP_THREADS;
+
+    /** The maximum number of blobs deleted per second, unlimited if less or equal to zero. */
+    private double maxDeletesPerSecond = DEFAULT_MAX_DELETES_PER_SECOND;
+
+    /** The number of gc candidates handed to the deleting threads by the current sweep phase. */
+    private final AtomicLong sweepCandidates = new AtomicLong();
+
+    /** The number of blobs deleted by the current sweep phase. */
+    private final AtomicLong sweepDeleted = new AtomicLong();
+
+    private MeterStats markReferencesMeter;
+    private TimerStats markTimer;
+    private MeterStats sweepCandidatesMeter;
+    private MeterStats sweepDeletesMeter;
+    private TimerStats sweepTimer;
+    private TimerStats deleteBatchTimer;
+
     /**
      * Creates an instance of MarkSweepGarbageCollector
      *
@@ -127,6 +208,38 @@ public class MarkSweepGarbageCollector implements BlobGarbageCollector {
             long maxLastModifiedInterval,
             @Nullable String repositoryId)
             throws IOException {
+        this(marker, blobStore, executor, root, batchCount, maxLastModifiedInterval,
+                repositoryId, DEFAULT_MARK_THREADS);
+    }
+
+    /**
+     * Creates an instance of MarkSweepGarbageCollector
+     *
+     * @param marker BlobReferenceRetriever instanced used to fetch refereed blob entries
+     * @param blobStore the blob store instance
+     * @param executor executor
+     * @param root the root absolute path of directory under which temporary
+     *             files would be created
+     * @param batchCount batch sized used for saving intermediate state
+     * @param maxLastModifiedInterval lastModifiedTime in millis. Only files with time
+     *                                less than this time would be considered for GC
+     * @param repositoryId - unique repository id for this node
+     * @param markThreads the number of threads collecting references in the mark
+     *                    phase when the marker is a {@link PartitionedBlobReferenceRetriever}
+     * @throws IOException
+     */
+    public MarkSweepGarbageCollector(
+            BlobReferenceRetriever marker,
+            GarbageCollectableBlobStore blobStore,
+            Executor executor,
+            String root,
+            int batchCount,
+            long maxLastModifiedInterval,
+            @Nullable String repositoryId,
+            int markThreads)
+            throws IOException {
+        checkArgument(markThreads > 0, "markThreads must be positive: %s", markThreads);
+        this.markThreads = markThreads;
         this.executor = executor;
         this.blobStore = blobStore;
         this.marker = marker;
@@ -134,6 +247,45 @@ public class MarkSweepGarbageCollector implements BlobGarbageCollector {
         this.maxLastModifiedInterval = maxLastModifiedInterval;
         this.repoId = repositoryId;
         this.root = root;
+        setStatisticsProvider(StatisticsProvider.NOOP);
+    }
+
+    /**
+     * Sets the number of threads deleting garbage blobs in the sweep phase.
+     * The candidates are handed to the threads in batches through a bounded
+     * queue.
+     *
+     * @param sweepThreads the number of threads
+     */
+    public void setSweepThreads(int sweepThreads) {
+        checkArgument(sweepThreads > 0, "sweepThreads must be positive: %s", sweepThreads);
+        this.sweepThreads = sweepThreads;
+    }
+
+    /**
+     * Limits the number of blobs deleted per second in the sweep phase.
+     *
+     * @param maxDeletesPerSecond the maximum rate. A value less or equal to
+     *                            zero does not limit the rate.
+     */
+    public void setMaxDeletesPerSecond(double maxDeletesPerSecond) {
+        this.maxDeletesPerSecond = maxDeletesPerSecond;
+    }
+
+    /**
+     * Sets the {@link StatisticsProvider} used to record the throughput of
+     * the mark and sweep phases.
+     *
+     * @param statisticsProvider the statistics provider
+     */
+    public void setStatisticsProvider(@Nonnull StatisticsProvider statisticsProvider) {
+        checkNotNull(statisticsProvider);
+        this.markReferencesMeter = statisticsProvider.getMeter(MARK_REFERENCES, StatsOptions.DEFAULT);
+        this.markTimer = statisticsProvider.getTimer(MARK_TIME, StatsOptions.METRICS_ONLY);
+        this.sweepCandidatesMeter = statisticsProvider.getMeter(SWEEP_CANDIDATES, StatsOptions.DEFAULT);
+        this.sweepDeletesMeter = statisticsProvider.getMeter(SWEEP_DELETES, StatsOptions.DEFAULT);
+        this.sweepTimer = statisticsProvider.getTimer(SWEEP_TIME, StatsOptions.METRICS_ONLY);
+        this.deleteBatchTimer = statisticsProvider.getTimer(DELETE_BATCH_TIME, StatsOptions.METRICS_ONLY);
     }
 
     /**
@@ -163,6 +315,28 @@ public class MarkSweepGarbageCollector implements BlobGarbageCollector {
         markAndSweep(markOnly);
     }
 
+    /**
+     * Returns the progress of the current or last mark phase.
+     *
+     * @return a description of the progress
+     */
+    @Override
+    public String getProgress() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Marked ").append(markedCount.get()).append(" blob references");
+        int partitions = markPartitions.get();
+        if (partitions > 0) {
+            sb.append(", ").append(markPartitionsDone.get()).append(" of ")
+                    .append(partitions).append(" partitions done");
+        }
+        long candidates = sweepCandidates.get();
+        if (candidates > 0) {
+            sb.append(", deleted ").append(sweepDeleted.get()).append(" of ")
+                    .append(candidates).append(" gc candidates");
+        }
+        return sb.toString();
+    }
+
     /**
      * Returns the stats related to GC for all repos
      * 
@@ -275,7 +449,12 @@ public class MarkSweepGarbageCollector implements BlobGarbageCollector {
         GarbageCollectionType.get(blobStore).addMarkedStartMarker(blobStore, repoId);
 
         // Mark all used references
-        iterateNodeTree(fs);
+        TimerStats.Context markTime = markTimer.time();
+        try {
+            iterateNodeTree(fs);
+        } finally {
+            markTime.stop();
+        }
 
         // Move the marked references file to the data store meta area if applicable
         GarbageCollectionType.get(blobStore).addMarked(blobStore, fs, repoId);
@@ -378,9 +557,6 @@ public class MarkSweepGarbageCollector implements BlobGarbageCollector {
 
         // Calculate the references not used
         difference(fs);
-        long count = 0;
-        long deleted = 0;
-        
         long lastMaxModifiedTime = getLastMaxModifiedTime(earliestRefAvailTime); 
         LOG.debug("Starting sweep phase of the garbage collector");
         LOG.debug("Sweeping blobs with modified time > than the configured max deleted time ({}). ",
@@ -388,23 +564,34 @@ public class MarkSweepGarbageCollector implements BlobGarbageCollector {
 
         ConcurrentLinkedQueue<String> exceptionQueue = new ConcurrentLinkedQueue<String>();
 
+        sweepCandidates.set(0);
+        sweepDeleted.set(0);
+        TimerStats.Context sweepTime = sweepTimer.time();
         LineIterator iterator =
                 FileUtils.lineIterator(fs.getGcCandidates(), Charsets.UTF_8.name());
-        List<String> ids = newArrayList();
-
-        while (iterator.hasNext()) {
-            ids.add(iterator.next());
+        try {
+            if (sweepThreads > 1) {
+                sweepParallel(iterator, exceptionQueue, lastMaxModifiedTime);
+            } else {
+                RateLimiter rateLimiter = newRateLimiter();
+                List<String> ids = newArrayList();
+                while (iterator.hasNext()) {
+                    ids.add(iterator.next());
 
-            if (ids.size() >= getBatchCount()) {
-                count += ids.size();
-                deleted += sweepInternal(ids, exceptionQueue, lastMaxModifiedTime);
-                ids = newArrayList();
+                    if (ids.size() >= getBatchCount()) {
+                        sweepBatch(ids, exceptionQueue, lastMaxModifiedTime, rateLimiter);
+                        ids = newArrayList();
+                    }
+                }
+                if (!ids.isEmpty()) {
+                    sweepBatch(ids, exceptionQueue, lastMaxModifiedTime, rateLimiter);
+                }
             }
+        } finally {
+            sweepTime.stop();
         }
-        if (!ids.isEmpty()) {
-            count += ids.size();
-            deleted += sweepInternal(ids, exceptionQueue, lastMaxModifiedTime);
-        }
+        long count = sweepCandidates.get();
+        long deleted = sweepDeleted.get();
 
         BufferedWriter writer = null;
         try {
@@ -435,6 +622,102 @@ public class MarkSweepGarbageCollector implements BlobGarbageCollector {
         return deleted;
     }
 
+    /**
+     * Deletes the gc candidates read from the given iterator with
+     * {@link #sweepThreads} threads. The candidates are handed to the threads
+     * in batches through a bounded queue, which blocks the reading of further
+     * candidates while all threads are busy.
+     */
+    private void sweepParallel(LineIterator iterator,
+                               final ConcurrentLinkedQueue<String> exceptionQueue,
+                               final long maxModified) throws Exception {
+        final List<String> endOfCandidates = newArrayList();
+        final BlockingQueue<List<String>> queue = new ArrayBlockingQueue<List<String>>(sweepThreads * 2);
+        final RateLimiter rateLimiter = newRateLimiter();
+        ExecutorService sweepExecutor = Executors.newFixedThreadPool(sweepThreads);
+        List<Future<Void>> futures = newArrayList();
+        try {
+            for (int i = 0; i < sweepThreads; i++) {
+                futures.add(sweepExecutor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        List<String> ids;
+                        while ((ids = queue.take()) != endOfCandidates) {
+                            sweepBatch(ids, exceptionQueue, maxModified, rateLimiter);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            List<String> ids = newArrayList();
+            while (iterator.hasNext()) {
+                ids.add(iterator.next());
+
+                if (ids.size() >= getBatchCount()) {
+                    enqueue(queue, ids, futures);
+                    ids = newArrayList();
+                }
+            }
+            if (!ids.isEmpty()) {
+                enqueue(queue, ids, futures);
+            }
+            for (int i = 0; i < sweepThreads; i++) {
+                enqueue(queue, endOfCandidates, futures);
+            }
+            for (Future<Void> f : futures) {
+                f.get();
+            }
+        } finally {
+            sweepExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Adds a batch to the queue of the sweep workers. While the queue is full
+     * the workers are checked, so that the sweep is aborted instead of
+     * blocking forever once a worker died.
+     *
+     * @throws ExecutionException if a worker failed
+     */
+    private static void enqueue(BlockingQueue<List<String>> queue, List<String> ids,
+                                List<Future<Void>> workers) throws Exception {
+        while (!queue.offer(ids, 1, TimeUnit.SECONDS)) {
+            for (Future<Void> f : workers) {
+                if (f.isDone()) {
+                    // throws the failure of the worker, if any
+                    f.get();
+                    throw new IllegalStateException("Sweep worker stopped unexpectedly");
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes a batch of gc candidates, waiting for the rate limiter, if any,
+     * and records the throughput.
+     */
+    private void sweepBatch(List<String> ids, ConcurrentLinkedQueue<String> exceptionQueue,
+                            long maxModified, @Nullable RateLimiter rateLimiter) {
+        if (rateLimiter != null) {
+            rateLimiter.acquire(ids.size());
+        }
+        sweepCandidates.addAndGet(ids.size());
+        sweepCandidatesMeter.mark(ids.size());
+        TimerStats.Context batchTime = deleteBatchTimer.time();
+        long deleted = sweepInternal(ids, exceptionQueue, maxModified);
+        batchTime.stop();
+        sweepDeleted.addAndGet(deleted);
+        sweepDeletesMeter.mark(deleted);
+    }
+
+    @CheckForNull
+    private RateLimiter newRateLimiter() {
+        if (maxDeletesPerSecond > 0) {
+            return RateLimiter.create(maxDeletesPerSecond);
+        }
+        return null;
+    }
+
     private int getBatchCount() {
         return batchCount;
     }
@@ -484,69 +767,151 @@ public class MarkSweepGarbageCollector implements BlobGarbageCollector {
      * @param fs the garbage collector file state
      */
     protected void iterateNodeTree(GarbageCollectorFileState fs) throws IOException {
+        markedCount.set(0);
+        markPartitions.set(0);
+        markPartitionsDone.set(0);
+        sweepCandidates.set(0);
+        sweepDeleted.set(0);
+        if (markThreads > 1 && marker instanceof PartitionedBlobReferenceRetriever) {
+            iterateNodeTreeParallel(fs, ((PartitionedBlobReferenceRetriever) marker).getPartitions());
+            return;
+        }
         final BufferedWriter writer = Files.newWriter(fs.getMarkedRefs(), Charsets.UTF_8);
-        final AtomicInteger count = new AtomicInteger();
         try {
-            marker.collectReferences(
-                    new ReferenceCollector() {
-                        private final List<String> idBatch = Lists.newArrayListWithCapacity(getBatchCount());
-
-                        private final boolean debugMode = LOG.isTraceEnabled();
-
-                        @Override
-                        public void addReference(String blobId, String nodeId) {
-                            if (debugMode) {
-                                LOG.trace("BlobId : {}, NodeId : {}", blobId, nodeId);
-                            }
+            marker.collectReferences(new MarkedReferenceCollector(writer));
+            LOG.info("Number of valid blob references marked under mark phase of " +
+                    "Blob garbage collection [{}]", markedCount.get());
+            // sort the marked references with the first part of the key
+            GarbageCollectorFileState.sort(fs.getMarkedRefs(), ID_COMPARATOR);
+        } finally {
+            IOUtils.closeQuietly(writer);
+        }
+    }
 
-                            try {
-                                Iterator<String> idIter = blobStore.resolveChunks(blobId);
-                                Joiner delimJoiner = Joiner.on(DELIM).skipNulls();
-                                while (idIter.hasNext()) {
-                                    String id = idIter.next();
-                                    
-                                    idBatch.add(delimJoiner.join(id, nodeId));
-
-                                    if (idBatch.size() >= getBatchCount()) {
-                                        saveBatchToFile(idBatch, writer);
-                                        idBatch.clear();
-                                    }
-
-                                    if (debugMode) {
-                                        LOG.trace("chunkId : {}", id);
-                                    }
-                                    count.getAndIncrement();
-                                }
-
-                                if (!idBatch.isEmpty()) {
-                                    saveBatchToFile(idBatch, writer);
-                                    idBatch.clear();
-                                }
-
-                                if (count.get() % getBatchCount() == 0) {
-                                    LOG.info("Collected ({}) blob references", count.get());
-                                }
-                            } catch (Exception e) {
-                                throw new RuntimeException("Error in retrieving references", e);
+    /**
+     * Collects the blob references of the given partitions with
+     * {@link #markThreads} threads. Each thread writes the references of the
+     * partitions it collects to its own file, which is sorted by the thread
+     * once all partitions are done. The sorted files are then merged into
+     * the marked references file.
+     *
+     * @param fs the garbage collector file state
+     * @param partitions the partitions to collect references from
+     */
+    private void iterateNodeTreeParallel(GarbageCollectorFileState fs,
+                                         List<BlobReferenceRetriever> partitions)
+            throws IOException {
+        final Queue<BlobReferenceRetriever> queue = new ConcurrentLinkedQueue<BlobReferenceRetriever>(partitions);
+        markPartitions.set(partitions.size());
+        int threads = Math.max(1, Math.min(markThreads, partitions.size()));
+        LOG.info("Collecting blob references of {} partitions with {} threads", partitions.size(), threads);
+
+        ExecutorService markExecutor = Executors.newFixedThreadPool(threads);
+        // results are taken in completion order, so that a failed worker
+        // stops the others right away
+        CompletionService<File> completionService = new ExecutorCompletionService<File>(markExecutor);
+        List<File> sortedRuns = newArrayList();
+        try {
+            for (int i = 0; i < threads; i++) {
+                final File run = fs.newMarkedRefsPartition(i);
+                completionService.submit(new Callable<File>() {
+                    @Override
+                    public File call() throws Exception {
+                        BufferedWriter writer = Files.newWriter(run, Charsets.UTF_8);
+                        try {
+                            MarkedReferenceCollector collector = new MarkedReferenceCollector(writer);
+                            BlobReferenceRetriever partition;
+                            while ((partition = queue.poll()) != null) {
+                                partition.collectReferences(collector);
+                                int done = markPartitionsDone.incrementAndGet();
+                                LOG.info("Collected blob references of {} of {} partitions",
+                                        done, markPartitions.get());
                             }
+                        } finally {
+                            IOUtils.closeQuietly(writer);
                         }
+                        GarbageCollectorFileState.sort(run, ID_COMPARATOR);
+                        return run;
                     }
-            );
-            LOG.info("Number of valid blob references marked under mark phase of " +
-                    "Blob garbage collection [{}]", count.get());
-            // sort the marked references with the first part of the key
-            GarbageCollectorFileState.sort(fs.getMarkedRefs(), 
-                                              new Comparator<String>() {
-                                                    @Override
-                                                    public int compare(String s1, String s2) {
-                                                        return s1.split(DELIM)[0].compareTo(s2.split(DELIM)[0]);
-                                                    }
-                                                });
+                });
+            }
+            for (int i = 0; i < threads; i++) {
+                try {
+                    sortedRuns.add(completionService.take().get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while collecting blob references", e);
+                } catch (ExecutionException e) {
+                    throw new IOException("Error in retrieving references", e.getCause());
+                }
+            }
         } finally {
-            IOUtils.closeQuietly(writer);
+            // stop the remaining workers when one of them failed
+            queue.clear();
+            markExecutor.shutdownNow();
         }
+        LOG.info("Number of valid blob references marked under mark phase of " +
+                "Blob garbage collection [{}]", markedCount.get());
+        GarbageCollectorFileState.merge(sortedRuns, fs.getMarkedRefs(), ID_COMPARATOR);
     }
-    
+
+    /**
+     * ReferenceCollector which resolves the chunks of the collected blob
+     * references and writes them to a file.
+     */
+    private class MarkedReferenceCollector implements ReferenceCollector {
+        private final BufferedWriter writer;
+
+        private final List<String> idBatch = Lists.newArrayListWithCapacity(getBatchCount());
+
+        private final boolean debugMode = LOG.isTraceEnabled();
+
+        MarkedReferenceCollector(BufferedWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void addReference(String blobId, String nodeId) {
+            if (debugMode) {
+                LOG.trace("BlobId : {}, NodeId : {}", blobId, nodeId);
+            }
+            // the mark phase was stopped, as another partition failed
+            if (Thread.currentThread().isInterrupted()) {
+                throw new IllegalStateException("Interrupted while collecting blob references");
+            }
+
+            try {
+                Iterator<String> idIter = blobStore.resolveChunks(blobId);
+                Joiner delimJoiner = Joiner.on(DELIM).skipNulls();
+                while (idIter.hasNext()) {
+                    String id = idIter.next();
+
+                    idBatch.add(delimJoiner.join(id, nodeId));
+
+                    if (idBatch.size() >= getBatchCount()) {
+                        saveBatchToFile(idBatch, writer);
+                        idBatch.clear();
+                    }
+
+                    if (debugMode) {
+                        LOG.trace("chunkId : {}", id);
+                    }
+                    markReferencesMeter.mark();
+                    if (markedCount.incrementAndGet() % getBatchCount() == 0) {
+                        LOG.info("Collected ({}) blob references", markedCount.get());
+                    }
+                }
+
+                if (!idBatch.isEmpty()) {
+                    saveBatchToFile(idBatch, writer);
+                    idBatch.clear();
+                }
+            } catch (Exception e) {
+                throw new RuntimeException("Error in retrieving references", e);
+            }
+        }
+    }
+
     /**
      * Checks for the DataStore consistency and reports the number of missing blobs still referenced.
      * 
@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.blob;
+
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A {@link BlobReferenceRetriever} which is able to split the references it
+ * collects into independent partitions. The partitions do not overlap and
+ * together cover all references of this retriever, which allows the
+ * {@link MarkSweepGarbageCollector} to collect them concurrently.
+ */
+public interface PartitionedBlobReferenceRetriever extends BlobReferenceRetriever {
+
+    /**
+     * Returns the partitions of this retriever. The returned retrievers
+     * may be used concurrently from different threads.
+     *
+     * @return the partitions.
+     */
+    @Nonnull
+    List<BlobReferenceRetriever> getPartitions();
+}
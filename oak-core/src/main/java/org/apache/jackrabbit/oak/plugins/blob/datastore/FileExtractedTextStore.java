@@ -0,0 +1,281 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.blob.datastore;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.jackrabbit.oak.plugins.index.fulltext.ExtractedText;
+import org.apache.jackrabbit.oak.plugins.index.fulltext.ExtractedText.ExtractionResult;
+import org.apache.jackrabbit.oak.plugins.index.fulltext.ExtractedTextStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.apache.jackrabbit.oak.commons.IOUtils.humanReadableByteCount;
+
+/**
+ * {@link ExtractedTextStore} keeping the extracted text as files under the
+ * given directory. The file name is derived from the content identity of the
+ * blob hence multiple cluster nodes can share the same directory.
+ *
+ * <p>Once the overall size exceeds the configured maximum the least recently
+ * used entries are removed. The access order is tracked in memory and is
+ * rebuilt from the file modification times on startup. As other cluster
+ * nodes sharing the directory add entries as well, the entries and their
+ * size are also rebuilt from the directory on a put once the last scan is
+ * older than the rescan interval (one minute by default). Until then the
+ * directory may exceed the maximum size by what other nodes added.
+ */
+public class FileExtractedTextStore implements ExtractedTextStore {
+    private static final Logger log = LoggerFactory.getLogger(FileExtractedTextStore.class);
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final long DEFAULT_RESCAN_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    private final File directory;
+
+    private final long maxSize;
+
+    private final long rescanInterval;
+
+    /**
+     * Size of the stored entries in the order of their last access, eldest first
+     */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+
+    private long size;
+
+    /**
+     * Time of the last scan of the directory
+     */
+    private long lastScan;
+
+    public FileExtractedTextStore(File directory, long maxSize) throws IOException {
+        this(directory, maxSize, DEFAULT_RESCAN_INTERVAL);
+    }
+
+    FileExtractedTextStore(File directory, long maxSize, long rescanInterval) throws IOException {
+        checkArgument(maxSize > 0, "Max size must be positive %s", maxSize);
+        FileUtils.forceMkdir(directory);
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.rescanInterval = rescanInterval;
+        load(true);
+        log.info("Using {} to store the extracted text. Current size {}, max size {}",
+                directory.getAbsolutePath(), humanReadableByteCount(size), humanReadableByteCount(maxSize));
+    }
+
+    @CheckForNull
+    @Override
+    public ExtractedText getText(@Nonnull Blob blob) throws IOException {
+        String key = getKey(blob);
+        if (key == null) {
+            return null;
+        }
+
+        File file = getFile(key);
+        String content;
+        try {
+            content = Files.toString(file, Charsets.UTF_8);
+        } catch (FileNotFoundException e) {
+            //Not stored yet or removed by some other cluster node
+            //sharing the directory
+            synchronized (this) {
+                Long length = entries.remove(key);
+                if (length != null) {
+                    size -= length;
+                }
+            }
+            return null;
+        }
+
+        synchronized (this) {
+            track(key, file.length());
+        }
+        //Keep the access order across restarts
+        file.setLastModified(System.currentTimeMillis());
+        return decode(key, content);
+    }
+
+    @Override
+    public void putText(@Nonnull Blob blob, @Nonnull ExtractedText text) throws IOException {
+        String key = getKey(blob);
+        if (key == null) {
+            return;
+        }
+
+        File file = getFile(key);
+        FileUtils.forceMkdir(file.getParentFile());
+
+        //Write to a temp file first so that concurrent readers never see
+        //partially written text
+        File tmp = new File(file.getParentFile(), key + "." + Thread.currentThread().getId() + TMP_SUFFIX);
+        Files.write(encode(text), tmp, Charsets.UTF_8);
+        if (!tmp.renameTo(file)) {
+            FileUtils.deleteQuietly(tmp);
+            if (!file.exists()) {
+                throw new IOException("Cannot store extracted text in " + file.getAbsolutePath());
+            }
+        }
+
+        synchronized (this) {
+            track(key, file.length());
+            if (System.currentTimeMillis() - lastScan >= rescanInterval) {
+                //Pick up the entries other cluster nodes added meanwhile
+                entries.clear();
+                size = 0;
+                load(false);
+            } else {
+                evict();
+            }
+        }
+    }
+
+    @Override
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    @Override
+    public String toString() {
+        return "FileExtractedTextStore [" + directory.getAbsolutePath() + "]";
+    }
+
+    private void track(String key, long length) {
+        Long old = entries.put(key, length);
+        size += length - (old != null ? old : 0);
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> itr = entries.entrySet().iterator();
+        while (size > maxSize && itr.hasNext()) {
+            Map.Entry<String, Long> e = itr.next();
+            FileUtils.deleteQuietly(getFile(e.getKey()));
+            size -= e.getValue();
+            itr.remove();
+            log.trace("Evicted extracted text {}", e.getKey());
+        }
+    }
+
+    /**
+     * Rebuilds the entries from the directory, eldest access first.
+     *
+     * @param deleteTemp whether to delete leftover temp files, which is only
+     *                   done on startup as others may currently write them
+     */
+    private void load(boolean deleteTemp) {
+        lastScan = System.currentTimeMillis();
+        List<File> files = new ArrayList<File>(FileUtils.listFiles(directory, null, true));
+        Collections.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                long m1 = f1.lastModified();
+                long m2 = f2.lastModified();
+                return m1 < m2 ? -1 : (m1 == m2 ? 0 : 1);
+            }
+        });
+        for (File f : files) {
+            if (f.getName().endsWith(TMP_SUFFIX)) {
+                if (deleteTemp) {
+                    FileUtils.deleteQuietly(f);
+                }
+                continue;
+            }
+            track(f.getName(), f.length());
+        }
+        evict();
+    }
+
+    /**
+     * Returns the file for given key. Same as in {@link DataStoreTextWriter}
+     * the files are spread over nested directories to avoid too many files
+     * in a single directory
+     */
+    private File getFile(String key) {
+        File file = directory;
+        file = new File(file, key.substring(0, 2));
+        file = new File(file, key.substring(2, 4));
+        file = new File(file, key.substring(4, 6));
+        return new File(file, key);
+    }
+
+    @CheckForNull
+    private static String getKey(Blob blob) {
+        String id = blob.getContentIdentity();
+        if (id == null) {
+            return null;
+        }
+        return Hashing.sha256().hashString(id, Charsets.UTF_8).toString();
+    }
+
+    private static String encode(ExtractedText text) {
+        CharSequence content = text.getExtractedText();
+        return text.getExtractionResult().name() + '\n' + (content != null ? content : "");
+    }
+
+    @CheckForNull
+    private static ExtractedText decode(String key, String content) {
+        int idx = content.indexOf('\n');
+        if (idx < 0) {
+            log.warn("Ignoring invalid extracted text entry {}", key);
+            return null;
+        }
+        ExtractionResult result;
+        try {
+            result = ExtractionResult.valueOf(content.substring(0, idx));
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring invalid extracted text entry {}", key);
+            return null;
+        }
+        switch (result) {
+            case SUCCESS:
+                return new ExtractedText(result, content.substring(idx + 1));
+            case EMPTY:
+                return ExtractedText.EMPTY;
+            default:
+                return ExtractedText.ERROR;
+        }
+    }
+}
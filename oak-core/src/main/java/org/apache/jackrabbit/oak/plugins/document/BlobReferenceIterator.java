@@ -38,12 +38,29 @@ public class BlobReferenceIterator implements Iterator<ReferencedBlob> {
     private HashSet<ReferencedBlob> batch = new HashSet<ReferencedBlob>();
     private Iterator<ReferencedBlob> batchIterator;
     private boolean done;
-    private String fromKey = NodeDocument.MIN_ID_VALUE;
+    private String fromKey;
+    private final String toKey;
 
     public BlobReferenceIterator(DocumentNodeStore nodeStore) {
+        this(nodeStore, NodeDocument.MIN_ID_VALUE, NodeDocument.MAX_ID_VALUE);
+    }
+
+    /**
+     * Creates an iterator over the binaries referenced by the documents with
+     * an id between {@code fromKey} and {@code toKey}.
+     *
+     * @param nodeStore the node store.
+     * @param fromKey the lower bound of the document ids (excluding).
+     * @param toKey the upper bound of the document ids (excluding).
+     */
+    public BlobReferenceIterator(DocumentNodeStore nodeStore,
+                                 String fromKey,
+                                 String toKey) {
         this.docStore = nodeStore.getDocumentStore();
         batchIterator = batch.iterator();
         this.blobCollector = new BlobCollector(nodeStore);
+        this.fromKey = fromKey;
+        this.toKey = toKey;
     }
 
     @Override
@@ -90,7 +107,7 @@ public class BlobReferenceIterator implements Iterator<ReferencedBlob> {
     private boolean loadBatchQuery() {
         // read about BATCH_SIZE documents
         List<NodeDocument> list =
-                docStore.query(Collection.NODES, fromKey, NodeDocument.MAX_ID_VALUE, NodeDocument.HAS_BINARY_FLAG,
+                docStore.query(Collection.NODES, fromKey, toKey, NodeDocument.HAS_BINARY_FLAG,
                         NodeDocument.HAS_BINARY_VAL,
                         BATCH_SIZE);
         boolean hasMore = false;
@@ -19,21 +19,48 @@
 package org.apache.jackrabbit.oak.plugins.document;
 
 import java.io.Closeable;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
+import javax.annotation.Nonnull;
+
+import com.google.common.base.CharMatcher;
 import org.apache.jackrabbit.oak.api.Blob;
 import org.apache.jackrabbit.oak.commons.IOUtils;
 import org.apache.jackrabbit.oak.plugins.blob.BlobReferenceRetriever;
 import org.apache.jackrabbit.oak.plugins.blob.BlobStoreBlob;
+import org.apache.jackrabbit.oak.plugins.blob.PartitionedBlobReferenceRetriever;
 import org.apache.jackrabbit.oak.plugins.blob.ReferenceCollector;
 import org.apache.jackrabbit.oak.plugins.blob.ReferencedBlob;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static com.google.common.collect.Lists.newArrayList;
+
 /**
  * Implementation of {@link BlobReferenceRetriever} for the DocumentNodeStore.
+ * <p>
+ * The partitions of this retriever split the id range of the documents by
+ * the depth of the document path, which is the prefix of the id, and below
+ * the first level by the top level node of the path. Together the
+ * partitions cover the complete id range.
  */
-public class DocumentBlobReferenceRetriever implements BlobReferenceRetriever {
+public class DocumentBlobReferenceRetriever implements PartitionedBlobReferenceRetriever {
+    /**
+     * Depth up to which a partition is created per depth. Deeper documents
+     * are collected with the partitions of the neighbouring ids.
+     */
+    private static final int MAX_PARTITION_DEPTH = 20;
+
+    /**
+     * Maximum number of top level nodes used to split the documents of a
+     * depth.
+     */
+    private static final int MAX_PATH_PREFIXES = 32;
+
     private final Logger log = LoggerFactory.getLogger(getClass());
     private final DocumentNodeStore nodeStore;
 
@@ -43,8 +70,60 @@ public class DocumentBlobReferenceRetriever implements BlobReferenceRetriever {
 
     @Override
     public void collectReferences(ReferenceCollector collector) {
+        collectReferences(nodeStore.getReferencedBlobsIterator(), collector);
+    }
+
+    @Nonnull
+    @Override
+    public List<BlobReferenceRetriever> getPartitions() {
+        // the bounds of the ranges are excluded, so none of them
+        // must be the id of a document: "<depth>:" is not, and neither
+        // is "<depth>:/<name>" for a depth of two or more
+        List<String> prefixes = getPathPrefixes();
+        SortedSet<String> bounds = new TreeSet<String>();
+        for (int depth = 0; depth <= MAX_PARTITION_DEPTH; depth++) {
+            String depthPrefix = depth + ":";
+            bounds.add(depthPrefix);
+            if (depth >= 2) {
+                for (String prefix : prefixes) {
+                    bounds.add(depthPrefix + prefix);
+                }
+            }
+        }
+        List<BlobReferenceRetriever> partitions = newArrayList();
+        String fromKey = NodeDocument.MIN_ID_VALUE;
+        for (String toKey : bounds) {
+            partitions.add(new Partition(fromKey, toKey));
+            fromKey = toKey;
+        }
+        partitions.add(new Partition(fromKey, NodeDocument.MAX_ID_VALUE));
+        return partitions;
+    }
+
+    /**
+     * Returns the paths of (some of) the top level nodes. Only ASCII names
+     * are used, for which the order of the ids is the same in all document
+     * stores.
+     */
+    private List<String> getPathPrefixes() {
+        List<String> names = newArrayList();
+        for (String name : nodeStore.getRoot().getChildNodeNames()) {
+            if (CharMatcher.ASCII.matchesAllOf(name)) {
+                names.add(name);
+            }
+        }
+        Collections.sort(names);
+        List<String> prefixes = newArrayList();
+        int step = Math.max(1, (names.size() + MAX_PATH_PREFIXES - 1) / MAX_PATH_PREFIXES);
+        for (int i = 0; i < names.size(); i += step) {
+            prefixes.add("/" + names.get(i));
+        }
+        return prefixes;
+    }
+
+    private void collectReferences(Iterator<ReferencedBlob> blobIterator,
+                                   ReferenceCollector collector) {
         int referencesFound = 0;
-        Iterator<ReferencedBlob> blobIterator = nodeStore.getReferencedBlobsIterator();
         try {
             while (blobIterator.hasNext()) {
                 ReferencedBlob refBlob = blobIterator.next();
@@ -71,5 +150,24 @@ public class DocumentBlobReferenceRetriever implements BlobReferenceRetriever {
         }
         log.debug("Total blob references found (including chunk resolution) [{}]", referencesFound);
     }
-}
 
+    /**
+     * Retrieves the blob references of the documents within an id range.
+     */
+    private class Partition implements BlobReferenceRetriever {
+        private final String fromKey;
+        private final String toKey;
+
+        Partition(String fromKey, String toKey) {
+            this.fromKey = fromKey;
+            this.toKey = toKey;
+        }
+
+        @Override
+        public void collectReferences(ReferenceCollector collector) {
+            log.debug("Collecting blob references of documents with id between {} and {}", fromKey, toKey);
+            DocumentBlobReferenceRetriever.this.collectReferences(
+                    nodeStore.getReferencedBlobsIterator(fromKey, toKey), collector);
+        }
+    }
+}
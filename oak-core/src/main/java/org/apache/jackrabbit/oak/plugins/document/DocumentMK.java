@@ -58,6 +58,7 @@ import org.apache.jackrabbit.oak.plugins.blob.CachingBlobStore;
 import org.apache.jackrabbit.oak.plugins.blob.ReferencedBlob;
 import org.apache.jackrabbit.oak.plugins.document.DocumentNodeState.Children;
 import org.apache.jackrabbit.oak.plugins.document.cache.NodeDocumentCache;
+import org.apache.jackrabbit.oak.plugins.document.cache.OffHeapCache;
 import org.apache.jackrabbit.oak.plugins.document.locks.NodeDocumentLocks;
 import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
 import org.apache.jackrabbit.oak.plugins.document.mongo.MongoBlobReferenceIterator;
@@ -509,6 +510,7 @@ public class DocumentMK {
         private boolean isReadOnlyMode = false;
         private Weigher<CacheValue, CacheValue> weigher = new EmpiricalWeigher();
         private long memoryCacheSize = DEFAULT_MEMORY_CACHE_SIZE;
+        private long offHeapCacheSize;
         private int nodeCachePercentage = DEFAULT_NODE_CACHE_PERCENTAGE;
         private int prevDocCachePercentage = DEFAULT_PREV_DOC_CACHE_PERCENTAGE;
         private int childrenCachePercentage = DEFAULT_CHILDREN_CACHE_PERCENTAGE;
@@ -530,6 +532,8 @@ public class DocumentMK {
         private DocumentStoreStatsCollector documentStoreStatsCollector;
         private Map<CacheType, PersistentCacheStats> persistentCacheStats =
                 new EnumMap<CacheType, PersistentCacheStats>(CacheType.class);
+        private Map<CacheType, CacheStats> offHeapCacheStats =
+                new EnumMap<CacheType, CacheStats>(CacheType.class);
 
         public Builder() {
         }
@@ -812,6 +816,25 @@ public class DocumentMK {
             return this;
         }
 
+        /**
+         * Sets the size of the off-heap tier of the node, children, diff and
+         * previous document caches. The size is distributed among these
+         * caches like the memory cache size. Entries evicted from the memory
+         * cache are kept in direct memory until they are evicted from the
+         * off-heap tier as well. The default is 0 (disabled).
+         *
+         * @param offHeapCacheSize the off-heap cache size in bytes
+         * @return this
+         */
+        public Builder offHeapCacheSize(long offHeapCacheSize) {
+            this.offHeapCacheSize = offHeapCacheSize;
+            return this;
+        }
+
+        public long getOffHeapCacheSize() {
+            return offHeapCacheSize;
+        }
+
         public Builder memoryCacheDistribution(int nodeCachePercentage,
                                                int prevDocCachePercentage,
                                                int childrenCachePercentage,
@@ -916,6 +939,11 @@ public class DocumentMK {
             return persistentCacheStats;
         }
 
+        @Nonnull
+        public Map<CacheType, CacheStats> getOffHeapCacheStats() {
+            return offHeapCacheStats;
+        }
+
         @CheckForNull
         public BlobStoreStats getBlobStoreStats() {
             return blobStoreStats;
@@ -959,15 +987,18 @@ public class DocumentMK {
             }
         }
 
-        Iterable<ReferencedBlob> createReferencedBlobs(final DocumentNodeStore ns) {
+        ReferencedBlobs createReferencedBlobs(final DocumentNodeStore ns) {
             final DocumentStore store = getDocumentStore();
-            return new Iterable<ReferencedBlob>() {
+            return new ReferencedBlobs() {
+                @Nonnull
                 @Override
-                public Iterator<ReferencedBlob> iterator() {
+                public Iterator<ReferencedBlob> iterator(@Nonnull String fromKey,
+                                                         @Nonnull String toKey) {
                     if(store instanceof MongoDocumentStore){
-                        return new MongoBlobReferenceIterator(ns, (MongoDocumentStore) store);
+                        return new MongoBlobReferenceIterator(ns,
+                                (MongoDocumentStore) store, fromKey, toKey);
                     }
-                    return new BlobReferenceIterator(ns);
+                    return new BlobReferenceIterator(ns, fromKey, toKey);
                 }
             };
         }
@@ -1037,6 +1068,19 @@ public class DocumentMK {
                 ) {
             Set<EvictionListener<K, V>> listeners = new CopyOnWriteArraySet<EvictionListener<K,V>>();
             Cache<K, V> cache = buildCache(cacheType.name(), maxWeight, listeners);
+            if (offHeapCacheSize > 0 && memoryCacheSize > 0
+                    && OffHeapCache.isSupported(cacheType)) {
+                // the same share of the off-heap tier as of the heap cache;
+                // computed as a fraction, as the product may overflow a long
+                double share = (double) maxWeight / memoryCacheSize;
+                OffHeapCache<K, V> c = new OffHeapCache<K, V>(cache, cacheType,
+                        docNodeStore, docStore,
+                        (long) (offHeapCacheSize * share),
+                        cacheSegmentCount);
+                listeners.add(c);
+                offHeapCacheStats.put(cacheType, c.getOffHeapCacheStats());
+                cache = c;
+            }
             PersistentCache p = getPersistentCache();
             if (p != null) {
                 if (docNodeStore != null) {
@@ -16,6 +16,7 @@
  */
 package org.apache.jackrabbit.oak.plugins.document;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -24,6 +25,9 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -460,9 +464,14 @@ public class DocumentNodeState extends AbstractNodeState implements CacheValue {
                 + estimateMemoryUsage(path);
         // rough approximation for properties
         for (Map.Entry<String, PropertyState> entry : properties.entrySet()) {
+            PropertyState propState = entry.getValue();
+            if (propState instanceof DocumentPropertyState) {
+                // estimate based on the raw value, avoids parsing
+                size += ((DocumentPropertyState) propState).getMemory();
+                continue;
+            }
             // name
             size += estimateMemoryUsage(entry.getKey());
-            PropertyState propState = entry.getValue();
             if (propState.getType() != Type.BINARY
                     && propState.getType() != Type.BINARIES) {
                 for (int i = 0; i < propState.count(); i++) {
@@ -512,7 +521,22 @@ public class DocumentNodeState extends AbstractNodeState implements CacheValue {
     @Nonnull
     private Iterable<ChildNodeEntry> getChildNodeEntries(@Nullable String name,
                                                          int limit) {
-        Iterable<DocumentNodeState> children = store.getChildNodes(this, name, limit);
+        return toChildNodeEntries(store.getChildNodes(this, name, limit));
+    }
+
+    /**
+     * Returns the child node entries for the given {@code children}.
+     *
+     * @param children the names of the child nodes.
+     * @return the child node entries.
+     */
+    @Nonnull
+    private Iterable<ChildNodeEntry> getChildNodeEntries(@Nonnull Children children) {
+        return toChildNodeEntries(store.getChildNodes(this, children));
+    }
+
+    @Nonnull
+    private Iterable<ChildNodeEntry> toChildNodeEntries(@Nonnull Iterable<DocumentNodeState> children) {
         return Iterables.transform(children, new Function<DocumentNodeState, ChildNodeEntry>() {
             @Override
             public ChildNodeEntry apply(final DocumentNodeState input) {
@@ -679,10 +703,25 @@ public class DocumentNodeState extends AbstractNodeState implements CacheValue {
 
     private class ChildNodeEntryIterator implements Iterator<ChildNodeEntry> {
 
+        /**
+         * Whether the next batch of child nodes is fetched in the background
+         * while the current batch is consumed.
+         */
+        private final boolean prefetch = store.getPrefetchChildren();
         private String previousName;
         private Iterator<ChildNodeEntry> current;
         private int fetchSize = INITIAL_FETCH_SIZE;
         private int currentRemaining = fetchSize;
+        private boolean hasMore;
+        private FutureTask<Children> next;
+        private PrefetchChildren nextRead;
+        private String prefetchFrom;
+        private int prefetchAt;
+        /**
+         * Time in nanoseconds when the consumer started on the current batch
+         */
+        private long batchStart;
+        private int batchSize;
 
         ChildNodeEntryIterator() {
             fetchMore();
@@ -695,7 +734,7 @@ public class DocumentNodeState extends AbstractNodeState implements CacheValue {
                     return false;
                 } else if (current.hasNext()) {
                     return true;
-                } else if (currentRemaining > 0) {
+                } else if (prefetch ? !hasMore : currentRemaining > 0) {
                     // current returned less than fetchSize
                     return false;
                 }
@@ -711,6 +750,9 @@ public class DocumentNodeState extends AbstractNodeState implements CacheValue {
             ChildNodeEntry entry = current.next();
             previousName = entry.getName();
             currentRemaining--;
+            if (prefetch) {
+                schedulePrefetch();
+            }
             return entry;
         }
 
@@ -720,6 +762,10 @@ public class DocumentNodeState extends AbstractNodeState implements CacheValue {
         }
 
         private void fetchMore() {
+            if (prefetch) {
+                prefetchMore();
+                return;
+            }
             Iterator<ChildNodeEntry> entries = getChildNodeEntries(
                     previousName, fetchSize).iterator();
             currentRemaining = fetchSize;
@@ -730,6 +776,125 @@ public class DocumentNodeState extends AbstractNodeState implements CacheValue {
                 current = null;
             }
         }
+
+        /**
+         * Switches to the batch of child nodes fetched in the background (or
+         * reads the first batch). The read of the following batch is only
+         * scheduled once half of the current batch has been consumed, see
+         * {@link #schedulePrefetch()}. The size of that read is adapted to
+         * the measured round trip time of the last read and the time the
+         * consumer took for the last batch, see
+         * {@link #adaptFetchSize(long, long)}. After the first batch, for
+         * which nothing was measured yet, the fetch size doubles as without
+         * prefetching.
+         */
+        private void prefetchMore() {
+            Children children;
+            if (next == null) {
+                children = store.getChildren(DocumentNodeState.this, previousName, fetchSize);
+                fetchSize = Math.min(fetchSize * 2, MAX_FETCH_SIZE);
+            } else {
+                long consumed = System.nanoTime() - batchStart;
+                children = await(next);
+                adaptFetchSize(nextRead.roundTrip, consumed);
+                next = null;
+                nextRead = null;
+            }
+            batchStart = System.nanoTime();
+            batchSize = children.children.size();
+            hasMore = children.hasMore;
+            if (children.children.isEmpty()) {
+                current = null;
+                return;
+            }
+            current = getChildNodeEntries(children).iterator();
+            currentRemaining = children.children.size();
+            if (hasMore) {
+                prefetchFrom = children.children.get(children.children.size() - 1);
+                prefetchAt = currentRemaining / 2;
+            }
+        }
+
+        /**
+         * Sizes the next read so that it can be hidden behind the consumer.
+         * The read is scheduled with half of a batch left, so a batch must
+         * take the consumer at least twice the round trip time of a read.
+         * The size is kept between {@link #INITIAL_FETCH_SIZE} and
+         * {@link #MAX_FETCH_SIZE}.
+         *
+         * @param roundTrip time in nanoseconds from scheduling the last read
+         *                  until its result was available
+         * @param consumed time in nanoseconds the consumer took for the last
+         *                 batch
+         */
+        private void adaptFetchSize(long roundTrip, long consumed) {
+            if (batchSize == 0) {
+                return;
+            }
+            double perEntry = Math.max(consumed, 1) / (double) batchSize;
+            double size = Math.ceil(2 * roundTrip / perEntry);
+            fetchSize = (int) Math.max(INITIAL_FETCH_SIZE, Math.min(size, MAX_FETCH_SIZE));
+        }
+
+        /**
+         * Schedules the read of the next batch if the consumer got far
+         * enough into the current batch.
+         */
+        private void schedulePrefetch() {
+            if (prefetchFrom != null && currentRemaining <= prefetchAt) {
+                nextRead = new PrefetchChildren(
+                        DocumentNodeState.this, prefetchFrom, fetchSize, this);
+                next = new FutureTask<Children>(nextRead);
+                prefetchFrom = null;
+                store.getExecutor().execute(next);
+            }
+        }
+
+        private Children await(FutureTask<Children> task) {
+            try {
+                return task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw DocumentStoreException.convert(e,
+                        "Interrupted while fetching children for path " + path);
+            } catch (ExecutionException e) {
+                throw DocumentStoreException.convert(e.getCause());
+            }
+        }
     }
 
+    /**
+     * Reads a batch of child nodes in the background for a
+     * {@link ChildNodeEntryIterator}. The iterator is only weakly referenced,
+     * so a read that did not start yet is skipped once the iterator was
+     * abandoned and garbage collected. The round trip time of the read
+     * includes the time the task waited for the executor.
+     */
+    private static final class PrefetchChildren implements Callable<Children> {
+
+        private final DocumentNodeState parent;
+        private final String name;
+        private final int limit;
+        private final WeakReference<Iterator<ChildNodeEntry>> iterator;
+        private final long created = System.nanoTime();
+        private volatile long roundTrip;
+
+        PrefetchChildren(DocumentNodeState parent, String name, int limit,
+                         Iterator<ChildNodeEntry> iterator) {
+            this.parent = parent;
+            this.name = name;
+            this.limit = limit;
+            this.iterator = new WeakReference<Iterator<ChildNodeEntry>>(iterator);
+        }
+
+        @Override
+        public Children call() throws Exception {
+            if (iterator.get() == null) {
+                return null;
+            }
+            Children children = parent.store.getChildren(parent, name, limit);
+            roundTrip = System.nanoTime() - created;
+            return children;
+        }
+    }
 }
@@ -149,6 +149,13 @@ public final class DocumentNodeStore
     private boolean fairBackgroundOperationLock =
             Boolean.parseBoolean(System.getProperty("oak.fairBackgroundOperationLock", "true"));
 
+    /**
+     * Feature flag to enable prefetching of the next batch of child nodes
+     * while the current batch is consumed by a child node iterator.
+     */
+    private boolean prefetchChildren =
+            Boolean.getBoolean("oak.documentMK.prefetchChildren");
+
     /**
      * The timeout in milliseconds to wait for the recovery performed by
      * another cluster node.
@@ -395,7 +402,7 @@ public final class DocumentNodeStore
 
     private final JournalGarbageCollector journalGarbageCollector;
 
-    private final Iterable<ReferencedBlob> referencedBlobs;
+    private final ReferencedBlobs referencedBlobs;
     
     private final Executor executor;
 
@@ -788,6 +795,19 @@ public final class DocumentNodeStore
         return enableConcurrentAddRemove;
     }
 
+    void setPrefetchChildren(boolean b) {
+        prefetchChildren = b;
+    }
+
+    boolean getPrefetchChildren() {
+        return prefetchChildren;
+    }
+
+    @Nonnull
+    Executor getExecutor() {
+        return executor;
+    }
+
     @Nonnull
     public ClusterNodeInfo getClusterInfo() {
         return clusterNodeInfo;
@@ -1111,8 +1131,23 @@ public final class DocumentNodeStore
             return Collections.emptyList();
         }
 
+        return getChildNodes(parent, getChildren(parent, name, limit));
+    }
+
+    /**
+     * Returns the child nodes of {@code parent} with the names in the given
+     * {@code children}.
+     *
+     * @param parent the parent node.
+     * @param children the names of the child nodes as returned by
+     *          {@link #getChildren(DocumentNodeState, String, int)}.
+     * @return the child nodes.
+     */
+    @Nonnull
+    Iterable<DocumentNodeState> getChildNodes(@Nonnull final DocumentNodeState parent,
+                                              @Nonnull DocumentNodeState.Children children) {
         final RevisionVector readRevision = parent.getLastRevision();
-        return transform(getChildren(parent, name, limit).children, new Function<String, DocumentNodeState>() {
+        return transform(children.children, new Function<String, DocumentNodeState>() {
             @Override
             public DocumentNodeState apply(String input) {
                 String p = concat(parent.getPath(), input);
@@ -2740,7 +2775,21 @@ public final class DocumentNodeStore
      * @return an iterator for all the blobs
      */
     public Iterator<ReferencedBlob> getReferencedBlobsIterator() {
-        return referencedBlobs.iterator();
+        return getReferencedBlobsIterator(NodeDocument.MIN_ID_VALUE, NodeDocument.MAX_ID_VALUE);
+    }
+
+    /**
+     * Returns an iterator for the blobs referenced by the documents with an
+     * id between {@code fromKey} and {@code toKey} (both excluding). Like
+     * {@link #getReferencedBlobsIterator()}, the iterator might implement
+     * {@link java.io.Closeable}.
+     *
+     * @param fromKey the lower bound of the document ids (excluding).
+     * @param toKey the upper bound of the document ids (excluding).
+     * @return an iterator for the blobs within the range
+     */
+    public Iterator<ReferencedBlob> getReferencedBlobsIterator(String fromKey, String toKey) {
+        return referencedBlobs.iterator(fromKey, toKey);
     }
 
     public DiffCache getDiffCache() {
@@ -67,7 +67,7 @@ import org.apache.jackrabbit.oak.osgi.ObserverTracker;
 import org.apache.jackrabbit.oak.osgi.OsgiWhiteboard;
 import org.apache.jackrabbit.oak.plugins.blob.BlobGC;
 import org.apache.jackrabbit.oak.plugins.blob.BlobGCMBean;
-import org.apache.jackrabbit.oak.plugins.blob.BlobGarbageCollector;
+import org.apache.jackrabbit.oak.plugins.blob.MarkSweepGarbageCollector;
 import org.apache.jackrabbit.oak.plugins.blob.BlobStoreStats;
 import org.apache.jackrabbit.oak.plugins.blob.SharedDataStore;
 import org.apache.jackrabbit.oak.plugins.blob.datastore.SharedDataStoreUtils;
@@ -112,6 +112,7 @@ import org.slf4j.LoggerFactory;
 public class DocumentNodeStoreService {
     private static final String DEFAULT_URI = "mongodb://localhost:27017/oak";
     private static final int DEFAULT_CACHE = 256;
+    private static final int DEFAULT_OFF_HEAP_CACHE = 0;
     private static final int DEFAULT_BLOB_CACHE_SIZE = 16;
     private static final String DEFAULT_DB = "oak";
     private static final String DEFAULT_PERSISTENT_CACHE = "";
@@ -182,6 +183,13 @@ public class DocumentNodeStoreService {
     )
     private static final String PROP_DOC_CHILDREN_CACHE_PERCENTAGE = "docChildrenCachePercentage";
 
+    @Property(intValue = DEFAULT_OFF_HEAP_CACHE,
+            label = "Off-heap Cache Size (in MB)",
+            description = "Size in MB of the off-heap tier of the node, children, diff and previous " +
+                    "document caches. It is distributed like the cache size. Default is 0 (disabled)"
+    )
+    private static final String PROP_OFF_HEAP_CACHE = "offHeapCache";
+
     @Property(intValue = DocumentMK.Builder.DEFAULT_CACHE_SEGMENT_COUNT,
             label = "LIRS Cache Segment Count",
             description = "The number of segments in the LIRS cache " + 
@@ -380,6 +388,7 @@ public class DocumentNodeStoreService {
         String db = PropertiesUtil.toString(prop(PROP_DB, FWK_PROP_DB), DEFAULT_DB);
 
         int cacheSize = toInteger(prop(PROP_CACHE), DEFAULT_CACHE);
+        int offHeapCacheSize = toInteger(prop(PROP_OFF_HEAP_CACHE), DEFAULT_OFF_HEAP_CACHE);
         int nodeCachePercentage = toInteger(prop(PROP_NODE_CACHE_PERCENTAGE), DEFAULT_NODE_CACHE_PERCENTAGE);
         int prevDocCachePercentage = toInteger(prop(PROP_PREV_DOC_CACHE_PERCENTAGE), DEFAULT_NODE_CACHE_PERCENTAGE);
         int childrenCachePercentage = toInteger(prop(PROP_CHILDREN_CACHE_PERCENTAGE), DEFAULT_CHILDREN_CACHE_PERCENTAGE);
@@ -393,6 +402,7 @@ public class DocumentNodeStoreService {
                 new DocumentMK.Builder().
                 setStatisticsProvider(statisticsProvider).
                 memoryCacheSize(cacheSize * MB).
+                offHeapCacheSize(offHeapCacheSize * MB).
                 memoryCacheDistribution(
                         nodeCachePercentage,
                         prevDocCachePercentage,
@@ -690,6 +700,17 @@ public class DocumentNodeStoreService {
             );
         }
 
+        // register off-heap cache stats
+        for (CacheStats cs : mkBuilder.getOffHeapCacheStats().values()) {
+            registrations.add(
+                    registerMBean(whiteboard,
+                            CacheStatsMBean.class,
+                            cs,
+                            CacheStatsMBean.TYPE,
+                            cs.getName())
+            );
+        }
+
         // register persistent cache stats
         Map<CacheType, PersistentCacheStats> persistenceCacheStats = mkBuilder.getPersistenceCacheStats();
         for (PersistentCacheStats pcs: persistenceCacheStats.values()) {
@@ -707,8 +728,9 @@ public class DocumentNodeStoreService {
         final long blobGcMaxAgeInSecs = toLong(prop(PROP_BLOB_GC_MAX_AGE), DEFAULT_BLOB_GC_MAX_AGE);
 
         if (store.getBlobStore() instanceof GarbageCollectableBlobStore) {
-            BlobGarbageCollector gc = store.createBlobGarbageCollector(blobGcMaxAgeInSecs, 
+            MarkSweepGarbageCollector gc = store.createBlobGarbageCollector(blobGcMaxAgeInSecs, 
                                                         ClusterRepositoryInfo.getOrCreateId(mk.getNodeStore()));
+            gc.setStatisticsProvider(statisticsProvider);
             registrations.add(registerMBean(whiteboard, BlobGCMBean.class, new BlobGC(gc, executor),
                     BlobGCMBean.TYPE, "Document node store blob garbage collection"));
         }
@@ -17,10 +17,12 @@
 package org.apache.jackrabbit.oak.plugins.document;
 
 import static java.util.Collections.emptyList;
+import static org.apache.jackrabbit.oak.commons.StringUtils.estimateMemoryUsage;
 import static org.apache.jackrabbit.oak.plugins.memory.PropertyStates.createProperty;
 
 import java.util.List;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.jcr.PropertyType;
 
@@ -42,6 +44,9 @@ import org.apache.jackrabbit.oak.plugins.value.Conversions;
 
 /**
  * PropertyState implementation with lazy parsing of the JSOP encoded value.
+ * The value is parsed at most once. Simple single valued properties (strings
+ * without escaped characters, longs and booleans) are decoded directly from
+ * the raw value without going through a {@link JsopTokenizer}.
  */
 final class DocumentPropertyState implements PropertyState {
 
@@ -113,6 +118,17 @@ final class DocumentPropertyState implements PropertyState {
         return value;
     }
 
+    /**
+     * Estimates the memory used by this property state, including the parsed
+     * representation. This method does not parse the value.
+     *
+     * @return the estimated memory usage in bytes.
+     */
+    int getMemory() {
+        // double the size of the value because of the parsed PropertyState
+        return estimateMemoryUsage(name) + estimateMemoryUsage(value) * 2;
+    }
+
     //------------------------------------------------------------< Object >--
 
     @Override
@@ -142,15 +158,66 @@ final class DocumentPropertyState implements PropertyState {
     //----------------------------< internal >----------------------------------
 
     private PropertyState parsed() {
-        if (parsed == null) {
-            JsopReader reader = new JsopTokenizer(value);
-            if (reader.matches('[')) {
-                parsed = readArrayProperty(name, reader);
-            } else {
-                parsed = readProperty(name, reader);
+        PropertyState p = parsed;
+        if (p == null) {
+            p = readSimpleProperty(name, store, value);
+            if (p == null) {
+                JsopReader reader = new JsopTokenizer(value);
+                if (reader.matches('[')) {
+                    p = readArrayProperty(name, reader);
+                } else {
+                    p = readProperty(name, reader);
+                }
             }
+            parsed = p;
         }
-        return parsed;
+        return p;
+    }
+
+    /**
+     * Decodes simple single valued properties directly from the JSON encoded
+     * value: strings without escaped characters, longs and booleans.
+     *
+     * @param name the name of the property state
+     * @param store the store
+     * @param value the JSON encoded value
+     * @return the property state or {@code null} if the value must be parsed
+     *          with a {@link JsopTokenizer}.
+     */
+    @CheckForNull
+    static PropertyState readSimpleProperty(String name,
+                                            DocumentNodeStore store,
+                                            String value) {
+        int len = value.length();
+        if (len == 0) {
+            return null;
+        }
+        char c = value.charAt(0);
+        if (c == '"') {
+            if (len < 2 || value.charAt(len - 1) != '"'
+                    || value.indexOf('\\') != -1) {
+                return null;
+            }
+            return readStringProperty(name, store, value.substring(1, len - 1));
+        } else if (c == '-' || (c >= '0' && c <= '9')) {
+            int start = c == '-' ? 1 : 0;
+            // at most 18 digits always fit into a long
+            if (len == start || len - start > 18) {
+                return null;
+            }
+            for (int i = start; i < len; i++) {
+                c = value.charAt(i);
+                if (c < '0' || c > '9') {
+                    return null;
+                }
+            }
+            return new LongPropertyState(name, Long.parseLong(value));
+        } else if ("true".equals(value)) {
+            return BooleanPropertyState.booleanProperty(name, true);
+        } else if ("false".equals(value)) {
+            return BooleanPropertyState.booleanProperty(name, false);
+        }
+        return null;
     }
 
     /**
@@ -184,26 +251,39 @@ final class DocumentPropertyState implements PropertyState {
         } else if (reader.matches(JsopReader.FALSE)) {
             return BooleanPropertyState.booleanProperty(name, false);
         } else if (reader.matches(JsopReader.STRING)) {
-            String jsonString = reader.getToken();
-            if (jsonString.startsWith(TypeCodes.EMPTY_ARRAY)) {
-                int type = PropertyType.valueFromName(jsonString.substring(TypeCodes.EMPTY_ARRAY.length()));
-                return PropertyStates.createProperty(name, emptyList(), Type.fromTag(type, true));
-            }
-            int split = TypeCodes.split(jsonString);
-            if (split != -1) {
-                int type = TypeCodes.decodeType(split, jsonString);
-                String value = TypeCodes.decodeName(split, jsonString);
-                if (type == PropertyType.BINARY) {
+            return readStringProperty(name, store, reader.getToken());
+        } else {
+            throw new IllegalArgumentException("Unexpected token: " + reader.getToken());
+        }
+    }
 
-                    return  BinaryPropertyState.binaryProperty(name, store.getBlobFromBlobId(value));
-                } else {
-                    return createProperty(name, StringCache.get(value), type);
-                }
+    /**
+     * Creates a {@code PropertyState} from a decoded JSON string.
+     *
+     * @param name the name of the property state
+     * @param store the store
+     * @param jsonString the decoded JSON string
+     * @return new property state
+     */
+    private static PropertyState readStringProperty(String name,
+                                                    DocumentNodeStore store,
+                                                    String jsonString) {
+        if (jsonString.startsWith(TypeCodes.EMPTY_ARRAY)) {
+            int type = PropertyType.valueFromName(jsonString.substring(TypeCodes.EMPTY_ARRAY.length()));
+            return PropertyStates.createProperty(name, emptyList(), Type.fromTag(type, true));
+        }
+        int split = TypeCodes.split(jsonString);
+        if (split != -1) {
+            int type = TypeCodes.decodeType(split, jsonString);
+            String value = TypeCodes.decodeName(split, jsonString);
+            if (type == PropertyType.BINARY) {
+
+                return  BinaryPropertyState.binaryProperty(name, store.getBlobFromBlobId(value));
             } else {
-                return StringPropertyState.stringProperty(name, StringCache.get(jsonString));
+                return createProperty(name, StringCache.get(value), type);
             }
         } else {
-            throw new IllegalArgumentException("Unexpected token: " + reader.getToken());
+            return StringPropertyState.stringProperty(name, StringCache.get(jsonString));
         }
     }
 
@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.Iterator;
+
+import javax.annotation.Nonnull;
+
+import org.apache.jackrabbit.oak.plugins.blob.ReferencedBlob;
+
+/**
+ * Provides iterators over the binaries referenced by the documents of a
+ * {@link DocumentStore}, using a store specific implementation where
+ * available.
+ */
+interface ReferencedBlobs {
+
+    /**
+     * Returns an iterator over the binaries referenced by the documents with
+     * an id between {@code fromKey} and {@code toKey}. The iterator might
+     * implement {@link java.io.Closeable}, in which case callers must close
+     * it.
+     *
+     * @param fromKey the lower bound of the document ids (excluding).
+     * @param toKey the upper bound of the document ids (excluding).
+     * @return an iterator over the referenced binaries.
+     */
+    @Nonnull
+    Iterator<ReferencedBlob> iterator(@Nonnull String fromKey,
+                                      @Nonnull String toKey);
+}
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.cache;
+
+import java.nio.ByteBuffer;
+
+import javax.annotation.CheckForNull;
+
+/**
+ * Direct memory of the off-heap tier of an {@link OffHeapCache}. The memory
+ * is allocated in slabs of up to {@link #SLAB_SIZE} bytes, on demand and up
+ * to the configured maximum, and is never released. Slabs are split into
+ * blocks of {@link #BLOCK_SIZE} bytes. A value occupies a list of blocks,
+ * which are put back to a free list once the value is removed. The free
+ * list is linked through the first four bytes of each free block, so that
+ * it does not need any heap memory.
+ */
+final class OffHeapArena {
+
+    static final int BLOCK_SIZE = 256;
+
+    static final int SLAB_SIZE = 4 * 1024 * 1024;
+
+    private final int blocksPerSlab;
+
+    private final ByteBuffer[] slabs;
+
+    private int slabCount;
+
+    /**
+     * The first free block, or -1 if there is none.
+     */
+    private int freeHead = -1;
+
+    private int freeBlocks;
+
+    /**
+     * @param maxSize the maximum number of bytes to allocate
+     */
+    OffHeapArena(long maxSize) {
+        int slabSize = (int) Math.min(SLAB_SIZE, Math.max(BLOCK_SIZE, maxSize));
+        blocksPerSlab = slabSize / BLOCK_SIZE;
+        long count = (maxSize + slabSize - 1) / slabSize;
+        count = Math.min(count, Integer.MAX_VALUE / blocksPerSlab);
+        slabs = new ByteBuffer[(int) Math.max(1, count)];
+    }
+
+    /**
+     * Allocate and fill the blocks for the given data.
+     *
+     * @param data the data to store
+     * @return the allocated blocks, or {@code null} if the arena is full
+     */
+    @CheckForNull
+    int[] store(byte[] data) {
+        int[] blocks = allocate(Math.max(1, (data.length + BLOCK_SIZE - 1) / BLOCK_SIZE));
+        if (blocks != null) {
+            for (int i = 0; i < blocks.length; i++) {
+                int off = i * BLOCK_SIZE;
+                block(blocks[i]).put(data, off, Math.min(BLOCK_SIZE, data.length - off));
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * Read the data stored in the given blocks.
+     *
+     * @param blocks the blocks, as returned by {@link #store(byte[])}
+     * @param length the length of the stored data
+     * @return the data
+     */
+    byte[] read(int[] blocks, int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < blocks.length; i++) {
+            int off = i * BLOCK_SIZE;
+            block(blocks[i]).get(data, off, Math.min(BLOCK_SIZE, length - off));
+        }
+        return data;
+    }
+
+    /**
+     * Put the given blocks back to the free list.
+     *
+     * @param blocks the blocks, as returned by {@link #store(byte[])}
+     */
+    synchronized void free(int[] blocks) {
+        for (int b : blocks) {
+            setNext(b, freeHead);
+            freeHead = b;
+        }
+        freeBlocks += blocks.length;
+    }
+
+    /**
+     * @return the number of blocks currently in use
+     */
+    synchronized int getUsedBlocks() {
+        return slabCount * blocksPerSlab - freeBlocks;
+    }
+
+    @CheckForNull
+    private synchronized int[] allocate(int count) {
+        while (freeBlocks < count) {
+            if (slabCount == slabs.length) {
+                return null;
+            }
+            addSlab();
+        }
+        int[] blocks = new int[count];
+        for (int i = 0; i < count; i++) {
+            blocks[i] = freeHead;
+            freeHead = getNext(freeHead);
+        }
+        freeBlocks -= count;
+        return blocks;
+    }
+
+    private void addSlab() {
+        int first = slabCount * blocksPerSlab;
+        slabs[slabCount++] = ByteBuffer.allocateDirect(blocksPerSlab * BLOCK_SIZE);
+        for (int b = first + blocksPerSlab - 1; b >= first; b--) {
+            setNext(b, freeHead);
+            freeHead = b;
+        }
+        freeBlocks += blocksPerSlab;
+    }
+
+    private int getNext(int block) {
+        return slabs[block / blocksPerSlab].getInt(offset(block));
+    }
+
+    private void setNext(int block, int next) {
+        slabs[block / blocksPerSlab].putInt(offset(block), next);
+    }
+
+    /**
+     * @return a buffer positioned at the start of the given block
+     */
+    private ByteBuffer block(int block) {
+        ByteBuffer buffer = slabs[block / blocksPerSlab].duplicate();
+        buffer.position(offset(block));
+        return buffer;
+    }
+
+    private int offset(int block) {
+        return (block % blocksPerSlab) * BLOCK_SIZE;
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.cache;
+
+import static com.google.common.cache.RemovalCause.SIZE;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.Striped;
+import org.apache.jackrabbit.oak.cache.CacheLIRS;
+import org.apache.jackrabbit.oak.cache.CacheLIRS.EvictionCallback;
+import org.apache.jackrabbit.oak.cache.CacheStats;
+import org.apache.jackrabbit.oak.cache.CacheValue;
+import org.apache.jackrabbit.oak.plugins.document.DocumentNodeStore;
+import org.apache.jackrabbit.oak.plugins.document.DocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.persistentCache.CacheType;
+import org.apache.jackrabbit.oak.plugins.document.persistentCache.EvictionListener;
+
+/**
+ * A cache with a second, off-heap tier. Entries evicted from the on-heap
+ * cache because of its size are serialized to direct memory and kept in an
+ * off-heap LIRS cache, whose on-heap part only consists of the keys and
+ * references to the direct memory. The direct memory is taken from an
+ * {@link OffHeapArena}, which allocates it in large slabs and reuses the
+ * memory of removed entries. On a hit in the off-heap tier, the entry is
+ * moved back to the on-heap cache.
+ * <p>
+ * Only caches with immutable values are supported (see
+ * {@link #isSupported(CacheType)}), because changes made through
+ * {@link #asMap()} bypass the off-heap tier.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class OffHeapCache<K extends CacheValue, V extends CacheValue>
+        implements Cache<K, V>, EvictionListener<K, V> {
+
+    private static final ImmutableSet<CacheType> SUPPORTED_TYPES = ImmutableSet.of(
+            CacheType.NODE, CacheType.CHILDREN, CacheType.DIFF,
+            CacheType.LOCAL_DIFF, CacheType.PREV_DOCUMENT);
+
+    private final Cache<K, V> cache;
+    private final CacheLIRS<K, OffHeapValue> offHeap;
+    private final CacheType type;
+    private final DocumentNodeStore docNodeStore;
+    private final DocumentStore docStore;
+    private final CacheStats offHeapStats;
+    private final OffHeapArena arena;
+
+    /**
+     * Locks to ensure an entry moved back to the on-heap cache is not
+     * resurrected by a concurrent invalidation of its key.
+     */
+    private final Striped<Lock> locks = Striped.lock(64);
+
+    /**
+     * Moves take the read lock, {@link #invalidateAll()} the write lock.
+     */
+    private final ReadWriteLock invalidateAllLock = new ReentrantReadWriteLock();
+
+    public OffHeapCache(@Nonnull Cache<K, V> cache,
+                        @Nonnull CacheType type,
+                        @Nullable DocumentNodeStore docNodeStore,
+                        @Nullable DocumentStore docStore,
+                        long maxOffHeapWeight,
+                        int segmentCount) {
+        this.cache = cache;
+        this.type = type;
+        this.docNodeStore = docNodeStore;
+        this.docStore = docStore;
+        this.arena = new OffHeapArena(maxOffHeapWeight);
+        Weigher<K, OffHeapValue> weigher = new Weigher<K, OffHeapValue>() {
+            @Override
+            public int weigh(@Nonnull K key, @Nonnull OffHeapValue value) {
+                return key.getMemory() + value.getMemory();
+            }
+        };
+        this.offHeap = CacheLIRS.<K, OffHeapValue>newBuilder().
+                module(type.name() + "-OffHeap").
+                weigher(weigher).
+                averageWeight(2000).
+                maximumWeight(maxOffHeapWeight).
+                segmentCount(segmentCount).
+                recordStats().
+                evictionCallback(new EvictionCallback<K, OffHeapValue>() {
+                    @Override
+                    public void evicted(@Nonnull K key,
+                                        @Nullable OffHeapValue value,
+                                        @Nonnull RemovalCause cause) {
+                        if (value != null) {
+                            value.free();
+                        }
+                    }
+                }).
+                build();
+        this.offHeapStats = new CacheStats(
+                offHeap, "Document-" + type.name() + "-OffHeap", weigher, maxOffHeapWeight);
+    }
+
+    /**
+     * Whether the values of the given cache type can be kept off-heap.
+     *
+     * @param type the cache type
+     * @return whether the type is supported
+     */
+    public static boolean isSupported(CacheType type) {
+        return SUPPORTED_TYPES.contains(type);
+    }
+
+    /**
+     * @return the statistics of the off-heap tier.
+     */
+    @Nonnull
+    public CacheStats getOffHeapCacheStats() {
+        return offHeapStats;
+    }
+
+    @Override
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public V getIfPresent(Object key) {
+        V value = cache.getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+        return readOffHeap((K) key);
+    }
+
+    @Override
+    public V get(K key, Callable<? extends V> valueLoader)
+            throws ExecutionException {
+        V value = getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+        return cache.get(key, valueLoader);
+    }
+
+    @Override
+    public ImmutableMap<K, V> getAllPresent(Iterable<?> keys) {
+        return cache.getAllPresent(keys);
+    }
+
+    @Override
+    public void put(K key, V value) {
+        Lock lock = locks.get(key);
+        lock.lock();
+        try {
+            cache.put(key, value);
+            offHeap.invalidate(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        for (Map.Entry<? extends K, ? extends V> e : m.entrySet()) {
+            put(e.getKey(), e.getValue());
+        }
+    }
+
+    @Override
+    public void invalidate(Object key) {
+        Lock lock = locks.get(key);
+        lock.lock();
+        try {
+            cache.invalidate(key);
+            offHeap.invalidate(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void invalidateAll(Iterable<?> keys) {
+        for (Object key : keys) {
+            invalidate(key);
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        invalidateAllLock.writeLock().lock();
+        try {
+            cache.invalidateAll();
+            offHeap.invalidateAll();
+        } finally {
+            invalidateAllLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public long size() {
+        return cache.size();
+    }
+
+    @Override
+    public com.google.common.cache.CacheStats stats() {
+        return cache.stats();
+    }
+
+    @Override
+    public ConcurrentMap<K, V> asMap() {
+        return cache.asMap();
+    }
+
+    @Override
+    public void cleanUp() {
+        cache.cleanUp();
+        offHeap.cleanUp();
+    }
+
+    /**
+     * Invoked on the eviction from the on-heap cache.
+     */
+    @Override
+    public void evicted(K key, V value, RemovalCause cause) {
+        if (cause == SIZE && value != null) {
+            byte[] data = type.valueToString(value).getBytes(Charsets.UTF_8);
+            int[] blocks = arena.store(data);
+            if (blocks != null) {
+                offHeap.put(key, new OffHeapValue(blocks, data.length));
+            }
+        }
+    }
+
+    /**
+     * @return the number of arena blocks in use by the off-heap tier.
+     */
+    int getOffHeapUsedBlocks() {
+        return arena.getUsedBlocks();
+    }
+
+    @Nullable
+    private V readOffHeap(K key) {
+        Lock lock = locks.get(key);
+        invalidateAllLock.readLock().lock();
+        lock.lock();
+        try {
+            OffHeapValue v = offHeap.getIfPresent(key);
+            if (v == null) {
+                return null;
+            }
+            byte[] data = v.read();
+            if (data == null) {
+                // removed concurrently
+                return null;
+            }
+            V value = type.valueFromString(docNodeStore, docStore,
+                    new String(data, Charsets.UTF_8));
+            // move the entry back to the on-heap cache
+            cache.put(key, value);
+            offHeap.invalidate(key);
+            return value;
+        } finally {
+            lock.unlock();
+            invalidateAllLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * A serialized value in blocks of the arena. The blocks are freed when
+     * the value is removed from the off-heap tier.
+     */
+    private final class OffHeapValue implements CacheValue {
+
+        private final int[] blocks;
+        private final int length;
+        private boolean freed;
+
+        OffHeapValue(int[] blocks, int length) {
+            this.blocks = blocks;
+            this.length = length;
+        }
+
+        @CheckForNull
+        synchronized byte[] read() {
+            return freed ? null : arena.read(blocks, length);
+        }
+
+        synchronized void free() {
+            if (!freed) {
+                freed = true;
+                arena.free(blocks);
+            }
+        }
+
+        @Override
+        public int getMemory() {
+            // the blocks, plus the on-heap block list and object
+            return blocks.length * (OffHeapArena.BLOCK_SIZE + 4) + 64;
+        }
+    }
+}
@@ -31,6 +31,7 @@ import com.mongodb.QueryBuilder;
 import org.apache.jackrabbit.oak.plugins.blob.ReferencedBlob;
 import org.apache.jackrabbit.oak.plugins.document.BlobCollector;
 import org.apache.jackrabbit.oak.plugins.document.Collection;
+import org.apache.jackrabbit.oak.plugins.document.Document;
 import org.apache.jackrabbit.oak.plugins.document.DocumentNodeStore;
 import org.apache.jackrabbit.oak.plugins.document.NodeDocument;
 
@@ -38,13 +39,35 @@ public class MongoBlobReferenceIterator extends AbstractIterator<ReferencedBlob>
     private final MongoDocumentStore documentStore;
     private final BlobCollector blobCollector;
     private final Queue<ReferencedBlob> blobs = Queues.newArrayDeque();
+    private final String fromKey;
+    private final String toKey;
 
     private DBCursor cursor;
 
     public MongoBlobReferenceIterator(DocumentNodeStore nodeStore,
                                       MongoDocumentStore documentStore) {
+        this(nodeStore, documentStore, NodeDocument.MIN_ID_VALUE, NodeDocument.MAX_ID_VALUE);
+    }
+
+    /**
+     * Creates an iterator over the binaries referenced by the documents with
+     * an id between {@code fromKey} and {@code toKey}. Like the iterator over
+     * all documents, the documents are read with a cursor and are not put
+     * into the document cache.
+     *
+     * @param nodeStore the node store.
+     * @param documentStore the document store of the node store.
+     * @param fromKey the lower bound of the document ids (excluding).
+     * @param toKey the upper bound of the document ids (excluding).
+     */
+    public MongoBlobReferenceIterator(DocumentNodeStore nodeStore,
+                                      MongoDocumentStore documentStore,
+                                      String fromKey,
+                                      String toKey) {
         this.documentStore = documentStore;
         this.blobCollector = new BlobCollector(nodeStore);
+        this.fromKey = fromKey;
+        this.toKey = toKey;
     }
 
     @Override
@@ -73,8 +96,9 @@ public class MongoBlobReferenceIterator extends AbstractIterator<ReferencedBlob>
 
     private void initializeCursor() {
         if (cursor == null) {
-            DBObject query = QueryBuilder.start(NodeDocument.HAS_BINARY_FLAG)
-                    .is(NodeDocument.HAS_BINARY_VAL)
+            DBObject query = QueryBuilder.start(Document.ID)
+                    .greaterThan(fromKey).lessThan(toKey)
+                    .and(NodeDocument.HAS_BINARY_FLAG).is(NodeDocument.HAS_BINARY_VAL)
                     .get();
             //TODO It currently prefers secondary. Would that be Ok?
             cursor = getNodeCollection().find(query)
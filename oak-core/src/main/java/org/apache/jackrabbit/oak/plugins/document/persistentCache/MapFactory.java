@@ -22,6 +22,11 @@ import org.h2.mvstore.MVMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * The storage of one generation of the persistent cache. By default, the maps
+ * are stored in an H2 MVStore. With the "mmap" option, a
+ * {@link MemoryMappedMapFactory} is used instead.
+ */
 public abstract class MapFactory {
     
     static final Logger LOG = LoggerFactory.getLogger(MapFactory.class);
@@ -70,6 +75,15 @@ public abstract class MapFactory {
      */
     abstract <K, V> Map<K, V> openMap(String name, MVMap.Builder<K, V> builder);
     
+    /**
+     * Compact the store, if it supports this.
+     *
+     * @param fillRate the target fill rate in percent
+     */
+    void compact(int fillRate) {
+        // nothing to do by default
+    }
+
     /**
      * Get the file size in bytes.
      * 
@@ -0,0 +1,544 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.persistentCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.WriteBuffer;
+import org.h2.mvstore.type.DataType;
+import org.h2.mvstore.type.ObjectDataType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Charsets;
+
+/**
+ * A map factory that stores the entries of all maps in an append-only log of
+ * memory mapped segments. The position of the most recent entry of each key
+ * is kept in an in-memory index, so that a lookup is a hash map lookup
+ * followed by a read from the mapped file. Entries are never overwritten or
+ * compacted: the space is reclaimed when the generation (the whole file) is
+ * removed.
+ * <p>
+ * Each record has the following format: the length of the rest of the record
+ * (int), the CRC32 checksum of the rest of the record after the checksum
+ * (int), the record type (byte), the map id (int), and the type specific
+ * data. A record never spans two segments; a length of 0 marks the end of
+ * the records in a segment. When the file is opened, the log is read up to
+ * the first record with a wrong checksum, so that a record that was only
+ * partially written before a crash is ignored.
+ */
+class MemoryMappedMapFactory extends MapFactory {
+
+    static final Logger LOG = LoggerFactory.getLogger(MemoryMappedMapFactory.class);
+
+    /**
+     * The size of a memory mapped segment of the file.
+     */
+    static final int SEGMENT_SIZE = Integer.getInteger(
+            "oak.cache.mmap.segmentSize", 64 * 1024 * 1024);
+
+    private static final int MAGIC = 0x4f414b4d;
+    private static final int VERSION = 2;
+    private static final int HEADER_LENGTH = 8;
+
+    /** Record header: length, checksum, type and map id. */
+    private static final int RECORD_HEADER_LENGTH = 4 + 4 + 1 + 4;
+
+    private static final byte DEFINE = 1;
+    private static final byte PUT = 2;
+    private static final byte REMOVE = 3;
+    private static final byte CLEAR = 4;
+
+    private static final ThreadLocal<WriteBuffer> WRITE_BUFFER = new ThreadLocal<WriteBuffer>() {
+        @Override
+        protected WriteBuffer initialValue() {
+            return new WriteBuffer();
+        }
+    };
+
+    private final String fileName;
+    private final boolean readOnly;
+    private final int segmentSize;
+
+    private final List<MappedByteBuffer> segments =
+            new CopyOnWriteArrayList<MappedByteBuffer>();
+    private final Map<String, Integer> mapIds = new ConcurrentHashMap<String, Integer>();
+    private final Map<Integer, Map<ByteBuffer, Long>> indexes =
+            new ConcurrentHashMap<Integer, Map<ByteBuffer, Long>>();
+
+    /**
+     * Guards reads of the mapped segments against the segments being
+     * released when the store is closed.
+     */
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+
+    private RandomAccessFile file;
+    private volatile boolean open;
+    private long writePos;
+
+    MemoryMappedMapFactory(String fileName, boolean readOnly) {
+        this(fileName, readOnly, SEGMENT_SIZE);
+    }
+
+    MemoryMappedMapFactory(String fileName, boolean readOnly, int segmentSize) {
+        this.fileName = fileName;
+        this.readOnly = readOnly;
+        this.segmentSize = segmentSize;
+    }
+
+    @Override
+    synchronized void openStore() {
+        if (open) {
+            return;
+        }
+        try {
+            File f = new File(fileName);
+            if (readOnly && !f.exists()) {
+                throw new IOException("File not found: " + fileName);
+            }
+            file = new RandomAccessFile(f, readOnly ? "r" : "rw");
+            long length = file.length();
+            if (length < HEADER_LENGTH || readHeader() != MAGIC) {
+                if (readOnly) {
+                    throw new IOException("Not a memory mapped cache file: " + fileName);
+                }
+                // empty, or not in the expected format: start over
+                file.setLength(0);
+                length = 0;
+            }
+            int count = (int) ((length + segmentSize - 1) / segmentSize);
+            for (int i = 0; i < Math.max(count, 1); i++) {
+                if (readOnly) {
+                    long start = (long) i * segmentSize;
+                    segments.add(mapSegment(i, (int) Math.min(segmentSize, length - start)));
+                } else {
+                    segments.add(mapSegment(i, segmentSize));
+                }
+            }
+            if (length == 0) {
+                ByteBuffer first = segments.get(0);
+                first.putInt(0, MAGIC);
+                first.putInt(4, VERSION);
+            }
+            scan();
+            open = true;
+        } catch (IOException e) {
+            LOG.warn("Could not open the store " + fileName, e);
+            closeFile();
+        }
+    }
+
+    @Override
+    synchronized void closeStore() {
+        if (!open) {
+            return;
+        }
+        closeLock.writeLock().lock();
+        try {
+            open = false;
+            if (!readOnly) {
+                for (MappedByteBuffer b : segments) {
+                    b.force();
+                }
+            }
+            closeFile();
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    <K, V> Map<K, V> openMap(String name, MVMap.Builder<K, V> builder) {
+        if (!open) {
+            return null;
+        }
+        DataType keyType = null;
+        DataType valueType = null;
+        if (builder != null) {
+            keyType = builder.getKeyType();
+            valueType = builder.getValueType();
+        }
+        if (keyType == null) {
+            keyType = new ObjectDataType();
+        }
+        if (valueType == null) {
+            valueType = new ObjectDataType();
+        }
+        int id = getMapId(name);
+        return new LogMap<K, V>(id, indexes.get(id), keyType, valueType);
+    }
+
+    @Override
+    long getFileSize() {
+        return open ? writePos : 0;
+    }
+
+    private int readHeader() throws IOException {
+        file.seek(0);
+        int magic = file.readInt();
+        int version = file.readInt();
+        return version == VERSION ? magic : 0;
+    }
+
+    private MappedByteBuffer mapSegment(int i, int size) throws IOException {
+        return file.getChannel().map(readOnly ? MapMode.READ_ONLY : MapMode.READ_WRITE,
+                (long) i * segmentSize, size);
+    }
+
+    private void closeFile() {
+        segments.clear();
+        mapIds.clear();
+        indexes.clear();
+        writePos = 0;
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                LOG.debug("Could not close the file " + fileName, e);
+            }
+            file = null;
+        }
+    }
+
+    /**
+     * Reads all records and builds the index. Sets the write position to the
+     * end of the last record.
+     */
+    private void scan() {
+        writePos = HEADER_LENGTH;
+        for (int i = 0; i < segments.size(); i++) {
+            ByteBuffer b = segments.get(i).duplicate();
+            int size = b.capacity();
+            int pos = i == 0 ? HEADER_LENGTH : 0;
+            if (i > 0 && (size < 4 || b.getInt(0) == 0)) {
+                // empty segment: end of the log
+                break;
+            }
+            while (pos + RECORD_HEADER_LENGTH <= size) {
+                int len = b.getInt(pos);
+                if (len < RECORD_HEADER_LENGTH - 4 || pos + 4 + len > size) {
+                    break;
+                }
+                if (b.getInt(pos + 4) != checksum(b, pos + 8, pos + 4 + len)) {
+                    LOG.warn("Wrong checksum of the record at position {} in {}, " +
+                            "ignoring the rest of the file", (long) i * segmentSize + pos, fileName);
+                    writePos = (long) i * segmentSize + pos;
+                    return;
+                }
+                b.limit(pos + 4 + len);
+                b.position(pos + 8);
+                readRecord(b, (long) i * segmentSize + pos);
+                b.limit(b.capacity());
+                pos += 4 + len;
+            }
+            writePos = (long) i * segmentSize + pos;
+        }
+    }
+
+    private void readRecord(ByteBuffer b, long pos) {
+        byte type = b.get();
+        int mapId = b.getInt();
+        switch (type) {
+        case DEFINE:
+            byte[] name = new byte[b.remaining()];
+            b.get(name);
+            mapIds.put(new String(name, Charsets.UTF_8), mapId);
+            indexes.put(mapId, new ConcurrentHashMap<ByteBuffer, Long>());
+            break;
+        case PUT:
+        case REMOVE:
+            Map<ByteBuffer, Long> index = indexes.get(mapId);
+            if (index == null) {
+                break;
+            }
+            int keyLength = type == PUT ? b.getInt() : b.remaining();
+            byte[] key = new byte[keyLength];
+            b.get(key);
+            if (type == PUT) {
+                index.put(ByteBuffer.wrap(key), pos);
+            } else {
+                index.remove(ByteBuffer.wrap(key));
+            }
+            break;
+        case CLEAR:
+            index = indexes.get(mapId);
+            if (index != null) {
+                index.clear();
+            }
+            break;
+        default:
+            LOG.warn("Unknown record type {} at position {} in {}", type, pos, fileName);
+        }
+    }
+
+    private synchronized int getMapId(String name) {
+        Integer id = mapIds.get(name);
+        if (id == null) {
+            id = mapIds.size();
+            mapIds.put(name, id);
+            indexes.put(id, new ConcurrentHashMap<ByteBuffer, Long>());
+            if (!readOnly) {
+                append(DEFINE, id, name.getBytes(Charsets.UTF_8), null);
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Appends a record.
+     *
+     * @return the position of the record, or -1 if it could not be appended
+     */
+    private long append(byte type, int mapId, byte[] key, ByteBuffer value) {
+        if (!open) {
+            throw new IllegalStateException("The store is closed: " + fileName);
+        }
+        int len = 4 + 1 + 4 + (type == PUT ? 4 : 0) + key.length
+                + (value == null ? 0 : value.remaining());
+        if (HEADER_LENGTH + 4 + len > segmentSize) {
+            LOG.debug("Entry too large for the store: {} bytes", len);
+            return -1;
+        }
+        int segment = (int) (writePos / segmentSize);
+        int pos = (int) (writePos % segmentSize);
+        if (pos + 4 + len > segmentSize) {
+            // the rest of the segment stays empty
+            segment++;
+            pos = 0;
+        }
+        try {
+            while (segments.size() <= segment) {
+                segments.add(mapSegment(segments.size(), segmentSize));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not extend the store " + fileName, e);
+        }
+        ByteBuffer b = segments.get(segment).duplicate();
+        b.position(pos + 8);
+        b.put(type);
+        b.putInt(mapId);
+        if (type == PUT) {
+            b.putInt(key.length);
+        }
+        b.put(key);
+        if (value != null) {
+            b.put(value);
+        }
+        b.putInt(pos + 4, checksum(b, pos + 8, pos + 4 + len));
+        // write the length last, so that a partially written
+        // record is not read when re-opening the file
+        b.putInt(pos, len);
+        long recordPos = (long) segment * segmentSize + pos;
+        writePos = recordPos + 4 + len;
+        return recordPos;
+    }
+
+    /**
+     * Reads the value of the PUT record at the given position.
+     *
+     * @return a copy of the value
+     */
+    private ByteBuffer readValue(long recordPos) {
+        closeLock.readLock().lock();
+        try {
+            if (!open) {
+                throw new IllegalStateException("The store is closed: " + fileName);
+            }
+            int pos = (int) (recordPos % segmentSize);
+            ByteBuffer b = segments.get((int) (recordPos / segmentSize)).duplicate();
+            int len = b.getInt(pos);
+            int keyLength = b.getInt(pos + RECORD_HEADER_LENGTH);
+            b.limit(pos + 4 + len);
+            b.position(pos + RECORD_HEADER_LENGTH + 4 + keyLength);
+            // copy, as the mapping is released when the store is closed
+            ByteBuffer value = ByteBuffer.allocate(b.remaining());
+            value.put(b);
+            value.flip();
+            return value;
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    private static int checksum(ByteBuffer b, int start, int end) {
+        byte[] data = new byte[end - start];
+        ByteBuffer d = b.duplicate();
+        d.limit(end);
+        d.position(start);
+        d.get(data);
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] serialize(DataType type, Object obj) {
+        WriteBuffer buff = WRITE_BUFFER.get();
+        buff.clear();
+        type.write(buff, obj);
+        ByteBuffer b = buff.getBuffer();
+        byte[] bytes = new byte[b.position()];
+        b.flip();
+        b.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * A view on the entries of one map. The methods that modify the map do
+     * not return the old value, as this would require reading it.
+     */
+    private class LogMap<K, V> extends AbstractMap<K, V> {
+
+        private final int id;
+        private final Map<ByteBuffer, Long> index;
+        private final DataType keyType;
+        private final DataType valueType;
+
+        LogMap(int id, Map<ByteBuffer, Long> index,
+               DataType keyType, DataType valueType) {
+            this.id = id;
+            this.index = index;
+            this.keyType = keyType;
+            this.valueType = valueType;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V get(Object key) {
+            Long pos = index.get(ByteBuffer.wrap(serialize(keyType, key)));
+            if (pos == null) {
+                return null;
+            }
+            return (V) valueType.read(readValue(pos));
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return index.containsKey(ByteBuffer.wrap(serialize(keyType, key)));
+        }
+
+        @Override
+        public V put(K key, V value) {
+            if (readOnly) {
+                return null;
+            }
+            byte[] k = serialize(keyType, key);
+            ByteBuffer v = ByteBuffer.wrap(serialize(valueType, value));
+            synchronized (MemoryMappedMapFactory.this) {
+                long pos = append(PUT, id, k, v);
+                if (pos >= 0) {
+                    index.put(ByteBuffer.wrap(k), pos);
+                } else {
+                    index.remove(ByteBuffer.wrap(k));
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public V remove(Object key) {
+            if (readOnly) {
+                return null;
+            }
+            byte[] k = serialize(keyType, key);
+            synchronized (MemoryMappedMapFactory.this) {
+                if (index.remove(ByteBuffer.wrap(k)) != null) {
+                    append(REMOVE, id, k, null);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void clear() {
+            if (readOnly) {
+                return;
+            }
+            synchronized (MemoryMappedMapFactory.this) {
+                index.clear();
+                append(CLEAR, id, new byte[0], null);
+            }
+        }
+
+        @Override
+        public int size() {
+            return index.size();
+        }
+
+        @Override
+        public Set<Entry<K, V>> entrySet() {
+            return new AbstractSet<Entry<K, V>>() {
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    final Iterator<Map.Entry<ByteBuffer, Long>> it = index.entrySet().iterator();
+                    return new Iterator<Entry<K, V>>() {
+
+                        private K lastKey;
+
+                        @Override
+                        public boolean hasNext() {
+                            return it.hasNext();
+                        }
+
+                        @Override
+                        @SuppressWarnings("unchecked")
+                        public Entry<K, V> next() {
+                            Map.Entry<ByteBuffer, Long> e = it.next();
+                            K key = (K) keyType.read(e.getKey().duplicate());
+                            V value = (V) valueType.read(readValue(e.getValue()));
+                            lastKey = key;
+                            return new SimpleImmutableEntry<K, V>(key, value);
+                        }
+
+                        @Override
+                        public void remove() {
+                            if (lastKey == null) {
+                                throw new IllegalStateException();
+                            }
+                            LogMap.this.remove(lastKey);
+                            lastKey = null;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return index.size();
+                }
+            };
+        }
+    }
+}
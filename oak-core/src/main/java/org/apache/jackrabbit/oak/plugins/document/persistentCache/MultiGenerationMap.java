@@ -21,11 +21,15 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentSkipListMap;
 
+import org.apache.jackrabbit.oak.plugins.document.persistentCache.async.CacheWriteQueue;
+
 public class MultiGenerationMap<K, V> implements Map<K, V> {
     
     private volatile CacheMap<K, V> write;
     private ConcurrentSkipListMap<Integer, CacheMap<K, V>> read = 
             new ConcurrentSkipListMap<Integer, CacheMap<K, V>>();
+
+    private volatile CacheWriteQueue<K, V> writeQueue;
     
     MultiGenerationMap() {
     }
@@ -34,6 +38,16 @@ public class MultiGenerationMap<K, V> implements Map<K, V> {
         write = m;
     }
 
+    /**
+     * Sets the queue used to copy entries found in an old generation to the
+     * write generation. If not set, entries are copied synchronously.
+     *
+     * @param writeQueue the queue
+     */
+    public void setWriteQueue(CacheWriteQueue<K, V> writeQueue) {
+        this.writeQueue = writeQueue;
+    }
+
     public void addReadMap(int generation, CacheMap<K, V> m) {
         read.put(generation, m);
     }
@@ -61,7 +75,12 @@ public class MultiGenerationMap<K, V> implements Map<K, V> {
                 V value = m.get(key);
                 if (value != null) {
                     if (m != write) {
-                        put((K) key, value);
+                        CacheWriteQueue<K, V> q = writeQueue;
+                        if (q != null) {
+                            q.addPut((K) key, value);
+                        } else {
+                            put((K) key, value);
+                        }
                     }
                     return value;
                 }
@@ -66,6 +66,7 @@ class NodeCache<K, V> implements Cache<K, V>, GenerationCache, EvictionListener<
     private final DataType keyType;
     private final DataType valueType;
     private final CacheWriteQueue<K, V> writerQueue;
+    private final boolean async;
 
     NodeCache(
             PersistentCache cache,
@@ -82,12 +83,17 @@ class NodeCache<K, V> implements Cache<K, V>, GenerationCache, EvictionListener<
         map = new MultiGenerationMap<K, V>();
         keyType = new KeyDataType(type);
         valueType = new ValueDataType(docNodeStore, docStore, type);
-        if (ASYNC_CACHE) {
-            this.writerQueue = new CacheWriteQueue<K, V>(dispatcher, cache, map);
+        this.stats = new PersistentCacheStats(type, statisticsProvider);
+        this.async = ASYNC_CACHE || cache.isAsyncCache();
+        if (async) {
+            this.writerQueue = new CacheWriteQueue<K, V>(dispatcher, cache, map, stats);
+            if (cache.isAsyncCache()) {
+                // do not block readers when copying entries from an old generation
+                map.setWriteQueue(writerQueue);
+            }
         } else {
             this.writerQueue = null;
         }
-        this.stats = new PersistentCacheStats(type, statisticsProvider);
     }
     
     @Override
@@ -115,13 +121,13 @@ class NodeCache<K, V> implements Cache<K, V>, GenerationCache, EvictionListener<
     }
     
     private V readIfPresent(K key) {
-        if (ASYNC_CACHE && writerQueue.waitsForInvalidation(key)) {
+        if (async && writerQueue.waitsForInvalidation(key)) {
             return null;
         }
         cache.switchGenerationIfNeeded();
-        TimerStats.Context ctx = stats.startReadTimer();
+        long start = System.nanoTime();
         V v = map.get(key);
-        ctx.stop();
+        stats.markReadLatency(System.nanoTime() - start);
         return v;
     }
 
@@ -147,7 +153,9 @@ class NodeCache<K, V> implements Cache<K, V>, GenerationCache, EvictionListener<
         if (value == null) {
             map.remove(key);
         } else {
+            long start = System.nanoTime();
             map.put(key, value);
+            stats.markWriteLatency(System.nanoTime() - start);
 
             long memory = 0L;
             memory += (key == null ? 0L: keyType.getMemory(key));
@@ -191,7 +199,7 @@ class NodeCache<K, V> implements Cache<K, V>, GenerationCache, EvictionListener<
         try {
             value = memCache.get(key, valueLoader);
             ctx.stop();
-            if (!ASYNC_CACHE) {
+            if (!async) {
                 write((K) key, value);
             }
             broadcast(key, value);
@@ -211,7 +219,7 @@ class NodeCache<K, V> implements Cache<K, V>, GenerationCache, EvictionListener<
     @Override
     public void put(K key, V value) {
         memCache.put(key, value);
-        if (!ASYNC_CACHE) {
+        if (!async) {
             write((K) key, value);
         }
         broadcast(key, value);
@@ -221,7 +229,7 @@ class NodeCache<K, V> implements Cache<K, V>, GenerationCache, EvictionListener<
     @Override
     public void invalidate(Object key) {
         memCache.invalidate(key);
-        if (ASYNC_CACHE) {
+        if (async) {
             writerQueue.addInvalidate(singleton((K) key));
         } else {
             write((K) key, null);
@@ -280,7 +288,7 @@ class NodeCache<K, V> implements Cache<K, V>, GenerationCache, EvictionListener<
             memCache.put(key, value);
         }
         stats.markRecvBroadcast();
-        if (!ASYNC_CACHE) {
+        if (!async) {
             write(key, value);
         }
     }
@@ -290,7 +298,7 @@ class NodeCache<K, V> implements Cache<K, V>, GenerationCache, EvictionListener<
      */
     @Override
     public void evicted(K key, V value, RemovalCause cause) {
-        if (ASYNC_CACHE && EVICTION_CAUSES.contains(cause) && value != null) { 
+        if (async && EVICTION_CAUSES.contains(cause) && value != null) { 
             // invalidations are handled separately
             writerQueue.addPut(key, value);
 
@@ -56,7 +56,16 @@ public class PersistentCache implements Broadcaster.Listener {
    
     private static final String FILE_PREFIX = "cache-";
     private static final String FILE_SUFFIX = ".data";
+    private static final String MMAP_FILE_SUFFIX = ".mmap";
     private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    /**
+     * The interval in milliseconds at which the maintenance thread of an
+     * asynchronous cache checks for a generation switch and compacts the
+     * store.
+     */
+    private static final int MAINTENANCE_INTERVAL = Integer.getInteger(
+            "oak.cache.maintenanceInterval", 1000);
     
     private boolean cacheNodes = true;
     private boolean cacheChildren = true;
@@ -80,12 +89,17 @@ public class PersistentCache implements Broadcaster.Listener {
     private int autoCompact = 50;
     private boolean appendOnly;
     private boolean manualCommit;
+    private boolean asyncCache;
+    private boolean memoryMapped;
     private Broadcaster broadcaster;
     private ThreadLocal<WriteBuffer> writeBuffer = new ThreadLocal<WriteBuffer>();
     private final byte[] broadcastId;
     private DynamicBroadcastConfig broadcastConfig;
     private CacheActionDispatcher writeDispatcher;
     private Thread writeDispatcherThread;
+    private final Object maintenanceMonitor = new Object();
+    private volatile boolean maintenanceRunning;
+    private Thread maintenanceThread;
     
     {
         ByteBuffer bb = ByteBuffer.wrap(new byte[16]);
@@ -138,12 +152,18 @@ public class PersistentCache implements Broadcaster.Listener {
                 appendOnly = true;
             } else if (p.equals("manualCommit")) {
                 manualCommit = true;
+            } else if (p.equals("+async")) {
+                asyncCache = true;
+            } else if (p.equals("mmap")) {
+                memoryMapped = true;
             } else if (p.startsWith("broadcast=")) {
                 broadcast = p.split("=")[1];               
             }
         }
         this.directory = dir;
         if (dir.length() == 0) {
+            // in-memory store, which has no background threads
+            asyncCache = false;
             readGeneration = -1;
             writeGeneration = 0;
             writeStore = createMapFactory(writeGeneration, false);
@@ -161,8 +181,9 @@ public class PersistentCache implements Broadcaster.Listener {
         if (list != null) {
             for (File f : list) {
                 String fn = f.getName();
-                if (fn.startsWith(FILE_PREFIX) && fn.endsWith(FILE_SUFFIX)) {
-                    String g = fn.substring(FILE_PREFIX.length(), fn.indexOf(FILE_SUFFIX));
+                String suffix = getFileSuffix();
+                if (fn.startsWith(FILE_PREFIX) && fn.endsWith(suffix)) {
+                    String g = fn.substring(FILE_PREFIX.length(), fn.indexOf(suffix));
                     try {
                         int gen = Integer.parseInt(g);
                         if (gen >= 0) {
@@ -201,6 +222,49 @@ public class PersistentCache implements Broadcaster.Listener {
         writeDispatcherThread = new Thread(writeDispatcher, "Oak CacheWriteQueue");
         writeDispatcherThread.setDaemon(true);
         writeDispatcherThread.start();
+
+        if (asyncCache) {
+            maintenanceRunning = true;
+            maintenanceThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    runMaintenance();
+                }
+            }, "Oak PersistentCache maintenance");
+            maintenanceThread.setDaemon(true);
+            maintenanceThread.start();
+        }
+    }
+
+    /**
+     * Switches the generation and compacts the store in the background, so
+     * that readers and writers of an asynchronous cache never do it.
+     */
+    private void runMaintenance() {
+        while (maintenanceRunning) {
+            try {
+                switchGeneration();
+                if (autoCompact > 0) {
+                    writeStore.compact(autoCompact);
+                }
+            } catch (Exception e) {
+                exceptionCount++;
+                LOG.debug("Error in the maintenance thread of the persistent cache", e);
+                LOG.warn("Error in the maintenance thread of the persistent cache: " + e);
+            }
+            synchronized (maintenanceMonitor) {
+                if (!maintenanceRunning) {
+                    break;
+                }
+                try {
+                    // do not interrupt the thread to stop it, as this
+                    // would close the file channel of the store
+                    maintenanceMonitor.wait(MAINTENANCE_INTERVAL);
+                } catch (InterruptedException e) {
+                    LOG.debug("Interrupted the maintenance thread", e);
+                }
+            }
+        }
     }
     
     private void initBroadcast(String broadcast) {
@@ -227,10 +291,19 @@ public class PersistentCache implements Broadcaster.Listener {
         if (directory.length() == 0) {
             return null;
         }
-        return directory + "/" + FILE_PREFIX + generation + FILE_SUFFIX;
+        return directory + "/" + FILE_PREFIX + generation + getFileSuffix();
+    }
+
+    private String getFileSuffix() {
+        return memoryMapped ? MMAP_FILE_SUFFIX : FILE_SUFFIX;
     }
     
     private MapFactory createMapFactory(final int generation, final boolean readOnly) {
+        if (memoryMapped && directory.length() > 0) {
+            MapFactory f = new MemoryMappedMapFactory(getFileName(generation), readOnly);
+            f.openStore();
+            return f;
+        }
         MapFactory f = new MapFactory() {
             
             final String fileName = getFileName(generation);
@@ -258,7 +331,10 @@ public class PersistentCache implements Broadcaster.Listener {
                     if (maxSizeMB < 10) {
                         builder.cacheSize(maxSizeMB);
                     }
-                    if (autoCompact >= 0) {
+                    if (asyncCache) {
+                        // compacted by the maintenance thread
+                        builder.autoCompactFillRate(0);
+                    } else if (autoCompact >= 0) {
                         builder.autoCompactFillRate(autoCompact);
                     }
                     builder.backgroundExceptionHandler(new Thread.UncaughtExceptionHandler() {
@@ -324,6 +400,15 @@ public class PersistentCache implements Broadcaster.Listener {
                 }
             }
 
+            @Override
+            synchronized void compact(int fillRate) {
+                if (store == null || store.getFileStore() == null
+                        || store.getFileStore().isReadOnly()) {
+                    return;
+                }
+                store.compact(fillRate, 16 * 1024 * 1024);
+            }
+
             @Override
             long getFileSize() {
                 try {
@@ -347,6 +432,17 @@ public class PersistentCache implements Broadcaster.Listener {
     }
     
     public void close() {
+        if (maintenanceThread != null) {
+            synchronized (maintenanceMonitor) {
+                maintenanceRunning = false;
+                maintenanceMonitor.notifyAll();
+            }
+            try {
+                maintenanceThread.join();
+            } catch (InterruptedException e) {
+                LOG.error("Can't join the {}", maintenanceThread.getName(), e);
+            }
+        }
         writeDispatcher.stop();
         try {
             writeDispatcherThread.join();
@@ -450,6 +546,14 @@ public class PersistentCache implements Broadcaster.Listener {
     }
     
     public void switchGenerationIfNeeded() {
+        if (asyncCache) {
+            // the maintenance thread switches the generation
+            return;
+        }
+        switchGeneration();
+    }
+
+    private void switchGeneration() {
         if (!needSwitch()) {
             return;
         }
@@ -487,6 +591,17 @@ public class PersistentCache implements Broadcaster.Listener {
         return true;
     }
     
+    /**
+     * Whether this cache is asynchronous: entries are written to disk in the
+     * background, and the generation switch and compaction happen on a
+     * dedicated thread.
+     *
+     * @return whether the cache is asynchronous
+     */
+    public boolean isAsyncCache() {
+        return asyncCache;
+    }
+
     public int getMaxSize() {
         return maxSizeMB;
     }
@@ -22,6 +22,7 @@ import org.apache.jackrabbit.oak.api.jmx.PersistentCacheStatsMBean;
 import org.apache.jackrabbit.oak.commons.IOUtils;
 import org.apache.jackrabbit.oak.commons.jmx.AnnotatedStandardMBean;
 import org.apache.jackrabbit.oak.stats.CounterStats;
+import org.apache.jackrabbit.oak.stats.HistogramStats;
 import org.apache.jackrabbit.oak.stats.MeterStats;
 import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.apache.jackrabbit.oak.stats.StatsOptions;
@@ -31,6 +32,7 @@ import org.apache.jackrabbit.stats.TimeSeriesStatsUtil;
 import javax.management.openmbean.CompositeData;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -57,6 +59,8 @@ public class PersistentCacheStats extends AnnotatedStandardMBean implements Pers
     private static final String INVALIDATE_ALL = "INVALIDATE_ALL";
     private static final String READ_TIMER = "READ_TIMER";
     private static final String USED_DISK_SPACE = "USED_SPACE_BYTES";
+    private static final String READ_LATENCY = "READ_LATENCY_MICROS";
+    private static final String WRITE_LATENCY = "WRITE_LATENCY_MICROS";
 
     private final StatisticsProvider statisticsProvider;
     private final String cacheName;
@@ -87,6 +91,10 @@ public class PersistentCacheStats extends AnnotatedStandardMBean implements Pers
 
     private final TimerStats readTimer;
 
+    private final HistogramStats readLatency;
+
+    private final HistogramStats writeLatency;
+
     private final CounterStats usedSpaceByteCounter;
     private final TimeSeries usedSpaceByteCounterHistory;
 
@@ -160,6 +168,12 @@ public class PersistentCacheStats extends AnnotatedStandardMBean implements Pers
             readTimer = StatisticsProvider.NOOP.getTimer(statName, StatsOptions.METRICS_ONLY);
         }
 
+        statName = getStatName(READ_LATENCY, cacheName);
+        readLatency = statisticsProvider.getHistogram(statName, StatsOptions.METRICS_ONLY);
+
+        statName = getStatName(WRITE_LATENCY, cacheName);
+        writeLatency = statisticsProvider.getHistogram(statName, StatsOptions.METRICS_ONLY);
+
         diskStats = new UsedSpaceTracker(usedSpaceByteCounter);
     }
 
@@ -201,6 +215,27 @@ public class PersistentCacheStats extends AnnotatedStandardMBean implements Pers
         return this.loadTimer.time();
     }
 
+    /**
+     * Records the latency of a read from the disk, both in the read timer
+     * (if enabled) and the read latency histogram.
+     *
+     * @param nanos the duration of the read in nanoseconds
+     */
+    public void markReadLatency(long nanos) {
+        readTimer.update(nanos, TimeUnit.NANOSECONDS);
+        readLatency.update(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * Records the latency of a write to the disk. With an asynchronous
+     * cache, the write happens in the background.
+     *
+     * @param nanos the duration of the write in nanoseconds
+     */
+    public void markWriteLatency(long nanos) {
+        writeLatency.update(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
     // Update disk space
 
     public void addWriteGeneration(int generation) {
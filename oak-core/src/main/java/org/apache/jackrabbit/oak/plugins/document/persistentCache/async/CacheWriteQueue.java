@@ -20,7 +20,10 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
+import javax.annotation.CheckForNull;
+
 import org.apache.jackrabbit.oak.plugins.document.persistentCache.PersistentCache;
+import org.apache.jackrabbit.oak.plugins.document.persistentCache.PersistentCacheStats;
 
 import com.google.common.collect.HashMultiset;
 import com.google.common.collect.Multiset;
@@ -39,14 +42,22 @@ public class CacheWriteQueue<K, V> {
 
     private final Map<K, V> map;
 
+    private final PersistentCacheStats stats;
+
     final Multiset<K> queuedKeys = HashMultiset.create();
 
     final Set<K> waitsForInvalidation = new HashSet<K>();
 
     public CacheWriteQueue(CacheActionDispatcher dispatcher, PersistentCache cache, Map<K, V> map) {
+        this(dispatcher, cache, map, null);
+    }
+
+    public CacheWriteQueue(CacheActionDispatcher dispatcher, PersistentCache cache, Map<K, V> map,
+                           PersistentCacheStats stats) {
         this.dispatcher = dispatcher;
         this.cache = cache;
         this.map = map;
+        this.stats = stats;
     }
 
     /**
@@ -107,4 +118,9 @@ public class CacheWriteQueue<K, V> {
     Map<K, V> getMap() {
         return map;
     }
+
+    @CheckForNull
+    PersistentCacheStats getStats() {
+        return stats;
+    }
 }
\ No newline at end of file
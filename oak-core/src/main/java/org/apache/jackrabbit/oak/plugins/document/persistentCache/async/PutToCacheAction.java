@@ -21,6 +21,7 @@ import static java.util.Collections.singleton;
 import java.util.Map;
 
 import org.apache.jackrabbit.oak.plugins.document.persistentCache.PersistentCache;
+import org.apache.jackrabbit.oak.plugins.document.persistentCache.PersistentCacheStats;
 
 /**
  * Put to cache action
@@ -53,7 +54,12 @@ class PutToCacheAction<K, V> implements CacheAction<K, V> {
         try {
             if (map != null) {
                 cache.switchGenerationIfNeeded();
+                long start = System.nanoTime();
                 map.put(key, value);
+                PersistentCacheStats stats = owner.getStats();
+                if (stats != null) {
+                    stats.markWriteLatency(System.nanoTime() - start);
+                }
             }
         } finally {
             decrement();
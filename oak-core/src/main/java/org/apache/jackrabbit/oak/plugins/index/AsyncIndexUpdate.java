@@ -20,6 +20,7 @@ package org.apache.jackrabbit.oak.plugins.index;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Throwables.getStackTraceAsString;
+import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Sets.newHashSet;
 import static org.apache.jackrabbit.oak.api.jmx.IndexStatsMBean.STATUS_DONE;
 import static org.apache.jackrabbit.oak.commons.PathUtils.elements;
@@ -30,6 +31,7 @@ import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.MISSING_NO
 import java.io.Closeable;
 import java.util.Calendar;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
@@ -504,9 +506,12 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
         try {
             NodeBuilder builder = store.getRoot().builder();
 
+            ReindexProgress reindexProgress = new ReindexProgress();
+            indexStats.setReindexProgress(reindexProgress);
             IndexUpdate indexUpdate =
                     new IndexUpdate(provider, name, after, builder, callback)
-                    .withMissingProviderStrategy(missingStrategy);
+                    .withMissingProviderStrategy(missingStrategy)
+                    .withReindexProgress(reindexProgress);
             CommitFailedException exception =
                     EditorDiff.process(VisibleEditor.wrap(indexUpdate), before, after);
             if (exception != null) {
@@ -674,6 +679,8 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
         private volatile boolean failing = false;
         private long latestErrorWarn = 0;
 
+        private volatile ReindexProgress reindexProgress;
+
         private String failingSince = "";
         private String latestError = null;
         private String latestErrorTime = "";
@@ -860,6 +867,19 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
             return execStats.getIndexedNodesCount();
         }
 
+        void setReindexProgress(ReindexProgress reindexProgress) {
+            this.reindexProgress = reindexProgress;
+        }
+
+        @Override
+        public String getReindexProgress() {
+            ReindexProgress progress = reindexProgress;
+            if (progress == null || progress.getTraversedNodes() == 0) {
+                return "";
+            }
+            return progress.toString();
+        }
+
         @Override
         public CompositeData getConsolidatedExecutionStats() {
             return execStats.getConsolidatedStats();
@@ -1109,8 +1129,20 @@ public class AsyncIndexUpdate implements Runnable, Closeable {
                 for (String p : elements(path)) {
                     c = c.getChildNode(p);
                 }
-                if (c.exists() && name.equals(c.getString("async"))) {
-                    c.setProperty("async", newIndexTaskName);
+                PropertyState async = c.getProperty(ASYNC_PROPERTY_NAME);
+                if (!c.exists() || async == null) {
+                    continue;
+                }
+                // the property may have several values, such as ["async", "nrt"]
+                List<String> lanes = newArrayList(async.getValue(Type.STRINGS));
+                int i = lanes.indexOf(name);
+                if (i >= 0) {
+                    lanes.set(i, newIndexTaskName);
+                    if (async.isArray()) {
+                        c.setProperty(ASYNC_PROPERTY_NAME, lanes, Type.STRINGS);
+                    } else {
+                        c.setProperty(ASYNC_PROPERTY_NAME, newIndexTaskName);
+                    }
                     updated.add(path);
                 }
             }
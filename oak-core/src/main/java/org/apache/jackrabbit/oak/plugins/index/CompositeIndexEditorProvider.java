@@ -34,7 +34,7 @@ import com.google.common.collect.Lists;
 /**
  * Aggregation of a list of editor providers into a single provider.
  */
-public class CompositeIndexEditorProvider implements IndexEditorProvider {
+public class CompositeIndexEditorProvider implements PartitionedIndexEditorProvider {
 
     @Nonnull
     public static IndexEditorProvider compose(
@@ -78,4 +78,20 @@ public class CompositeIndexEditorProvider implements IndexEditorProvider {
         }
         return CompositeEditor.compose(indexes);
     }
+
+    @Override
+    public PartitionedReindex getPartitionedReindex(
+            @Nonnull String type, @Nonnull NodeBuilder definition, @Nonnull NodeState root, @Nonnull IndexUpdateCallback callback)
+            throws CommitFailedException {
+        for (IndexEditorProvider provider : providers) {
+            if (provider instanceof PartitionedIndexEditorProvider) {
+                PartitionedReindex reindex = ((PartitionedIndexEditorProvider) provider)
+                        .getPartitionedReindex(type, definition, root, callback);
+                if (reindex != null) {
+                    return reindex;
+                }
+            }
+        }
+        return null;
+    }
 }
@@ -39,6 +39,13 @@ public interface IndexConstants {
 
     String ASYNC_REINDEX_VALUE = "async-reindex";
 
+    /**
+     * Value of the (multi-valued) {@code async} property which marks an async
+     * index to be additionally updated in near real time on the local cluster
+     * node, e.g. {@code async = [async, nrt]}. It does not denote a lane.
+     */
+    String INDEXING_MODE_NRT = "nrt";
+
     String ENTRY_COUNT_PROPERTY_NAME = "entryCount";
 
     String KEY_COUNT_PROPERTY_NAME = "keyCount";
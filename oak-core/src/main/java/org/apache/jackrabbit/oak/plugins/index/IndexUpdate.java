@@ -30,6 +30,7 @@ import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.REINDEX_ASY
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.REINDEX_COUNT;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.REINDEX_PROPERTY_NAME;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.TYPE_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexUtils.getAsyncLaneName;
 import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.MISSING_NODE;
 import static org.apache.jackrabbit.oak.spi.commit.CompositeEditor.compose;
 import static org.apache.jackrabbit.oak.spi.commit.EditorDiff.process;
@@ -54,6 +55,8 @@ import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.plugins.index.counter.jmx.NodeCounter;
+import org.apache.jackrabbit.oak.plugins.index.PartitionedIndexEditorProvider.PartitionedReindex;
 import org.apache.jackrabbit.oak.spi.commit.Editor;
 import org.apache.jackrabbit.oak.spi.commit.ProgressNotificationEditor;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
@@ -90,6 +93,15 @@ public class IndexUpdate implements Editor {
     private static final boolean IGNORE_REINDEX_FLAGS = Boolean
             .getBoolean("oak.indexUpdate.ignoreReindexFlags");
 
+    /**
+     * The number of threads used to reindex indexes, which support parallel
+     * reindexing (see {@link ParallelReindex} and
+     * {@link PartitionedIndexEditorProvider}). The default is 1, which means
+     * all indexes are reindexed by the current thread in a single traversal.
+     */
+    private static final int REINDEX_THREADS = Integer.getInteger(
+            "oak.indexUpdate.reindexThreads", 1);
+
     static {
         if (IGNORE_REINDEX_FLAGS) {
             log.warn("Reindexing is disabled by configuration. This value is configurable via the 'oak.indexUpdate.ignoreReindexFlags' system property.");
@@ -119,6 +131,12 @@ public class IndexUpdate implements Editor {
      */
     private final Map<String, Editor> reindex = new HashMap<String, Editor>();
 
+    /**
+     * Indexes that need to be re-indexed with multiple threads, or
+     * {@code null} if there are none.
+     */
+    private ParallelReindex parallelReindex;
+
     private MissingIndexProviderStrategy missingProvider = new MissingIndexProviderStrategy();
 
     public IndexUpdate(
@@ -144,15 +162,28 @@ public class IndexUpdate implements Editor {
             throws CommitFailedException {
         collectIndexEditors(builder.getChildNode(INDEX_DEFINITIONS_NAME), before);
 
-        if (!reindex.isEmpty()) {
+        if (!reindex.isEmpty() || parallelReindex != null) {
             log.info("Reindexing will be performed for following indexes: {}",
-                    reindex.keySet());
-            rootState.reindexedIndexes.addAll(reindex.keySet());
+                    getReindexedDefinitions());
+            rootState.reindexedIndexes.addAll(getReindexedDefinitions());
+        }
+
+        if (rootState.progress != null && !rootState.progressStarted
+                && (!reindex.isEmpty() || parallelReindex != null)) {
+            // a single progress for all reindexing of this commit,
+            // stopped when leaving the root
+            rootState.progress.start(NodeCounter.getEstimatedNodeCount(
+                    rootState.root, getPath(), false));
+            rootState.progressStarted = true;
+        }
+
+        if (parallelReindex != null) {
+            parallelReindex.run();
         }
 
         // no-op when reindex is empty
         CommitFailedException exception = process(
-                wrap(wrapProgress(compose(reindex.values()), "Reindexing")), MISSING_NODE, after);
+                wrap(wrapProgress(compose(reindex.values()))), MISSING_NODE, after);
         if (exception != null) {
             throw exception;
         }
@@ -190,7 +221,7 @@ public class IndexUpdate implements Editor {
             NodeState before) throws CommitFailedException {
         for (String name : definitions.getChildNodeNames()) {
             NodeBuilder definition = definitions.getChildNode(name);
-            if (Objects.equal(rootState.async, definition.getString(ASYNC_PROPERTY_NAME))) {
+            if (Objects.equal(rootState.async, getAsyncLaneName(definition.getProperty(ASYNC_PROPERTY_NAME)))) {
                 String type = definition.getString(TYPE_PROPERTY_NAME);
                 if (type == null) {
                     // probably not an index def
@@ -200,13 +231,14 @@ public class IndexUpdate implements Editor {
                 boolean shouldReindex = shouldReindex(definition,
                         before, name);
                 String indexPath = getIndexPath(getPath(), name);
+                IndexUpdateCallback callback = rootState.newCallback(indexPath, shouldReindex);
                 Editor editor = rootState.provider.getIndexEditor(type, definition, rootState.root,
-                        rootState.newCallback(indexPath, shouldReindex));
+                        callback);
                 if (editor == null) {
                     missingProvider.onMissingIndex(type, definition, indexPath);
                 } else if (shouldReindex) {
                     if (definition.getBoolean(REINDEX_ASYNC_PROPERTY_NAME)
-                            && definition.getString(ASYNC_PROPERTY_NAME) == null) {
+                            && definition.getProperty(ASYNC_PROPERTY_NAME) == null) {
                         // switch index to an async update mode
                         definition.setProperty(ASYNC_PROPERTY_NAME,
                                 ASYNC_REINDEX_VALUE);
@@ -220,7 +252,29 @@ public class IndexUpdate implements Editor {
                                 definition.getChildNode(rm).remove();
                             }
                         }
-                        reindex.put(concat(getPath(), INDEX_DEFINITIONS_NAME, name), editor);
+                        String path = concat(getPath(), INDEX_DEFINITIONS_NAME, name);
+                        PartitionedReindex partitioned = null;
+                        if (parent == null && rootState.reindexThreads > 1
+                                && !ParallelReindex.isSupported(definition)
+                                && rootState.provider instanceof PartitionedIndexEditorProvider) {
+                            partitioned = ((PartitionedIndexEditorProvider) rootState.provider)
+                                    .getPartitionedReindex(type, definition, rootState.root, callback);
+                        }
+                        if (parent == null && rootState.reindexThreads > 1
+                                && (partitioned != null || ParallelReindex.isSupported(definition))) {
+                            if (parallelReindex == null) {
+                                parallelReindex = new ParallelReindex(rootState.provider,
+                                        rootState.root, rootState.reindexThreads,
+                                        rootState.progress);
+                            }
+                            if (partitioned != null) {
+                                parallelReindex.add(path, partitioned, callback);
+                            } else {
+                                parallelReindex.add(path, definition, callback);
+                            }
+                        } else {
+                            reindex.put(path, editor);
+                        }
                     }
                 } else {
                     editors.add(editor);
@@ -262,6 +316,9 @@ public class IndexUpdate implements Editor {
         }
 
         if (parent == null){
+            if (rootState.progressStarted) {
+                rootState.progress.stop();
+            }
             if (rootState.isReindexingPerformed()){
                 log.info(rootState.getReport());
             } else if (log.isDebugEnabled() && rootState.somethingIndexed()){
@@ -337,7 +394,10 @@ public class IndexUpdate implements Editor {
     }
 
     protected Set<String> getReindexedDefinitions() {
-        return reindex.keySet();
+        if (parallelReindex == null) {
+            return reindex.keySet();
+        }
+        return Sets.union(reindex.keySet(), parallelReindex.getIndexPaths());
     }
 
     private static String getIndexPath(String path, String indexName) {
@@ -347,8 +407,12 @@ public class IndexUpdate implements Editor {
         return path + "/" + INDEX_DEFINITIONS_NAME + "/" + indexName;
     }
 
-    private static Editor wrapProgress(Editor editor, String message){
-        return ProgressNotificationEditor.wrap(editor, log, message);
+    private Editor wrapProgress(Editor editor) {
+        if (editor == null || rootState.progress == null) {
+            return ProgressNotificationEditor.wrap(editor, log, "Reindexing");
+        }
+        return ProgressNotificationEditor.wrap(editor,
+                rootState.progress.newWorker(log, "Reindexing"));
     }
 
     public static class MissingIndexProviderStrategy {
@@ -404,6 +468,24 @@ public class IndexUpdate implements Editor {
         return this;
     }
 
+    /**
+     * Sets the number of threads used to reindex indexes, which support
+     * parallel reindexing. The default is taken from the system property
+     * {@code oak.indexUpdate.reindexThreads}.
+     *
+     * @param reindexThreads the number of threads
+     * @return this
+     */
+    public IndexUpdate withReindexThreads(int reindexThreads) {
+        rootState.reindexThreads = reindexThreads;
+        return this;
+    }
+
+    IndexUpdate withReindexProgress(ReindexProgress progress) {
+        rootState.progress = progress;
+        return this;
+    }
+
     private static final class IndexUpdateRootState {
         final IndexEditorProvider provider;
         final String async;
@@ -414,6 +496,9 @@ public class IndexUpdate implements Editor {
         final IndexUpdateCallback updateCallback;
         final Set<String> reindexedIndexes = Sets.newHashSet();
         final Map<String, CountingCallback> callbacks = Maps.newHashMap();
+        int reindexThreads = REINDEX_THREADS;
+        ReindexProgress progress;
+        boolean progressStarted;
 
         private IndexUpdateRootState(IndexEditorProvider provider, String async, NodeState root,
                                      IndexUpdateCallback updateCallback) {
@@ -24,6 +24,7 @@ import static org.apache.jackrabbit.oak.api.Type.STRING;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.DECLARING_NODE_TYPES;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NODE_TYPE;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEXING_MODE_NRT;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.PROPERTY_NAMES;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.REINDEX_PROPERTY_NAME;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.TYPE_PROPERTY_NAME;
@@ -32,10 +33,12 @@ import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.UNIQUE_PROP
 import java.util.Collection;
 import java.util.Map;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.jcr.RepositoryException;
 
+import com.google.common.collect.Iterables;
 import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.plugins.index.property.PropertyIndexEditorProvider;
@@ -155,6 +158,40 @@ public class IndexUtils {
                 && type.getValue(Type.STRING).equals(typeIn);
     }
 
+    /**
+     * Returns the name of the async lane an index is assigned to. The
+     * {@code async} property may be multi-valued to combine the lane with an
+     * indexing mode like {@link IndexConstants#INDEXING_MODE_NRT}, which is
+     * not considered a lane name.
+     *
+     * @param async the {@code async} property of the index definition
+     * @return the lane name or {@code null} for a synchronous index
+     */
+    @CheckForNull
+    public static String getAsyncLaneName(@Nullable PropertyState async) {
+        if (async == null) {
+            return null;
+        }
+        for (String value : async.getValue(Type.STRINGS)) {
+            if (!INDEXING_MODE_NRT.equals(value)) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param async the {@code async} property of the index definition
+     * @return {@code true} if the index is additionally updated in near real
+     *         time, i.e. the {@code async} property contains
+     *         {@link IndexConstants#INDEXING_MODE_NRT}
+     */
+    public static boolean isNRTIndex(@Nullable PropertyState async) {
+        return async != null && async.isArray()
+                && getAsyncLaneName(async) != null
+                && Iterables.contains(async.getValue(Type.STRINGS), INDEXING_MODE_NRT);
+    }
+
     /**
      * Create a new property index definition below the given {@code indexNode} of the provided
      * {@code propertyIndexType}.
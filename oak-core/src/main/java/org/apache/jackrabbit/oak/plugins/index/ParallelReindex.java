@@ -0,0 +1,678 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.Lists.newArrayList;
+import static org.apache.jackrabbit.oak.commons.PathUtils.concat;
+import static org.apache.jackrabbit.oak.commons.PathUtils.denotesRoot;
+import static org.apache.jackrabbit.oak.commons.PathUtils.getParentPath;
+import static org.apache.jackrabbit.oak.commons.PathUtils.isAncestor;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.TYPE_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.UNIQUE_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.MISSING_NODE;
+import static org.apache.jackrabbit.oak.spi.commit.CompositeEditor.compose;
+import static org.apache.jackrabbit.oak.spi.commit.EditorDiff.process;
+import static org.apache.jackrabbit.oak.spi.commit.VisibleEditor.wrap;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.plugins.index.PartitionedIndexEditorProvider.PartitionedReindex;
+import org.apache.jackrabbit.oak.plugins.index.counter.jmx.NodeCounter;
+import org.apache.jackrabbit.oak.plugins.index.property.PropertyIndexEditorProvider;
+import org.apache.jackrabbit.oak.plugins.memory.MemoryNodeBuilder;
+import org.apache.jackrabbit.oak.spi.commit.Editor;
+import org.apache.jackrabbit.oak.spi.commit.ProgressNotificationEditor;
+import org.apache.jackrabbit.oak.spi.state.AbstractNodeState;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
+import org.apache.jackrabbit.oak.spi.state.ReadOnlyBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reindexes a set of indexes with multiple threads. The repository is split
+ * into partitions based on the estimates of the node counter index. Each
+ * partition is indexed by a worker thread into a private copy of the index
+ * definitions. Every {@link #CHUNK_SIZE} nodes, and at the end of the
+ * partition, the index content of the copy is moved into the index
+ * definitions of the commit.
+ * <p>
+ * This works for indexes where the content of the partitions can be
+ * merged by a union of the hidden index content nodes, see
+ * {@link #isSupported(NodeBuilder)}, and for indexes of a
+ * {@link PartitionedIndexEditorProvider}, which keep the content of the
+ * partitions in their own storage and merge it at the end.
+ */
+final class ParallelReindex {
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelReindex.class);
+
+    /**
+     * The number of partitions per worker thread. More partitions than
+     * threads help to balance the work if the estimates are inaccurate.
+     */
+    static final int PARTITIONS_PER_THREAD = 4;
+
+    /**
+     * The number of nodes a worker traverses before the index content of its
+     * partition is moved from its private copies to the commit. This bounds
+     * the amount of index content held on the heap by each worker.
+     */
+    static final int CHUNK_SIZE = Integer.getInteger(
+            "oak.indexUpdate.reindexChunkSize", 10000);
+
+    private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+
+    private final IndexEditorProvider provider;
+
+    private final NodeState root;
+
+    private final int threads;
+
+    private final ReindexProgress progress;
+
+    /**
+     * Whether the progress is owned by this instance, or started and
+     * stopped by the caller.
+     */
+    private final boolean ownProgress;
+
+    private int chunkSize = CHUNK_SIZE;
+
+    private final Map<String, IndexDefinition> definitions = Maps.newLinkedHashMap();
+
+    private final Map<String, PartitionedIndex> partitioned = Maps.newLinkedHashMap();
+
+    /**
+     * Lock for the index definition builders and callbacks, which are not
+     * thread safe.
+     */
+    private final Object lock = new Object();
+
+    ParallelReindex(IndexEditorProvider provider, NodeState root, int threads,
+                    ReindexProgress progress) {
+        checkArgument(threads > 1, "threads must be > 1: %s", threads);
+        this.provider = provider;
+        this.root = root;
+        this.threads = threads;
+        this.ownProgress = progress == null;
+        this.progress = progress != null ? progress : new ReindexProgress();
+    }
+
+    /**
+     * Whether the given index definition can be reindexed in parallel.
+     * Currently these are non-unique property indexes.
+     *
+     * @param definition the index definition
+     * @return {@code true} if supported
+     */
+    static boolean isSupported(NodeBuilder definition) {
+        return PropertyIndexEditorProvider.TYPE.equals(definition.getString(TYPE_PROPERTY_NAME))
+                && !definition.getBoolean(UNIQUE_PROPERTY_NAME);
+    }
+
+    void add(String indexPath, NodeBuilder definition, IndexUpdateCallback callback) {
+        definitions.put(indexPath, new IndexDefinition(definition,
+                new SynchronizedCallback(callback)));
+    }
+
+    void add(String indexPath, PartitionedReindex reindex, IndexUpdateCallback callback) {
+        partitioned.put(indexPath, new PartitionedIndex(reindex,
+                new SynchronizedCallback(callback)));
+    }
+
+    void setChunkSize(int chunkSize) {
+        checkArgument(chunkSize > 0, "chunkSize must be > 0: %s", chunkSize);
+        this.chunkSize = chunkSize;
+    }
+
+    boolean isEmpty() {
+        return definitions.isEmpty() && partitioned.isEmpty();
+    }
+
+    Set<String> getIndexPaths() {
+        return Sets.union(definitions.keySet(), partitioned.keySet());
+    }
+
+    void run() throws CommitFailedException {
+        if (isEmpty()) {
+            return;
+        }
+        try {
+            reindex();
+        } finally {
+            for (PartitionedIndex index : partitioned.values()) {
+                index.reindex.close();
+            }
+        }
+    }
+
+    private void reindex() throws CommitFailedException {
+        List<Set<String>> partitions = partition(root, threads * PARTITIONS_PER_THREAD);
+        log.info("Reindexing {} with {} threads in {} partitions",
+                getIndexPaths(), threads, partitions.size());
+        if (ownProgress) {
+            progress.start(NodeCounter.getEstimatedNodeCount(root, "/", false));
+        }
+
+        // editors are created upfront, as the definition builders
+        // must not be accessed concurrently
+        Map<String, Integer> owners = getAncestorOwners(partitions);
+        List<Callable<Void>> tasks = newArrayList();
+        for (int i = 0; i < partitions.size(); i++) {
+            tasks.add(newTask(partitions.get(i), newOwnedPredicate(owners, i)));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final int pool = POOL_COUNTER.incrementAndGet();
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(@Nonnull Runnable r) {
+                Thread t = new Thread(r, "oak-reindex-" + pool + "-" + counter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        try {
+            List<Future<Void>> results = newArrayList();
+            for (Callable<Void> task : tasks) {
+                results.add(executor.submit(task));
+            }
+            for (Future<Void> f : results) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CommitFailedException("IndexUpdate", 2,
+                    "Interrupted while reindexing " + getIndexPaths(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CommitFailedException) {
+                throw (CommitFailedException) e.getCause();
+            }
+            throw new CommitFailedException("IndexUpdate", 3,
+                    "Failed to reindex " + getIndexPaths(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+            if (ownProgress) {
+                progress.stop();
+            }
+        }
+        for (PartitionedIndex index : partitioned.values()) {
+            index.reindex.merge();
+        }
+        log.info("Reindexing {} done. {}", getIndexPaths(), progress);
+    }
+
+    private Callable<Void> newTask(Set<String> includes, Predicate<String> owned)
+            throws CommitFailedException {
+        final NodeState partition = new PartitionNodeState(root, "/", includes);
+        final Map<NodeBuilder, NodeBuilder> copies = Maps.newLinkedHashMap();
+        final List<Editor> editors = newArrayList();
+        for (IndexDefinition def : definitions.values()) {
+            NodeBuilder copy = new MemoryNodeBuilder(def.definition.getNodeState());
+            Editor editor = provider.getIndexEditor(
+                    def.definition.getString(TYPE_PROPERTY_NAME), copy, root, def.callback);
+            if (editor != null) {
+                copies.put(copy, def.definition);
+                editors.add(editor);
+            }
+        }
+        for (PartitionedIndex index : partitioned.values()) {
+            editors.add(new PartitionEditor(
+                    index.reindex.getPartitionEditor(owned, index.callback)));
+        }
+        return new Callable<Void>() {
+            @Override
+            public Void call() throws CommitFailedException {
+                final Function<String, Void> worker = progress.newWorker(log, "Reindexing");
+                Editor editor = ProgressNotificationEditor.wrap(compose(editors),
+                        new Function<String, Void>() {
+                    private long count;
+
+                    @Override
+                    public Void apply(String path) {
+                        worker.apply(path);
+                        if (++count % chunkSize == 0) {
+                            flush(copies);
+                        }
+                        return null;
+                    }
+                });
+                CommitFailedException e = process(wrap(editor), MISSING_NODE, partition);
+                if (e != null) {
+                    throw e;
+                }
+                flush(copies);
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Moves the hidden index content written so far into the private copies
+     * of the index definitions to the index definitions of the commit.
+     *
+     * @param copies the private copies mapped to the index definitions
+     */
+    private void flush(Map<NodeBuilder, NodeBuilder> copies) {
+        synchronized (lock) {
+            for (Map.Entry<NodeBuilder, NodeBuilder> entry : copies.entrySet()) {
+                mergeHiddenNodes(entry.getKey().getNodeState(), entry.getValue());
+            }
+        }
+        for (NodeBuilder copy : copies.keySet()) {
+            for (String name : newArrayList(copy.getChildNodeNames())) {
+                if (NodeStateUtils.isHidden(name)) {
+                    copy.getChildNode(name).remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Splits the visible tree into at most {@code count} partitions of about
+     * the same estimated size. Each partition is a set of paths, which are
+     * included with all their descendants. Ancestors of those paths are part
+     * of every partition that includes one of their descendants.
+     *
+     * @param root the root node state
+     * @param count the maximum number of partitions
+     * @return the partitions, at least one
+     */
+    static List<Set<String>> partition(NodeState root, int count) {
+        PriorityQueue<Unit> units = new PriorityQueue<Unit>();
+        addChildUnits(root, root, "/", units);
+        // split the largest subtrees until there are enough units
+        List<Unit> leaves = newArrayList();
+        while (!units.isEmpty() && units.size() + leaves.size() < count) {
+            Unit largest = units.poll();
+            NodeState state = NodeStateUtils.getNode(root, largest.path);
+            int added = addChildUnits(root, state, largest.path, units);
+            if (added == 0) {
+                leaves.add(largest);
+            }
+        }
+        leaves.addAll(units);
+        // assign the units to the partitions, largest first
+        Collections.sort(leaves);
+        int size = Math.max(1, Math.min(count, leaves.size()));
+        PriorityQueue<Partition> partitions = new PriorityQueue<Partition>(size, new Comparator<Partition>() {
+            @Override
+            public int compare(Partition p1, Partition p2) {
+                return p1.size < p2.size ? -1 : p1.size == p2.size ? 0 : 1;
+            }
+        });
+        for (int i = 0; i < size; i++) {
+            partitions.add(new Partition());
+        }
+        for (Unit u : leaves) {
+            Partition p = partitions.poll();
+            p.paths.add(u.path);
+            p.size += u.size;
+            partitions.add(p);
+        }
+        List<Set<String>> result = newArrayList();
+        for (Partition p : partitions) {
+            if (!p.paths.isEmpty() || result.isEmpty()) {
+                result.add(p.paths);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Assigns each ancestor of the paths of the partitions to the first
+     * partition it is part of.
+     *
+     * @param partitions the partitions
+     * @return the index of the owning partition by ancestor path
+     */
+    static Map<String, Integer> getAncestorOwners(List<Set<String>> partitions) {
+        Map<String, Integer> owners = Maps.newHashMap();
+        for (int i = 0; i < partitions.size(); i++) {
+            for (String path : partitions.get(i)) {
+                String p = path;
+                while (!denotesRoot(p)) {
+                    p = getParentPath(p);
+                    if (!owners.containsKey(p)) {
+                        owners.put(p, i);
+                    }
+                }
+            }
+        }
+        return owners;
+    }
+
+    private static Predicate<String> newOwnedPredicate(final Map<String, Integer> owners,
+                                                       final int partition) {
+        return new Predicate<String>() {
+            @Override
+            public boolean apply(String path) {
+                // nodes other than ancestors are part of a single partition
+                Integer owner = owners.get(path);
+                return owner == null || owner == partition;
+            }
+        };
+    }
+
+    private static int addChildUnits(NodeState root, NodeState state,
+                                     String path, PriorityQueue<Unit> units) {
+        int added = 0;
+        for (String name : state.getChildNodeNames()) {
+            if (NodeStateUtils.isHidden(name)) {
+                continue;
+            }
+            String p = concat(path, name);
+            // unknown estimates count as a single node
+            long size = Math.max(1, NodeCounter.getEstimatedNodeCount(root, p, false));
+            units.add(new Unit(p, size));
+            added++;
+        }
+        return added;
+    }
+
+    /**
+     * Copies the hidden child nodes of the source, with all their
+     * descendants, into the target.
+     */
+    private static void mergeHiddenNodes(NodeState source, NodeBuilder target) {
+        for (ChildNodeEntry e : source.getChildNodeEntries()) {
+            if (NodeStateUtils.isHidden(e.getName())) {
+                merge(e.getNodeState(), target.child(e.getName()));
+            }
+        }
+    }
+
+    private static void merge(NodeState source, NodeBuilder target) {
+        for (PropertyState p : source.getProperties()) {
+            target.setProperty(p);
+        }
+        for (ChildNodeEntry e : source.getChildNodeEntries()) {
+            merge(e.getNodeState(), target.child(e.getName()));
+        }
+    }
+
+    private static final class IndexDefinition {
+        final NodeBuilder definition;
+        final IndexUpdateCallback callback;
+
+        IndexDefinition(NodeBuilder definition, IndexUpdateCallback callback) {
+            this.definition = definition;
+            this.callback = callback;
+        }
+    }
+
+    private static final class PartitionedIndex {
+        final PartitionedReindex reindex;
+        final IndexUpdateCallback callback;
+
+        PartitionedIndex(PartitionedReindex reindex, IndexUpdateCallback callback) {
+            this.reindex = reindex;
+            this.callback = callback;
+        }
+    }
+
+    /**
+     * Passes the complete node states instead of the partition views to the
+     * editor of a {@link PartitionedReindex}, while the traversal is still
+     * limited to the partition.
+     */
+    private static final class PartitionEditor implements Editor {
+
+        private final Editor editor;
+
+        PartitionEditor(Editor editor) {
+            this.editor = editor;
+        }
+
+        @Override
+        public void enter(NodeState before, NodeState after)
+                throws CommitFailedException {
+            editor.enter(unwrap(before), unwrap(after));
+        }
+
+        @Override
+        public void leave(NodeState before, NodeState after)
+                throws CommitFailedException {
+            editor.leave(unwrap(before), unwrap(after));
+        }
+
+        @Override
+        public void propertyAdded(PropertyState after)
+                throws CommitFailedException {
+            editor.propertyAdded(after);
+        }
+
+        @Override
+        public void propertyChanged(PropertyState before, PropertyState after)
+                throws CommitFailedException {
+            editor.propertyChanged(before, after);
+        }
+
+        @Override
+        public void propertyDeleted(PropertyState before)
+                throws CommitFailedException {
+            editor.propertyDeleted(before);
+        }
+
+        @Override
+        public Editor childNodeAdded(String name, NodeState after)
+                throws CommitFailedException {
+            return wrapChild(editor.childNodeAdded(name, unwrap(after)));
+        }
+
+        @Override
+        public Editor childNodeChanged(String name, NodeState before, NodeState after)
+                throws CommitFailedException {
+            return wrapChild(editor.childNodeChanged(name, unwrap(before), unwrap(after)));
+        }
+
+        @Override
+        public Editor childNodeDeleted(String name, NodeState before)
+                throws CommitFailedException {
+            return wrapChild(editor.childNodeDeleted(name, unwrap(before)));
+        }
+
+        private static Editor wrapChild(Editor child) {
+            return child != null ? new PartitionEditor(child) : null;
+        }
+
+        private static NodeState unwrap(NodeState state) {
+            if (state instanceof PartitionNodeState) {
+                return ((PartitionNodeState) state).state;
+            }
+            return state;
+        }
+    }
+
+    private final class SynchronizedCallback implements IndexUpdateCallback {
+        private final IndexUpdateCallback callback;
+
+        SynchronizedCallback(IndexUpdateCallback callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void indexUpdate() throws CommitFailedException {
+            synchronized (lock) {
+                callback.indexUpdate();
+            }
+        }
+    }
+
+    private static final class Unit implements Comparable<Unit> {
+        final String path;
+        final long size;
+
+        Unit(String path, long size) {
+            this.path = path;
+            this.size = size;
+        }
+
+        @Override
+        public int compareTo(@Nonnull Unit o) {
+            // largest first
+            return size > o.size ? -1 : size == o.size ? path.compareTo(o.path) : 1;
+        }
+    }
+
+    private static final class Partition {
+        final Set<String> paths = new TreeSet<String>();
+        long size;
+    }
+
+    /**
+     * A read-only view on a node state that only contains the included paths
+     * (with all their descendants) and their ancestors.
+     */
+    private static final class PartitionNodeState extends AbstractNodeState {
+
+        private final NodeState state;
+
+        private final String path;
+
+        private final Set<String> includes;
+
+        PartitionNodeState(NodeState state, String path, Set<String> includes) {
+            this.state = state;
+            this.path = path;
+            this.includes = includes;
+        }
+
+        @Override
+        public boolean exists() {
+            return state.exists();
+        }
+
+        @Nonnull
+        @Override
+        public Iterable<? extends PropertyState> getProperties() {
+            return state.getProperties();
+        }
+
+        @Override
+        public boolean hasProperty(@Nonnull String name) {
+            return state.hasProperty(name);
+        }
+
+        @Override
+        public PropertyState getProperty(@Nonnull String name) {
+            return state.getProperty(name);
+        }
+
+        @Override
+        public boolean hasChildNode(@Nonnull String name) {
+            return isIncludedOrAncestor(concat(path, name))
+                    && state.hasChildNode(name);
+        }
+
+        @Nonnull
+        @Override
+        public NodeState getChildNode(@Nonnull String name) {
+            String p = concat(path, name);
+            if (includes.contains(p)) {
+                return state.getChildNode(name);
+            } else if (isIncludedOrAncestor(p)) {
+                return new PartitionNodeState(state.getChildNode(name), p, includes);
+            }
+            checkValidName(name);
+            return MISSING_NODE;
+        }
+
+        @Nonnull
+        @Override
+        public Iterable<? extends ChildNodeEntry> getChildNodeEntries() {
+            List<ChildNodeEntry> entries = newArrayList();
+            for (final String name : childNames()) {
+                if (state.hasChildNode(name)) {
+                    entries.add(new ChildNodeEntry() {
+                        @Nonnull
+                        @Override
+                        public String getName() {
+                            return name;
+                        }
+
+                        @Nonnull
+                        @Override
+                        public NodeState getNodeState() {
+                            return getChildNode(name);
+                        }
+                    });
+                }
+            }
+            return entries;
+        }
+
+        @Override
+        public long getChildNodeCount(long max) {
+            return Iterables.size(getChildNodeEntries());
+        }
+
+        @Nonnull
+        @Override
+        public NodeBuilder builder() {
+            return new ReadOnlyBuilder(this);
+        }
+
+        private Set<String> childNames() {
+            Set<String> names = new TreeSet<String>();
+            for (String p : includes) {
+                if (isAncestor(path, p)) {
+                    String rel = denotesRoot(path) ? p.substring(1) : p.substring(path.length() + 1);
+                    int idx = rel.indexOf('/');
+                    names.add(idx < 0 ? rel : rel.substring(0, idx));
+                }
+            }
+            return names;
+        }
+
+        private boolean isIncludedOrAncestor(String p) {
+            for (String include : includes) {
+                if (include.equals(p) || isAncestor(p, include)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import com.google.common.base.Predicate;
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.spi.commit.Editor;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+
+/**
+ * Optional extension of an {@link IndexEditorProvider} for index types which
+ * can be reindexed by multiple threads, each indexing a partition of the
+ * repository into separate storage, which is merged into the index at the end.
+ *
+ * @see IndexUpdate#withReindexThreads(int)
+ */
+public interface PartitionedIndexEditorProvider extends IndexEditorProvider {
+
+    /**
+     * Returns the partitioned reindex for the given index definition, or
+     * {@code null} if the type is unknown or the index can not be reindexed
+     * in partitions.
+     *
+     * @param type index type
+     * @param definition index definition node builder, used for updates
+     * @param root root node state
+     * @param callback used to register for index update notifications
+     * @return the partitioned reindex, or {@code null}
+     */
+    @CheckForNull
+    PartitionedReindex getPartitionedReindex(
+            @Nonnull String type, @Nonnull NodeBuilder definition,
+            @Nonnull NodeState root,
+            @Nonnull IndexUpdateCallback callback) throws CommitFailedException;
+
+    /**
+     * The reindex of a single index definition in partitions. The methods
+     * are called by the reindexing thread, except for the editors, which
+     * are called by the worker threads.
+     */
+    interface PartitionedReindex {
+
+        /**
+         * Returns the editor for one partition. The editor gets the complete
+         * node states, but is only called for the nodes of the partition and
+         * their ancestors. Ancestors are part of multiple partitions, so the
+         * editor must only index the nodes accepted by {@code owned}. Each
+         * node is owned by exactly one partition.
+         *
+         * @param owned accepts the paths of the nodes owned by the partition
+         * @param callback used to register for index update notifications
+         * @return the editor of the partition
+         */
+        @Nonnull
+        Editor getPartitionEditor(@Nonnull Predicate<String> owned,
+                                  @Nonnull IndexUpdateCallback callback)
+                throws CommitFailedException;
+
+        /**
+         * Merges the content of all partitions into the index definition.
+         * Called once after the editors of all partitions are done.
+         */
+        void merge() throws CommitFailedException;
+
+        /**
+         * Releases the resources of the partitions. Always called at the
+         * end, also if the reindex failed.
+         */
+        void close();
+    }
+}
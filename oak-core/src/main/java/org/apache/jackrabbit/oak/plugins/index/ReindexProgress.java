@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index;
+
+import static org.apache.jackrabbit.oak.management.ManagementOperation.Status.formatTime;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Function;
+import com.google.common.base.Stopwatch;
+import org.slf4j.Logger;
+
+/**
+ * Tracks the progress of a reindex: the number of traversed nodes, the
+ * estimated remaining time and the throughput of each worker thread.
+ */
+final class ReindexProgress {
+
+    private final Stopwatch watch = Stopwatch.createUnstarted();
+
+    private final AtomicLong traversed = new AtomicLong();
+
+    private final ConcurrentMap<String, AtomicLong> workers = new ConcurrentSkipListMap<String, AtomicLong>();
+
+    private volatile long estimated = -1;
+
+    /**
+     * Starts tracking a reindex.
+     *
+     * @param estimatedNodes the estimated number of nodes to traverse or -1
+     *          if unknown
+     */
+    synchronized void start(long estimatedNodes) {
+        estimated = estimatedNodes;
+        traversed.set(0);
+        workers.clear();
+        watch.reset().start();
+    }
+
+    synchronized void stop() {
+        if (watch.isRunning()) {
+            watch.stop();
+        }
+    }
+
+    synchronized boolean isRunning() {
+        return watch.isRunning();
+    }
+
+    long getTraversedNodes() {
+        return traversed.get();
+    }
+
+    long getEstimatedNodes() {
+        return estimated;
+    }
+
+    /**
+     * Returns a function to be called for every node traversed by the
+     * current thread. Every 10000 nodes a message is written to the log.
+     *
+     * @param log the logger
+     * @param message the message prefix
+     * @return the progress function
+     */
+    Function<String, Void> newWorker(final Logger log, final String message) {
+        AtomicLong c = new AtomicLong();
+        AtomicLong existing = workers.putIfAbsent(Thread.currentThread().getName(), c);
+        final AtomicLong count = existing != null ? existing : c;
+        return new Function<String, Void>() {
+            @Nullable
+            @Override
+            public Void apply(String path) {
+                traversed.incrementAndGet();
+                if (count.incrementAndGet() % 10000 == 0) {
+                    log.info(message + " Traversed #" + count + ' ' + path);
+                }
+                return null;
+            }
+        };
+    }
+
+    @Override
+    public synchronized String toString() {
+        long nodes = traversed.get();
+        long millis = watch.elapsed(TimeUnit.MILLISECONDS);
+        StringBuilder sb = new StringBuilder();
+        sb.append("Traversed ").append(nodes);
+        long total = estimated;
+        if (total > 0) {
+            sb.append(" of ~").append(total).append(" nodes (")
+                    .append(Math.min(100, nodes * 100 / total)).append("%)");
+        } else {
+            sb.append(" nodes");
+        }
+        sb.append(" in ").append(formatTime(TimeUnit.MILLISECONDS.toNanos(millis)));
+        if (watch.isRunning() && total > nodes && nodes > 0) {
+            long remaining = (total - nodes) * millis / nodes;
+            sb.append(", ETA ").append(formatTime(TimeUnit.MILLISECONDS.toNanos(remaining)));
+        }
+        if (millis > 0 && !workers.isEmpty()) {
+            sb.append(", nodes/s per worker: {");
+            String sep = "";
+            for (Map.Entry<String, AtomicLong> e : workers.entrySet()) {
+                sb.append(sep).append(e.getKey()).append('=')
+                        .append(e.getValue().get() * 1000 / millis);
+                sep = ", ";
+            }
+            sb.append('}');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.index.fulltext;
+
+import java.io.IOException;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import aQute.bnd.annotation.ProviderType;
+import org.apache.jackrabbit.oak.api.Blob;
+
+/**
+ * Store for the text extracted from binaries which outlives the indexing
+ * run that extracted it. Entries are keyed by the content identity of the
+ * blob so the text of a binary referred from multiple places, or indexed by
+ * multiple indexes, only needs to be extracted once.
+ */
+@ProviderType
+public interface ExtractedTextStore {
+
+    /**
+     * Get the stored text for the given blob
+     *
+     * @param blob binary property value
+     * @return the stored text or null if no text is stored for the blob
+     * or the blob has no content identity
+     */
+    @CheckForNull
+    ExtractedText getText(@Nonnull Blob blob) throws IOException;
+
+    /**
+     * Stores the text extracted from the given blob. Blobs without
+     * content identity are ignored
+     */
+    void putText(@Nonnull Blob blob, @Nonnull ExtractedText text) throws IOException;
+
+    /**
+     * @return size in bytes of the text currently stored
+     */
+    long getSize();
+}
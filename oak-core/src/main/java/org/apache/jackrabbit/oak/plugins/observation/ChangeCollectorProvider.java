@@ -0,0 +1,285 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.observation;
+
+import static com.google.common.collect.Sets.newHashSet;
+import static org.apache.jackrabbit.JcrConstants.JCR_MIXINTYPES;
+import static org.apache.jackrabbit.JcrConstants.JCR_PRIMARYTYPE;
+import static org.apache.jackrabbit.JcrConstants.JCR_SYSTEM;
+import static org.apache.jackrabbit.oak.api.Type.NAME;
+import static org.apache.jackrabbit.oak.api.Type.NAMES;
+import static org.apache.jackrabbit.oak.commons.PathUtils.concat;
+import static org.apache.jackrabbit.oak.commons.PathUtils.getAncestorPath;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.MISSING_NODE;
+import static org.apache.jackrabbit.oak.plugins.nodetype.NodeTypeConstants.JCR_NODE_TYPES;
+import static org.apache.jackrabbit.oak.plugins.nodetype.NodeTypeConstants.REP_SUPERTYPES;
+
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import com.google.common.collect.Maps;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.spi.commit.CommitContext;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.DefaultEditor;
+import org.apache.jackrabbit.oak.spi.commit.Editor;
+import org.apache.jackrabbit.oak.spi.commit.EditorProvider;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
+
+/**
+ * Editor provider recording a {@link ChangeSet} of each commit into the
+ * {@link CommitContext} of the commit. Commits without a commit context
+ * are not processed.
+ * <p>
+ * The collected paths, node types and property names are each limited to
+ * {@code maxItems} entries. Once a limit is exceeded that part of the change
+ * set is dropped, as a partial set would be unusable for filtering.
+ * <p>
+ * Paths deeper than {@code maxPathDepth} are recorded as their ancestor at
+ * that depth. The collector stops descending into the changed subtrees as
+ * soon as nothing more can be recorded, i.e. once all sets have overflowed
+ * or only the paths are left and the depth limit is reached.
+ */
+public class ChangeCollectorProvider implements EditorProvider {
+
+    /**
+     * Default maximum number of entries per set of a change set
+     */
+    public static final int DEFAULT_MAX_ITEMS =
+            Integer.getInteger("oak.observation.changeSetMaxItems", 50);
+
+    /**
+     * Default maximum depth of the paths of a change set
+     */
+    public static final int DEFAULT_MAX_PATH_DEPTH =
+            Integer.getInteger("oak.observation.changeSetMaxDepth", 9);
+
+    private final int maxItems;
+    private final int maxPathDepth;
+
+    public ChangeCollectorProvider() {
+        this(DEFAULT_MAX_ITEMS, DEFAULT_MAX_PATH_DEPTH);
+    }
+
+    public ChangeCollectorProvider(int maxItems) {
+        this(maxItems, DEFAULT_MAX_PATH_DEPTH);
+    }
+
+    public ChangeCollectorProvider(int maxItems, int maxPathDepth) {
+        this.maxItems = maxItems;
+        this.maxPathDepth = maxPathDepth;
+    }
+
+    @CheckForNull
+    @Override
+    public Editor getRootEditor(NodeState before, NodeState after,
+                                NodeBuilder builder, CommitInfo info) {
+        Object context = info.getInfo().get(CommitContext.NAME);
+        if (!(context instanceof CommitContext)) {
+            return null;
+        }
+        Collector collector = new Collector((CommitContext) context, after, maxItems, maxPathDepth);
+        return new ChangeCollector(collector, null, "/", 0, before, after);
+    }
+
+    /**
+     * State shared by all the editors of a single commit.
+     */
+    private static class Collector {
+        private final CommitContext context;
+        private final NodeState nodeTypes;
+        private final int maxItems;
+        private final int maxPathDepth;
+        private final Map<String, Set<String>> superTypes = Maps.newHashMap();
+
+        private Set<String> parentPaths = newHashSet();
+        private Set<String> parentNodeTypes = newHashSet();
+        private Set<String> propertyNames = newHashSet();
+
+        Collector(CommitContext context, NodeState root, int maxItems, int maxPathDepth) {
+            this.context = context;
+            this.nodeTypes = root.getChildNode(JCR_SYSTEM).getChildNode(JCR_NODE_TYPES);
+            this.maxItems = maxItems;
+            this.maxPathDepth = maxPathDepth;
+        }
+
+        /**
+         * Whether changes at the passed depth could still add anything
+         * to the change set.
+         */
+        boolean isCollecting(int depth) {
+            return parentNodeTypes != null || propertyNames != null
+                    || (parentPaths != null && depth <= maxPathDepth);
+        }
+
+        void addParent(String path, int depth, NodeState before, NodeState after) {
+            if (parentPaths != null && depth > maxPathDepth) {
+                path = getAncestorPath(path, depth - maxPathDepth);
+            }
+            parentPaths = add(parentPaths, path);
+            if (parentNodeTypes != null) {
+                addNodeTypes(before);
+                addNodeTypes(after);
+            }
+        }
+
+        void addPropertyName(String name) {
+            propertyNames = add(propertyNames, name);
+        }
+
+        void commit() {
+            context.set(ChangeSet.COMMIT_CONTEXT_OBSERVATION_CHANGESET,
+                    new ChangeSet(maxPathDepth, parentPaths, parentNodeTypes, propertyNames));
+        }
+
+        private void addNodeTypes(NodeState node) {
+            PropertyState primary = node.getProperty(JCR_PRIMARYTYPE);
+            if (primary != null) {
+                addNodeType(primary.getValue(NAME));
+            }
+            PropertyState mixins = node.getProperty(JCR_MIXINTYPES);
+            if (mixins != null) {
+                for (String mixin : mixins.getValue(NAMES)) {
+                    addNodeType(mixin);
+                }
+            }
+        }
+
+        private void addNodeType(String name) {
+            Set<String> types = superTypes.get(name);
+            if (types == null) {
+                types = newHashSet(nodeTypes.getChildNode(name).getNames(REP_SUPERTYPES));
+                types.add(name);
+                superTypes.put(name, types);
+            }
+            for (String type : types) {
+                parentNodeTypes = add(parentNodeTypes, type);
+                if (parentNodeTypes == null) {
+                    return;
+                }
+            }
+        }
+
+        private Set<String> add(@CheckForNull Set<String> set, String value) {
+            if (set == null) {
+                return null;
+            }
+            set.add(value);
+            return set.size() > maxItems ? null : set;
+        }
+    }
+
+    private static class ChangeCollector extends DefaultEditor {
+        private final Collector collector;
+        private final ChangeCollector parent;
+        private final String path;
+        private final int depth;
+        private final NodeState before;
+        private final NodeState after;
+        private boolean parentAdded;
+
+        ChangeCollector(@Nonnull Collector collector, @CheckForNull ChangeCollector parent,
+                        @Nonnull String path, int depth,
+                        @Nonnull NodeState before, @Nonnull NodeState after) {
+            this.collector = collector;
+            this.parent = parent;
+            this.path = path;
+            this.depth = depth;
+            this.before = before;
+            this.after = after;
+        }
+
+        @Override
+        public void leave(NodeState before, NodeState after) {
+            if (parent == null) {
+                collector.commit();
+            }
+        }
+
+        @Override
+        public void propertyAdded(PropertyState after) {
+            propertyChanged(after.getName());
+        }
+
+        @Override
+        public void propertyChanged(PropertyState before, PropertyState after) {
+            propertyChanged(after.getName());
+        }
+
+        @Override
+        public void propertyDeleted(PropertyState before) {
+            propertyChanged(before.getName());
+        }
+
+        @Override
+        public Editor childNodeAdded(String name, NodeState after) {
+            if (NodeStateUtils.isHidden(name)) {
+                return null;
+            }
+            addParent();
+            return newChildCollector(name, MISSING_NODE, after);
+        }
+
+        @Override
+        public Editor childNodeChanged(String name, NodeState before, NodeState after) {
+            if (NodeStateUtils.isHidden(name)) {
+                return null;
+            }
+            return newChildCollector(name, before, after);
+        }
+
+        @Override
+        public Editor childNodeDeleted(String name, NodeState before) {
+            if (NodeStateUtils.isHidden(name)) {
+                return null;
+            }
+            addParent();
+            return newChildCollector(name, before, MISSING_NODE);
+        }
+
+        @CheckForNull
+        private Editor newChildCollector(String name, NodeState before, NodeState after) {
+            if (!collector.isCollecting(depth + 1)) {
+                // changes below the maximum path depth are accounted
+                // for by the ancestor at that depth
+                addParent();
+                return null;
+            }
+            return new ChangeCollector(collector, this, concat(path, name), depth + 1, before, after);
+        }
+
+        private void propertyChanged(String name) {
+            if (NodeStateUtils.isHidden(name)) {
+                return;
+            }
+            collector.addPropertyName(name);
+            addParent();
+        }
+
+        private void addParent() {
+            if (!parentAdded) {
+                parentAdded = true;
+                collector.addParent(path, depth, before, after);
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.observation;
+
+import static com.google.common.base.Objects.toStringHelper;
+
+import java.util.Set;
+
+import javax.annotation.CheckForNull;
+
+import com.google.common.collect.ImmutableSet;
+import org.apache.jackrabbit.oak.spi.commit.CommitContext;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+
+/**
+ * A compact summary of the changes of a commit. It allows observers to
+ * decide whether they are interested in a commit before diffing it.
+ * <p>
+ * Each of the sets is bounded in size. If more distinct values were
+ * changed, the corresponding getter returns {@code null}, meaning that
+ * nothing can be concluded from that part of the summary. Paths deeper
+ * than {@link #getMaxPathDepth()} are recorded as their ancestor at that
+ * depth, standing for a change of that node or any of its descendants.
+ *
+ * @see ChangeCollectorProvider
+ * @see org.apache.jackrabbit.oak.plugins.observation.filter.ChangeSetFilter
+ */
+public final class ChangeSet {
+
+    /**
+     * Name of the {@link CommitContext} attribute holding the change set
+     */
+    public static final String COMMIT_CONTEXT_OBSERVATION_CHANGESET = "oak.observation.changeSet";
+
+    private final int maxPathDepth;
+    private final Set<String> parentPaths;
+    private final Set<String> parentNodeTypes;
+    private final Set<String> propertyNames;
+
+    /**
+     * @param parentPaths     paths of the nodes whose properties or child
+     *                        nodes changed, or {@code null} if unknown
+     * @param parentNodeTypes (effective) node types of those nodes including
+     *                        all their supertypes, or {@code null} if unknown
+     * @param propertyNames   names of the changed properties, or
+     *                        {@code null} if unknown
+     */
+    public ChangeSet(@CheckForNull Set<String> parentPaths,
+                     @CheckForNull Set<String> parentNodeTypes,
+                     @CheckForNull Set<String> propertyNames) {
+        this(Integer.MAX_VALUE, parentPaths, parentNodeTypes, propertyNames);
+    }
+
+    /**
+     * @param maxPathDepth    depth at which the parent paths are truncated
+     * @param parentPaths     paths of the nodes whose properties or child
+     *                        nodes changed, or {@code null} if unknown
+     * @param parentNodeTypes (effective) node types of those nodes including
+     *                        all their supertypes, or {@code null} if unknown
+     * @param propertyNames   names of the changed properties, or
+     *                        {@code null} if unknown
+     */
+    public ChangeSet(int maxPathDepth,
+                     @CheckForNull Set<String> parentPaths,
+                     @CheckForNull Set<String> parentNodeTypes,
+                     @CheckForNull Set<String> propertyNames) {
+        this.maxPathDepth = maxPathDepth;
+        this.parentPaths = copyOf(parentPaths);
+        this.parentNodeTypes = copyOf(parentNodeTypes);
+        this.propertyNames = copyOf(propertyNames);
+    }
+
+    /**
+     * Get the change set recorded for a commit, if any.
+     *
+     * @param info commit info of the commit or {@code null}
+     * @return the change set or {@code null} if none was recorded
+     */
+    @CheckForNull
+    public static ChangeSet getChangeSet(@CheckForNull CommitInfo info) {
+        if (info == null) {
+            return null;
+        }
+        Object context = info.getInfo().get(CommitContext.NAME);
+        if (!(context instanceof CommitContext)) {
+            return null;
+        }
+        Object changeSet = ((CommitContext) context).get(COMMIT_CONTEXT_OBSERVATION_CHANGESET);
+        return changeSet instanceof ChangeSet ? (ChangeSet) changeSet : null;
+    }
+
+    /**
+     * @return depth beyond which changes are recorded as the ancestor
+     *         path at this depth
+     */
+    public int getMaxPathDepth() {
+        return maxPathDepth;
+    }
+
+    @CheckForNull
+    public Set<String> getParentPaths() {
+        return parentPaths;
+    }
+
+    @CheckForNull
+    public Set<String> getParentNodeTypes() {
+        return parentNodeTypes;
+    }
+
+    @CheckForNull
+    public Set<String> getPropertyNames() {
+        return propertyNames;
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+                .add("maxPathDepth", maxPathDepth)
+                .add("parentPaths", parentPaths)
+                .add("parentNodeTypes", parentNodeTypes)
+                .add("propertyNames", propertyNames)
+                .toString();
+    }
+
+    private static Set<String> copyOf(Set<String> values) {
+        return values == null ? null : ImmutableSet.copyOf(values);
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.observation;
+
+import static com.google.common.collect.Lists.newArrayListWithCapacity;
+
+import java.util.List;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+
+/**
+ * Event handler passing all callbacks on to a list of handlers. This
+ * allows a single {@link EventGenerator} run to serve several handlers
+ * at once, so the content diff only needs to be computed once.
+ * <p>
+ * Child handlers are only created for those handlers interested in the
+ * respective child node. The diff of a subtree stops as soon as none of
+ * the handlers is interested in it any more.
+ */
+public class FanOutHandler implements EventHandler {
+
+    private final List<EventHandler> handlers;
+
+    private FanOutHandler(List<EventHandler> handlers) {
+        this.handlers = handlers;
+    }
+
+    /**
+     * Create a handler passing all callbacks to the given handlers.
+     *
+     * @param handlers  handlers to pass callbacks on to
+     * @return  the single handler if only one is passed, a fan out handler
+     *          otherwise
+     */
+    @Nonnull
+    public static EventHandler of(@Nonnull List<EventHandler> handlers) {
+        if (handlers.size() == 1) {
+            return handlers.get(0);
+        } else {
+            return new FanOutHandler(ImmutableList.copyOf(handlers));
+        }
+    }
+
+    @Override
+    public void enter(NodeState before, NodeState after) {
+        for (EventHandler handler : handlers) {
+            handler.enter(before, after);
+        }
+    }
+
+    @Override
+    public void leave(NodeState before, NodeState after) {
+        for (EventHandler handler : handlers) {
+            handler.leave(before, after);
+        }
+    }
+
+    @Override @CheckForNull
+    public EventHandler getChildHandler(String name, NodeState before, NodeState after) {
+        List<EventHandler> childHandlers = newArrayListWithCapacity(handlers.size());
+        for (EventHandler handler : handlers) {
+            EventHandler childHandler = handler.getChildHandler(name, before, after);
+            if (childHandler != null) {
+                childHandlers.add(childHandler);
+            }
+        }
+        return childHandlers.isEmpty() ? null : of(childHandlers);
+    }
+
+    @Override
+    public void propertyAdded(PropertyState after) {
+        for (EventHandler handler : handlers) {
+            handler.propertyAdded(after);
+        }
+    }
+
+    @Override
+    public void propertyChanged(PropertyState before, PropertyState after) {
+        for (EventHandler handler : handlers) {
+            handler.propertyChanged(before, after);
+        }
+    }
+
+    @Override
+    public void propertyDeleted(PropertyState before) {
+        for (EventHandler handler : handlers) {
+            handler.propertyDeleted(before);
+        }
+    }
+
+    @Override
+    public void nodeAdded(String name, NodeState after) {
+        for (EventHandler handler : handlers) {
+            handler.nodeAdded(name, after);
+        }
+    }
+
+    @Override
+    public void nodeDeleted(String name, NodeState before) {
+        for (EventHandler handler : handlers) {
+            handler.nodeDeleted(name, before);
+        }
+    }
+
+    @Override
+    public void nodeMoved(String sourcePath, String name, NodeState moved) {
+        for (EventHandler handler : handlers) {
+            handler.nodeMoved(sourcePath, name, moved);
+        }
+    }
+
+    @Override
+    public void nodeReordered(String destName, String name, NodeState reordered) {
+        for (EventHandler handler : handlers) {
+            handler.nodeReordered(destName, name, reordered);
+        }
+    }
+}
@@ -0,0 +1,369 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.observation;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.Lists.newArrayList;
+import static org.apache.jackrabbit.oak.plugins.observation.filter.VisibleFilter.VISIBLE_FILTER;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.plugins.observation.filter.ChangeSetFilter;
+import org.apache.jackrabbit.oak.plugins.observation.filter.Filters;
+import org.apache.jackrabbit.oak.plugins.observation.filter.FilterProvider;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.Observer;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.whiteboard.Registration;
+import org.apache.jackrabbit.oak.util.PerfLogger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Observer dispatching the changes of each commit to a number of
+ * {@link Listener}s. In contrast to registering an observer per listener,
+ * the content diff is computed only once per commit: a single
+ * {@link EventGenerator} run passes the changes to the filtered handlers
+ * of all listeners interested in the commit through a {@link FanOutHandler}.
+ * A listener whose handler fails while the diff is running is dropped from
+ * that commit, while all other listeners still receive their events.
+ * <p>
+ * Once the diff is done, each listener is passed the commit together with
+ * its handler. The dispatcher does not deliver any events itself, and does
+ * not wait for the listeners: a listener is expected to queue the commit
+ * and deliver its events from a thread of its own, for example through a
+ * {@link org.apache.jackrabbit.oak.spi.commit.BackgroundObserver}. A slow
+ * listener therefore only holds up its own events. A listener which is
+ * behind can decline to take part in the diff of a commit, and diff the
+ * commit later on its own instead.
+ * <p>
+ * This observer is expected to be registered through a
+ * {@link org.apache.jackrabbit.oak.spi.commit.BackgroundObserver}, as its
+ * {@link #contentChanged(NodeState, CommitInfo)} method only returns once
+ * the diff of the commit is done.
+ */
+public class SharedEventDispatcher implements Observer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SharedEventDispatcher.class);
+
+    private static final PerfLogger PERF_LOGGER = new PerfLogger(
+            LoggerFactory.getLogger(SharedEventDispatcher.class.getName()
+                    + ".perf"));
+
+    /**
+     * Listener for the changes dispatched by a {@link SharedEventDispatcher}.
+     */
+    public interface Listener {
+
+        /**
+         * @return  the provider of the filters to apply to the changes of
+         *          a commit before passing them to this listener
+         */
+        @Nonnull
+        FilterProvider getFilterProvider();
+
+        /**
+         * Create the handler for the changes of a commit. Its callbacks are
+         * invoked from the thread of the dispatcher and are already filtered
+         * through the filter of {@link #getFilterProvider()}.
+         *
+         * @param before  before state of the commit
+         * @param after   after state of the commit
+         * @param info    commit info of the commit or {@code null} if not available
+         * @return  the handler or {@code null} if this listener does not take
+         *          part in the diff of the commit
+         */
+        @CheckForNull
+        EventHandler createHandler(@Nonnull NodeState before, @Nonnull NodeState after,
+                @Nullable CommitInfo info);
+
+        /**
+         * Called from the thread of the dispatcher for each commit, in the
+         * order of the commits, once the diff of the commit is done. This
+         * method must not block, as it holds up the dispatching of further
+         * commits to all listeners.
+         *
+         * @param root     root state of the commit
+         * @param info     commit info of the commit or {@code null} if not available
+         * @param handler  the handler returned from
+         *                 {@link #createHandler(NodeState, NodeState, CommitInfo)},
+         *                 which received the changes of the commit, or
+         *                 {@code null} if no handler was created for the
+         *                 commit or the handler failed
+         */
+        void contentChanged(@Nonnull NodeState root, @Nullable CommitInfo info,
+                @Nullable EventHandler handler);
+    }
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<Subscription>();
+
+    private NodeState previousRoot;
+
+    /**
+     * Register a listener with this dispatcher. The listener will receive
+     * the changes of all commits following the one this dispatcher has
+     * seen last.
+     *
+     * @param sessionId  id of the session of the listener, used for filtering
+     *                   {@link FilterProvider#includeCommit(String, CommitInfo) commits}
+     * @param listener   the listener
+     * @return  registration for removing the listener again
+     */
+    @Nonnull
+    public Registration addListener(@Nonnull String sessionId, @Nonnull Listener listener) {
+        final Subscription subscription = new Subscription(checkNotNull(sessionId), checkNotNull(listener));
+        subscriptions.add(subscription);
+        return new Registration() {
+            @Override
+            public void unregister() {
+                subscriptions.remove(subscription);
+            }
+        };
+    }
+
+    @Override
+    public void contentChanged(@Nonnull NodeState root, @Nullable CommitInfo info) {
+        long start = PERF_LOGGER.start();
+        List<Delivery> deliveries = newArrayList();
+        List<EventHandler> handlers = newArrayList();
+        for (Subscription subscription : subscriptions) {
+            Delivery delivery = new Delivery(subscription.listener);
+            deliveries.add(delivery);
+            if (previousRoot == null) {
+                continue;
+            }
+            try {
+                Listener listener = subscription.listener;
+                FilterProvider provider = listener.getFilterProvider();
+                if (!includesCommit(subscription.sessionId, provider, info)) {
+                    continue;
+                }
+                EventHandler handler = listener.createHandler(previousRoot, root, info);
+                if (handler != null) {
+                    delivery.handler = handler;
+                    handlers.add(new IsolatingHandler(delivery, new FilteredHandler(
+                            Filters.all(VISIBLE_FILTER, provider.getFilter(previousRoot, root)),
+                            handler)));
+                }
+            } catch (Exception e) {
+                delivery.fail(e);
+            }
+        }
+
+        if (!handlers.isEmpty()) {
+            EventGenerator generator = new EventGenerator(
+                    previousRoot, root, FanOutHandler.of(handlers));
+            while (!generator.isDone()) {
+                generator.generate();
+            }
+        }
+        for (Delivery delivery : deliveries) {
+            delivery.deliver(root, info);
+        }
+        PERF_LOGGER.end(start, 100,
+                "Dispatched events to {} of {} listeners (before: {}, after: {})",
+                handlers.size(), deliveries.size(), previousRoot, root);
+        previousRoot = root;
+    }
+
+    private static boolean includesCommit(String sessionId, FilterProvider provider, CommitInfo info) {
+        if (!provider.includeCommit(sessionId, info)) {
+            return false;
+        }
+        ChangeSet changeSet = ChangeSet.getChangeSet(info);
+        return changeSet == null || !(provider instanceof ChangeSetFilter)
+                || !((ChangeSetFilter) provider).excludes(changeSet);
+    }
+
+    private static class Subscription {
+        private final String sessionId;
+        private final Listener listener;
+
+        Subscription(String sessionId, Listener listener) {
+            this.sessionId = sessionId;
+            this.listener = listener;
+        }
+
+        @Override
+        public String toString() {
+            return "Subscription[" + sessionId + ", " + listener + ']';
+        }
+    }
+
+    /**
+     * The handler of a listener for the current commit, if any.
+     */
+    private static class Delivery {
+        private final Listener listener;
+        private EventHandler handler;
+        private boolean failed;
+
+        Delivery(Listener listener) {
+            this.listener = listener;
+        }
+
+        void deliver(NodeState root, CommitInfo info) {
+            try {
+                listener.contentChanged(root, info, failed ? null : handler);
+            } catch (Exception e) {
+                LOG.warn("Error while dispatching observation events to " + listener, e);
+            }
+        }
+
+        void fail(Exception e) {
+            if (!failed) {
+                failed = true;
+                LOG.warn("Error while generating observation events for " + listener
+                        + ". Skipping its events of this commit.", e);
+            }
+        }
+    }
+
+    /**
+     * Handler shielding the other handlers of a {@link FanOutHandler} from
+     * the failures of the wrapped handler. Once the wrapped handler failed,
+     * all further callbacks for its listener are ignored and no events are
+     * delivered to it for the current commit.
+     */
+    private static class IsolatingHandler implements EventHandler {
+        private final Delivery delivery;
+        private final EventHandler handler;
+
+        IsolatingHandler(Delivery delivery, EventHandler handler) {
+            this.delivery = delivery;
+            this.handler = handler;
+        }
+
+        @Override
+        public void enter(NodeState before, NodeState after) {
+            if (!delivery.failed) {
+                try {
+                    handler.enter(before, after);
+                } catch (RuntimeException e) {
+                    delivery.fail(e);
+                }
+            }
+        }
+
+        @Override
+        public void leave(NodeState before, NodeState after) {
+            if (!delivery.failed) {
+                try {
+                    handler.leave(before, after);
+                } catch (RuntimeException e) {
+                    delivery.fail(e);
+                }
+            }
+        }
+
+        @Override @CheckForNull
+        public EventHandler getChildHandler(String name, NodeState before, NodeState after) {
+            if (!delivery.failed) {
+                try {
+                    EventHandler child = handler.getChildHandler(name, before, after);
+                    return child == null ? null : new IsolatingHandler(delivery, child);
+                } catch (RuntimeException e) {
+                    delivery.fail(e);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void propertyAdded(PropertyState after) {
+            if (!delivery.failed) {
+                try {
+                    handler.propertyAdded(after);
+                } catch (RuntimeException e) {
+                    delivery.fail(e);
+                }
+            }
+        }
+
+        @Override
+        public void propertyChanged(PropertyState before, PropertyState after) {
+            if (!delivery.failed) {
+                try {
+                    handler.propertyChanged(before, after);
+                } catch (RuntimeException e) {
+                    delivery.fail(e);
+                }
+            }
+        }
+
+        @Override
+        public void propertyDeleted(PropertyState before) {
+            if (!delivery.failed) {
+                try {
+                    handler.propertyDeleted(before);
+                } catch (RuntimeException e) {
+                    delivery.fail(e);
+                }
+            }
+        }
+
+        @Override
+        public void nodeAdded(String name, NodeState after) {
+            if (!delivery.failed) {
+                try {
+                    handler.nodeAdded(name, after);
+                } catch (RuntimeException e) {
+                    delivery.fail(e);
+                }
+            }
+        }
+
+        @Override
+        public void nodeDeleted(String name, NodeState before) {
+            if (!delivery.failed) {
+                try {
+                    handler.nodeDeleted(name, before);
+                } catch (RuntimeException e) {
+                    delivery.fail(e);
+                }
+            }
+        }
+
+        @Override
+        public void nodeMoved(String sourcePath, String name, NodeState moved) {
+            if (!delivery.failed) {
+                try {
+                    handler.nodeMoved(sourcePath, name, moved);
+                } catch (RuntimeException e) {
+                    delivery.fail(e);
+                }
+            }
+        }
+
+        @Override
+        public void nodeReordered(String destName, String name, NodeState reordered) {
+            if (!delivery.failed) {
+                try {
+                    handler.nodeReordered(destName, name, reordered);
+                } catch (RuntimeException e) {
+                    delivery.fail(e);
+                }
+            }
+        }
+    }
+}
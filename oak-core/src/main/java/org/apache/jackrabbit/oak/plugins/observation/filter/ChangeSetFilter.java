@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.observation.filter;
+
+import javax.annotation.Nonnull;
+
+import org.apache.jackrabbit.oak.plugins.observation.ChangeSet;
+
+/**
+ * A filter deciding on the basis of a {@link ChangeSet} whether a commit
+ * can be skipped without diffing it.
+ */
+public interface ChangeSetFilter {
+
+    /**
+     * Decide whether the commit described by the passed change set is of no
+     * interest to this filter. Implementations must only return {@code true}
+     * when no event of the commit could be included, as excluded commits are
+     * not looked at any further.
+     *
+     * @param changeSet change set of the commit
+     * @return {@code true} if the commit can be skipped, {@code false} otherwise
+     */
+    boolean excludes(@Nonnull ChangeSet changeSet);
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.observation.filter;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.jackrabbit.oak.commons.PathUtils.getAncestorPath;
+import static org.apache.jackrabbit.oak.commons.PathUtils.getDepth;
+import static org.apache.jackrabbit.oak.commons.PathUtils.isAncestor;
+
+import java.util.Collections;
+import java.util.Set;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import com.google.common.collect.ImmutableSet;
+import org.apache.jackrabbit.oak.plugins.observation.ChangeSet;
+
+/**
+ * {@link ChangeSetFilter} excluding commits whose changed parent paths,
+ * node types or property names are all outside of what a listener is
+ * registered for. Parts of the change set which are unknown (i.e.
+ * {@code null}) never cause a commit to be excluded.
+ */
+public class ChangeSetFilterImpl implements ChangeSetFilter {
+
+    private final Set<String> parentPaths;
+    private final boolean includeDescendants;
+    private final Set<String> parentNodeTypes;
+    private final Set<String> propertyNames;
+
+    /**
+     * @param parentPaths        paths of the nodes whose changes are of
+     *                           interest
+     * @param includeDescendants whether changes of descendants of the
+     *                           {@code parentPaths} are of interest too
+     * @param parentNodeTypes    node types of parents whose changes are of
+     *                           interest, or {@code null} for any
+     * @param propertyNames      names of the properties whose changes are
+     *                           of interest, or {@code null} for any
+     */
+    public ChangeSetFilterImpl(@Nonnull Set<String> parentPaths, boolean includeDescendants,
+                               @CheckForNull Set<String> parentNodeTypes,
+                               @CheckForNull Set<String> propertyNames) {
+        this.parentPaths = ImmutableSet.copyOf(checkNotNull(parentPaths));
+        this.includeDescendants = includeDescendants;
+        this.parentNodeTypes = parentNodeTypes == null ? null : ImmutableSet.copyOf(parentNodeTypes);
+        this.propertyNames = propertyNames == null ? null : ImmutableSet.copyOf(propertyNames);
+    }
+
+    @Override
+    public boolean excludes(@Nonnull ChangeSet changeSet) {
+        Set<String> changedPaths = changeSet.getParentPaths();
+        if (changedPaths != null && !matchesAnyPath(changedPaths, changeSet.getMaxPathDepth())) {
+            return true;
+        }
+        Set<String> changedTypes = changeSet.getParentNodeTypes();
+        if (parentNodeTypes != null && changedTypes != null
+                && Collections.disjoint(parentNodeTypes, changedTypes)) {
+            return true;
+        }
+        Set<String> changedNames = changeSet.getPropertyNames();
+        return propertyNames != null && changedNames != null
+                && Collections.disjoint(propertyNames, changedNames);
+    }
+
+    private boolean matchesAnyPath(Set<String> changedPaths, int maxPathDepth) {
+        for (String path : parentPaths) {
+            // changes below the maximum depth are recorded as their ancestor
+            int depth = getDepth(path);
+            if (depth > maxPathDepth) {
+                path = getAncestorPath(path, depth - maxPathDepth);
+            }
+            for (String changedPath : changedPaths) {
+                if (path.equals(changedPath)
+                        || (includeDescendants && isAncestor(path, changedPath))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeSetFilterImpl[parentPaths=" + parentPaths
+                + ", includeDescendants=" + includeDescendants
+                + ", parentNodeTypes=" + parentNodeTypes
+                + ", propertyNames=" + propertyNames + "]";
+    }
+}
@@ -42,6 +42,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.plugins.nodetype.TypePredicate;
+import org.apache.jackrabbit.oak.plugins.observation.ChangeSet;
 import org.apache.jackrabbit.oak.plugins.observation.filter.UniversalFilter.Selector;
 import org.apache.jackrabbit.oak.plugins.tree.RootFactory;
 import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
@@ -59,6 +60,9 @@ public final class FilterBuilder {
     private boolean includeClusterLocal = true;
     private final List<String> subTrees = newArrayList();
     private Condition condition = includeAll();
+    private ChangeSetFilter changeSetFilter;
+
+    private interface ChangeSetFilterProvider extends FilterProvider, ChangeSetFilter { }
 
     public interface Condition {
         @Nonnull
@@ -100,6 +104,21 @@ public final class FilterBuilder {
         return subTrees.isEmpty() ? ImmutableList.of("/") : subTrees;
     }
 
+    /**
+     * Set a filter to exclude commits on the basis of their
+     * {@link org.apache.jackrabbit.oak.plugins.observation.ChangeSet change set}.
+     * The filter must not exclude any commit which could produce events
+     * included by the {@link #condition(Condition) condition} of this builder.
+     *
+     * @param changeSetFilter  change set filter or {@code null} for none
+     * @return  this instance
+     */
+    @Nonnull
+    public FilterBuilder setChangeSetFilter(@CheckForNull ChangeSetFilter changeSetFilter) {
+        this.changeSetFilter = changeSetFilter;
+        return this;
+    }
+
     /**
      * Whether to include session local changes. Defaults to {@code false}.
      * @param include if {@code true} session local changes are included,
@@ -366,12 +385,13 @@ public final class FilterBuilder {
      */
     @Nonnull
     public FilterProvider build() {
-        return new FilterProvider() {
+        return new ChangeSetFilterProvider() {
             final boolean includeSessionLocal = FilterBuilder.this.includeSessionLocal;
             final boolean includeClusterExternal = FilterBuilder.this.includeClusterExternal;
             final boolean includeClusterLocal = FilterBuilder.this.includeClusterLocal;
             final Iterable<String> subTrees = FilterBuilder.this.getSubTrees();
             final Condition condition = FilterBuilder.this.condition;
+            final ChangeSetFilter changeSetFilter = FilterBuilder.this.changeSetFilter;
 
             @Override
             public boolean includeCommit(@Nonnull String sessionId, @CheckForNull CommitInfo info) {
@@ -380,6 +400,11 @@ public final class FilterBuilder {
                     && (includeClusterLocal || isExternal(info));
             }
 
+            @Override
+            public boolean excludes(@Nonnull ChangeSet changeSet) {
+                return changeSetFilter != null && changeSetFilter.excludes(changeSet);
+            }
+
             @Nonnull
             @Override
             public EventFilter getFilter(@Nonnull NodeState before, @Nonnull NodeState after) {
@@ -28,6 +28,10 @@ import org.apache.jackrabbit.oak.spi.state.NodeState;
 /**
  * Instance of this class provide a {@link EventFilter} for observation
  * events and a filter for commits.
+ * <p>
+ * Instances may additionally implement {@link ChangeSetFilter} to allow
+ * commits to be excluded on the basis of their change set before they
+ * are diffed.
  */
 public interface FilterProvider {
 
@@ -41,6 +41,15 @@ public class QueryEngineSettings extends AnnotatedStandardMBean implements Query
     private static final boolean DEFAULT_FULL_TEXT_COMPARISON_WITHOUT_INDEX = 
             Boolean.getBoolean("oak.queryFullTextComparisonWithoutIndex");
     
+    private static final int DEFAULT_PLAN_CACHE_SIZE =
+            Integer.getInteger("oak.query.planCacheSize", 1000);
+
+    private static final long DEFAULT_PLAN_CACHE_EXPIRY_SECONDS =
+            Long.getLong("oak.query.planCacheExpirySeconds", 60);
+
+    private static final int DEFAULT_STATEMENT_CACHE_SIZE =
+            Integer.getInteger("oak.query.statementCacheSize", 1000);
+
     private long limitInMemory = DEFAULT_QUERY_LIMIT_IN_MEMORY;
     
     private long limitReads = DEFAULT_QUERY_LIMIT_READS;
@@ -50,6 +59,12 @@ public class QueryEngineSettings extends AnnotatedStandardMBean implements Query
     
     private boolean sql2Optimisation = Boolean.parseBoolean(System.getProperty(SQL2_OPTIMISATION_FLAG, "true"));
 
+    private final QueryPlanCache planCache =
+            new QueryPlanCache(DEFAULT_PLAN_CACHE_SIZE, DEFAULT_PLAN_CACHE_EXPIRY_SECONDS);
+
+    private final XPathStatementCache statementCache =
+            new XPathStatementCache(DEFAULT_STATEMENT_CACHE_SIZE);
+
     public QueryEngineSettings() {
         super(QueryEngineSettingsMBean.class);
     }
@@ -109,4 +124,62 @@ public class QueryEngineSettings extends AnnotatedStandardMBean implements Query
     public boolean isSql2Optimisation() {
         return sql2Optimisation;
     }
+
+    /**
+     * Get the cache of the indexes chosen for queries. The size of the
+     * cache is set by {@code -Doak.query.planCacheSize} (0 disables it) and
+     * the expiry of its entries by {@code -Doak.query.planCacheExpirySeconds}.
+     *
+     * @return the plan cache
+     */
+    public QueryPlanCache getPlanCache() {
+        return planCache;
+    }
+
+    @Override
+    public long getPlanCacheHitCount() {
+        return planCache.getHitCount();
+    }
+
+    @Override
+    public long getPlanCacheMissCount() {
+        return planCache.getMissCount();
+    }
+
+    @Override
+    public long getPlanningTimeMillis() {
+        return planCache.getPlanningTimeMillis();
+    }
+
+    /**
+     * Get the cache of XPath statements converted to SQL-2. The initial size
+     * of the cache is set by {@code -Doak.query.statementCacheSize} (0
+     * disables it) and can be changed through
+     * {@link #setStatementCacheSize(int)}.
+     *
+     * @return the statement cache
+     */
+    public XPathStatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    @Override
+    public long getStatementCacheHitCount() {
+        return statementCache.getHitCount();
+    }
+
+    @Override
+    public long getStatementCacheMissCount() {
+        return statementCache.getMissCount();
+    }
+
+    @Override
+    public int getStatementCacheSize() {
+        return statementCache.getMaxSize();
+    }
+
+    @Override
+    public void setStatementCacheSize(int statementCacheSize) {
+        statementCache.setMaxSize(statementCacheSize);
+    }
 }
@@ -27,8 +27,11 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import com.google.common.base.Strings;
 import com.google.common.collect.AbstractIterator;
@@ -42,6 +45,7 @@ import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.api.Result.SizePrecision;
 import org.apache.jackrabbit.oak.namepath.JcrPathParser;
 import org.apache.jackrabbit.oak.namepath.NamePathMapper;
+import org.apache.jackrabbit.oak.query.QueryPlanCache.CachedPlan;
 import org.apache.jackrabbit.oak.query.ast.AndImpl;
 import org.apache.jackrabbit.oak.query.ast.AstVisitorBase;
 import org.apache.jackrabbit.oak.query.ast.BindVariableValueImpl;
@@ -89,6 +93,7 @@ import org.apache.jackrabbit.oak.spi.query.PropertyValues;
 import org.apache.jackrabbit.oak.spi.query.QueryIndex;
 import org.apache.jackrabbit.oak.spi.query.QueryIndex.AdvancedQueryIndex;
 import org.apache.jackrabbit.oak.spi.query.QueryIndex.IndexPlan;
+import org.apache.jackrabbit.oak.spi.query.QueryIndex.NamedPlanQueryIndex;
 import org.apache.jackrabbit.oak.spi.query.QueryIndex.OrderEntry;
 import org.apache.jackrabbit.oak.spi.query.QueryIndex.OrderEntry.Order;
 import org.apache.jackrabbit.oak.spi.query.QueryIndexProvider;
@@ -195,6 +200,11 @@ public class QueryImpl implements Query {
 
     private boolean isInternal;
 
+    /**
+     * The key of this query in the plan cache, computed on first use
+     */
+    private String planCacheKey;
+
     QueryImpl(String statement, SourceImpl source, ConstraintImpl constraint,
         ColumnImpl[] columns, NamePathMapper mapper, QueryEngineSettings settings) {
         this.statement = statement;
@@ -953,6 +963,88 @@ public class QueryImpl implements Query {
     private SelectorExecutionPlan getBestSelectorExecutionPlan(
             NodeState rootState, FilterImpl filter,
             QueryIndexProvider indexProvider, boolean traversalEnabled) {
+        // Sort the indexes according to their minimum cost to be able to skip the remaining indexes if the cost of the
+        // current index is below the minimum cost of the next index.
+        List<? extends QueryIndex> queryIndexes = MINIMAL_COST_ORDERING
+                .sortedCopy(indexProvider.getQueryIndexes(rootState));
+
+        QueryPlanCache planCache = settings.getPlanCache();
+        String cacheKey = getPlanCacheKey(planCache);
+        if (cacheKey == null) {
+            return getBestSelectorExecutionPlan(rootState, filter, queryIndexes, traversalEnabled, null);
+        }
+
+        long start = System.nanoTime();
+        CachedPlan cached = planCache.get(cacheKey);
+        if (cached != null) {
+            // only ask the index (and index definition) chosen before, as
+            // long as it can still answer the query
+            String indexName = cached.getIndexName();
+            List<QueryIndex> cachedIndexes = new ArrayList<QueryIndex>();
+            for (QueryIndex index : queryIndexes) {
+                if (indexName.equals(index.getIndexName())) {
+                    cachedIndexes.add(index);
+                }
+            }
+            boolean traversal = traversalEnabled && TraversingIndex.NAME.equals(indexName);
+            if (!cachedIndexes.isEmpty() || traversal) {
+                SelectorExecutionPlan plan = getBestSelectorExecutionPlan(
+                        rootState, filter, cachedIndexes, traversal, cached.getPlanName());
+                if (plan.getIndex() != null && plan.getEstimatedCost() != Double.POSITIVE_INFINITY) {
+                    planCache.recordPlanning(true, System.nanoTime() - start);
+                    return plan;
+                }
+            }
+        }
+
+        SelectorExecutionPlan plan = getBestSelectorExecutionPlan(
+                rootState, filter, queryIndexes, traversalEnabled, null);
+        if (plan.getIndex() != null && plan.getEstimatedCost() != Double.POSITIVE_INFINITY) {
+            IndexPlan indexPlan = plan.getIndexPlan();
+            planCache.put(cacheKey, plan.getIndex().getIndexName(),
+                    indexPlan == null ? null : indexPlan.getPlanName());
+        }
+        planCache.recordPlanning(false, System.nanoTime() - start);
+        return plan;
+    }
+
+    /**
+     * Get the key of this query in the plan cache. Only the plans of queries
+     * without joins are cached, and not those of explain or measure queries.
+     *
+     * @param planCache the plan cache
+     * @return the key, or {@code null} if the plan is not to be cached
+     */
+    @CheckForNull
+    private String getPlanCacheKey(QueryPlanCache planCache) {
+        if (!planCache.isEnabled() || explain || measure || !(source instanceof SelectorImpl)) {
+            return null;
+        }
+        if (planCacheKey == null) {
+            StringBuilder buff = new StringBuilder(toString());
+            buff.append(" /* traversal: ").append(traversalEnabled);
+            buff.append(", limit: ").append(limit);
+            buff.append(", offset: ").append(offset);
+            for (String name : new TreeSet<String>(bindVariableMap.keySet())) {
+                PropertyValue value = bindVariableMap.get(name);
+                buff.append(", $").append(name).append(": ");
+                buff.append(value == null ? null : value.getType());
+            }
+            planCacheKey = buff.append(" */").toString();
+        }
+        return planCacheKey;
+    }
+
+    /**
+     * Get the best plan of the given indexes.
+     *
+     * @param planName if set, indexes supporting it only plan the index
+     *            definition with this plan name
+     */
+    private SelectorExecutionPlan getBestSelectorExecutionPlan(
+            NodeState rootState, FilterImpl filter,
+            List<? extends QueryIndex> queryIndexes, boolean traversalEnabled,
+            @Nullable String planName) {
         QueryIndex bestIndex = null;
         if (LOG.isDebugEnabled()) {
             logDebug("cost using filter " + filter);
@@ -961,10 +1053,6 @@ public class QueryImpl implements Query {
         double bestCost = Double.POSITIVE_INFINITY;
         IndexPlan bestPlan = null;
 
-        // Sort the indexes according to their minimum cost to be able to skip the remaining indexes if the cost of the
-        // current index is below the minimum cost of the next index.
-        List<? extends QueryIndex> queryIndexes = MINIMAL_COST_ORDERING
-                .sortedCopy(indexProvider.getQueryIndexes(rootState));
         for (int i = 0; i < queryIndexes.size(); i++) {
             QueryIndex index = queryIndexes.get(i);
             double minCost = index.getMinimumCost();
@@ -1013,8 +1101,14 @@ public class QueryImpl implements Query {
                         maxEntryCount = offset + limit;
                     }
                 }
-                List<IndexPlan> ipList = advIndex.getPlans(
-                        filter, sortOrder, rootState);
+                List<IndexPlan> ipList;
+                if (planName != null && advIndex instanceof NamedPlanQueryIndex) {
+                    ipList = ((NamedPlanQueryIndex) advIndex).getPlans(
+                            filter, sortOrder, rootState, planName);
+                } else {
+                    ipList = advIndex.getPlans(
+                            filter, sortOrder, rootState);
+                }
                 cost = Double.POSITIVE_INFINITY;
                 for (IndexPlan p : ipList) {
                     // TODO limit is after all conditions
@@ -0,0 +1,236 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.query;
+
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.Observer;
+import org.apache.jackrabbit.oak.spi.query.QueryIndex;
+import org.apache.jackrabbit.oak.spi.query.QueryIndex.IndexPlan;
+import org.apache.jackrabbit.oak.spi.query.QueryIndex.NamedPlanQueryIndex;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateDiff;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
+
+/**
+ * Cache of the index chosen for the selector of a query, keyed by the
+ * normalized statement and the shape of its bind variables. The cache keeps
+ * the name of the index implementation, and the plan name (the index
+ * definition) of the chosen plan. On a hit only the cached index is asked
+ * for its plans; a {@link NamedPlanQueryIndex} is further only asked for
+ * the plans of the cached definition, instead of costing all of them.
+ * <p>
+ * As the cost of an index may change over time, entries expire after a
+ * while. All entries are dropped when the index definitions below
+ * {@code /oak:index} change, for which this cache needs to be registered
+ * as an {@link Observer}. Changes of index definitions in nested
+ * {@code oak:index} nodes are not observed: a removed nested definition
+ * makes the query be planned again, but a new one is only considered once
+ * the cached entry expired.
+ */
+public class QueryPlanCache implements Observer {
+
+    private final boolean enabled;
+
+    private final Cache<String, CachedPlan> cache;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong planningTime = new AtomicLong();
+
+    private NodeState previousIndexDefinitions;
+
+    /**
+     * @param maxSize        maximum number of cached entries, 0 to disable
+     *                       the cache
+     * @param expirySeconds  number of seconds after which entries expire
+     */
+    public QueryPlanCache(int maxSize, long expirySeconds) {
+        this.enabled = maxSize > 0;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expirySeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * @return  {@code true} if query plans are cached at all
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Get the plan cached for the given key.
+     *
+     * @param key  the cache key
+     * @return  the cached plan or {@code null} if none is cached
+     */
+    @CheckForNull
+    public CachedPlan get(@Nonnull String key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * Record the index chosen for the given key.
+     *
+     * @param key        the cache key
+     * @param indexName  name of the chosen index
+     * @param planName   plan name of the chosen plan, or {@code null}
+     */
+    public void put(@Nonnull String key, @Nonnull String indexName, @Nullable String planName) {
+        cache.put(key, new CachedPlan(indexName, planName));
+    }
+
+    /**
+     * Record the outcome of planning a selector.
+     *
+     * @param hit    whether the plan was based on a cached entry
+     * @param nanos  time taken for planning, in nanoseconds
+     */
+    public void recordPlanning(boolean hit, long nanos) {
+        if (hit) {
+            hitCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+        }
+        planningTime.addAndGet(nanos);
+    }
+
+    /**
+     * Drop all cached entries.
+     */
+    public void invalidate() {
+        cache.invalidateAll();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return  total time spent planning cacheable queries, in milliseconds
+     */
+    public long getPlanningTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(planningTime.get());
+    }
+
+    public long getSize() {
+        return cache.size();
+    }
+
+    //----------------------------------------------------------< Observer >--
+
+    @Override
+    public synchronized void contentChanged(@Nonnull NodeState root, @Nullable CommitInfo info) {
+        NodeState indexDefinitions = root.getChildNode(INDEX_DEFINITIONS_NAME);
+        if (previousIndexDefinitions != null
+                && !indexDefinitions.compareAgainstBaseState(
+                        previousIndexDefinitions, new DefinitionDiff())) {
+            invalidate();
+        }
+        previousIndexDefinitions = indexDefinitions;
+    }
+
+    /**
+     * The index chosen for a query.
+     */
+    public static final class CachedPlan {
+
+        private final String indexName;
+
+        private final String planName;
+
+        CachedPlan(@Nonnull String indexName, @Nullable String planName) {
+            this.indexName = indexName;
+            this.planName = planName;
+        }
+
+        /**
+         * @return  the name of the index, see {@link QueryIndex#getIndexName()}
+         */
+        @Nonnull
+        public String getIndexName() {
+            return indexName;
+        }
+
+        /**
+         * @return  the plan name of the chosen plan, see
+         *          {@link IndexPlan#getPlanName()}, or {@code null}
+         */
+        @CheckForNull
+        public String getPlanName() {
+            return planName;
+        }
+    }
+
+    /**
+     * Diff aborting on the first change that is not within a hidden node,
+     * that is, on the first change of an index definition rather than of
+     * the index content.
+     */
+    private static class DefinitionDiff implements NodeStateDiff {
+
+        @Override
+        public boolean propertyAdded(PropertyState after) {
+            return false;
+        }
+
+        @Override
+        public boolean propertyChanged(PropertyState before, PropertyState after) {
+            return false;
+        }
+
+        @Override
+        public boolean propertyDeleted(PropertyState before) {
+            return false;
+        }
+
+        @Override
+        public boolean childNodeAdded(String name, NodeState after) {
+            return NodeStateUtils.isHidden(name);
+        }
+
+        @Override
+        public boolean childNodeChanged(String name, NodeState before, NodeState after) {
+            return NodeStateUtils.isHidden(name)
+                    || after.compareAgainstBaseState(before, this);
+        }
+
+        @Override
+        public boolean childNodeDeleted(String name, NodeState before) {
+            return NodeStateUtils.isHidden(name);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.query;
+
+import java.text.ParseException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.jackrabbit.oak.query.xpath.XPathToSQL2Converter;
+
+/**
+ * Cache of XPath statements converted to SQL-2. The conversion only
+ * depends on the statement, so the result can be shared by all sessions.
+ * <p>
+ * The parsed SQL-2 query itself is not cached: it holds the bind variable
+ * values and execution state of a single execution, and resolves names and
+ * node types against the session that runs it.
+ */
+public class XPathStatementCache {
+
+    private volatile int maxSize;
+
+    private volatile Cache<String, String> cache;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * @param maxSize  maximum number of cached statements, 0 to disable the
+     *                 cache
+     */
+    public XPathStatementCache(int maxSize) {
+        setMaxSize(maxSize);
+    }
+
+    /**
+     * Change the maximum number of cached statements. The statements cached
+     * so far are dropped.
+     *
+     * @param maxSize  maximum number of cached statements, 0 to disable the
+     *                 cache
+     */
+    public void setMaxSize(int maxSize) {
+        this.cache = CacheBuilder.newBuilder().maximumSize(Math.max(maxSize, 0)).build();
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return  the maximum number of cached statements, 0 if the cache is
+     *          disabled
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Convert the XPath statement to SQL-2, using the cached result if
+     * available.
+     *
+     * @param xpath  the XPath statement
+     * @return  the SQL-2 statement
+     * @throws ParseException  if the statement is not valid
+     */
+    public String convert(String xpath) throws ParseException {
+        Cache<String, String> cache = this.cache;
+        if (maxSize <= 0) {
+            return new XPathToSQL2Converter().convert(xpath);
+        }
+        String sql2 = cache.getIfPresent(xpath);
+        if (sql2 != null) {
+            hitCount.incrementAndGet();
+            return sql2;
+        }
+        missCount.incrementAndGet();
+        sql2 = new XPathToSQL2Converter().convert(xpath);
+        cache.put(xpath, sql2);
+        return sql2;
+    }
+
+    /**
+     * @return  the number of statements taken from the cache
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return  the number of statements that had to be converted
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return  the number of cached statements
+     */
+    public long getSize() {
+        return cache.size();
+    }
+
+}
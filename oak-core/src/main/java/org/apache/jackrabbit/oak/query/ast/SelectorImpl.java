@@ -20,6 +20,7 @@ package org.apache.jackrabbit.oak.query.ast;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Sets.newHashSet;
 import static org.apache.jackrabbit.JcrConstants.JCR_MIXINTYPES;
 import static org.apache.jackrabbit.JcrConstants.JCR_PRIMARYTYPE;
 import static org.apache.jackrabbit.JcrConstants.NT_BASE;
@@ -39,6 +40,7 @@ import org.apache.jackrabbit.oak.api.Tree;
 import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.plugins.memory.PropertyBuilder;
+import org.apache.jackrabbit.oak.query.ExecutionContext;
 import org.apache.jackrabbit.oak.query.QueryImpl;
 import org.apache.jackrabbit.oak.query.fulltext.FullTextExpression;
 import org.apache.jackrabbit.oak.query.index.FilterImpl;
@@ -51,7 +53,10 @@ import org.apache.jackrabbit.oak.spi.query.PropertyValues;
 import org.apache.jackrabbit.oak.spi.query.QueryIndex;
 import org.apache.jackrabbit.oak.spi.query.QueryIndex.AdvancedQueryIndex;
 import org.apache.jackrabbit.oak.spi.query.QueryIndex.IndexPlan;
+import org.apache.jackrabbit.oak.spi.security.authorization.permission.PermissionProvider;
+import org.apache.jackrabbit.oak.spi.security.authorization.permission.TreePermission;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -152,6 +157,19 @@ public class SelectorImpl extends SourceImpl {
     private Cursor cursor;
     private IndexRow currentRow;
     private int scanCount;
+
+    /**
+     * The (oak) names of the properties this selector returns as columns, if
+     * rows can be served from the property values returned by the index, or
+     * null if the node always needs to be read.
+     */
+    private Set<String> coverableColumns;
+
+    /**
+     * Whether the current row is served from the values returned by the
+     * index, without reading the node.
+     */
+    private boolean currentRowCovered;
     
     private Tree lastTree;
     private String lastPath;
@@ -314,6 +332,7 @@ public class SelectorImpl extends SourceImpl {
             cursor = Cursors.newPathCursor(new ArrayList<String>(), query.getSettings());
             return;
         }
+        coverableColumns = getCoverableColumns();
         IndexPlan p = plan.getIndexPlan();
         if (p != null) {
             p.setFilter(createFilter(false));
@@ -420,6 +439,7 @@ public class SelectorImpl extends SourceImpl {
         while (cursor != null && cursor.hasNext()) {
             scanCount++;
             currentRow = cursor.next();
+            currentRowCovered = false;
             if (isParent) {
                 // we must not check whether the _parent_ is readable
                 // for joins of type
@@ -433,6 +453,12 @@ public class SelectorImpl extends SourceImpl {
             } else if (currentRow.isVirtualRow()) {
                 // this is a virtual row and should be selected as is
                 return true;
+            } else if (isCovered(currentRow)) {
+                // all columns are returned by the index, and the session
+                // can read everything, so the node is not read; indexes
+                // only return values if they reflect the root state of
+                // the query, so the node exists and the values are current
+                currentRowCovered = true;
             } else {
                 // we must check whether the _child_ is readable
                 // (even if no properties are read) for joins of type
@@ -480,6 +506,77 @@ public class SelectorImpl extends SourceImpl {
         return true;
     }
 
+    /**
+     * Get the properties this selector returns as columns, if the rows can be
+     * served from property values stored in the index. This is only possible
+     * if the session can read all nodes (so no access check on the node is
+     * needed), and there are no transient changes (which the index can't
+     * see). Properties the index does not return are still read from the
+     * node when needed. Indexes only return values if they are up to date
+     * with the root state of the query; otherwise the node is read as usual.
+     *
+     * @return the (oak) property names, or null if not possible
+     */
+    private Set<String> getCoverableColumns() {
+        if (isParent || !matchesAllTypes) {
+            return null;
+        }
+        ExecutionContext context = query.getExecutionContext();
+        PermissionProvider permissionProvider = context.getPermissionProvider();
+        if (permissionProvider == null || context.getRoot() == null
+                || context.getRoot().hasPendingChanges()) {
+            return null;
+        }
+        Tree root = query.getTree("/");
+        if (root == null || !permissionProvider.getTreePermission(
+                root, TreePermission.EMPTY).canReadAll()) {
+            return null;
+        }
+        Set<String> names = newHashSet();
+        for (ColumnImpl c : query.getColumns()) {
+            if (c.getSelector() != this) {
+                continue;
+            }
+            if (NodeStateUtils.isHidden(c.getPropertyName())) {
+                // internal column, such as the one for rep:spellcheck()
+                return null;
+            }
+            String pn = normalizePropertyName(c.getPropertyName());
+            if (pn.indexOf('*') >= 0 || pn.indexOf('/') >= 0) {
+                return null;
+            }
+            if (!isPseudoProperty(pn)) {
+                names.add(pn);
+            }
+        }
+        // if only pseudo-properties are selected, the index
+        // doesn't need to store anything, and reading the node
+        // is what ensures it (still) exists
+        return names.isEmpty() ? null : names;
+    }
+
+    private boolean isCovered(IndexRow row) {
+        if (coverableColumns == null) {
+            return false;
+        }
+        for (String pn : coverableColumns) {
+            if (row.getValue(pn) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPseudoProperty(String oakPropertyName) {
+        return oakPropertyName.equals(QueryImpl.JCR_PATH)
+                || oakPropertyName.equals(QueryImpl.JCR_SCORE)
+                || oakPropertyName.equals(QueryImpl.REP_EXCERPT)
+                || oakPropertyName.equals(QueryImpl.OAK_SCORE_EXPLANATION)
+                || oakPropertyName.equals(QueryImpl.REP_SPELLCHECK)
+                || oakPropertyName.equals(QueryImpl.REP_SUGGEST)
+                || oakPropertyName.startsWith(QueryImpl.REP_FACET);
+    }
+
     private boolean evaluateTypeMatch() {
         Tree tree = getTree(currentRow.getPath());
         if (tree == null || !tree.exists()) {
@@ -624,6 +721,16 @@ public class SelectorImpl extends SourceImpl {
             return PropertyValues.create(s);
         }
         boolean relative = oakPropertyName.indexOf('/') >= 0;
+        if (currentRowCovered && !relative) {
+            PropertyValue result = currentCoveredProperty(oakPropertyName);
+            if (result != null) {
+                if (propertyType != null && result.getType().tag() != propertyType) {
+                    return null;
+                }
+                return result;
+            }
+            // not returned by the index: read the node
+        }
         Tree t = currentTree();
         if (relative) {
             for (String p : PathUtils.elements(PathUtils.getParentPath(oakPropertyName))) {
@@ -643,6 +750,14 @@ public class SelectorImpl extends SourceImpl {
         return currentOakProperty(t, oakPropertyName, propertyType);
     }
     
+    private PropertyValue currentCoveredProperty(String oakPropertyName) {
+        if (oakPropertyName.equals(QueryImpl.JCR_PATH)) {
+            String local = getLocalPath(currentPath());
+            return local == null ? null : PropertyValues.newString(local);
+        }
+        return currentRow.getValue(oakPropertyName);
+    }
+
     private PropertyValue currentOakProperty(Tree t, String oakPropertyName, Integer propertyType) {
         PropertyValue result;
         if ((t == null || !t.exists()) && (currentRow == null || !currentRow.isVirtualRow())) {
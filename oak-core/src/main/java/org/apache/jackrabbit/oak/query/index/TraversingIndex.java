@@ -33,6 +33,11 @@ import org.apache.jackrabbit.oak.spi.state.NodeState;
  */
 public class TraversingIndex implements QueryIndex {
 
+    /**
+     * The name of this index
+     */
+    public static final String NAME = "traverse";
+
     @Override
     public double getMinimumCost() {
         return 0;
@@ -130,7 +135,7 @@ public class TraversingIndex implements QueryIndex {
 
     @Override
     public String getIndexName() {
-        return "traverse";
+        return NAME;
     }
 
 }
@@ -23,20 +23,30 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.Iterables.filter;
 import static com.google.common.collect.Iterables.size;
+import static com.google.common.collect.Maps.filterKeys;
+import static com.google.common.collect.Maps.newHashMap;
 import static com.google.common.collect.Queues.newArrayBlockingQueue;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 import java.io.Closeable;
 import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
 import org.apache.jackrabbit.oak.commons.concurrent.NotifyingFutureTask;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.stats.HistogramStats;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
+import org.apache.jackrabbit.oak.stats.StatsOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,6 +62,20 @@ import org.slf4j.LoggerFactory;
  * the background observer thread has yet to process are optionally
  * (see {@code alwaysCollapseExternalEvents} and {@code oak.observation.alwaysCollapseExternal})
  * automatically merged to just one change.
+ * <p>
+ * Before content changes are dropped, the queue is compacted by merging the
+ * new change into the last queued one if both are external or if both
+ * originate from the same session and carry the same commit information
+ * (apart from their {@link CommitContext}), so that local commit information
+ * is kept for as long as possible. External changes are merged like this early on,
+ * once the queue is filled beyond {@code oak.observation.compactionThreshold}
+ * (fraction of the maximum queue length, default 0.5) or once the observer
+ * lags behind by more than {@code oak.observation.maxLagMillis} (default
+ * 10000). The lag of the last processed change, the maximum lag and the
+ * average time taken to process a change are exposed through the
+ * {@link #getMBean() MBean} of this observer. Optionally the lag of each
+ * change in the queue and the time taken to process it are also recorded
+ * in histograms of a {@link StatisticsProvider}.
  */
 public class BackgroundObserver implements Observer, Closeable {
 
@@ -60,6 +84,18 @@ public class BackgroundObserver implements Observer, Closeable {
      */
     private static final ContentChange STOP = new ContentChange(null, null);
 
+    /**
+     * Fill ratio of the queue from which on external changes are merged
+     */
+    private static final double COMPACTION_THRESHOLD =
+            Double.parseDouble(System.getProperty("oak.observation.compactionThreshold", "0.5"));
+
+    /**
+     * Lag in milliseconds from which on external changes are merged
+     * regardless of the size of the queue
+     */
+    private static final long MAX_LAG_MILLIS = Long.getLong("oak.observation.maxLagMillis", 10000);
+
     /**
      * The receiving observer being notified off the background thread.
      */
@@ -91,9 +127,40 @@ public class BackgroundObserver implements Observer, Closeable {
     private final boolean alwaysCollapseExternalEvents =
             Boolean.parseBoolean(System.getProperty("oak.observation.alwaysCollapseExternal", "false"));
 
+    /**
+     * Time in milliseconds the last processed change spent in the queue
+     */
+    private volatile long lagMillis;
+
+    /**
+     * Maximum time in milliseconds a change spent in the queue
+     */
+    private volatile long maxLagMillis;
+
+    /**
+     * Number of changes processed
+     */
+    private volatile long processedCount;
+
+    /**
+     * Total time in nanoseconds taken to process changes
+     */
+    private volatile long processingNanos;
+
+    /**
+     * Distribution of the time in milliseconds changes spent in the queue
+     */
+    private final HistogramStats lagHistogram;
+
+    /**
+     * Distribution of the time in milliseconds taken to process a change
+     */
+    private final HistogramStats processingHistogram;
+
     private static class ContentChange {
         private final NodeState root;
         private final CommitInfo info;
+        private final long created = System.nanoTime();
         ContentChange(NodeState root, CommitInfo info) {
             this.root = root;
             this.info = info;
@@ -128,7 +195,16 @@ public class BackgroundObserver implements Observer, Closeable {
                 try {
                     ContentChange change = queue.poll();
                     if (change != null && change != STOP) {
+                        long start = System.nanoTime();
+                        lagMillis = NANOSECONDS.toMillis(start - change.created);
+                        maxLagMillis = Math.max(maxLagMillis, lagMillis);
+                        lagHistogram.update(lagMillis);
                         observer.contentChanged(change.root, change.info);
+                        long nanos = System.nanoTime() - start;
+                        // only updated by the one task running at a time
+                        processingNanos += nanos;
+                        processedCount++;
+                        processingHistogram.update(NANOSECONDS.toMillis(nanos));
                         currentTask.onComplete(completionHandler);
                     }
                 } catch (Throwable t) {
@@ -150,16 +226,41 @@ public class BackgroundObserver implements Observer, Closeable {
      */
     private volatile boolean stopped;
 
+    /**
+     * @param observer            observer to forward content changes to
+     * @param executor            executor for forwarding content changes
+     * @param queueLength         maximum length of the change queue
+     * @param exceptionHandler    handler for exceptions of the observer
+     * @param statisticsProvider  provider of the histograms recording lag
+     *                            and processing time
+     * @param name                prefix for the names of the histograms, should
+     *                            identify the observer
+     */
     public BackgroundObserver(
             @Nonnull Observer observer,
             @Nonnull Executor executor,
             int queueLength,
-            @Nonnull UncaughtExceptionHandler exceptionHandler) {
+            @Nonnull UncaughtExceptionHandler exceptionHandler,
+            @Nonnull StatisticsProvider statisticsProvider,
+            @Nonnull String name) {
         this.observer = checkNotNull(observer);
         this.executor = checkNotNull(executor);
         this.exceptionHandler = checkNotNull(exceptionHandler);
         this.maxQueueLength = queueLength;
         this.queue = newArrayBlockingQueue(maxQueueLength);
+        this.lagHistogram = statisticsProvider.getHistogram(
+                name + ".LAG", StatsOptions.METRICS_ONLY);
+        this.processingHistogram = statisticsProvider.getHistogram(
+                name + ".PROCESSING_TIME", StatsOptions.METRICS_ONLY);
+    }
+
+    public BackgroundObserver(
+            @Nonnull Observer observer,
+            @Nonnull Executor executor,
+            int queueLength,
+            @Nonnull UncaughtExceptionHandler exceptionHandler) {
+        this(observer, executor, queueLength, exceptionHandler, StatisticsProvider.NOOP,
+                observer.getClass().getName());
     }
 
     public BackgroundObserver(
@@ -186,6 +287,14 @@ public class BackgroundObserver implements Observer, Closeable {
      */
     protected void added(int queueSize) { }
 
+    /**
+     * @param unit  time unit of the returned value
+     * @return  the time the change last processed spent in the queue
+     */
+    public long getLag(@Nonnull TimeUnit unit) {
+        return unit.convert(lagMillis, TimeUnit.MILLISECONDS);
+    }
+
     /**
      * @return  The max queue length used for this observer's queue
      */
@@ -229,6 +338,27 @@ public class BackgroundObserver implements Observer, Closeable {
                 return getMaxQueueLength();
             }
 
+            @Override
+            public long getLagMillis() {
+                return getLag(TimeUnit.MILLISECONDS);
+            }
+
+            @Override
+            public long getMaxLagMillis() {
+                return maxLagMillis;
+            }
+
+            @Override
+            public long getProcessedCount() {
+                return processedCount;
+            }
+
+            @Override
+            public long getAverageProcessingTimeMillis() {
+                long count = processedCount;
+                return count == 0 ? 0 : NANOSECONDS.toMillis(processingNanos / count);
+            }
+
             @Override
             public int getLocalEventCount() {
                 return size(filter(queue, new Predicate<ContentChange>() {
@@ -261,32 +391,33 @@ public class BackgroundObserver implements Observer, Closeable {
         checkState(!stopped);
         checkNotNull(root);
 
-        if (alwaysCollapseExternalEvents && info == null && last != null && last.info == null) {
-            // This is an external change. If the previous change was
-            // also external, we can drop it from the queue (since external
-            // changes in any case can cover multiple commits) to help
-            // prevent the queue from filling up too fast.
-            queue.remove(last);
-            full = false;
-        }
-
-        ContentChange change;
         if (full) {
             // If the queue is full, some commits have already been skipped
             // so we need to drop the possible local commit information as
             // only external changes can be merged together to larger chunks.
-            change = new ContentChange(root, null);
-        } else {
-            change = new ContentChange(root, info);
+            info = null;
         }
 
+        if (last != null && canMerge(last.info, info)
+                && ((info == null && shouldCollapseExternal()) || queue.remainingCapacity() == 0)
+                && queue.remove(last)) {
+            // The previous change has not been processed yet and can be
+            // merged with this one: external changes in any case can cover
+            // multiple commits and a full queue would otherwise force us to
+            // drop local commit information.
+            info = merge(last.info, info);
+            full = false;
+        }
+
+        ContentChange change = new ContentChange(root, info);
+
         // Try to add this change to the queue without blocking, and
         // mark the queue as full if there wasn't enough space
         full = !queue.offer(change);
 
         if (!full) {
             // Keep track of the last change added, so we can do the
-            // compacting of external changes shown above.
+            // compacting of changes shown above.
             last = change;
         }
 
@@ -299,6 +430,46 @@ public class BackgroundObserver implements Observer, Closeable {
 
     //------------------------------------------------------------< internal >---
 
+    private boolean shouldCollapseExternal() {
+        return alwaysCollapseExternalEvents
+                || queue.size() >= maxQueueLength * COMPACTION_THRESHOLD
+                || lagMillis > MAX_LAG_MILLIS;
+    }
+
+    /**
+     * Two consecutive changes can be merged if both are external or if both
+     * are local changes of the same session and user with the same commit
+     * information apart from their {@link CommitContext}. Otherwise merging
+     * would attribute the information of the last commit to the previous one.
+     */
+    private static boolean canMerge(@Nullable CommitInfo info1, @Nullable CommitInfo info2) {
+        if (info1 == null || info2 == null) {
+            return info1 == info2;
+        }
+        return info1.getSessionId().equals(info2.getSessionId())
+                && info1.getUserId().equals(info2.getUserId())
+                && withoutContext(info1).equals(withoutContext(info2));
+    }
+
+    /**
+     * Merge the commit information of two consecutive commits, which
+     * {@link #canMerge(CommitInfo, CommitInfo) can be merged}. The
+     * {@link CommitContext} is dropped as it only describes the last
+     * of the commits.
+     */
+    @CheckForNull
+    private static CommitInfo merge(@Nullable CommitInfo previous, @Nullable CommitInfo info) {
+        if (previous == null || info == null) {
+            return null;
+        }
+        return new CommitInfo(info.getSessionId(), info.getUserId(),
+                newHashMap(withoutContext(info)));
+    }
+
+    private static Map<String, Object> withoutContext(@Nonnull CommitInfo info) {
+        return filterKeys(info.getInfo(), Predicates.not(Predicates.equalTo(CommitContext.NAME)));
+    }
+
     private static Logger getLogger(@Nonnull Observer observer) {
         return LoggerFactory.getLogger(checkNotNull(observer).getClass());
     }
@@ -30,5 +30,25 @@ public interface BackgroundObserverMBean {
 
     int getExternalEventCount();
 
+    /**
+     * @return time in milliseconds the last processed change spent in the queue
+     */
+    long getLagMillis();
+
+    /**
+     * @return maximum time in milliseconds a change spent in the queue
+     */
+    long getMaxLagMillis();
+
+    /**
+     * @return number of changes processed so far
+     */
+    long getProcessedCount();
+
+    /**
+     * @return average time in milliseconds taken to process a change
+     */
+    long getAverageProcessingTimeMillis();
+
     String getClassName();
 }
@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.spi.commit;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+/**
+ * A commit context is passed along with a commit in the
+ * {@link CommitInfo#getInfo() info map} under the key {@link #NAME}. It allows
+ * commit hooks to record information about the commit which is then available
+ * to the {@link Observer}s being notified of it.
+ */
+public interface CommitContext {
+
+    /**
+     * Key of the commit context in the info map of a {@code CommitInfo}
+     */
+    String NAME = CommitContext.class.getName();
+
+    /**
+     * Set an attribute, replacing any value previously set for the same name.
+     *
+     * @param name  name of the attribute
+     * @param value value of the attribute
+     */
+    void set(@Nonnull String name, @Nonnull Object value);
+
+    /**
+     * @param name name of the attribute
+     * @return value of the attribute or {@code null} if not set
+     */
+    @CheckForNull
+    Object get(@Nonnull String name);
+
+    /**
+     * Remove an attribute
+     *
+     * @param name name of the attribute
+     */
+    void remove(@Nonnull String name);
+}
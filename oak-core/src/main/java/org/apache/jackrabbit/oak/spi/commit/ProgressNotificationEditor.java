@@ -59,6 +59,23 @@ public class ProgressNotificationEditor implements Editor {
         return editor;
     }
 
+    /**
+     * Wraps the given editor, calling {@code onProgress} with the path of
+     * every node entered.
+     *
+     * @param editor the editor to wrap
+     * @param onProgress the function called for every node entered
+     * @return the wrapped editor or {@code null} if {@code editor} is
+     *          {@code null}
+     */
+    @CheckForNull
+    public static Editor wrap(@CheckForNull Editor editor, Function<String, Void> onProgress) {
+        if (editor != null && !(editor instanceof ProgressNotificationEditor)) {
+            return new ProgressNotificationEditor(editor, "/", onProgress);
+        }
+        return editor;
+    }
+
     private ProgressNotificationEditor(Editor editor, String path, Function<String, Void> onProgress) {
         this.editor = editor;
         this.path = path;
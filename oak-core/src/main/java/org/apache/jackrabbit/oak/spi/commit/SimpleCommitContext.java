@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.spi.commit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Map;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+
+import com.google.common.collect.Maps;
+
+/**
+ * {@code CommitContext} backed by a concurrent map, as attributes set while
+ * committing are read by observers on other threads.
+ */
+public class SimpleCommitContext implements CommitContext {
+    private final Map<String, Object> attrs = Maps.newConcurrentMap();
+
+    @Override
+    public void set(@Nonnull String name, @Nonnull Object value) {
+        attrs.put(checkNotNull(name), checkNotNull(value));
+    }
+
+    @CheckForNull
+    @Override
+    public Object get(@Nonnull String name) {
+        return attrs.get(checkNotNull(name));
+    }
+
+    @Override
+    public void remove(@Nonnull String name) {
+        attrs.remove(checkNotNull(name));
+    }
+
+    @Override
+    public String toString() {
+        return "CommitContext" + attrs;
+    }
+}
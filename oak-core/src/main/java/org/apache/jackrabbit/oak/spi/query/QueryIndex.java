@@ -202,6 +202,30 @@ public interface QueryIndex {
 
     }
 
+    /**
+     * An advanced query index which can restrict planning to the index
+     * definition of a plan it returned before, identified by the plan name.
+     * This allows the query engine to skip costing all other definitions if
+     * the definition to use is already known.
+     */
+    public interface NamedPlanQueryIndex extends AdvancedQueryIndex {
+
+        /**
+         * Return the possible index plans for the given filter and sort order,
+         * considering only the index definition with the given plan name.
+         *
+         * @param filter the filter
+         * @param sortOrder the sort order or null if no sorting is required
+         * @param rootState root state of the current repository snapshot
+         * @param planName the plan name, see {@link IndexPlan#getPlanName()}
+         * @return the list of index plans, empty if the definition does not
+         *         exist or can not be used for the filter
+         */
+        List<IndexPlan> getPlans(Filter filter, List<OrderEntry> sortOrder,
+                NodeState rootState, String planName);
+
+    }
+
     /**
      * An index plan.
      */
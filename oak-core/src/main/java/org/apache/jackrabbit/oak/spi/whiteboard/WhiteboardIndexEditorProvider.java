@@ -24,6 +24,7 @@ import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.jackrabbit.oak.plugins.index.CompositeIndexEditorProvider;
 import org.apache.jackrabbit.oak.plugins.index.IndexEditorProvider;
 import org.apache.jackrabbit.oak.plugins.index.IndexUpdateCallback;
+import org.apache.jackrabbit.oak.plugins.index.PartitionedIndexEditorProvider;
 import org.apache.jackrabbit.oak.spi.commit.Editor;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
@@ -34,7 +35,7 @@ import org.apache.jackrabbit.oak.spi.state.NodeState;
  */
 public class WhiteboardIndexEditorProvider
         extends AbstractServiceTracker<IndexEditorProvider>
-        implements IndexEditorProvider {
+        implements PartitionedIndexEditorProvider {
 
     public WhiteboardIndexEditorProvider() {
         super(IndexEditorProvider.class);
@@ -52,4 +53,18 @@ public class WhiteboardIndexEditorProvider
         return composite.getIndexEditor(type, builder, root, callback);
     }
 
+    @Override
+    public PartitionedReindex getPartitionedReindex(@Nonnull String type,
+            @Nonnull NodeBuilder builder, @Nonnull NodeState root,
+            @Nonnull IndexUpdateCallback callback)
+            throws CommitFailedException {
+        IndexEditorProvider composite = CompositeIndexEditorProvider
+                .compose(getServices());
+        if (composite instanceof PartitionedIndexEditorProvider) {
+            return ((PartitionedIndexEditorProvider) composite)
+                    .getPartitionedReindex(type, builder, root, callback);
+        }
+        return null;
+    }
+
 }
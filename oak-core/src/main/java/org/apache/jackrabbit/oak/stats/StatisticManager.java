@@ -107,6 +107,13 @@ public class StatisticManager {
         return maxQueueLength;
     }
 
+    /**
+     * @return  the provider of the repository wide statistics
+     */
+    public StatisticsProvider getStatisticsProvider() {
+        return repoStats;
+    }
+
     /**
      * Unregister all statistics previously registered with the whiteboard passed
      * to the constructor.
@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.blob;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
+import org.apache.jackrabbit.oak.plugins.document.DocumentBlobReferenceRetriever;
+import org.apache.jackrabbit.oak.plugins.document.DocumentMK;
+import org.apache.jackrabbit.oak.plugins.document.DocumentNodeStore;
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.apache.jackrabbit.oak.spi.blob.GarbageCollectableBlobStore;
+import org.apache.jackrabbit.oak.spi.blob.MemoryBlobStore;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.stats.DefaultStatisticsProvider;
+import org.apache.jackrabbit.oak.stats.StatsOptions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link MarkSweepGarbageCollector}.
+ */
+public class MarkSweepGarbageCollectorTest {
+
+    private DocumentNodeStore store;
+
+    @Before
+    public void setUp() {
+        store = new DocumentMK.Builder()
+                .setDocumentStore(new MemoryDocumentStore())
+                .setAsyncDelay(0)
+                .getNodeStore();
+    }
+
+    @After
+    public void tearDown() {
+        store.dispose();
+    }
+
+    @Test
+    public void parallelSweep() throws Exception {
+        Set<String> referenced = addBlobs(5);
+        GarbageCollectableBlobStore blobStore = (GarbageCollectableBlobStore) store.getBlobStore();
+        // unreferenced blobs
+        for (int i = 0; i < 20; i++) {
+            store.createBlob(randomStream(100 + i, 4096));
+        }
+        Set<String> expected = Sets.newHashSet();
+        for (String id : referenced) {
+            Iterator<String> chunks = blobStore.resolveChunks(id);
+            while (chunks.hasNext()) {
+                expected.add(chunks.next());
+            }
+        }
+        int candidates = Sets.newHashSet(blobStore.getAllChunkIds(0)).size() - expected.size();
+
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            DefaultStatisticsProvider statsProvider = new DefaultStatisticsProvider(executor);
+            MarkSweepGarbageCollector gc = new MarkSweepGarbageCollector(
+                    new DocumentBlobReferenceRetriever(store), blobStore,
+                    MoreExecutors.sameThreadExecutor(), "./target", 2, 0, null);
+            gc.setSweepThreads(4);
+            gc.setMaxDeletesPerSecond(1000);
+            gc.setStatisticsProvider(statsProvider);
+            gc.collectGarbage(false);
+
+            assertEquals(expected, Sets.newHashSet(blobStore.getAllChunkIds(0)));
+            assertEquals(candidates, statsProvider.getMeter(
+                    "BLOB_GC_SWEEP_DELETES", StatsOptions.DEFAULT).getCount());
+            assertEquals(candidates, statsProvider.getMeter(
+                    "BLOB_GC_SWEEP_CANDIDATES", StatsOptions.DEFAULT).getCount());
+            assertTrue(gc.getProgress(), gc.getProgress().contains(
+                    "deleted " + candidates + " of " + candidates + " gc candidates"));
+        } finally {
+            new ExecutorCloser(executor).close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void parallelMarkStopsOnFailure() throws Exception {
+        final AtomicBoolean interrupted = new AtomicBoolean();
+        final BlobReferenceRetriever blocking = new BlobReferenceRetriever() {
+            @Override
+            public void collectReferences(ReferenceCollector collector) {
+                try {
+                    // never returns unless interrupted
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    interrupted.set(true);
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        final BlobReferenceRetriever failing = new BlobReferenceRetriever() {
+            @Override
+            public void collectReferences(ReferenceCollector collector) {
+                throw new IllegalStateException("failed partition");
+            }
+        };
+        PartitionedBlobReferenceRetriever marker = new PartitionedBlobReferenceRetriever() {
+            @Nonnull
+            @Override
+            public List<BlobReferenceRetriever> getPartitions() {
+                return Arrays.asList(blocking, failing);
+            }
+
+            @Override
+            public void collectReferences(ReferenceCollector collector) {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        MarkSweepGarbageCollector gc = new MarkSweepGarbageCollector(
+                marker, (GarbageCollectableBlobStore) store.getBlobStore(),
+                MoreExecutors.sameThreadExecutor(), "./target", 2, 0, null, 2);
+        try {
+            gc.collectGarbage(true);
+            fail("The failed partition must fail the mark phase");
+        } catch (Exception e) {
+            // expected, without waiting for the blocked partition
+        }
+        for (int i = 0; i < 100 && !interrupted.get(); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue("The blocked partition must be interrupted", interrupted.get());
+    }
+
+    @Test(timeout = 10000)
+    public void parallelSweepStopsOnFailure() throws Exception {
+        MemoryBlobStore failing = new MemoryBlobStore() {
+            @Override
+            public long countDeleteChunks(List<String> chunkIds, long maxLastModifiedTime) {
+                // not caught by the sweep, so the worker dies
+                throw new AssertionError("failed sweep");
+            }
+        };
+        DocumentNodeStore failingStore = new DocumentMK.Builder()
+                .setDocumentStore(new MemoryDocumentStore())
+                .setBlobStore(failing)
+                .setAsyncDelay(0)
+                .getNodeStore();
+        try {
+            // more unreferenced batches than the queue of the workers takes
+            for (int i = 0; i < 40; i++) {
+                failingStore.createBlob(randomStream(i, 4096));
+            }
+            MarkSweepGarbageCollector gc = new MarkSweepGarbageCollector(
+                    new DocumentBlobReferenceRetriever(failingStore), failing,
+                    MoreExecutors.sameThreadExecutor(), "./target", 2, 0, null);
+            gc.setSweepThreads(2);
+            try {
+                gc.collectGarbage(false);
+                fail("The failed sweep worker must fail the sweep");
+            } catch (Exception e) {
+                // expected, instead of blocking on the full queue
+            }
+        } finally {
+            failingStore.dispose();
+        }
+    }
+
+    private Set<String> addBlobs(int count) throws Exception {
+        Set<String> ids = Sets.newHashSet();
+        NodeBuilder builder = store.getRoot().builder();
+        for (int i = 0; i < count; i++) {
+            Blob b = store.createBlob(randomStream(i, 4096));
+            builder.child("n" + i).setProperty("b", b);
+            ids.add(b.toString());
+        }
+        store.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        return ids;
+    }
+
+    private static InputStream randomStream(int seed, int size) {
+        Random r = new Random(seed);
+        byte[] data = new byte[size];
+        r.nextBytes(data);
+        return new ByteArrayInputStream(data);
+    }
+}
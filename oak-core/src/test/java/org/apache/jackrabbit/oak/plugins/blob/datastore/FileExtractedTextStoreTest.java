@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.blob.datastore;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.jackrabbit.oak.plugins.index.fulltext.ExtractedText;
+import org.apache.jackrabbit.oak.plugins.index.fulltext.ExtractedText.ExtractionResult;
+import org.apache.jackrabbit.oak.plugins.memory.ArrayBasedBlob;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FileExtractedTextStoreTest {
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void basicOperation() throws Exception {
+        FileExtractedTextStore store = new FileExtractedTextStore(temporaryFolder.getRoot(), 1000);
+        Blob a = new IdBlob("hello", "a");
+        assertNull(store.getText(a));
+
+        store.putText(a, new ExtractedText(ExtractionResult.SUCCESS, "hello world"));
+        ExtractedText text = store.getText(a);
+        assertNotNull(text);
+        assertEquals(ExtractionResult.SUCCESS, text.getExtractionResult());
+        assertEquals("hello world", text.getExtractedText().toString());
+
+        store.putText(new IdBlob("x", "b"), ExtractedText.EMPTY);
+        store.putText(new IdBlob("y", "c"), ExtractedText.ERROR);
+        assertSame(ExtractedText.EMPTY, store.getText(new IdBlob("x", "b")));
+        assertSame(ExtractedText.ERROR, store.getText(new IdBlob("y", "c")));
+        assertEquals(3, store.getEntryCount());
+    }
+
+    @Test
+    public void nonIdBlob() throws Exception {
+        FileExtractedTextStore store = new FileExtractedTextStore(temporaryFolder.getRoot(), 1000);
+        Blob b = new ArrayBasedBlob("hello".getBytes());
+        store.putText(b, new ExtractedText(ExtractionResult.SUCCESS, "hello world"));
+        assertNull(store.getText(b));
+        assertEquals(0, store.getSize());
+    }
+
+    @Test
+    public void textSharedAcrossInstances() throws Exception {
+        File dir = temporaryFolder.getRoot();
+        FileExtractedTextStore store1 = new FileExtractedTextStore(dir, 1000);
+        FileExtractedTextStore store2 = new FileExtractedTextStore(dir, 1000);
+
+        store1.putText(new IdBlob("hello", "a"), new ExtractedText(ExtractionResult.SUCCESS, "hello world"));
+        assertEquals("hello world", store2.getText(new IdBlob("hello", "a")).getExtractedText().toString());
+
+        //A restarted store picks up the existing entries
+        FileExtractedTextStore store3 = new FileExtractedTextStore(dir, 1000);
+        assertEquals(1, store3.getEntryCount());
+        assertEquals(store1.getSize(), store3.getSize());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() throws Exception {
+        FileExtractedTextStore store = new FileExtractedTextStore(temporaryFolder.getRoot(), 100);
+        String text = "0123456789012345678901234567890123456789";
+        store.putText(new IdBlob("a", "a"), new ExtractedText(ExtractionResult.SUCCESS, text));
+        store.putText(new IdBlob("b", "b"), new ExtractedText(ExtractionResult.SUCCESS, text));
+
+        //Access 'a' so that 'b' is the eldest
+        assertNotNull(store.getText(new IdBlob("a", "a")));
+        store.putText(new IdBlob("c", "c"), new ExtractedText(ExtractionResult.SUCCESS, text));
+
+        assertTrue(store.getSize() <= 100);
+        assertEquals(2, store.getEntryCount());
+        assertNotNull(store.getText(new IdBlob("a", "a")));
+        assertNull(store.getText(new IdBlob("b", "b")));
+        assertNotNull(store.getText(new IdBlob("c", "c")));
+    }
+
+    @Test
+    public void sizeSharedAcrossInstances() throws Exception {
+        File dir = temporaryFolder.getRoot();
+        //Rescan the directory on every put
+        FileExtractedTextStore store1 = new FileExtractedTextStore(dir, 100, 0);
+        FileExtractedTextStore store2 = new FileExtractedTextStore(dir, 100, 0);
+        String text = "0123456789012345678901234567890123456789";
+        store1.putText(new IdBlob("a", "a"), new ExtractedText(ExtractionResult.SUCCESS, text));
+        store1.putText(new IdBlob("b", "b"), new ExtractedText(ExtractionResult.SUCCESS, text));
+        store2.putText(new IdBlob("c", "c"), new ExtractedText(ExtractionResult.SUCCESS, text));
+        store1.putText(new IdBlob("d", "d"), new ExtractedText(ExtractionResult.SUCCESS, text));
+
+        //Each store accounts for the entries of the other one
+        assertTrue(FileUtils.sizeOfDirectory(dir) <= 100);
+        assertEquals(FileUtils.sizeOfDirectory(dir), store1.getSize());
+    }
+
+    private static class IdBlob extends ArrayBasedBlob {
+        final String id;
+
+        public IdBlob(String value, String id) {
+            super(value.getBytes());
+            this.id = id;
+        }
+
+        @Override
+        public String getContentIdentity() {
+            return id;
+        }
+    }
+}
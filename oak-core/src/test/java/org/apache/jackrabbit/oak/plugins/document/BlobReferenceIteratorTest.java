@@ -92,4 +92,24 @@ public class BlobReferenceIteratorTest {
         assertEquals(blobs.size(), collectedBlobs.size());
         assertEquals(new HashSet<ReferencedBlob>(blobs), new HashSet<ReferencedBlob>(collectedBlobs));
     }
+
+    @Test
+    public void testBlobIteratorRange() throws Exception{
+        List<ReferencedBlob> blobs = Lists.newArrayList();
+        NodeBuilder b1 = store.getRoot().builder();
+        for(int i = 0; i < 10; i++){
+            Blob b = store.createBlob(randomStream(i, 4096));
+            b1.child("x").child("y" + i).setProperty("b", b);
+            blobs.add(new ReferencedBlob(b, "/x/y" + i));
+        }
+        store.merge(b1, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+
+        // the documents of depth 2 have ids starting with "2:"
+        List<ReferencedBlob> collectedBlobs = ImmutableList.copyOf(
+                store.getReferencedBlobsIterator("2", "3"));
+        assertEquals(new HashSet<ReferencedBlob>(blobs), new HashSet<ReferencedBlob>(collectedBlobs));
+        collectedBlobs = ImmutableList.copyOf(
+                store.getReferencedBlobsIterator("3", NodeDocument.MAX_ID_VALUE));
+        assertEquals(0, collectedBlobs.size());
+    }
 }
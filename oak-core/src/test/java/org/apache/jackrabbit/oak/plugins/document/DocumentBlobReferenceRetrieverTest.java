@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.Iterator;
+import java.util.Set;
+
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.jackrabbit.oak.plugins.blob.BlobReferenceRetriever;
+import org.apache.jackrabbit.oak.plugins.blob.MarkSweepGarbageCollector;
+import org.apache.jackrabbit.oak.plugins.blob.ReferenceCollector;
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.apache.jackrabbit.oak.spi.blob.GarbageCollectableBlobStore;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.apache.jackrabbit.oak.plugins.document.MongoBlobGCTest.randomStream;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DocumentBlobReferenceRetrieverTest {
+
+    private DocumentNodeStore store;
+
+    @Before
+    public void setUp() {
+        store = new DocumentMK.Builder()
+                .setDocumentStore(new MemoryDocumentStore())
+                .setAsyncDelay(0)
+                .getNodeStore();
+    }
+
+    @After
+    public void tearDown() {
+        store.dispose();
+    }
+
+    @Test
+    public void partitionsCoverAllReferences() throws Exception {
+        addBlobs(20);
+
+        DocumentBlobReferenceRetriever retriever = new DocumentBlobReferenceRetriever(store);
+        Set<String> all = collect(retriever);
+        assertEquals(20, all.size());
+
+        Set<String> partitioned = Sets.newHashSet();
+        int count = 0;
+        for (BlobReferenceRetriever partition : retriever.getPartitions()) {
+            Set<String> refs = collect(partition);
+            count += refs.size();
+            partitioned.addAll(refs);
+        }
+        assertEquals(all, partitioned);
+        // partitions must not overlap
+        assertEquals(all.size(), count);
+    }
+
+    @Test
+    public void parallelMark() throws Exception {
+        Set<String> referenced = addBlobs(20);
+        GarbageCollectableBlobStore blobStore = (GarbageCollectableBlobStore) store.getBlobStore();
+        // unreferenced blobs
+        for (int i = 0; i < 5; i++) {
+            store.createBlob(randomStream(100 + i, 4096));
+        }
+
+        DocumentBlobReferenceRetriever retriever = new DocumentBlobReferenceRetriever(store);
+        int partitions = retriever.getPartitions().size();
+        MarkSweepGarbageCollector gc = new MarkSweepGarbageCollector(
+                retriever, blobStore,
+                MoreExecutors.sameThreadExecutor(), "./target", 5, 0, null, 4);
+        gc.collectGarbage(false);
+
+        Set<String> existing = Sets.newHashSet(blobStore.getAllChunkIds(0));
+        Set<String> expected = Sets.newHashSet();
+        for (String id : referenced) {
+            Iterator<String> chunks = blobStore.resolveChunks(id);
+            while (chunks.hasNext()) {
+                expected.add(chunks.next());
+            }
+        }
+        assertEquals(expected, existing);
+        assertTrue(gc.getProgress(), gc.getProgress().contains(
+                partitions + " of " + partitions + " partitions done"));
+    }
+
+    @Test
+    public void partitionsSplitDeepDocuments() throws Exception {
+        // blobs of deep documents below two top level nodes
+        NodeBuilder builder = store.getRoot().builder();
+        for (String name : new String[] {"a", "b"}) {
+            NodeBuilder child = builder.child(name);
+            for (int d = 1; d <= 12; d++) {
+                child = child.child("n" + d);
+                if (d >= 10) {
+                    child.setProperty("b", store.createBlob(randomStream(name.hashCode() + d, 4096)));
+                }
+            }
+        }
+        store.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+
+        // each depth and top level node is collected by its own partition
+        int nonEmpty = 0;
+        for (BlobReferenceRetriever partition : new DocumentBlobReferenceRetriever(store).getPartitions()) {
+            Set<String> refs = collect(partition);
+            assertTrue(refs.size() <= 1);
+            nonEmpty += refs.size();
+        }
+        assertEquals(6, nonEmpty);
+    }
+
+    private Set<String> addBlobs(int count) throws Exception {
+        Set<String> ids = Sets.newHashSet();
+        NodeBuilder builder = store.getRoot().builder();
+        for (int i = 0; i < count; i++) {
+            // spread the blobs over documents of different depth
+            NodeBuilder child = builder;
+            for (int d = 0; d <= i % 12; d++) {
+                child = child.child("n" + d);
+            }
+            Blob b = store.createBlob(randomStream(i, 4096));
+            child.setProperty("b" + i, b);
+            ids.add(b.toString());
+        }
+        store.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        return ids;
+    }
+
+    private static Set<String> collect(BlobReferenceRetriever retriever) {
+        final Set<String> refs = Sets.newHashSet();
+        retriever.collectReferences(new ReferenceCollector() {
+            @Override
+            public void addReference(String reference, String nodeId) {
+                refs.add(reference);
+            }
+        });
+        return refs;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.commons.json.JsopBuilder;
+import org.apache.jackrabbit.oak.commons.json.JsopReader;
+import org.apache.jackrabbit.oak.commons.json.JsopTokenizer;
+import org.apache.jackrabbit.oak.json.JsonSerializer;
+import org.apache.jackrabbit.oak.plugins.memory.AbstractPropertyState;
+import org.apache.jackrabbit.oak.plugins.memory.PropertyStates;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DocumentPropertyStateTest {
+
+    @Rule
+    public DocumentMKBuilderProvider builderProvider = new DocumentMKBuilderProvider();
+
+    @Test
+    public void simpleProperties() {
+        DocumentNodeStore store = builderProvider.newBuilder().getNodeStore();
+        List<PropertyState> props = Lists.newArrayList(
+                PropertyStates.createProperty("p", "value"),
+                PropertyStates.createProperty("p", ""),
+                PropertyStates.createProperty("p", "str:value"),
+                PropertyStates.createProperty("p", "quote\"and\\backslash"),
+                PropertyStates.createProperty("p", "foo", Type.NAME),
+                PropertyStates.createProperty("p", "/foo/bar", Type.PATH),
+                PropertyStates.createProperty("p", "2016-10-16T00:00:00.000Z", Type.DATE),
+                PropertyStates.createProperty("p", 0L),
+                PropertyStates.createProperty("p", -42L),
+                PropertyStates.createProperty("p", Long.MAX_VALUE),
+                PropertyStates.createProperty("p", Long.MIN_VALUE),
+                PropertyStates.createProperty("p", 1.5d),
+                PropertyStates.createProperty("p", true),
+                PropertyStates.createProperty("p", false),
+                PropertyStates.createProperty("p", Lists.newArrayList("a", "b"), Type.STRINGS),
+                PropertyStates.createProperty("p", Lists.<Long>newArrayList(), Type.LONGS));
+        for (PropertyState p : props) {
+            String value = serialize(store, p);
+            DocumentPropertyState dps = new DocumentPropertyState(store, "p", value);
+            assertTrue(value, AbstractPropertyState.equal(p, dps));
+            assertTrue(value, AbstractPropertyState.equal(parse(store, value), dps));
+        }
+    }
+
+    @Test
+    public void readSimpleProperty() {
+        assertNotNull(DocumentPropertyState.readSimpleProperty("p", null, "\"foo\""));
+        assertNotNull(DocumentPropertyState.readSimpleProperty("p", null, "123"));
+        assertNotNull(DocumentPropertyState.readSimpleProperty("p", null, "true"));
+        // values requiring the tokenizer
+        assertNull(DocumentPropertyState.readSimpleProperty("p", null, "\"a\\\"b\""));
+        assertNull(DocumentPropertyState.readSimpleProperty("p", null, "1.5"));
+        assertNull(DocumentPropertyState.readSimpleProperty("p", null, "-"));
+        assertNull(DocumentPropertyState.readSimpleProperty("p", null, "1234567890123456789"));
+        assertNull(DocumentPropertyState.readSimpleProperty("p", null, "[1,2]"));
+    }
+
+    @Test
+    public void getMemory() {
+        DocumentNodeStore store = builderProvider.newBuilder().getNodeStore();
+        DocumentPropertyState p = new DocumentPropertyState(store, "p", "\"value\"");
+        // memory estimate must not depend on the parsed state
+        int memory = p.getMemory();
+        assertEquals("value", p.getValue(Type.STRING));
+        assertEquals(memory, p.getMemory());
+    }
+
+    private static String serialize(DocumentNodeStore store, PropertyState p) {
+        JsopBuilder builder = new JsopBuilder();
+        new JsonSerializer(builder, store.getBlobSerializer()).serialize(p);
+        return builder.toString();
+    }
+
+    private static PropertyState parse(DocumentNodeStore store, String value) {
+        JsopReader reader = new JsopTokenizer(value);
+        if (reader.matches('[')) {
+            return DocumentPropertyState.readArrayProperty("p", store, reader);
+        } else {
+            return DocumentPropertyState.readProperty("p", store, reader);
+        }
+    }
+}
@@ -16,8 +16,12 @@
  */
 package org.apache.jackrabbit.oak.plugins.document;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Nonnull;
 
@@ -29,8 +33,10 @@ import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeStore;
 import org.junit.Test;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -59,6 +65,8 @@ public class ManyChildNodesTest {
         // DocumentNodeStore will use this value to find out if there
         // are more child nodes than requested
         int maxFetchSize = DocumentNodeState.MAX_FETCH_SIZE + 1;
+        // the fetch size grows up to the maximum
+        assertEquals(maxFetchSize, (int) Collections.max(store.queries.values()));
         for (Map.Entry<String, Integer> e : store.queries.entrySet()) {
             assertTrue(e.getValue() + " > " + maxFetchSize,
                     e.getValue() <= maxFetchSize);
@@ -66,6 +74,73 @@ public class ManyChildNodesTest {
         mk.dispose();
     }
     
+    @Test
+    public void prefetchChildNodes() throws Exception {
+        TestStore store = new TestStore();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        DocumentNodeStore ns = new DocumentMK.Builder()
+                .setDocumentStore(store).setExecutor(executor).getNodeStore();
+        ns.setPrefetchChildren(true);
+
+        NodeBuilder builder = ns.getRoot().builder();
+        int numChildren = DocumentNodeState.MAX_FETCH_SIZE * 2;
+        List<String> expected = Lists.newArrayList();
+        for (int i = 0; i < numChildren; i++) {
+            builder.child("c-" + i);
+            expected.add("c-" + i);
+        }
+        ns.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        Collections.sort(expected);
+        store.queries.clear();
+
+        List<String> names = Lists.newArrayList();
+        for (ChildNodeEntry entry : ns.getRoot().getChildNodeEntries()) {
+            names.add(entry.getName());
+        }
+        assertEquals(expected, names);
+        assertTrue("no batch was prefetched", store.backgroundQueries.get() > 0);
+        // a fast consumer makes the fetch size grow
+        assertTrue(Collections.max(store.queries.values()) > DocumentNodeState.INITIAL_FETCH_SIZE + 1);
+        assertEquals(numChildren, ns.getRoot().getChildNodeCount(Long.MAX_VALUE));
+
+        int maxFetchSize = DocumentNodeState.MAX_FETCH_SIZE + 1;
+        for (Map.Entry<String, Integer> e : store.queries.entrySet()) {
+            assertTrue(e.getValue() + " > " + maxFetchSize,
+                    e.getValue() <= maxFetchSize);
+        }
+        ns.dispose();
+        executor.shutdown();
+    }
+
+    @Test
+    public void prefetchSlowConsumer() throws Exception {
+        TestStore store = new TestStore();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        DocumentNodeStore ns = new DocumentMK.Builder()
+                .setDocumentStore(store).setExecutor(executor).getNodeStore();
+        ns.setPrefetchChildren(true);
+
+        NodeBuilder builder = ns.getRoot().builder();
+        int numChildren = DocumentNodeState.INITIAL_FETCH_SIZE * 6;
+        for (int i = 0; i < numChildren; i++) {
+            builder.child("c-" + i);
+        }
+        ns.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        store.queries.clear();
+
+        int count = 0;
+        for (ChildNodeEntry entry : ns.getRoot().getChildNodeEntries()) {
+            count++;
+            Thread.sleep(1);
+        }
+        assertEquals(numChildren, count);
+        // the reads are fast compared to the consumer, so the fetch size
+        // does not need to grow to the maximum
+        assertTrue(Collections.max(store.queries.values()) < DocumentNodeState.MAX_FETCH_SIZE + 1);
+        ns.dispose();
+        executor.shutdown();
+    }
+
     // OAK-2448
     @Test
     public void nodeChildrenCache() throws Exception {
@@ -84,7 +159,11 @@ public class ManyChildNodesTest {
 
     private final class TestStore extends MemoryDocumentStore {
 
-        Map<String, Integer> queries = Maps.newHashMap();
+        Map<String, Integer> queries = Maps.newConcurrentMap();
+
+        AtomicInteger backgroundQueries = new AtomicInteger();
+
+        Thread testThread = Thread.currentThread();
 
         @Nonnull
         @Override
@@ -94,6 +173,9 @@ public class ManyChildNodesTest {
                                                   int limit) {
             if (collection == Collection.NODES) {
                 queries.put(fromKey, limit);
+                if (Thread.currentThread() != testThread) {
+                    backgroundQueries.incrementAndGet();
+                }
             }
             return super.query(collection, fromKey, toKey, limit);
         }
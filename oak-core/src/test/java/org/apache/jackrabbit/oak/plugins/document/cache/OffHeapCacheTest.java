@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.cache;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.Weigher;
+
+import org.apache.jackrabbit.oak.cache.CacheLIRS;
+import org.apache.jackrabbit.oak.cache.CacheLIRS.EvictionCallback;
+import org.apache.jackrabbit.oak.cache.CacheStats;
+import org.apache.jackrabbit.oak.plugins.document.DocumentMK;
+import org.apache.jackrabbit.oak.plugins.document.PathRev;
+import org.apache.jackrabbit.oak.plugins.document.RevisionVector;
+import org.apache.jackrabbit.oak.plugins.document.persistentCache.CacheType;
+import org.apache.jackrabbit.oak.plugins.document.util.StringValue;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OffHeapCacheTest {
+
+    private static final int ENTRIES = 100;
+
+    private final RevisionVector rv = RevisionVector.fromString("r1-0-1");
+
+    @Test
+    public void evictedEntriesServedFromOffHeap() {
+        OffHeapCache<PathRev, StringValue> cache = createCache();
+        for (int i = 0; i < ENTRIES; i++) {
+            cache.put(key(i), new StringValue("value-" + i));
+        }
+        assertTrue(cache.getOffHeapCacheStats().getElementCount() > 0);
+        for (int i = 0; i < ENTRIES; i++) {
+            StringValue v = cache.getIfPresent(key(i));
+            assertNotNull("missing entry " + i, v);
+            assertEquals("value-" + i, v.toString());
+        }
+    }
+
+    @Test
+    public void invalidateRemovesOffHeapEntry() {
+        OffHeapCache<PathRev, StringValue> cache = createCache();
+        for (int i = 0; i < ENTRIES; i++) {
+            cache.put(key(i), new StringValue("value-" + i));
+        }
+        // the first entries were moved off-heap
+        cache.invalidate(key(0));
+        assertNull(cache.getIfPresent(key(0)));
+        cache.invalidateAll();
+        assertEquals(0, cache.getOffHeapCacheStats().getElementCount());
+        assertNull(cache.getIfPresent(key(1)));
+    }
+
+    @Test
+    public void arenaBlocksReused() {
+        OffHeapCache<PathRev, StringValue> cache = createCache();
+        for (int i = 0; i < ENTRIES; i++) {
+            cache.put(key(i), new StringValue("value-" + i));
+        }
+        // each small value takes a single block
+        assertEquals(cache.getOffHeapCacheStats().getElementCount(),
+                cache.getOffHeapUsedBlocks());
+
+        // moving entries back to the heap frees their blocks, and evicts
+        // other entries to the reused blocks
+        for (int i = 0; i < ENTRIES; i++) {
+            assertNotNull(cache.getIfPresent(key(i)));
+        }
+        assertEquals(cache.getOffHeapCacheStats().getElementCount(),
+                cache.getOffHeapUsedBlocks());
+
+        cache.invalidateAll();
+        assertEquals(0, cache.getOffHeapUsedBlocks());
+    }
+
+    @Test
+    public void supportedTypes() {
+        assertTrue(OffHeapCache.isSupported(CacheType.NODE));
+        assertTrue(OffHeapCache.isSupported(CacheType.DIFF));
+        assertFalse(OffHeapCache.isSupported(CacheType.DOCUMENT));
+        assertFalse(OffHeapCache.isSupported(CacheType.DOC_CHILDREN));
+    }
+
+    @Test
+    public void largeOffHeapTier() {
+        long gb = 1024L * 1024 * 1024;
+        DocumentMK.Builder builder = new DocumentMK.Builder()
+                .memoryCacheSize(8 * gb)
+                .offHeapCacheSize(16 * gb);
+        builder.buildChildrenCache();
+        CacheStats stats = builder.getOffHeapCacheStats().get(CacheType.CHILDREN);
+        assertNotNull(stats);
+        // the off-heap tier is twice the size of the heap cache
+        assertEquals(2 * builder.getChildrenCacheSize(), stats.getMaxTotalWeight(), 1);
+    }
+
+    private PathRev key(int i) {
+        return new PathRev("/node-" + i, rv);
+    }
+
+    private static OffHeapCache<PathRev, StringValue> createCache() {
+        final AtomicReference<OffHeapCache<PathRev, StringValue>> ref =
+                new AtomicReference<OffHeapCache<PathRev, StringValue>>();
+        CacheLIRS<PathRev, StringValue> heap = new CacheLIRS.Builder<PathRev, StringValue>()
+                .maximumWeight(ENTRIES * 20)
+                .segmentCount(1)
+                .weigher(new Weigher<PathRev, StringValue>() {
+                    @Override
+                    public int weigh(PathRev key, StringValue value) {
+                        return 100;
+                    }
+                })
+                .evictionCallback(new EvictionCallback<PathRev, StringValue>() {
+                    @Override
+                    public void evicted(@Nonnull PathRev key,
+                                        @Nullable StringValue value,
+                                        @Nonnull RemovalCause cause) {
+                        ref.get().evicted(key, value, cause);
+                    }
+                })
+                .build();
+        OffHeapCache<PathRev, StringValue> cache = new OffHeapCache<PathRev, StringValue>(
+                heap, CacheType.DIFF, null, null, 1024 * 1024, 1);
+        ref.set(cache);
+        return cache;
+    }
+}
@@ -20,22 +20,32 @@ package org.apache.jackrabbit.oak.plugins.document.persistentCache;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 import com.google.common.cache.Cache;
+import com.google.common.cache.RemovalCause;
 import org.apache.commons.io.FileUtils;
 import org.apache.jackrabbit.oak.cache.CacheLIRS;
+import org.apache.jackrabbit.oak.cache.CacheLIRS.EvictionCallback;
+import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
 import org.apache.jackrabbit.oak.plugins.document.PathRev;
 import org.apache.jackrabbit.oak.plugins.document.Revision;
 import org.apache.jackrabbit.oak.plugins.document.RevisionVector;
 import org.apache.jackrabbit.oak.plugins.document.util.StringValue;
 import org.apache.jackrabbit.oak.spi.blob.BlobStore;
 import org.apache.jackrabbit.oak.spi.blob.MemoryBlobStore;
+import org.apache.jackrabbit.oak.stats.DefaultStatisticsProvider;
+import org.apache.jackrabbit.oak.stats.StatsOptions;
 import org.junit.Test;
 
 public class CacheTest {
@@ -115,6 +125,65 @@ public class CacheTest {
         }
     }
     
+    @Test
+    public void asyncCache() throws Exception {
+        FileUtils.deleteDirectory(new File("target/cacheTest"));
+        PersistentCache pCache = new PersistentCache("target/cacheTest,size=1,-compress,+async");
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            DefaultStatisticsProvider statsProvider = new DefaultStatisticsProvider(executor);
+            final List<EvictionListener<PathRev, StringValue>> listeners =
+                    new CopyOnWriteArrayList<EvictionListener<PathRev, StringValue>>();
+            CacheLIRS<PathRev, StringValue> cache = new CacheLIRS.Builder<PathRev, StringValue>().
+                    maximumSize(1).segmentCount(1).evictionCallback(new EvictionCallback<PathRev, StringValue>() {
+                        @Override
+                        public void evicted(PathRev key, StringValue value, RemovalCause cause) {
+                            for (EvictionListener<PathRev, StringValue> l : listeners) {
+                                l.evicted(key, value, cause);
+                            }
+                        }
+                    }).build();
+            Cache<PathRev, StringValue> map = pCache.wrap(null, null, cache, CacheType.DIFF, statsProvider);
+            listeners.add((EvictionListener<PathRev, StringValue>) map);
+
+            // write more than the maximum size of a generation, until
+            // the maintenance thread switches the generation
+            String largeString = new String(new char[256 * 1024]);
+            File nextGeneration = new File("target/cacheTest/cache-1.data");
+            int last = 0;
+            long end = System.currentTimeMillis() + 30000;
+            while (!nextGeneration.exists() && System.currentTimeMillis() < end) {
+                map.put(key(last++), new StringValue(largeString));
+                Thread.sleep(10);
+            }
+            assertTrue(nextGeneration.exists());
+
+            // entries evicted from the memory cache are written in the background
+            StringValue value = null;
+            end = System.currentTimeMillis() + 10000;
+            while (value == null && System.currentTimeMillis() < end) {
+                cache.invalidateAll();
+                value = map.getIfPresent(key(last - 2));
+                Thread.sleep(10);
+            }
+            assertNotNull(value);
+            assertEquals(0, pCache.getExceptionCount());
+
+            String name = "PersistentCache.NodeCache.diff.";
+            assertTrue(statsProvider.getHistogram(name + "READ_LATENCY_MICROS",
+                    StatsOptions.METRICS_ONLY).getCount() > 0);
+            assertTrue(statsProvider.getHistogram(name + "WRITE_LATENCY_MICROS",
+                    StatsOptions.METRICS_ONLY).getCount() > 0);
+        } finally {
+            pCache.close();
+            new ExecutorCloser(executor).close();
+        }
+    }
+
+    private static PathRev key(int i) {
+        return new PathRev("/" + i, new RevisionVector(new Revision(0, 0, 1)));
+    }
+
     @Test
     public void interrupt() throws Exception {
         FileUtils.deleteDirectory(new File("target/cacheTest"));
@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document.persistentCache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.oak.cache.CacheLIRS;
+import org.apache.jackrabbit.oak.plugins.document.PathRev;
+import org.apache.jackrabbit.oak.plugins.document.Revision;
+import org.apache.jackrabbit.oak.plugins.document.RevisionVector;
+import org.apache.jackrabbit.oak.plugins.document.util.StringValue;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.cache.Cache;
+
+public class MemoryMappedMapFactoryTest {
+
+    private static final String DIR = "target/mmapCacheTest";
+
+    @Before
+    public void before() throws Exception {
+        FileUtils.deleteDirectory(new File(DIR));
+        new File(DIR).mkdirs();
+    }
+
+    @Test
+    public void putGetRemove() {
+        MapFactory f = open(false, 1024);
+        try {
+            Map<String, String> m = f.openMap("test", null);
+            m.put("a", "1");
+            m.put("b", "2");
+            m.put("a", "3");
+            assertEquals("3", m.get("a"));
+            assertEquals("2", m.get("b"));
+            assertTrue(m.containsKey("b"));
+            m.remove("b");
+            assertNull(m.get("b"));
+            assertFalse(m.containsKey("b"));
+            m.clear();
+            assertNull(m.get("a"));
+        } finally {
+            f.closeStore();
+        }
+    }
+
+    @Test
+    public void reopen() {
+        MapFactory f = open(false, 1024);
+        Map<String, String> m1 = f.openMap("m1", null);
+        Map<String, String> m2 = f.openMap("m2", null);
+        // enough data for a couple of segments
+        String value = new String(new char[100]);
+        for (int i = 0; i < 100; i++) {
+            m1.put("x" + i, value + i);
+            m2.put("x" + i, "y" + i);
+        }
+        m1.remove("x1");
+        long size = f.getFileSize();
+        f.closeStore();
+
+        f = open(true, 1024);
+        try {
+            assertEquals(size, f.getFileSize());
+            m1 = f.openMap("m1", null);
+            m2 = f.openMap("m2", null);
+            assertNull(m1.get("x1"));
+            for (int i = 2; i < 100; i++) {
+                assertEquals(value + i, m1.get("x" + i));
+                assertEquals("y" + i, m2.get("x" + i));
+            }
+            // writes to a read-only generation are ignored
+            m1.put("x1", "z");
+            assertNull(m1.get("x1"));
+        } finally {
+            f.closeStore();
+        }
+    }
+
+    @Test
+    public void iterate() {
+        MapFactory f = open(false, 1024);
+        try {
+            Map<String, String> m = f.openMap("test", null);
+            for (int i = 0; i < 20; i++) {
+                m.put("k" + i, "v" + i);
+            }
+            m.remove("k0");
+            Map<String, String> copy = new HashMap<String, String>(m);
+            assertEquals(19, copy.size());
+            assertEquals("v5", copy.get("k5"));
+            assertFalse(copy.containsKey("k0"));
+            assertEquals(19, m.keySet().size());
+            assertTrue(m.values().contains("v19"));
+
+            Iterator<String> it = m.keySet().iterator();
+            String removed = it.next();
+            it.remove();
+            assertNull(m.get(removed));
+            assertEquals(18, m.size());
+        } finally {
+            f.closeStore();
+        }
+    }
+
+    @Test
+    public void tornRecord() throws Exception {
+        MapFactory f = open(false, 1024);
+        Map<String, String> m = f.openMap("test", null);
+        m.put("a", "1");
+        m.put("b", "2");
+        long size = f.getFileSize();
+        f.closeStore();
+
+        // corrupt the last byte of the last record
+        RandomAccessFile file = new RandomAccessFile(DIR + "/cache-0.mmap", "rw");
+        try {
+            file.seek(size - 1);
+            byte b = file.readByte();
+            file.seek(size - 1);
+            file.writeByte(b + 1);
+        } finally {
+            file.close();
+        }
+
+        f = open(true, 1024);
+        try {
+            m = f.openMap("test", null);
+            assertEquals("1", m.get("a"));
+            assertNull(m.get("b"));
+        } finally {
+            f.closeStore();
+        }
+    }
+
+    @Test
+    public void entryTooLarge() {
+        MapFactory f = open(false, 1024);
+        try {
+            Map<String, String> m = f.openMap("test", null);
+            m.put("a", "small");
+            m.put("a", new String(new char[2048]));
+            // the old entry must not be returned
+            assertNull(m.get("a"));
+        } finally {
+            f.closeStore();
+        }
+    }
+
+    @Test
+    public void persistentCache() throws Exception {
+        PersistentCache pCache = new PersistentCache(DIR + ",mmap");
+        try {
+            CacheLIRS<PathRev, StringValue> cache = new CacheLIRS.Builder<PathRev, StringValue>().
+                    maximumSize(10).build();
+            Cache<PathRev, StringValue> map = pCache.wrap(null, null, cache, CacheType.DIFF);
+            PathRev key = new PathRev("/foo", new RevisionVector(new Revision(0, 0, 1)));
+            map.put(key, new StringValue("bar"));
+            cache.invalidateAll();
+            assertEquals("bar", map.getIfPresent(key).toString());
+            assertTrue(new File(DIR, "cache-0.mmap").exists());
+        } finally {
+            pCache.close();
+        }
+    }
+
+    private static MapFactory open(boolean readOnly, int segmentSize) {
+        MapFactory f = new MemoryMappedMapFactory(DIR + "/cache-0.mmap", readOnly, segmentSize);
+        f.openStore();
+        return f;
+    }
+}
@@ -72,6 +72,7 @@ import org.junit.Test;
 
 import ch.qos.logback.classic.Level;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -130,6 +131,9 @@ public class AsyncIndexUpdateTest {
 
         PropertyIndexLookup lookup = new PropertyIndexLookup(root);
         assertEquals(ImmutableSet.of("testRoot"), find(lookup, "foo", "abc"));
+
+        // the initial run reindexed the content
+        assertTrue(async.getIndexStats().getReindexProgress().startsWith("Traversed"));
     }
 
     /**
@@ -872,6 +876,44 @@ public class AsyncIndexUpdateTest {
         assertEquals(ImmutableSet.of(), find(lookup, "bar", "def"));
     }
 
+    @Test
+    public void taskSplitMultiValuedAsync() throws Exception {
+        MemoryNodeStore store = new MemoryNodeStore();
+        IndexEditorProvider provider = new PropertyIndexEditorProvider();
+
+        NodeBuilder builder = store.getRoot().builder();
+        createIndexDefinition(builder.child(INDEX_DEFINITIONS_NAME),
+                "rootIndex", true, false, ImmutableSet.of("foo"), null)
+                .setProperty(ASYNC_PROPERTY_NAME, "async");
+        createIndexDefinition(builder.child(INDEX_DEFINITIONS_NAME),
+                "changedIndex", true, false, ImmutableSet.of("bar"), null)
+                .setProperty(ASYNC_PROPERTY_NAME, ImmutableList.of("async", "nrt"), Type.STRINGS);
+        builder.child("testRoot").setProperty("foo", "abc");
+        builder.child("testRoot").setProperty("bar", "abc");
+        store.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+
+        AsyncIndexUpdate async = new AsyncIndexUpdate("async", store, provider);
+        async.run();
+
+        builder = store.getRoot().builder();
+        builder.child("testRoot").setProperty("bar", "def");
+        store.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+
+        async.getTaskSplitter().registerSplit(newHashSet("/oak:index/changedIndex"), "async-slow");
+        async.run();
+
+        NodeState indexNode = store.getRoot().getChildNode(INDEX_DEFINITIONS_NAME);
+        assertEquals("async",
+                indexNode.getChildNode("rootIndex").getString("async"));
+        assertEquals(ImmutableList.of("async-slow", "nrt"), ImmutableList.copyOf(
+                indexNode.getChildNode("changedIndex").getStrings("async")));
+
+        // new index task is on previous checkpoint
+        PropertyIndexLookup lookup = new PropertyIndexLookup(store.getRoot());
+        assertEquals(ImmutableSet.of("testRoot"), find(lookup, "bar", "abc"));
+        assertEquals(ImmutableSet.of(), find(lookup, "bar", "def"));
+    }
+
     @Test
     public void taskSplitNoMatch() throws Exception {
         MemoryNodeStore store = new MemoryNodeStore();
@@ -16,14 +16,18 @@
  */
 package org.apache.jackrabbit.oak.plugins.index;
 
+import static java.util.Arrays.asList;
 import static org.apache.jackrabbit.JcrConstants.NT_BASE;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.ASYNC_PROPERTY_NAME;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.ASYNC_REINDEX_VALUE;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_CONTENT_NODE_NAME;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEXING_MODE_NRT;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.REINDEX_ASYNC_PROPERTY_NAME;
 import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.REINDEX_PROPERTY_NAME;
 import static org.apache.jackrabbit.oak.plugins.index.IndexUtils.createIndexDefinition;
+import static org.apache.jackrabbit.oak.plugins.index.IndexUtils.getAsyncLaneName;
+import static org.apache.jackrabbit.oak.plugins.index.IndexUtils.isNRTIndex;
 import static org.apache.jackrabbit.oak.plugins.nodetype.write.InitialContent.INITIAL_CONTENT;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -52,8 +56,10 @@ import org.apache.jackrabbit.oak.query.ast.SelectorImpl;
 import org.apache.jackrabbit.oak.query.index.FilterImpl;
 import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
 import org.apache.jackrabbit.oak.spi.commit.Editor;
+import org.apache.jackrabbit.oak.spi.commit.EditorDiff;
 import org.apache.jackrabbit.oak.spi.commit.EditorHook;
 import org.apache.jackrabbit.oak.spi.commit.EditorProvider;
+import org.apache.jackrabbit.oak.spi.commit.VisibleEditor;
 import org.apache.jackrabbit.oak.spi.query.Filter;
 import org.apache.jackrabbit.oak.spi.query.PropertyValues;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
@@ -364,6 +370,37 @@ public class IndexUpdateTest {
         "abc"));
     }
 
+    /**
+     * An index with a multi-valued async property like {@code [async, nrt]}
+     * belongs to the named lane and must not be updated synchronously
+     */
+    @Test
+    public void nrtIndexUpdatedByAsyncLane() throws Exception {
+        IndexEditorProvider provider = new PropertyIndexEditorProvider();
+        EditorHook hook = new EditorHook(new IndexUpdateProvider(provider));
+
+        NodeStore store = new MemoryNodeStore();
+        NodeBuilder builder = store.getRoot().builder();
+
+        createIndexDefinition(builder.child(INDEX_DEFINITIONS_NAME),
+                "rootIndex", true, false, ImmutableSet.of("foo"), null)
+                .setProperty(ASYNC_PROPERTY_NAME, asList("async", INDEXING_MODE_NRT), Type.STRINGS);
+        builder.child("testRoot").setProperty("foo", "abc");
+        store.merge(builder, hook, CommitInfo.EMPTY);
+
+        NodeState ns = checkPathExists(store.getRoot(), INDEX_DEFINITIONS_NAME, "rootIndex");
+        assertFalse(ns.hasChildNode(INDEX_CONTENT_NODE_NAME));
+        assertEquals("async", getAsyncLaneName(ns.getProperty(ASYNC_PROPERTY_NAME)));
+        assertTrue(isNRTIndex(ns.getProperty(ASYNC_PROPERTY_NAME)));
+
+        new AsyncIndexUpdate("async", store, provider).run();
+
+        ns = checkPathExists(store.getRoot(), INDEX_DEFINITIONS_NAME, "rootIndex");
+        checkPathExists(ns, INDEX_CONTENT_NODE_NAME);
+        PropertyIndexLookup lookup = new PropertyIndexLookup(store.getRoot());
+        assertEquals(ImmutableSet.of("testRoot"), find(lookup, "foo", "abc"));
+    }
+
     /**
      * OAK-2203 Test reindex behavior on a sync index when the index provider is missing
      * for a given type
@@ -462,6 +499,74 @@ public class IndexUpdateTest {
                 .getProperty(IndexConstants.REINDEX_COUNT).getValue(Type.LONG);
     }
 
+    @Test
+    public void parallelReindex() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            NodeBuilder parent = builder.child("content").child("c" + i);
+            for (int j = 0; j < 20; j++) {
+                parent.child("n" + j).setProperty("foo", "v" + (j % 3));
+            }
+        }
+        builder.child("other").setProperty("foo", "v0");
+        NodeState before = builder.getNodeState();
+        createIndexDefinition(builder.child(INDEX_DEFINITIONS_NAME),
+                "rootIndex", true, false, ImmutableSet.of("foo"), null);
+        NodeState after = builder.getNodeState();
+
+        NodeState serial = reindex(before, after, 1);
+        NodeState parallel = reindex(before, after, 4);
+
+        PropertyIndexLookup serialLookup = new PropertyIndexLookup(serial);
+        PropertyIndexLookup parallelLookup = new PropertyIndexLookup(parallel);
+        for (String v : new String[]{"v0", "v1", "v2"}) {
+            Set<String> expected = find(serialLookup, "foo", v);
+            assertFalse(expected.isEmpty());
+            assertEquals(expected, find(parallelLookup, "foo", v));
+        }
+        assertTrue(find(parallelLookup, "foo", "v0").contains("other"));
+        assertFalse(checkPathExists(parallel, INDEX_DEFINITIONS_NAME, "rootIndex")
+                .getBoolean(REINDEX_PROPERTY_NAME));
+    }
+
+    @Test
+    public void reindexProgressStopped() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            builder.child("content").child("c" + i).setProperty("foo", "v");
+        }
+        NodeState before = builder.getNodeState();
+        createIndexDefinition(builder.child(INDEX_DEFINITIONS_NAME),
+                "rootIndex", true, false, ImmutableSet.of("foo"), null);
+        NodeState after = builder.getNodeState();
+
+        for (int threads : new int[]{1, 4}) {
+            ReindexProgress progress = new ReindexProgress();
+            reindex(before, after, threads, progress);
+            assertFalse(progress.isRunning());
+            assertTrue(progress.getTraversedNodes() > 0);
+            assertFalse(progress.toString(), progress.toString().contains("ETA"));
+        }
+    }
+
+    private static NodeState reindex(NodeState before, NodeState after,
+                                     int threads) throws CommitFailedException {
+        return reindex(before, after, threads, null);
+    }
+
+    private static NodeState reindex(NodeState before, NodeState after,
+                                     int threads, ReindexProgress progress)
+            throws CommitFailedException {
+        NodeBuilder builder = after.builder();
+        IndexUpdate update = new IndexUpdate(new PropertyIndexEditorProvider(),
+                null, after, builder, new IndexUpdateCallback() {
+            @Override
+            public void indexUpdate() {
+            }
+        }).withReindexThreads(threads).withReindexProgress(progress);
+        assertNull(EditorDiff.process(VisibleEditor.wrap(update), before, after));
+        assertTrue(update.isReindexingPerformed());
+        return builder.getNodeState();
+    }
+
     private static IndexEditorProvider emptyProvider() {
         return new IndexEditorProvider() {
             @Override
@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index;
+
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_CONTENT_NODE_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexUtils.createIndexDefinition;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.apache.jackrabbit.oak.commons.PathUtils.concat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Sets;
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.plugins.index.PartitionedIndexEditorProvider.PartitionedReindex;
+import org.apache.jackrabbit.oak.plugins.index.property.PropertyIndexEditorProvider;
+import org.apache.jackrabbit.oak.spi.commit.DefaultEditor;
+import org.apache.jackrabbit.oak.spi.commit.Editor;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.Test;
+
+public class ParallelReindexTest {
+
+    @Test
+    public void partition() {
+        NodeBuilder builder = EMPTY_NODE.builder();
+        builder.child(":hidden");
+        builder.child("a");
+        for (int i = 0; i < 10; i++) {
+            builder.child("b").child("c" + i);
+        }
+        List<Set<String>> partitions = ParallelReindex.partition(builder.getNodeState(), 4);
+        assertEquals(4, partitions.size());
+        Set<String> all = Sets.newHashSet();
+        for (Set<String> p : partitions) {
+            assertTrue(p.size() > 0);
+            for (String path : p) {
+                assertTrue("duplicate " + path, all.add(path));
+            }
+        }
+        // 'b' was split into its children
+        assertTrue(all.contains("/a"));
+        assertEquals(11, all.size());
+    }
+
+    @Test
+    public void chunkedReindex() throws Exception {
+        NodeBuilder builder = EMPTY_NODE.builder();
+        for (int i = 0; i < 50; i++) {
+            builder.child("content").child("c" + (i % 5)).child("n" + i)
+                    .setProperty("foo", "v" + (i % 2));
+        }
+        NodeBuilder definition = createIndexDefinition(builder.child(INDEX_DEFINITIONS_NAME),
+                "fooIndex", true, false, ImmutableSet.of("foo"), null);
+        NodeState root = builder.getNodeState();
+
+        ParallelReindex reindex = new ParallelReindex(
+                new PropertyIndexEditorProvider(), root, 2, null);
+        reindex.setChunkSize(7);
+        reindex.add("/oak:index/fooIndex", definition, new IndexUpdateCallback() {
+            @Override
+            public void indexUpdate() {
+            }
+        });
+        reindex.run();
+
+        NodeState index = definition.getNodeState().getChildNode(INDEX_CONTENT_NODE_NAME);
+        for (int i = 0; i < 50; i++) {
+            NodeState n = index.getChildNode("v" + (i % 2)).getChildNode("content")
+                    .getChildNode("c" + (i % 5)).getChildNode("n" + i);
+            assertTrue("n" + i + " not indexed", n.getBoolean("match"));
+        }
+    }
+
+    @Test
+    public void partitionedReindex() throws Exception {
+        NodeBuilder builder = EMPTY_NODE.builder();
+        for (int i = 0; i < 50; i++) {
+            builder.child("content").child("c" + (i % 5)).child("n" + i);
+        }
+        NodeState root = builder.getNodeState();
+
+        TestPartitionedReindex partitioned = new TestPartitionedReindex();
+        ParallelReindex reindex = new ParallelReindex(
+                new PropertyIndexEditorProvider(), root, 3, null);
+        reindex.add("/oak:index/test", partitioned, new IndexUpdateCallback() {
+            @Override
+            public void indexUpdate() {
+            }
+        });
+        reindex.run();
+
+        assertTrue(partitioned.partitions.get() > 1);
+        assertEquals(1, partitioned.merged.get());
+        assertTrue(partitioned.closed);
+        // every node is indexed exactly once
+        assertEquals(1 + 1 + 5 + 50, partitioned.indexed.size());
+        assertEquals(partitioned.indexed.size(), partitioned.indexed.elementSet().size());
+        // the editors see all children of the ancestors
+        assertFalse(partitioned.incomplete);
+    }
+
+    @Test
+    public void partitionEmpty() {
+        List<Set<String>> partitions = ParallelReindex.partition(EMPTY_NODE, 4);
+        assertEquals(1, partitions.size());
+        assertTrue(partitions.get(0).isEmpty());
+    }
+
+    private static class TestPartitionedReindex implements PartitionedReindex {
+
+        final AtomicInteger partitions = new AtomicInteger();
+
+        final AtomicInteger merged = new AtomicInteger();
+
+        final Multiset<String> indexed = ConcurrentHashMultiset.create();
+
+        volatile boolean incomplete;
+
+        volatile boolean closed;
+
+        @Nonnull
+        @Override
+        public Editor getPartitionEditor(@Nonnull Predicate<String> owned,
+                                         @Nonnull IndexUpdateCallback callback) {
+            partitions.incrementAndGet();
+            return new TestEditor("/", owned);
+        }
+
+        @Override
+        public void merge() {
+            merged.incrementAndGet();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        private class TestEditor extends DefaultEditor {
+
+            private final String path;
+
+            private final Predicate<String> owned;
+
+            TestEditor(String path, Predicate<String> owned) {
+                this.path = path;
+                this.owned = owned;
+            }
+
+            @Override
+            public void leave(NodeState before, NodeState after) {
+                if (path.equals("/content") && after.getChildNodeCount(10) != 5) {
+                    incomplete = true;
+                }
+                if (owned.apply(path)) {
+                    indexed.add(path);
+                }
+            }
+
+            @Override
+            public Editor childNodeAdded(String name, NodeState after)
+                    throws CommitFailedException {
+                return new TestEditor(concat(path, name), owned);
+            }
+        }
+    }
+}
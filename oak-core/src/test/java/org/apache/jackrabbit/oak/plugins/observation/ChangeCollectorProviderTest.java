@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.observation;
+
+import static com.google.common.collect.Sets.newHashSet;
+import static org.apache.jackrabbit.JcrConstants.JCR_MIXINTYPES;
+import static org.apache.jackrabbit.JcrConstants.JCR_PRIMARYTYPE;
+import static org.apache.jackrabbit.JcrConstants.NT_UNSTRUCTURED;
+import static org.apache.jackrabbit.oak.api.Type.NAME;
+import static org.apache.jackrabbit.oak.api.Type.NAMES;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.apache.jackrabbit.oak.Oak;
+import org.apache.jackrabbit.oak.api.ContentSession;
+import org.apache.jackrabbit.oak.api.Root;
+import org.apache.jackrabbit.oak.api.Tree;
+import org.apache.jackrabbit.oak.plugins.nodetype.write.InitialContent;
+import org.apache.jackrabbit.oak.spi.commit.CommitContext;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EditorHook;
+import org.apache.jackrabbit.oak.spi.commit.Observer;
+import org.apache.jackrabbit.oak.spi.commit.SimpleCommitContext;
+import org.apache.jackrabbit.oak.spi.security.OpenSecurityProvider;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.Test;
+
+public class ChangeCollectorProviderTest {
+
+    @Test
+    public void noCommitContext() throws Exception {
+        NodeBuilder builder = EMPTY_NODE.builder();
+        builder.setProperty("p", "v");
+        CommitInfo info = new CommitInfo("s", null);
+        new EditorHook(new ChangeCollectorProvider())
+                .processCommit(EMPTY_NODE, builder.getNodeState(), info);
+
+        assertNull(ChangeSet.getChangeSet(info));
+    }
+
+    @Test
+    public void collectChanges() throws Exception {
+        NodeBuilder builder = EMPTY_NODE.builder();
+        builder.child("a").setProperty(JCR_PRIMARYTYPE, "nt:folder", NAME);
+        builder.child("a").child("b").setProperty("x", 1);
+        builder.child("c").setProperty("y", 1);
+        builder.child("c").child(":hidden").setProperty("z", 1);
+        NodeState before = builder.getNodeState();
+
+        builder.child("a").child("b").setProperty("x", 2);
+        builder.child("a").child("b2").setProperty(JCR_PRIMARYTYPE, NT_UNSTRUCTURED, NAME);
+        builder.child("a").child("b2").setProperty(JCR_MIXINTYPES,
+                Collections.singleton("mix:title"), NAMES);
+        builder.child("c").remove();
+        ChangeSet changeSet = collect(new ChangeCollectorProvider(), before, builder.getNodeState());
+
+        assertNotNull(changeSet);
+        assertEquals(ImmutableSet.of("/", "/a", "/a/b", "/a/b2", "/c"), changeSet.getParentPaths());
+        assertEquals(ImmutableSet.of("nt:folder", NT_UNSTRUCTURED, "mix:title"),
+                changeSet.getParentNodeTypes());
+        assertEquals(ImmutableSet.of("x", "y", JCR_PRIMARYTYPE, JCR_MIXINTYPES),
+                changeSet.getPropertyNames());
+    }
+
+    @Test
+    public void overflow() throws Exception {
+        NodeBuilder builder = EMPTY_NODE.builder();
+        for (int i = 0; i < 5; i++) {
+            builder.child("n" + i).setProperty("p", "v");
+        }
+        ChangeSet changeSet = collect(new ChangeCollectorProvider(3), EMPTY_NODE, builder.getNodeState());
+
+        assertNotNull(changeSet);
+        assertNull(changeSet.getParentPaths());
+        assertEquals(ImmutableSet.of("p"), changeSet.getPropertyNames());
+    }
+
+    @Test
+    public void maxPathDepth() throws Exception {
+        NodeBuilder builder = EMPTY_NODE.builder();
+        builder.child("a").child("b").child("c").child("d").setProperty("p", "v");
+        builder.child("a").child("b2").setProperty("q", "v");
+        ChangeSet changeSet = collect(new ChangeCollectorProvider(50, 2), EMPTY_NODE, builder.getNodeState());
+
+        assertNotNull(changeSet);
+        assertEquals(2, changeSet.getMaxPathDepth());
+        assertEquals(ImmutableSet.of("/", "/a", "/a/b", "/a/b2"), changeSet.getParentPaths());
+        // property names are still collected below the maximum depth
+        assertEquals(ImmutableSet.of("p", "q"), changeSet.getPropertyNames());
+    }
+
+    @Test
+    public void commitThroughRoot() throws Exception {
+        final AtomicReference<ChangeSet> changeSet = new AtomicReference<ChangeSet>();
+        ContentSession session = new Oak()
+                .with(new OpenSecurityProvider())
+                .with(new InitialContent())
+                .with(new Observer() {
+                    @Override
+                    public void contentChanged(@Nonnull NodeState root, CommitInfo info) {
+                        changeSet.set(ChangeSet.getChangeSet(info));
+                    }
+                })
+                .createContentSession();
+        Root root = session.getLatestRoot();
+        Tree test = root.getTree("/").addChild("test");
+        test.setProperty(JCR_PRIMARYTYPE, NT_UNSTRUCTURED, NAME);
+        test.setProperty("foo", "bar");
+        root.commit();
+
+        assertNotNull(changeSet.get());
+        assertEquals(ImmutableSet.of("/", "/test"), changeSet.get().getParentPaths());
+        assertEquals(ImmutableSet.of(JCR_PRIMARYTYPE, "foo"), changeSet.get().getPropertyNames());
+        // super types are resolved from the node type registry
+        assertTrue(changeSet.get().getParentNodeTypes().containsAll(
+                newHashSet("rep:root", "nt:base", NT_UNSTRUCTURED)));
+    }
+
+    private static ChangeSet collect(ChangeCollectorProvider provider, NodeState before, NodeState after)
+            throws Exception {
+        CommitInfo info = new CommitInfo("s", null, ImmutableMap.<String, Object>of(
+                CommitContext.NAME, new SimpleCommitContext()));
+        new EditorHook(provider).processCommit(before, after, info);
+        return ChangeSet.getChangeSet(info);
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.observation;
+
+import static org.apache.jackrabbit.oak.commons.PathUtils.concat;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.plugins.observation.filter.FilterBuilder;
+import org.apache.jackrabbit.oak.plugins.observation.filter.FilterProvider;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.whiteboard.Registration;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SharedEventDispatcherTest {
+
+    private SharedEventDispatcher dispatcher;
+
+    @Before
+    public void setup() {
+        dispatcher = new SharedEventDispatcher();
+        dispatcher.contentChanged(EMPTY_NODE, CommitInfo.EMPTY);
+    }
+
+    @Test
+    public void fanOut() {
+        TestListener a = new TestListener("/a");
+        TestListener b = new TestListener("/b");
+        dispatcher.addListener("s", a);
+        dispatcher.addListener("s", b);
+
+        NodeBuilder builder = EMPTY_NODE.builder();
+        builder.child("a").child("x").setProperty("p", 1);
+        builder.child("b").child("y");
+        builder.child("c").child("z");
+        builder.child(":hidden").child("h");
+        dispatcher.contentChanged(builder.getNodeState(), new CommitInfo("other", null));
+
+        assertEquals(ImmutableList.of("+/a", "+/a/x", "+/a/x/p"), a.events);
+        assertEquals(ImmutableList.of("+/b", "+/b/y"), b.events);
+        assertEquals(1, a.deliveries);
+        assertEquals(1, b.deliveries);
+    }
+
+    @Test
+    public void excludedCommit() {
+        TestListener a = new TestListener("/a");
+        Registration registration = dispatcher.addListener("s", a);
+
+        NodeBuilder builder = EMPTY_NODE.builder();
+        builder.child("a").child("x");
+        NodeState root = builder.getNodeState();
+        // session local changes are not included by default
+        dispatcher.contentChanged(root, new CommitInfo("s", null));
+        assertEquals(0, a.deliveries);
+        // but the listener still sees the commit
+        assertEquals(1, a.commits);
+
+        builder.child("a").child("y");
+        registration.unregister();
+        dispatcher.contentChanged(builder.getNodeState(), new CommitInfo("other", null));
+        assertEquals(0, a.deliveries);
+        assertEquals(1, a.commits);
+    }
+
+    @Test
+    public void declinedCommit() {
+        TestListener a = new TestListener("/a");
+        TestListener declining = new TestListener("/a") {
+            @Override
+            public EventHandler createHandler(@Nonnull NodeState before, @Nonnull NodeState after,
+                    CommitInfo info) {
+                return null;
+            }
+        };
+        dispatcher.addListener("s", declining);
+        dispatcher.addListener("s", a);
+
+        NodeBuilder builder = EMPTY_NODE.builder();
+        builder.child("a").child("x");
+        dispatcher.contentChanged(builder.getNodeState(), new CommitInfo("other", null));
+
+        assertEquals(ImmutableList.of("+/a", "+/a/x"), a.events);
+        assertEquals(1, a.deliveries);
+        assertEquals(0, declining.deliveries);
+        assertEquals(1, declining.commits);
+    }
+
+    @Test
+    public void failingHandler() {
+        TestListener a = new TestListener("/a");
+        TestListener failing = new TestListener("/a") {
+            @Override
+            public EventHandler createHandler(@Nonnull NodeState before, @Nonnull NodeState after,
+                    CommitInfo info) {
+                return new RecordingHandler("/", events) {
+                    @Override
+                    public void nodeAdded(String name, NodeState after) {
+                        throw new IllegalStateException("failing handler");
+                    }
+                };
+            }
+        };
+        dispatcher.addListener("s", failing);
+        dispatcher.addListener("s", a);
+
+        NodeBuilder builder = EMPTY_NODE.builder();
+        builder.child("a").child("x");
+        dispatcher.contentChanged(builder.getNodeState(), new CommitInfo("other", null));
+
+        assertEquals(ImmutableList.of("+/a", "+/a/x"), a.events);
+        assertEquals(1, a.deliveries);
+        assertEquals(0, failing.deliveries);
+        assertEquals(1, failing.commits);
+    }
+
+    private static class TestListener implements SharedEventDispatcher.Listener {
+        private final FilterProvider provider;
+        final List<String> events = new CopyOnWriteArrayList<String>();
+        private int commits;
+        private int deliveries;
+
+        TestListener(String path) {
+            FilterBuilder builder = new FilterBuilder();
+            provider = builder
+                    .addSubTree(path)
+                    .condition(builder.path(concat(path, "**")))
+                    .build();
+        }
+
+        @Nonnull
+        @Override
+        public FilterProvider getFilterProvider() {
+            return provider;
+        }
+
+        @Override
+        public EventHandler createHandler(@Nonnull NodeState before, @Nonnull NodeState after,
+                CommitInfo info) {
+            return new RecordingHandler("/", events);
+        }
+
+        @Override
+        public void contentChanged(@Nonnull NodeState root, CommitInfo info,
+                EventHandler handler) {
+            commits++;
+            if (handler != null) {
+                deliveries++;
+            }
+        }
+    }
+
+    private static class RecordingHandler extends DefaultEventHandler {
+        private final String path;
+        private final List<String> events;
+
+        RecordingHandler(String path, List<String> events) {
+            this.path = path;
+            this.events = events;
+        }
+
+        @Override
+        public EventHandler getChildHandler(String name, NodeState before, NodeState after) {
+            return new RecordingHandler(concat(path, name), events);
+        }
+
+        @Override
+        public void nodeAdded(String name, NodeState after) {
+            events.add('+' + concat(path, name));
+        }
+
+        @Override
+        public void propertyAdded(PropertyState after) {
+            events.add('+' + concat(path, after.getName()));
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.observation.filter;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import com.google.common.collect.ImmutableSet;
+import org.apache.jackrabbit.oak.plugins.observation.ChangeSet;
+import org.junit.Test;
+
+public class ChangeSetFilterImplTest {
+
+    private static ChangeSet changeSet(String path, String type, String property) {
+        return new ChangeSet(
+                path == null ? null : ImmutableSet.of(path),
+                type == null ? null : ImmutableSet.of(type),
+                property == null ? null : ImmutableSet.of(property));
+    }
+
+    @Test
+    public void paths() {
+        ChangeSetFilter shallow = new ChangeSetFilterImpl(ImmutableSet.of("/a"), false, null, null);
+        ChangeSetFilter deep = new ChangeSetFilterImpl(ImmutableSet.of("/a"), true, null, null);
+
+        assertFalse(shallow.excludes(changeSet("/a", "nt:base", "p")));
+        assertTrue(shallow.excludes(changeSet("/a/b", "nt:base", "p")));
+        assertTrue(shallow.excludes(changeSet("/", "nt:base", "p")));
+        assertFalse(deep.excludes(changeSet("/a/b", "nt:base", "p")));
+        assertTrue(deep.excludes(changeSet("/ab", "nt:base", "p")));
+    }
+
+    @Test
+    public void nodeTypesAndPropertyNames() {
+        ChangeSetFilter filter = new ChangeSetFilterImpl(ImmutableSet.of("/"), true,
+                ImmutableSet.of("nt:file"), ImmutableSet.of("p"));
+
+        assertFalse(filter.excludes(changeSet("/a", "nt:file", "p")));
+        assertTrue(filter.excludes(changeSet("/a", "nt:folder", "p")));
+        assertTrue(filter.excludes(changeSet("/a", "nt:file", "q")));
+    }
+
+    @Test
+    public void truncatedPaths() {
+        ChangeSetFilter filter = new ChangeSetFilterImpl(ImmutableSet.of("/a/b/c"), false, null, null);
+
+        assertFalse(filter.excludes(new ChangeSet(2, ImmutableSet.of("/a/b"), null, null)));
+        assertTrue(filter.excludes(new ChangeSet(2, ImmutableSet.of("/a/x"), null, null)));
+        assertTrue(filter.excludes(new ChangeSet(ImmutableSet.of("/a/b"), null, null)));
+    }
+
+    @Test
+    public void unknownNeverExcludes() {
+        ChangeSetFilter filter = new ChangeSetFilterImpl(ImmutableSet.of("/a"), false,
+                ImmutableSet.of("nt:file"), ImmutableSet.of("p"));
+
+        assertFalse(filter.excludes(changeSet(null, null, null)));
+        assertTrue(filter.excludes(new ChangeSet(Collections.<String>emptySet(), null, null)));
+    }
+}
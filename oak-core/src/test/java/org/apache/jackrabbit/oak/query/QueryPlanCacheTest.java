@@ -0,0 +1,237 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.query;
+
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jackrabbit.oak.Oak;
+import org.apache.jackrabbit.oak.api.ContentRepository;
+import org.apache.jackrabbit.oak.api.PropertyValue;
+import org.apache.jackrabbit.oak.api.ResultRow;
+import org.apache.jackrabbit.oak.api.Tree;
+import org.apache.jackrabbit.oak.plugins.index.property.PropertyIndexEditorProvider;
+import org.apache.jackrabbit.oak.plugins.index.property.PropertyIndexProvider;
+import org.apache.jackrabbit.oak.plugins.nodetype.write.InitialContent;
+import org.apache.jackrabbit.oak.spi.query.Cursor;
+import org.apache.jackrabbit.oak.spi.query.Cursors;
+import org.apache.jackrabbit.oak.spi.query.Filter;
+import org.apache.jackrabbit.oak.spi.query.PropertyValues;
+import org.apache.jackrabbit.oak.spi.query.QueryIndex;
+import org.apache.jackrabbit.oak.spi.query.QueryIndex.IndexPlan;
+import org.apache.jackrabbit.oak.spi.query.QueryIndex.NamedPlanQueryIndex;
+import org.apache.jackrabbit.oak.spi.query.QueryIndex.OrderEntry;
+import org.apache.jackrabbit.oak.spi.query.QueryIndexProvider;
+import org.apache.jackrabbit.oak.spi.security.OpenSecurityProvider;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Tests the {@link QueryPlanCache}.
+ */
+public class QueryPlanCacheTest extends AbstractQueryTest {
+
+    private final QueryEngineSettings settings = new QueryEngineSettings();
+
+    private final DefinitionIndex definitionIndex = new DefinitionIndex();
+
+    @Override
+    protected ContentRepository createRepository() {
+        return new Oak().with(new InitialContent())
+                .with(new OpenSecurityProvider())
+                .with(new PropertyIndexEditorProvider())
+                .with(new PropertyIndexProvider())
+                .with(new QueryIndexProvider() {
+                    @Override
+                    public List<? extends QueryIndex> getQueryIndexes(NodeState nodeState) {
+                        return ImmutableList.of(definitionIndex);
+                    }
+                })
+                .with(settings)
+                .createContentRepository();
+    }
+
+    @Test
+    public void cachedPlan() throws Exception {
+        Tree test = root.getTree("/").addChild("test");
+        test.addChild("a").setProperty("propa", "1");
+        test.addChild("b").setProperty("propa", "2");
+        root.commit();
+
+        QueryPlanCache cache = settings.getPlanCache();
+        String query = "select [jcr:path] from [nt:base] where propa = $v";
+
+        assertQuery(query, ImmutableMap.of("v", PropertyValues.newString("1")), "/test/a");
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getSize());
+
+        // same statement, different value: the cached index is used
+        assertQuery(query, ImmutableMap.of("v", PropertyValues.newString("2")), "/test/b");
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+
+        // a different statement is planned separately
+        assertQuery("select [jcr:path] from [nt:base] where propa = '1'",
+                ImmutableMap.<String, PropertyValue>of(), "/test/a");
+        assertEquals(2, cache.getMissCount());
+        assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    public void invalidateOnIndexChange() throws Exception {
+        Tree test = root.getTree("/").addChild("test");
+        test.addChild("a").setProperty("propa", "1");
+        root.commit();
+
+        QueryPlanCache cache = settings.getPlanCache();
+        assertQuery("select [jcr:path] from [nt:base] where propa = '1'",
+                ImmutableMap.<String, PropertyValue>of(), "/test/a");
+        assertEquals(1, cache.getSize());
+
+        // content changes keep the cached plans
+        test.addChild("b").setProperty("propa", "2");
+        root.commit();
+        assertEquals(1, cache.getSize());
+
+        root.getTree("/").getChild(INDEX_DEFINITIONS_NAME)
+                .getChild(TEST_INDEX_NAME).setProperty("propertyNames", "propa");
+        root.commit();
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void cachedPlanName() throws Exception {
+        Tree test = root.getTree("/").addChild("test");
+        test.addChild("a").setProperty("fake", "1");
+        test.addChild("b").setProperty("fake", "2");
+        root.commit();
+
+        QueryPlanCache cache = settings.getPlanCache();
+        String query = "select [jcr:path] from [nt:base] where fake = $v";
+
+        assertQuery(query, ImmutableMap.of("v", PropertyValues.newString("1")), "/test/a");
+        assertEquals(1, cache.getMissCount());
+        assertTrue(definitionIndex.planned.contains("*"));
+
+        // only the cached definition is planned again
+        definitionIndex.planned.clear();
+        assertQuery(query, ImmutableMap.of("v", PropertyValues.newString("2")), "/test/b");
+        assertEquals(1, cache.getHitCount());
+        assertFalse(definitionIndex.planned.contains("*"));
+        assertTrue(definitionIndex.planned.contains("/def/cheap"));
+        assertFalse(definitionIndex.planned.contains("/def/expensive"));
+    }
+
+    private void assertQuery(String query, Map<String, PropertyValue> bindings,
+            String expected) throws Exception {
+        StringBuilder buff = new StringBuilder();
+        for (ResultRow row : executeQuery(query, SQL2, bindings).getRows()) {
+            buff.append(row.getPath());
+        }
+        assertEquals(expected, buff.toString());
+    }
+
+    /**
+     * An index with two definitions for the property "fake", which records
+     * the plan names it was asked for ("*" for all definitions).
+     */
+    private static class DefinitionIndex implements NamedPlanQueryIndex, QueryIndex {
+
+        final List<String> planned = new ArrayList<String>();
+
+        @Override
+        public List<IndexPlan> getPlans(Filter filter, List<OrderEntry> sortOrder,
+                NodeState rootState) {
+            if (filter.getPropertyRestriction("fake") == null) {
+                return ImmutableList.of();
+            }
+            planned.add("*");
+            return ImmutableList.of(
+                    newPlan(filter, "/def/expensive", 100),
+                    newPlan(filter, "/def/cheap", 1));
+        }
+
+        @Override
+        public List<IndexPlan> getPlans(Filter filter, List<OrderEntry> sortOrder,
+                NodeState rootState, String planName) {
+            if (filter.getPropertyRestriction("fake") == null) {
+                return ImmutableList.of();
+            }
+            planned.add(planName);
+            return ImmutableList.of(newPlan(filter, planName,
+                    "/def/cheap".equals(planName) ? 1 : 100));
+        }
+
+        private static IndexPlan newPlan(Filter filter, String planName, double cost) {
+            return new IndexPlan.Builder()
+                    .setCostPerExecution(cost)
+                    .setCostPerEntry(1)
+                    .setEstimatedEntryCount(2)
+                    .setFilter(filter)
+                    .setPlanName(planName)
+                    .build();
+        }
+
+        @Override
+        public String getPlanDescription(IndexPlan plan, NodeState root) {
+            return plan.getPlanName();
+        }
+
+        @Override
+        public Cursor query(IndexPlan plan, NodeState rootState) {
+            return Cursors.newPathCursor(ImmutableList.of("/test/a", "/test/b"),
+                    new QueryEngineSettings());
+        }
+
+        @Override
+        public double getMinimumCost() {
+            return 1;
+        }
+
+        @Override
+        public double getCost(Filter filter, NodeState rootState) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        @Override
+        public Cursor query(Filter filter, NodeState rootState) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getPlan(Filter filter, NodeState rootState) {
+            return null;
+        }
+
+        @Override
+        public String getIndexName() {
+            return "definition";
+        }
+
+    }
+
+}
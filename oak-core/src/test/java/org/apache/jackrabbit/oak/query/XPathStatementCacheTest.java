@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.text.ParseException;
+
+import org.apache.jackrabbit.oak.query.xpath.XPathToSQL2Converter;
+import org.junit.Test;
+
+/**
+ * Tests the {@link XPathStatementCache}.
+ */
+public class XPathStatementCacheTest {
+
+    private static final String XPATH = "//*[@jcr:primaryType='nt:unstructured']";
+
+    @Test
+    public void cached() throws ParseException {
+        XPathStatementCache cache = new XPathStatementCache(10);
+        String sql2 = cache.convert(XPATH);
+        assertEquals(new XPathToSQL2Converter().convert(XPATH), sql2);
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        assertSame(sql2, cache.convert(XPATH));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getSize());
+    }
+
+    @Test
+    public void invalidStatementNotCached() {
+        XPathStatementCache cache = new XPathStatementCache(10);
+        try {
+            cache.convert("//*[");
+            fail();
+        } catch (ParseException e) {
+            // expected
+        }
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void disabled() throws ParseException {
+        XPathStatementCache cache = new XPathStatementCache(0);
+        cache.convert(XPATH);
+        cache.convert(XPATH);
+        assertEquals(0, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void resize() throws ParseException {
+        QueryEngineSettings settings = new QueryEngineSettings();
+        XPathStatementCache cache = settings.getStatementCache();
+        settings.setStatementCacheSize(10);
+        assertEquals(10, settings.getStatementCacheSize());
+        cache.convert(XPATH);
+        cache.convert(XPATH);
+        assertEquals(1, settings.getStatementCacheHitCount());
+
+        settings.setStatementCacheSize(0);
+        assertEquals(0, cache.getSize());
+        cache.convert(XPATH);
+        assertEquals(1, settings.getStatementCacheHitCount());
+        assertEquals(0, cache.getSize());
+
+        settings.setStatementCacheSize(5);
+        cache.convert(XPATH);
+        assertEquals(1, cache.getSize());
+    }
+
+}
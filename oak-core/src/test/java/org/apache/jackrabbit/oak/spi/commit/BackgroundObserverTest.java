@@ -22,20 +22,34 @@ package org.apache.jackrabbit.oak.spi.commit;
 import static java.util.concurrent.Executors.newFixedThreadPool;
 import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.lang.Thread.UncaughtExceptionHandler;
 import java.util.Collections;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.stats.DefaultStatisticsProvider;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
+import org.apache.jackrabbit.oak.stats.StatsOptions;
 import org.junit.Test;
 
 public class BackgroundObserverTest {
@@ -126,4 +140,149 @@ public class BackgroundObserverTest {
         }, executor, queueLength);
     }
 
+
+    /**
+     * Changes of the same session are merged instead of dropping commit
+     * information once the queue is full.
+     */
+    @Test
+    public void mergeLocalChangesWhenFull() {
+        ManualExecutor executor = new ManualExecutor();
+        RecordingObserver recorder = new RecordingObserver();
+        BackgroundObserver observer = new BackgroundObserver(recorder, executor, 2);
+
+        Map<String, Object> info = ImmutableMap.<String, Object>of(
+                "foo", "bar", CommitContext.NAME, new SimpleCommitContext());
+        for (int k = 1; k <= 4; k++) {
+            observer.contentChanged(node(k), new CommitInfo("s", "u", info));
+        }
+        executor.runAll();
+
+        assertEquals(ImmutableList.of(1L, 4L), recorder.values);
+        for (CommitInfo commitInfo : recorder.infos) {
+            assertNotNull(commitInfo);
+            assertEquals("s", commitInfo.getSessionId());
+        }
+        CommitInfo merged = recorder.infos.get(1);
+        assertEquals("bar", merged.getInfo().get("foo"));
+        assertFalse(merged.getInfo().containsKey(CommitContext.NAME));
+    }
+
+    @Test
+    public void lagExposedOnMBean() throws InterruptedException {
+        ManualExecutor executor = new ManualExecutor();
+        RecordingObserver recorder = new RecordingObserver();
+        BackgroundObserver observer = new BackgroundObserver(recorder, executor, 10);
+        BackgroundObserverMBean mbean = observer.getMBean();
+        assertEquals(0, mbean.getProcessedCount());
+
+        observer.contentChanged(node(1), CommitInfo.EMPTY);
+        Thread.sleep(50);
+        executor.runAll();
+        observer.contentChanged(node(2), CommitInfo.EMPTY);
+        executor.runAll();
+
+        assertEquals(2, mbean.getProcessedCount());
+        assertTrue(mbean.getMaxLagMillis() >= 50);
+        assertTrue(mbean.getLagMillis() <= mbean.getMaxLagMillis());
+    }
+
+    /**
+     * Changes with different commit information are not merged. They are
+     * dropped and covered by an external change once the queue has space again.
+     */
+    @Test
+    public void doNotMergeDifferentInfo() {
+        ManualExecutor executor = new ManualExecutor();
+        RecordingObserver recorder = new RecordingObserver();
+        BackgroundObserver observer = new BackgroundObserver(recorder, executor, 2);
+
+        Map<String, Object> bar = ImmutableMap.<String, Object>of("foo", "bar");
+        Map<String, Object> baz = ImmutableMap.<String, Object>of("foo", "baz");
+        observer.contentChanged(node(1), new CommitInfo("s", "u", bar));
+        observer.contentChanged(node(2), new CommitInfo("s", "u", bar));
+        observer.contentChanged(node(3), new CommitInfo("s", "u", baz));
+        executor.runAll();
+        observer.contentChanged(node(4), new CommitInfo("s", "u", baz));
+        executor.runAll();
+
+        assertEquals(ImmutableList.of(1L, 2L, 4L), recorder.values);
+        assertEquals("bar", recorder.infos.get(1).getInfo().get("foo"));
+        assertNull(recorder.infos.get(2));
+    }
+
+    /**
+     * External changes are merged once the queue is half full
+     */
+    @Test
+    public void collapseExternalChanges() {
+        ManualExecutor executor = new ManualExecutor();
+        RecordingObserver recorder = new RecordingObserver();
+        BackgroundObserver observer = new BackgroundObserver(recorder, executor, 8);
+
+        for (int k = 1; k <= 6; k++) {
+            observer.contentChanged(node(k), null);
+        }
+        executor.runAll();
+
+        assertEquals(ImmutableList.of(1L, 2L, 3L, 6L), recorder.values);
+    }
+
+    @Test
+    public void histograms() {
+        ScheduledExecutorService statsExecutor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            StatisticsProvider statistics = new DefaultStatisticsProvider(statsExecutor);
+            ManualExecutor executor = new ManualExecutor();
+            BackgroundObserver observer = new BackgroundObserver(new RecordingObserver(), executor, 10,
+                    new UncaughtExceptionHandler() {
+                        @Override
+                        public void uncaughtException(Thread t, Throwable e) {
+                            throw new AssertionError(e);
+                        }
+                    }, statistics, "test");
+
+            observer.contentChanged(node(1), COMMIT_INFO);
+            observer.contentChanged(node(2), COMMIT_INFO);
+            executor.runAll();
+
+            assertEquals(2, statistics.getHistogram("test.LAG", StatsOptions.METRICS_ONLY).getCount());
+            assertEquals(2, statistics.getHistogram("test.PROCESSING_TIME", StatsOptions.METRICS_ONLY).getCount());
+        } finally {
+            statsExecutor.shutdown();
+        }
+    }
+
+    private static NodeState node(long value) {
+        return EMPTY_NODE.builder().setProperty("p", value).getNodeState();
+    }
+
+    /**
+     * Executor running its tasks only when asked to
+     */
+    private static class ManualExecutor implements Executor {
+        private final LinkedList<Runnable> tasks = Lists.newLinkedList();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.removeFirst().run();
+            }
+        }
+    }
+
+    private static class RecordingObserver implements Observer {
+        final List<Long> values = Lists.newArrayList();
+        final List<CommitInfo> infos = Lists.newArrayList();
+
+        @Override
+        public void contentChanged(@Nonnull NodeState root, @Nullable CommitInfo info) {
+            values.add(root.getProperty("p").getValue(Type.LONG));
+            infos.add(info);
+        }
+    }
 }
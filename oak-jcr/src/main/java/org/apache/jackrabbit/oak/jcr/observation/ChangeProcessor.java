@@ -22,10 +22,12 @@ import static com.google.common.base.Preconditions.checkState;
 import static org.apache.jackrabbit.api.stats.RepositoryStatistics.Type.OBSERVATION_EVENT_COUNTER;
 import static org.apache.jackrabbit.api.stats.RepositoryStatistics.Type.OBSERVATION_EVENT_DURATION;
 import static org.apache.jackrabbit.oak.plugins.observation.filter.VisibleFilter.VISIBLE_FILTER;
+import static org.apache.jackrabbit.oak.spi.whiteboard.WhiteboardUtils.getService;
 import static org.apache.jackrabbit.oak.spi.whiteboard.WhiteboardUtils.registerMBean;
 import static org.apache.jackrabbit.oak.spi.whiteboard.WhiteboardUtils.registerObserver;
 import static org.apache.jackrabbit.oak.spi.whiteboard.WhiteboardUtils.scheduleWithFixedDelay;
 
+import java.lang.Thread.UncaughtExceptionHandler;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -44,7 +46,11 @@ import org.apache.jackrabbit.api.jmx.EventListenerMBean;
 import org.apache.jackrabbit.commons.observation.ListenerTracker;
 import org.apache.jackrabbit.oak.api.ContentSession;
 import org.apache.jackrabbit.oak.namepath.NamePathMapper;
+import org.apache.jackrabbit.oak.plugins.observation.ChangeSet;
 import org.apache.jackrabbit.oak.plugins.observation.CommitRateLimiter;
+import org.apache.jackrabbit.oak.plugins.observation.EventHandler;
+import org.apache.jackrabbit.oak.plugins.observation.SharedEventDispatcher;
+import org.apache.jackrabbit.oak.plugins.observation.filter.ChangeSetFilter;
 import org.apache.jackrabbit.oak.plugins.observation.filter.EventFilter;
 import org.apache.jackrabbit.oak.plugins.observation.filter.FilterConfigMBean;
 import org.apache.jackrabbit.oak.plugins.observation.filter.FilterProvider;
@@ -59,6 +65,7 @@ import org.apache.jackrabbit.oak.spi.whiteboard.Registration;
 import org.apache.jackrabbit.oak.spi.whiteboard.Whiteboard;
 import org.apache.jackrabbit.oak.spi.whiteboard.WhiteboardExecutor;
 import org.apache.jackrabbit.oak.stats.StatisticManager;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.apache.jackrabbit.oak.stats.MeterStats;
 import org.apache.jackrabbit.oak.stats.TimerStats;
 import org.apache.jackrabbit.oak.util.PerfLogger;
@@ -72,6 +79,15 @@ import org.slf4j.LoggerFactory;
  * <p>
  * After instantiation a {@code ChangeProcessor} must be started in order to start
  * delivering observation events and stopped to stop doing so.
+ * <p>
+ * The commits are queued in a background observer of this change processor,
+ * which delivers the events from a thread of its own. If a
+ * {@link SharedEventDispatcher} is registered with the whiteboard, the
+ * commits are passed to the background observer by that dispatcher, which
+ * diffs each commit only once for all listeners which are not behind.
+ * Otherwise the background observer is registered as an observer by itself.
+ * Either way, commits this change processor did not receive the events for
+ * from the dispatcher are diffed lazily while delivering the events.
  */
 class ChangeProcessor implements Observer {
     private static final Logger LOG = LoggerFactory.getLogger(ChangeProcessor.class);
@@ -98,6 +114,23 @@ class ChangeProcessor implements Observer {
      */
     static final String LISTENER_ID = "listenerId";
 
+    /**
+     * Name of the lag and processing time histograms. These are shared by
+     * all listeners, as statistics cannot be removed again once a listener
+     * is gone. The lag and processing time of each listener are exposed on
+     * its {@link BackgroundObserverMBean}, which is unregistered together
+     * with the listener.
+     */
+    private static final String OBSERVATION_LISTENER_STATS = "OBSERVATION_LISTENER";
+
+    /**
+     * Maximum number of events of a commit a change processor keeps from the
+     * diff of a {@link SharedEventDispatcher}. If a commit has more events,
+     * they are generated lazily while delivering them instead.
+     */
+    private static final int MAX_SHARED_EVENTS =
+            Integer.getInteger("oak.observation.sharedMaxEvents", 1000);
+
     private final ContentSession contentSession;
     private final NamePathMapper namePathMapper;
     private final ListenerTracker tracker;
@@ -106,6 +139,7 @@ class ChangeProcessor implements Observer {
     private final MeterStats eventCount;
     private final TimerStats eventDuration;
     private final TimeSeriesMax maxQueueLength;
+    private final StatisticsProvider statisticsProvider;
     private final int queueLength;
     private final CommitRateLimiter commitRateLimiter;
 
@@ -121,6 +155,12 @@ class ChangeProcessor implements Observer {
 
     private volatile NodeState previousRoot;
 
+    /**
+     * The events of the latest commit received from a
+     * {@link SharedEventDispatcher}, until they are delivered.
+     */
+    private final AtomicReference<SharedEvents> sharedEvents = new AtomicReference<SharedEvents>();
+
     public ChangeProcessor(
             ContentSession contentSession,
             NamePathMapper namePathMapper,
@@ -137,6 +177,7 @@ class ChangeProcessor implements Observer {
         this.eventCount = statisticManager.getMeter(OBSERVATION_EVENT_COUNTER);
         this.eventDuration = statisticManager.getTimer(OBSERVATION_EVENT_DURATION);
         this.maxQueueLength = statisticManager.maxQueLengthRecorder();
+        this.statisticsProvider = statisticManager.getStatisticsProvider();
         this.queueLength = queueLength;
         this.commitRateLimiter = commitRateLimiter;
     }
@@ -159,12 +200,16 @@ class ChangeProcessor implements Observer {
         checkState(registration == null, "Change processor started already");
         final WhiteboardExecutor executor = new WhiteboardExecutor();
         executor.start(whiteboard);
-        final BackgroundObserver observer = createObserver(executor);
         listenerId = COUNTER.incrementAndGet() + "";
+        final BackgroundObserver observer = createObserver(executor);
         Map<String, String> attrs = ImmutableMap.of(LISTENER_ID, listenerId);
         String name = tracker.toString();
+        SharedEventDispatcher dispatcher = getService(whiteboard, SharedEventDispatcher.class);
         registration = new CompositeRegistration(
-            registerObserver(whiteboard, observer),
+            dispatcher != null
+                // FIXME don't rely on toString for session id
+                ? dispatcher.addListener(contentSession.toString(), new DispatcherListener(observer))
+                : registerObserver(whiteboard, observer),
             registerMBean(whiteboard, EventListenerMBean.class,
                     tracker.getListenerMBean(), "EventListener", name, attrs),
             registerMBean(whiteboard, BackgroundObserverMBean.class,
@@ -195,7 +240,14 @@ class ChangeProcessor implements Observer {
     }
 
     private BackgroundObserver createObserver(final WhiteboardExecutor executor) {
-        return new BackgroundObserver(this, executor, queueLength) {
+        UncaughtExceptionHandler exceptionHandler = new UncaughtExceptionHandler() {
+            @Override
+            public void uncaughtException(Thread t, Throwable e) {
+                LOG.error("Uncaught exception in " + ChangeProcessor.this, e);
+            }
+        };
+        return new BackgroundObserver(this, executor, queueLength, exceptionHandler,
+                statisticsProvider, OBSERVATION_LISTENER_STATS) {
             private volatile long delay;
             private volatile boolean blocking;
 
@@ -306,20 +358,15 @@ class ChangeProcessor implements Observer {
                 long start = PERF_LOGGER.start();
                 FilterProvider provider = filterProvider.get();
                 // FIXME don't rely on toString for session id
-                if (provider.includeCommit(contentSession.toString(), info)) {
-                    EventFilter filter = provider.getFilter(previousRoot, root);
-                    EventIterator events = new EventQueue(namePathMapper, info, previousRoot, root,
-                            provider.getSubTrees(), Filters.all(filter, VISIBLE_FILTER));
-
-                    if (events.hasNext() && runningMonitor.enterIf(running)) {
-                        try {
-                            CountingIterator countingEvents = new CountingIterator(events);
-                            eventListener.onEvent(countingEvents);
-                            countingEvents.updateCounters(eventCount, eventDuration);
-                        } finally {
-                            runningMonitor.leave();
-                        }
+                if (provider.includeCommit(contentSession.toString(), info)
+                        && !excludesCommit(provider, info)) {
+                    EventIterator events = takeSharedEvents(provider, root);
+                    if (events == null) {
+                        EventFilter filter = provider.getFilter(previousRoot, root);
+                        events = new EventQueue(namePathMapper, info, previousRoot, root,
+                                provider.getSubTrees(), Filters.all(filter, VISIBLE_FILTER));
                     }
+                    deliver(events);
                 }
                 PERF_LOGGER.end(start, 100,
                         "Generated events (before: {}, after: {})",
@@ -331,6 +378,123 @@ class ChangeProcessor implements Observer {
         previousRoot = root;
     }
 
+    /**
+     * Take the events for the commit from {@code previousRoot} to
+     * {@code root} received from a {@link SharedEventDispatcher}, if any.
+     * Events for a later commit are left in place. Events for this commit
+     * are dropped if they were generated for a different previous root, as
+     * the background observer compacted commits, or for a different filter.
+     */
+    private EventIterator takeSharedEvents(FilterProvider provider, NodeState root) {
+        SharedEvents shared = sharedEvents.get();
+        if (shared != null && shared.after == root) {
+            sharedEvents.compareAndSet(shared, null);
+            if (shared.before == previousRoot && shared.provider == provider) {
+                return shared.events;
+            }
+        }
+        return null;
+    }
+
+    private void deliver(EventIterator events) {
+        if (events.hasNext() && runningMonitor.enterIf(running)) {
+            try {
+                CountingIterator countingEvents = new CountingIterator(events);
+                eventListener.onEvent(countingEvents);
+                countingEvents.updateCounters(eventCount, eventDuration);
+            } finally {
+                runningMonitor.leave();
+            }
+        }
+    }
+
+    /**
+     * The events of a commit generated by the diff of a
+     * {@link SharedEventDispatcher}.
+     */
+    private static class SharedEvents {
+        private final NodeState before;
+        private final NodeState after;
+        private final FilterProvider provider;
+        private final EventQueue events;
+
+        SharedEvents(NodeState before, NodeState after, FilterProvider provider, EventQueue events) {
+            this.before = before;
+            this.after = after;
+            this.provider = provider;
+            this.events = events;
+        }
+    }
+
+    /**
+     * Listener receiving the commits for this change processor from a
+     * {@link SharedEventDispatcher} and passing them on to its background
+     * observer. While the background observer is not behind, this listener
+     * takes part in the diff of the dispatcher and queues up to
+     * {@link #MAX_SHARED_EVENTS} events of the commit for delivery.
+     */
+    private class DispatcherListener implements SharedEventDispatcher.Listener {
+        private final BackgroundObserver observer;
+        private final BackgroundObserverMBean observerMBean;
+
+        /**
+         * The provider and events of the commit currently diffed by the
+         * dispatcher. Only accessed from the thread of the dispatcher.
+         */
+        private FilterProvider provider;
+        private SharedEvents pending;
+
+        DispatcherListener(BackgroundObserver observer) {
+            this.observer = observer;
+            this.observerMBean = observer.getMBean();
+        }
+
+        @Nonnull
+        @Override
+        public FilterProvider getFilterProvider() {
+            provider = filterProvider.get();
+            return provider;
+        }
+
+        @Override
+        public EventHandler createHandler(@Nonnull NodeState before, @Nonnull NodeState after,
+                @Nullable CommitInfo info) {
+            pending = null;
+            if (observerMBean.getQueueSize() > 0) {
+                // behind: diff the commit lazily when delivering it
+                return null;
+            }
+            EventQueue events = new EventQueue(MAX_SHARED_EVENTS);
+            pending = new SharedEvents(before, after, provider, events);
+            return new QueueingHandler(events, new EventFactory(namePathMapper, info), before, after);
+        }
+
+        @Override
+        public void contentChanged(@Nonnull NodeState root, @Nullable CommitInfo info,
+                @Nullable EventHandler handler) {
+            if (handler != null && pending != null && !pending.events.isOverflowed()) {
+                sharedEvents.set(pending);
+            }
+            pending = null;
+            observer.contentChanged(root, info);
+        }
+
+        @Override
+        public String toString() {
+            return tracker.toString();
+        }
+    }
+
+    /**
+     * Check whether the {@link ChangeSet} recorded for a commit allows the
+     * passed filter provider to skip the commit without diffing it.
+     */
+    private static boolean excludesCommit(FilterProvider provider, @Nullable CommitInfo info) {
+        ChangeSet changeSet = ChangeSet.getChangeSet(info);
+        return changeSet != null && provider instanceof ChangeSetFilter
+                && ((ChangeSetFilter) provider).excludes(changeSet);
+    }
+
     private static class CountingIterator implements EventIterator {
         private final long t0 = System.nanoTime();
         private final EventIterator events;
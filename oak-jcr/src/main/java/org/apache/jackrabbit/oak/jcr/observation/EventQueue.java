@@ -47,11 +47,29 @@ class EventQueue implements EventIterator {
 
     private long position = 0;
 
+    private final int maxSize;
+
+    private boolean overflowed;
+
+    /**
+     * Create an initially empty queue, which is filled by a
+     * {@link QueueingHandler} driven from outside of this queue. Once more
+     * than {@code maxSize} events are added, the queue drops all its events
+     * and is {@link #isOverflowed() overflowed}.
+     *
+     * @param maxSize  maximum number of events to hold
+     */
+    EventQueue(int maxSize) {
+        this.generator = new EventGenerator();
+        this.maxSize = maxSize;
+    }
+
     public EventQueue(
             @Nonnull NamePathMapper mapper, CommitInfo info,
             @Nonnull NodeState before, @Nonnull NodeState after,
             @Nonnull Iterable<String> basePaths, @Nonnull EventFilter filter) {
         this.generator = new EventGenerator();
+        this.maxSize = Integer.MAX_VALUE;
         EventFactory factory = new EventFactory(mapper, info);
         EventHandler handler = new FilteredHandler(
                 filter, new QueueingHandler(this, factory, before, after));
@@ -77,7 +95,23 @@ class EventQueue implements EventIterator {
      * Called by the {@link QueueingHandler} to add new events to the queue.
      */
     void addEvent(Event event) {
-        queue.add(event);
+        if (overflowed) {
+            return;
+        }
+        if (queue.size() >= maxSize) {
+            overflowed = true;
+            queue.clear();
+        } else {
+            queue.add(event);
+        }
+    }
+
+    /**
+     * @return  {@code true} if more events than the maximum size of this
+     *          queue were added, in which case the queue is empty
+     */
+    boolean isOverflowed() {
+        return overflowed;
     }
 
     //-----------------------------------------------------< EventIterator >--
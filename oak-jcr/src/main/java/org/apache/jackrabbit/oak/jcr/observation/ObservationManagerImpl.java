@@ -54,6 +54,7 @@ import org.apache.jackrabbit.oak.namepath.NamePathMapper;
 import org.apache.jackrabbit.oak.plugins.nodetype.ReadOnlyNodeTypeManager;
 import org.apache.jackrabbit.oak.plugins.observation.CommitRateLimiter;
 import org.apache.jackrabbit.oak.plugins.observation.ExcludeExternal;
+import org.apache.jackrabbit.oak.plugins.observation.filter.ChangeSetFilterImpl;
 import org.apache.jackrabbit.oak.plugins.observation.filter.FilterBuilder;
 import org.apache.jackrabbit.oak.plugins.observation.filter.FilterBuilder.Condition;
 import org.apache.jackrabbit.oak.plugins.observation.filter.FilterProvider;
@@ -237,6 +238,7 @@ public class ObservationManagerImpl implements JackrabbitObservationManager {
         }
 
         List<Condition> excludeConditions = createExclusions(filterBuilder, excludedPaths);
+        String[] oakNodeTypeNames = validateNodeTypeNames(nodeTypeName);
 
         filterBuilder
             .includeSessionLocal(!noLocal)
@@ -249,8 +251,11 @@ public class ObservationManagerImpl implements JackrabbitObservationManager {
                     filterBuilder.moveSubtree(),
                     filterBuilder.eventType(eventTypes),
                     filterBuilder.uuid(Selectors.PARENT, uuids),
-                    filterBuilder.nodeType(Selectors.PARENT, validateNodeTypeNames(nodeTypeName)),
-                    filterBuilder.accessControl(permissionProviderFactory)));
+                    filterBuilder.nodeType(Selectors.PARENT, oakNodeTypeNames),
+                    filterBuilder.accessControl(permissionProviderFactory)))
+            // skip commits whose change set rules out any of the above matching
+            .setChangeSetFilter(new ChangeSetFilterImpl(includePaths, isDeep,
+                    oakNodeTypeNames == null ? null : newHashSet(oakNodeTypeNames), null));
 
         // FIXME support multiple path in ListenerTracker
         ListenerTracker tracker = new WarningListenerTracker(
@@ -92,11 +92,22 @@ class QueueingHandler extends DefaultEventHandler {
         }
     }
 
+    /**
+     * @return  the queue the events of this handler are added to
+     */
+    EventQueue getQueue() {
+        return queue;
+    }
+
     //-----------------------------------------------------< ChangeHandler >--
 
     @Override
     public EventHandler getChildHandler(
             String name, NodeState before, NodeState after) {
+        if (queue.isOverflowed()) {
+            // no need to look for further events
+            return null;
+        }
         return new QueueingHandler(this, name, before, after);
     }
 
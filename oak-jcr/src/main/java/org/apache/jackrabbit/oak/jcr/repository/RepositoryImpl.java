@@ -20,10 +20,13 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static java.util.Collections.emptyMap;
 import static java.util.Collections.singletonMap;
 import static org.apache.jackrabbit.oak.spi.whiteboard.WhiteboardUtils.registerMBean;
+import static org.apache.jackrabbit.oak.spi.whiteboard.WhiteboardUtils.registerObserver;
 
 import java.io.Closeable;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
@@ -58,9 +61,12 @@ import org.apache.jackrabbit.oak.jcr.session.RefreshStrategy.Composite;
 import org.apache.jackrabbit.oak.jcr.session.SessionContext;
 import org.apache.jackrabbit.oak.jcr.session.SessionStats;
 import org.apache.jackrabbit.oak.plugins.observation.CommitRateLimiter;
+import org.apache.jackrabbit.oak.plugins.observation.SharedEventDispatcher;
+import org.apache.jackrabbit.oak.spi.commit.BackgroundObserver;
 import org.apache.jackrabbit.oak.spi.gc.DelegatingGCMonitor;
 import org.apache.jackrabbit.oak.spi.gc.GCMonitor;
 import org.apache.jackrabbit.oak.spi.security.SecurityProvider;
+import org.apache.jackrabbit.oak.spi.whiteboard.CompositeRegistration;
 import org.apache.jackrabbit.oak.spi.whiteboard.Registration;
 import org.apache.jackrabbit.oak.spi.whiteboard.Whiteboard;
 import org.apache.jackrabbit.oak.stats.Clock;
@@ -89,6 +95,15 @@ public class RepositoryImpl implements JackrabbitRepository {
      */
     public static final String RELAXED_LOCKING = "oak.relaxed-locking";
 
+    /**
+     * Whether the event listeners of all sessions are served by a single
+     * {@link SharedEventDispatcher}, which diffs each commit only once,
+     * instead of each listener diffing the commit on its own. The events
+     * are still delivered by each listener's own background observer.
+     */
+    private static final boolean SHARED_EVENT_DISPATCHER =
+            Boolean.getBoolean("oak.observation.sharedDispatcher");
+
     /**
      * logger instance
      */
@@ -104,6 +119,7 @@ public class RepositoryImpl implements JackrabbitRepository {
     private final Clock.Fast clock;
     private final DelegatingGCMonitor gcMonitor = new DelegatingGCMonitor();
     private final Registration gcMonitorRegistration;
+    private final Registration dispatcherRegistration;
 
     /**
      * {@link ThreadLocal} counter that keeps track of the save operations
@@ -151,6 +167,9 @@ public class RepositoryImpl implements JackrabbitRepository {
         this.clock = new Clock.Fast(scheduledExecutor);
         this.gcMonitorRegistration = whiteboard.register(GCMonitor.class, gcMonitor, emptyMap());
         this.fastQueryResultSize = fastQueryResultSize;
+        this.dispatcherRegistration = SHARED_EVENT_DISPATCHER
+                ? registerEventDispatcher()
+                : null;
     }
 
     //---------------------------------------------------------< Repository >---
@@ -317,6 +336,9 @@ public class RepositoryImpl implements JackrabbitRepository {
 
     @Override
     public void shutdown() {
+        if (dispatcherRegistration != null) {
+            dispatcherRegistration.unregister();
+        }
         statisticManager.dispose();
         gcMonitorRegistration.unregister();
         clock.close();
@@ -362,6 +384,33 @@ public class RepositoryImpl implements JackrabbitRepository {
 
     //------------------------------------------------------------< private >---
 
+    private Registration registerEventDispatcher() {
+        final ExecutorService executor = Executors.newSingleThreadExecutor(
+                new ThreadFactory() {
+            private final AtomicLong counter = new AtomicLong();
+            @Override
+            public Thread newThread(@Nonnull Runnable r) {
+                Thread t = new Thread(r, "oak-observation-dispatcher-" + counter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        SharedEventDispatcher dispatcher = new SharedEventDispatcher();
+        final BackgroundObserver observer =
+                new BackgroundObserver(dispatcher, executor, observationQueueLength);
+        log.info("Observation events are dispatched through a shared event dispatcher");
+        return new CompositeRegistration(
+                registerObserver(whiteboard, observer),
+                whiteboard.register(SharedEventDispatcher.class, dispatcher, emptyMap()),
+                new Registration() {
+                    @Override
+                    public void unregister() {
+                        observer.close();
+                        new ExecutorCloser(executor).close();
+                    }
+                });
+    }
+
     private static ScheduledExecutorService createListeningScheduledExecutorService() {
         ThreadFactory tf = new ThreadFactory() {
             private final AtomicLong counter = new AtomicLong();
@@ -21,6 +21,7 @@ package org.apache.jackrabbit.oak.plugins.index.lucene;
 
 import java.io.IOException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
@@ -32,6 +33,7 @@ import org.apache.jackrabbit.oak.api.Blob;
 import org.apache.jackrabbit.oak.cache.CacheStats;
 import org.apache.jackrabbit.oak.commons.IOUtils;
 import org.apache.jackrabbit.oak.plugins.index.fulltext.ExtractedText;
+import org.apache.jackrabbit.oak.plugins.index.fulltext.ExtractedTextStore;
 import org.apache.jackrabbit.oak.plugins.index.fulltext.PreExtractedTextProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,11 +44,14 @@ class ExtractedTextCache {
     private static final String EMPTY_STRING = "";
     private final Logger log = LoggerFactory.getLogger(getClass());
     private volatile PreExtractedTextProvider extractedTextProvider;
+    private volatile ExtractedTextStore extractedTextStore;
     private int textExtractionCount;
     private long totalBytesRead;
     private long totalTextSize;
     private long totalTime;
     private int preFetchedCount;
+    private final AtomicLong storeHitCount = new AtomicLong();
+    private final AtomicLong storeMissCount = new AtomicLong();
     private final Cache<String, String> cache;
     private final CacheStats cacheStats;
     private final boolean alwaysUsePreExtractedCache;
@@ -90,17 +95,7 @@ class ExtractedTextCache {
                 ExtractedText text = extractedTextProvider.getText(propertyPath, blob);
                 if (text != null) {
                     preFetchedCount++;
-                    switch (text.getExtractionResult()) {
-                        case SUCCESS:
-                            result = text.getExtractedText().toString();
-                            break;
-                        case ERROR:
-                            result = LuceneIndexEditor.TEXT_EXTRACTION_ERROR;
-                            break;
-                        case EMPTY:
-                            result = EMPTY_STRING;
-                            break;
-                    }
+                    result = toText(text);
                 }
             } catch (IOException e) {
                 log.warn("Error occurred while fetching pre extracted text for {}", propertyPath, e);
@@ -111,6 +106,11 @@ class ExtractedTextCache {
         if (cache != null && id != null && result == null) {
             result = cache.getIfPresent(id);
         }
+
+        ExtractedTextStore store = extractedTextStore;
+        if (store != null && id != null && result == null) {
+            result = getFromStore(store, propertyPath, blob);
+        }
         return result;
     }
 
@@ -121,6 +121,17 @@ class ExtractedTextCache {
                 && id != null) {
             cache.put(id, extractedText.getExtractedText().toString());
         }
+
+        ExtractedTextStore store = extractedTextStore;
+        if (store != null
+                && id != null
+                && extractedText.getExtractionResult() == ExtractedText.ExtractionResult.SUCCESS) {
+            try {
+                store.putText(blob, extractedText);
+            } catch (IOException e) {
+                log.warn("Error occurred while storing extracted text for blob {}", id, e);
+            }
+        }
     }
 
     public void addStats(int count, long timeInMillis, long bytesRead, long textLength){
@@ -166,6 +177,27 @@ class ExtractedTextCache {
             public boolean isAlwaysUsePreExtractedCache() {
                 return alwaysUsePreExtractedCache;
             }
+
+            @Override
+            public boolean isExtractedTextStoreConfigured() {
+                return extractedTextStore != null;
+            }
+
+            @Override
+            public long getExtractedTextStoreHitCount() {
+                return storeHitCount.get();
+            }
+
+            @Override
+            public long getExtractedTextStoreMissCount() {
+                return storeMissCount.get();
+            }
+
+            @Override
+            public String getExtractedTextStoreSize() {
+                ExtractedTextStore store = extractedTextStore;
+                return IOUtils.humanReadableByteCount(store != null ? store.getSize() : 0);
+            }
         };
     }
 
@@ -182,6 +214,14 @@ class ExtractedTextCache {
         return extractedTextProvider;
     }
 
+    public void setExtractedTextStore(ExtractedTextStore extractedTextStore) {
+        this.extractedTextStore = extractedTextStore;
+    }
+
+    public ExtractedTextStore getExtractedTextStore() {
+        return extractedTextStore;
+    }
+
     void resetCache(){
         if (cache != null){
             cache.invalidateAll();
@@ -192,6 +232,37 @@ class ExtractedTextCache {
         return alwaysUsePreExtractedCache;
     }
 
+    @CheckForNull
+    private String getFromStore(ExtractedTextStore store, String propertyPath, Blob blob) {
+        String result = null;
+        try {
+            ExtractedText text = store.getText(blob);
+            if (text != null) {
+                storeHitCount.incrementAndGet();
+                result = toText(text);
+                if (cache != null && text.getExtractionResult() == ExtractedText.ExtractionResult.SUCCESS) {
+                    cache.put(blob.getContentIdentity(), result);
+                }
+            } else {
+                storeMissCount.incrementAndGet();
+            }
+        } catch (IOException e) {
+            log.warn("Error occurred while fetching stored extracted text for {}", propertyPath, e);
+        }
+        return result;
+    }
+
+    private static String toText(ExtractedText text) {
+        switch (text.getExtractionResult()) {
+            case SUCCESS:
+                return text.getExtractedText().toString();
+            case ERROR:
+                return LuceneIndexEditor.TEXT_EXTRACTION_ERROR;
+            default:
+                return EMPTY_STRING;
+        }
+    }
+
     //Taken from DocumentNodeStore and cache packages as they are private
     private static class EmpiricalWeigher implements Weigher<String, String> {
         public static final EmpiricalWeigher INSTANCE = new EmpiricalWeigher();
@@ -91,6 +91,12 @@ public final class FieldNames {
      */
     public static final String NODE_NAME = ":nodeName";
 
+    /**
+     * Prefix for the fields that store property values which can be returned
+     * without reading the node
+     */
+    public static final String STORED_VALUE_PREFIX = ":stored:";
+
     /**
      * Used to select only the PATH field from the lucene documents
      */
@@ -123,4 +129,8 @@ public final class FieldNames {
     public static String createFacetFieldName(String pname) {
         return pname + "_facet";
     }
+
+    public static String createStoredValueFieldName(String pname) {
+        return STORED_VALUE_PREFIX + pname;
+    }
 }
@@ -23,6 +23,7 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -35,7 +36,9 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -381,25 +384,62 @@ public class IndexCopier implements CopyOnReadStatsMBean, Closeable {
 
         private void prefetchIndexFiles() throws IOException {
             long start = PERF_LOGGER.start();
-            long totalSize = 0;
-            int copyCount = 0;
-            List<String> copiedFileNames = Lists.newArrayList();
+            final AtomicLong totalSize = new AtomicLong();
+            final List<String> copiedFileNames = Collections.synchronizedList(Lists.<String>newArrayList());
+            List<FutureTask<Void>> copyTasks = Lists.newArrayList();
+            List<FutureTask<Void>> remoteCopyTasks = Lists.newArrayList();
             for (String name : remote.listAll()) {
                 if (REMOTE_ONLY.contains(name)) {
                     continue;
                 }
-                CORFileReference fileRef = new CORFileReference(name);
+                final CORFileReference fileRef = new CORFileReference(name);
                 files.putIfAbsent(name, fileRef);
-                long fileSize = copyFilesToLocal(fileRef, false, false);
-                if (fileSize > 0) {
-                    copyCount++;
-                    totalSize += fileSize;
-                    copiedFileNames.add(name);
+                FutureTask<Void> task = new FutureTask<Void>(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        long fileSize = copyFilesToLocal(fileRef, false, false);
+                        if (fileSize > 0) {
+                            totalSize.addAndGet(fileSize);
+                            copiedFileNames.add(fileRef.name);
+                        }
+                        return null;
+                    }
+                });
+                copyTasks.add(task);
+                if (!local.fileExists(name)) {
+                    remoteCopyTasks.add(task);
+                }
+            }
+
+            //Copy the new files in parallel. The current thread runs all
+            //tasks not picked up by the executor so far, so this also works
+            //if all executor threads are busy
+            if (remoteCopyTasks.size() > 1) {
+                for (FutureTask<Void> task : remoteCopyTasks) {
+                    try {
+                        executor.execute(task);
+                    } catch (RejectedExecutionException e) {
+                        break;
+                    }
+                }
+            }
+            for (FutureTask<Void> task : copyTasks) {
+                task.run();
+            }
+            for (FutureTask<Void> task : copyTasks) {
+                try {
+                    task.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while prefetching index files");
+                } catch (ExecutionException e) {
+                    throw new IOException(e.getCause());
                 }
             }
 
             local.sync(copiedFileNames);
-            PERF_LOGGER.end(start, -1, "[{}] Copied {} files totaling {}", indexPath, copyCount, humanReadableByteCount(totalSize));
+            PERF_LOGGER.end(start, -1, "[{}] Copied {} files totaling {}", indexPath, copiedFileNames.size(),
+                    humanReadableByteCount(totalSize.get()));
         }
 
         private long copyFilesToLocal(CORFileReference reference, boolean sync, boolean logDuration) {
@@ -48,6 +48,7 @@ import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.namepath.NamePathMapper;
 import org.apache.jackrabbit.oak.plugins.index.IndexConstants;
+import org.apache.jackrabbit.oak.plugins.index.IndexUtils;
 import org.apache.jackrabbit.oak.plugins.index.PathFilter;
 import org.apache.jackrabbit.oak.plugins.index.lucene.util.ConfigUtil;
 import org.apache.jackrabbit.oak.plugins.index.lucene.util.TokenizerChain;
@@ -214,10 +215,16 @@ class IndexDefinition implements Aggregate.AggregateMapper {
 
     private final boolean secureFacets;
 
+    private final int secureFacetsSampleSize;
+
     private final boolean suggestEnabled;
 
     private final boolean spellcheckEnabled;
 
+    private final boolean nrtIndexingEnabled;
+
+    private final boolean parallelSearch;
+
     private final String indexPath;
 
     public IndexDefinition(NodeState root, NodeBuilder defn) {
@@ -286,8 +293,11 @@ class IndexDefinition implements Aggregate.AggregateMapper {
         this.saveDirListing = getOptionalValue(defn, LuceneIndexConstants.SAVE_DIR_LISTING, true);
         this.suggestAnalyzed = evaluateSuggestAnalyzed(defn, false);
         this.secureFacets = defn.hasChildNode(FACETS) && getOptionalValue(defn.getChildNode(FACETS), PROP_SECURE_FACETS, true);
+        this.secureFacetsSampleSize = getOptionalValue(defn.getChildNode(FACETS), PROP_SECURE_FACETS_SAMPLE_SIZE, 0);
         this.suggestEnabled = evaluateSuggestionEnabled();
         this.spellcheckEnabled = evaluateSpellcheckEnabled();
+        this.nrtIndexingEnabled = IndexUtils.isNRTIndex(defn.getProperty(IndexConstants.ASYNC_PROPERTY_NAME));
+        this.parallelSearch = getOptionalValue(defn, LuceneIndexConstants.PARALLEL_SEARCH, false);
     }
 
     public NodeState getDefinitionNodeState() {
@@ -683,6 +693,29 @@ class IndexDefinition implements Aggregate.AggregateMapper {
         return secureFacets;
     }
 
+    /**
+     * @return number of hits sampled for the access check of secure facets,
+     * 0 if all hits are checked
+     */
+    public int getSecureFacetsSampleSize() {
+        return secureFacetsSampleSize;
+    }
+
+    /**
+     * @return true if the index is additionally maintained in memory for the
+     * local changes not yet processed by its async lane
+     */
+    public boolean isNRTIndexingEnabled() {
+        return nrtIndexingEnabled;
+    }
+
+    /**
+     * @return true if the index segments should be searched concurrently
+     */
+    public boolean isParallelSearchEnabled() {
+        return parallelSearch;
+    }
+
     public class IndexingRule {
         private final String baseNodeType;
         private final String nodeTypeName;
@@ -703,6 +736,7 @@ class IndexDefinition implements Aggregate.AggregateMapper {
         final boolean fulltextEnabled;
         final boolean propertyIndexEnabled;
         final boolean nodeFullTextIndexed;
+        final boolean storedValuesEnabled;
 
         final Aggregate aggregate;
         final Aggregate propAggregate;
@@ -732,6 +766,7 @@ class IndexDefinition implements Aggregate.AggregateMapper {
             this.fulltextEnabled = aggregate.hasNodeAggregates() || hasAnyFullTextEnabledProperty();
             this.nodeFullTextIndexed = aggregate.hasNodeAggregates() || anyNodeScopeIndexedProperty();
             this.propertyIndexEnabled = hasAnyPropertyIndexConfigured();
+            this.storedValuesEnabled = hasAnyStoredValueConfigured();
             this.indexesAllNodesOfMatchingType = areAlMatchingNodeByTypeIndexed();
             this.nodeNameIndexed = evaluateNodeNameIndexed(config);
             validateRuleDefinition();
@@ -753,6 +788,7 @@ class IndexDefinition implements Aggregate.AggregateMapper {
             this.inherited = original.inherited;
             this.propertyTypes = original.propertyTypes;
             this.propertyIndexEnabled = original.propertyIndexEnabled;
+            this.storedValuesEnabled = original.storedValuesEnabled;
             this.propAggregate = original.propAggregate;
             this.nullCheckEnabledProperties = original.nullCheckEnabledProperties;
             this.notNullCheckEnabledProperties = original.notNullCheckEnabledProperties;
@@ -1002,6 +1038,21 @@ class IndexDefinition implements Aggregate.AggregateMapper {
             return false;
         }
 
+        private boolean hasAnyStoredValueConfigured() {
+            for (PropertyDefinition pd : propConfigs.values()){
+                if (pd.storeValue){
+                    return true;
+                }
+            }
+
+            for (NamePattern np : namePatterns){
+                if (np.getConfig().storeValue){
+                    return true;
+                }
+            }
+            return false;
+        }
+
         private boolean anyNodeScopeIndexedProperty(){
             //Check if there is any nodeScope indexed property as
             //for such case a node would always be indexed
@@ -17,6 +17,7 @@
 package org.apache.jackrabbit.oak.plugins.index.lucene;
 
 import static com.google.common.base.Preconditions.checkState;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.ASYNC_PROPERTY_NAME;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.INDEX_DATA_CHILD_NAME;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.PERSISTENCE_FILE;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.PERSISTENCE_NAME;
@@ -24,17 +25,26 @@ import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstant
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import javax.annotation.Nullable;
 
+import com.google.common.collect.Lists;
 import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.plugins.index.lucene.util.SuggestHelper;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
 import org.apache.jackrabbit.oak.spi.state.ReadOnlyBuilder;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiReader;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.suggest.analyzing.AnalyzingInfixSuggester;
 import org.apache.lucene.store.Directory;
@@ -42,13 +52,15 @@ import org.apache.lucene.store.FSDirectory;
 
 class IndexNode {
 
-    static IndexNode open(String indexPath, NodeState root, NodeState defnNodeState, @Nullable IndexCopier cloner)
-            throws IOException {
+    static IndexNode open(String indexPath, NodeState root, NodeState defnNodeState, @Nullable IndexCopier cloner,
+                          @Nullable OakBlockCache blockCache, @Nullable NRTIndexFactory nrtFactory,
+                          @Nullable ExecutorService searchExecutor) throws IOException {
         Directory directory = null;
         IndexDefinition definition = new IndexDefinition(root, defnNodeState);
         NodeState data = defnNodeState.getChildNode(INDEX_DATA_CHILD_NAME);
         if (data.exists()) {
-            directory = new OakDirectory(new ReadOnlyBuilder(defnNodeState), definition, true);
+            directory = new OakDirectory(new ReadOnlyBuilder(defnNodeState), INDEX_DATA_CHILD_NAME,
+                    definition, true, blockCache);
             if (cloner != null) {
                 directory = cloner.wrapForRead(indexPath, definition, directory);
             }
@@ -66,7 +78,22 @@ class IndexNode {
                     suggestDirectory = new OakDirectory(defnNodeState.builder(), ":suggest-data", definition, false);
                 }
 
-                IndexNode index = new IndexNode(PathUtils.getName(indexPath), definition, directory, suggestDirectory);
+                List<NRTIndex> nrtIndexes = Collections.emptyList();
+                if (nrtFactory != null) {
+                    if (definition.isNRTIndexingEnabled()) {
+                        nrtIndexes = nrtFactory.startGeneration(indexPath, definition);
+                    } else {
+                        nrtFactory.remove(indexPath);
+                    }
+                }
+
+                // the content of a synchronous index stored in the repository
+                // is consistent with any root having the same definition state
+                NodeState syncState = data.exists() && !defnNodeState.hasProperty(ASYNC_PROPERTY_NAME)
+                        ? defnNodeState : null;
+                IndexNode index = new IndexNode(PathUtils.getName(indexPath), definition, directory,
+                        suggestDirectory, nrtIndexes, definition.isParallelSearchEnabled() ? searchExecutor : null,
+                        syncState);
                 directory = null; // closed in Index.close()
                 return index;
             } finally {
@@ -95,15 +122,43 @@ class IndexNode {
 
     private final AnalyzingInfixSuggester lookup;
 
+    private final List<NRTIndex> nrtIndexes;
+
+    @Nullable
+    private final ExecutorService searchExecutor;
+
+    /**
+     * The definition state this node was opened from, if the index is updated
+     * synchronously and stored in the repository, otherwise null
+     */
+    @Nullable
+    private final NodeState syncState;
+
+    /**
+     * Facet reader states of the persisted index reader per facet field.
+     * A refreshed index gets a new IndexNode hence no invalidation is needed
+     */
+    private final ConcurrentMap<String, SortedSetDocValuesReaderState> facetReaderStates =
+            new ConcurrentHashMap<String, SortedSetDocValuesReaderState>();
+
     private boolean closed = false;
 
     IndexNode(String name, IndexDefinition definition, Directory directory, final OakDirectory suggestDirectory)
             throws IOException {
+        this(name, definition, directory, suggestDirectory, Collections.<NRTIndex>emptyList(), null, null);
+    }
+
+    IndexNode(String name, IndexDefinition definition, Directory directory, final OakDirectory suggestDirectory,
+              List<NRTIndex> nrtIndexes, @Nullable ExecutorService searchExecutor,
+              @Nullable NodeState syncState) throws IOException {
         this.name = name;
+        this.syncState = syncState;
+        this.nrtIndexes = nrtIndexes;
+        this.searchExecutor = searchExecutor;
         this.definition = definition;
         this.directory = directory;
         this.reader = DirectoryReader.open(directory);
-        this.searcher = new IndexSearcher(reader);
+        this.searcher = newSearcher(reader);
         this.suggestDirectory = suggestDirectory;
         if (suggestDirectory != null) {
             this.lookup = SuggestHelper.getLookup(suggestDirectory, definition.getAnalyzer());
@@ -124,6 +179,69 @@ class IndexNode {
         return searcher;
     }
 
+    /**
+     * Returns a searcher over the persisted index combined with the near real
+     * time indexes holding the local changes not yet processed by the async
+     * lane. A recently changed node might match in both, so callers have to
+     * filter duplicate paths. Only valid while this node is acquired.
+     */
+    IndexSearcher getHybridSearcher() {
+        if (nrtIndexes.isEmpty()) {
+            return searcher;
+        }
+        List<IndexReader> readers = Lists.newArrayListWithCapacity(nrtIndexes.size() + 1);
+        readers.add(reader);
+        for (NRTIndex nrtIndex : nrtIndexes) {
+            IndexReader nrtReader = nrtIndex.getReader();
+            if (nrtReader != null) {
+                readers.add(nrtReader);
+            }
+        }
+        if (readers.size() == 1) {
+            return searcher;
+        }
+        // closeSubReaders is set so that the MultiReader does not incRef the
+        // sub readers. It is never closed itself, the readers are owned by
+        // this node and the NRTIndex
+        return newSearcher(new MultiReader(readers.toArray(new IndexReader[readers.size()]), true));
+    }
+
+    /**
+     * With a search executor the searcher runs the segment searches of a
+     * query concurrently. Once the executor is saturated the segments are
+     * searched in the query thread.
+     */
+    private IndexSearcher newSearcher(IndexReader reader) {
+        if (searchExecutor != null) {
+            return new IndexSearcher(reader, searchExecutor);
+        }
+        return new IndexSearcher(reader);
+    }
+
+    /**
+     * Returns the cache of facet reader states for the given searcher. States
+     * are only cached for the searcher over the persisted index as the hybrid
+     * searcher changes with every local change.
+     */
+    @Nullable
+    ConcurrentMap<String, SortedSetDocValuesReaderState> getFacetReaderStates(IndexSearcher searcher) {
+        return searcher == this.searcher ? facetReaderStates : null;
+    }
+
+    /**
+     * Whether the hits of this node reflect the content of the given root,
+     * that is the index is updated synchronously and this node was opened
+     * from the index definition state of that root. Asynchronous indexes and
+     * nodes not yet refreshed by the tracker may return stale hits.
+     */
+    boolean isUpToDate(NodeState root, String indexPath) {
+        return syncState != null && syncState.equals(NodeStateUtils.getNode(root, indexPath));
+    }
+
+    boolean hasNRTIndexes() {
+        return !nrtIndexes.isEmpty();
+    }
+
     Directory getSuggestDirectory() {
         return suggestDirectory;
     }
@@ -138,11 +256,17 @@ class IndexNode {
             lock.readLock().unlock();
             return false;
         } else {
+            for (NRTIndex nrtIndex : nrtIndexes) {
+                nrtIndex.acquire();
+            }
             return true;
         }
     }
 
     void release() {
+        for (NRTIndex nrtIndex : nrtIndexes) {
+            nrtIndex.release();
+        }
         lock.readLock().unlock();
     }
 
@@ -33,6 +33,7 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.spi.commit.CompositeEditor;
@@ -57,6 +58,12 @@ class IndexTracker {
 
     private final IndexCopier cloner;
 
+    private final OakBlockCache blockCache;
+
+    private final NRTIndexFactory nrtFactory;
+
+    private final ExecutorService searchExecutor;
+
     private NodeState root = EMPTY_NODE;
 
     private volatile Map<String, IndexNode> indices = emptyMap();
@@ -68,7 +75,23 @@ class IndexTracker {
     }
 
     IndexTracker(IndexCopier cloner){
+        this(cloner, null);
+    }
+
+    IndexTracker(IndexCopier cloner, OakBlockCache blockCache){
+        this(cloner, blockCache, null);
+    }
+
+    IndexTracker(IndexCopier cloner, OakBlockCache blockCache, NRTIndexFactory nrtFactory){
+        this(cloner, blockCache, nrtFactory, null);
+    }
+
+    IndexTracker(IndexCopier cloner, OakBlockCache blockCache, NRTIndexFactory nrtFactory,
+                 ExecutorService searchExecutor){
         this.cloner = cloner;
+        this.blockCache = blockCache;
+        this.nrtFactory = nrtFactory;
+        this.searchExecutor = searchExecutor;
     }
 
     synchronized void close() {
@@ -108,7 +131,8 @@ class IndexTracker {
                 public void leave(NodeState before, NodeState after) {
                     try {
                         long start = PERF_LOGGER.start();
-                        IndexNode index = IndexNode.open(path, root, after, cloner);
+                        IndexNode index = IndexNode.open(path, root, after, cloner, blockCache,
+                                nrtFactory, searchExecutor);
                         PERF_LOGGER.end(start, -1, "[{}] Index found to be updated. Reopening the IndexNode", path);
                         updates.put(path, index); // index can be null
                     } catch (IOException e) {
@@ -176,7 +200,7 @@ class IndexTracker {
 
         try {
             if (isLuceneIndexNode(node)) {
-                index = IndexNode.open(path, root, node, cloner);
+                index = IndexNode.open(path, root, node, cloner, blockCache, nrtFactory, searchExecutor);
                 if (index != null) {
                     checkState(index.acquire());
                     indices = ImmutableMap.<String, IndexNode>builder()
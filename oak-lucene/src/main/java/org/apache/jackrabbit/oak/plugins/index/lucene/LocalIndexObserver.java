@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import java.io.IOException;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.google.common.collect.Sets;
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.plugins.index.IndexUpdateCallback;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EditorDiff;
+import org.apache.jackrabbit.oak.spi.commit.Observer;
+import org.apache.jackrabbit.oak.spi.commit.VisibleEditor;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.apache.jackrabbit.oak.commons.PathUtils.concat;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.ASYNC_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexUtils.isNRTIndex;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.util.LuceneIndexHelper.isLuceneIndexNode;
+
+/**
+ * Observer feeding the local commits into the {@link NRTIndex} of every
+ * Lucene index marked with {@code async = [<lane>, nrt]}. Only the index
+ * definitions directly below {@code /oak:index} are considered.
+ * <p>
+ * Changes reported without {@link CommitInfo}, i.e. external changes or
+ * commits collapsed by a full observation queue, are not indexed here and
+ * only become visible once processed by the async lane. The same applies
+ * to all changes after a generation got discarded for exceeding its maximum
+ * size, till the next async cycle starts a new generation.
+ */
+class LocalIndexObserver implements Observer {
+    private static final Logger log = LoggerFactory.getLogger(LocalIndexObserver.class);
+
+    private static final IndexUpdateCallback NOOP_CALLBACK = new IndexUpdateCallback() {
+        @Override
+        public void indexUpdate() {
+        }
+    };
+
+    private final NRTIndexFactory indexFactory;
+
+    private final ExtractedTextCache extractedTextCache;
+
+    private final IndexAugmentorFactory augmentorFactory;
+
+    private final Set<String> nrtIndexPaths = Sets.newHashSet();
+
+    private NodeState root;
+
+    LocalIndexObserver(NRTIndexFactory indexFactory, ExtractedTextCache extractedTextCache,
+                       @Nullable IndexAugmentorFactory augmentorFactory) {
+        this.indexFactory = indexFactory;
+        this.extractedTextCache = extractedTextCache;
+        this.augmentorFactory = augmentorFactory;
+    }
+
+    @Override
+    public void contentChanged(@Nonnull NodeState root, @Nullable CommitInfo info) {
+        NodeState before = this.root;
+        this.root = root;
+        if (before == null || info == null) {
+            return;
+        }
+
+        Set<String> current = Sets.newHashSet();
+        for (ChildNodeEntry e : root.getChildNode(INDEX_DEFINITIONS_NAME).getChildNodeEntries()) {
+            NodeState definition = e.getNodeState();
+            if (!isLuceneIndexNode(definition)) {
+                continue;
+            }
+            if (isNRTIndex(definition.getProperty(ASYNC_PROPERTY_NAME))) {
+                String indexPath = concat("/", INDEX_DEFINITIONS_NAME, e.getName());
+                current.add(indexPath);
+                update(indexPath, definition, before, root);
+            }
+        }
+
+        for (String indexPath : Sets.difference(nrtIndexPaths, current)) {
+            indexFactory.remove(indexPath);
+        }
+        nrtIndexPaths.clear();
+        nrtIndexPaths.addAll(current);
+    }
+
+    private void update(String indexPath, NodeState definition, NodeState before, NodeState after) {
+        try {
+            NRTIndex index = indexFactory.getIndex(indexPath, after, definition);
+            if (index.isClosed()) {
+                return;
+            }
+            LuceneIndexEditorContext context = new LuceneIndexEditorContext(after, definition.builder(),
+                    index, NOOP_CALLBACK, extractedTextCache, augmentorFactory);
+            CommitFailedException e = EditorDiff.process(
+                    VisibleEditor.wrap(new LuceneIndexEditor(after, context)), before, after);
+            if (e != null) {
+                log.warn("Failed to update the near real time index for {}", indexPath, e);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to update the near real time index for {}", indexPath, e);
+        } catch (RuntimeException e) {
+            log.warn("Failed to update the near real time index for {}", indexPath, e);
+        }
+    }
+}
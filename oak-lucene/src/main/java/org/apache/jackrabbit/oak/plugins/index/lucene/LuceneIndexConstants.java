@@ -317,14 +317,43 @@ public interface LuceneIndexConstants {
      */
     String PROP_SECURE_FACETS = "secure";
 
+    /**
+     * Optional (index definition) property holding the number of hits whose access is checked
+     * for secure facets. The counts are extrapolated from this sample. Default is 0 which
+     * checks all hits
+     */
+    String PROP_SECURE_FACETS_SAMPLE_SIZE = "sampleSize";
+
     /**
      * Optional (property definition) property indicating whether facets should be created
      * for this property
      */
     String PROP_FACETS = "facets";
 
+    /**
+     * Optional (property definition) property indicating whether the property value
+     * should be stored in the index so that queries selecting it can be answered
+     * without reading the node. Only single valued properties of the configured
+     * type are stored.
+     * <p>
+     * The stored values are only used for sessions which can read the whole
+     * repository (such as admin sessions, but not anonymous sessions with
+     * restricted read access), and only if the index reflects the root state
+     * of the query. That is the case for synchronous indexes once the index
+     * tracker has seen that root state, but never for asynchronous indexes
+     * (including near real time ones). Otherwise the node is read as usual.
+     */
+    String PROP_STORE_VALUE = "storeValue";
+
     /**
      * Boolean property indicate that property should not be included in aggregation
      */
     String PROP_EXCLUDE_FROM_AGGREGATE = "excludeFromAggregation";
+
+    /**
+     * Optional (index definition) property indicating whether queries should search
+     * the index segments concurrently using the shared search thread pool.
+     * Default is false
+     */
+    String PARALLEL_SEARCH = "parallelSearch";
 }
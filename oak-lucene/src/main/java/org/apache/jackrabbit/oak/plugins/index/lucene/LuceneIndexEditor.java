@@ -22,6 +22,9 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.google.common.collect.Iterables;
@@ -57,10 +60,9 @@ import org.apache.lucene.document.Field;
 import org.apache.lucene.document.LongField;
 import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StoredField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetField;
-import org.apache.lucene.index.IndexWriter;
-import org.apache.lucene.search.PrefixQuery;
 import org.apache.lucene.util.BytesRef;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.parser.ParseContext;
@@ -72,7 +74,6 @@ import static org.apache.jackrabbit.JcrConstants.JCR_DATA;
 import static org.apache.jackrabbit.oak.commons.PathUtils.concat;
 import static org.apache.jackrabbit.oak.commons.PathUtils.getName;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.FieldFactory.*;
-import static org.apache.jackrabbit.oak.plugins.index.lucene.TermFactory.newPathTerm;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.util.ConfigUtil.getPrimaryTypeName;
 
 /**
@@ -121,16 +122,34 @@ public class LuceneIndexEditor implements IndexEditor, Aggregate.AggregateRoot {
 
     private final PathFilter.Result pathFilterResult;
 
+    /**
+     * Fields of the document being built whose text is still being extracted
+     */
+    private List<Future<Field>> pendingFields = Collections.emptyList();
+
     LuceneIndexEditor(NodeState root, NodeBuilder definition,
                         IndexUpdateCallback updateCallback,
                         @Nullable IndexCopier indexCopier,
                         ExtractedTextCache extractedTextCache,
                       IndexAugmentorFactory augmentorFactory) throws CommitFailedException {
+        this(root, definition, updateCallback, indexCopier, extractedTextCache, augmentorFactory, null);
+    }
+
+    LuceneIndexEditor(NodeState root, NodeBuilder definition,
+                        IndexUpdateCallback updateCallback,
+                        @Nullable IndexCopier indexCopier,
+                        ExtractedTextCache extractedTextCache,
+                        IndexAugmentorFactory augmentorFactory,
+                        @Nullable ExecutorService extractionExecutor) throws CommitFailedException {
+        this(root, new LuceneIndexEditorContext(root, definition,
+                updateCallback, indexCopier, extractedTextCache, augmentorFactory, extractionExecutor));
+    }
+
+    LuceneIndexEditor(NodeState root, LuceneIndexEditorContext context) {
         this.parent = null;
         this.name = null;
         this.path = "/";
-        this.context = new LuceneIndexEditorContext(root, definition,
-                updateCallback, indexCopier, extractedTextCache, augmentorFactory);
+        this.context = context;
         this.root = root;
         this.isDeleted = false;
         this.matcherState = MatcherState.NONE;
@@ -193,7 +212,7 @@ public class LuceneIndexEditor implements IndexEditor, Aggregate.AggregateRoot {
             throws CommitFailedException {
         if (propertiesChanged || !before.exists()) {
             String path = getPath();
-            if (addOrUpdate(path, after, before.exists())) {
+            if (context.isIndexed(path) && addOrUpdate(path, after, before.exists())) {
                 long indexed = context.incIndexedNodes();
                 if (indexed % 1000 == 0) {
                     log.debug("[{}] => Indexed {} nodes...", getIndexName(), indexed);
@@ -269,10 +288,8 @@ public class LuceneIndexEditor implements IndexEditor, Aggregate.AggregateRoot {
             // tree deletion is handled on the parent node
             String path = concat(getPath(), name);
             try {
-                IndexWriter writer = context.getWriter();
                 // Remove all index entries in the removed subtree
-                writer.deleteDocuments(newPathTerm(path));
-                writer.deleteDocuments(new PrefixQuery(newPathTerm(path + "/")));
+                context.deleteDocuments(path);
                 this.context.indexUpdate();
             } catch (IOException e) {
                 throw new CommitFailedException("Lucene", 5,
@@ -297,7 +314,7 @@ public class LuceneIndexEditor implements IndexEditor, Aggregate.AggregateRoot {
                     log.trace("[{}] Indexed document for {} is {}", getIndexName(), path, d);
                 }
                 context.indexUpdate();
-                context.getWriter().updateDocument(newPathTerm(path), d);
+                context.updateDocument(path, d, pendingFields);
                 return true;
             }
         } catch (IOException e) {
@@ -305,6 +322,8 @@ public class LuceneIndexEditor implements IndexEditor, Aggregate.AggregateRoot {
                     "Failed to index the node " + path, e);
         } catch (IllegalArgumentException ie) {
             log.warn("Failed to index the node [{}]", path, ie);
+        } finally {
+            pendingFields = Collections.emptyList();
         }
         return false;
     }
@@ -498,6 +517,9 @@ public class LuceneIndexEditor implements IndexEditor, Aggregate.AggregateRoot {
             if (pd.facet) {
                 dirty |= addFacetFields(fields, property, pname, pd);
             }
+            if (pd.storeValue) {
+                dirty |= addStoredValueField(fields, property, pname, pd);
+            }
 
         }
 
@@ -535,6 +557,24 @@ public class LuceneIndexEditor implements IndexEditor, Aggregate.AggregateRoot {
         return fieldAdded;
     }
 
+    private boolean addStoredValueField(List<Field> fields,
+                                        PropertyState property,
+                                        String pname,
+                                        PropertyDefinition pd) {
+        // Values are read back with the configured type, so only store values
+        // which can be returned as is. Anything else is read from the node
+        if (property.isArray() || property.getType().tag() != pd.getType()) {
+            log.debug(
+                    "[{}] Not storing value of property {} for path {} as only single valued properties "
+                            + "of type {} are stored",
+                    getIndexName(), pname, getPath(), Type.fromTag(pd.getType(), false));
+            return false;
+        }
+        fields.add(new StoredField(FieldNames.createStoredValueFieldName(pname),
+                property.getValue(Type.STRING)));
+        return true;
+    }
+
     private boolean addTypedOrderedFields(List<Field> fields,
                                           PropertyState property,
                                           String pname,
@@ -624,7 +664,15 @@ public class LuceneIndexEditor implements IndexEditor, Aggregate.AggregateRoot {
         }
 
         for (Blob v : property.getValue(Type.BINARIES)) {
-            String value = parseStringValue(v, metadata, path, property.getName());
+            String value = context.getExtractedTextCache().get(path, property.getName(), v, context.isReindex());
+            if (value == null && context.isAsyncTextExtractionEnabled()) {
+                addPendingField(v, copyOf(metadata), nodePath, path);
+                continue;
+            }
+
+            if (value == null) {
+                value = parseStringValue0(v, metadata, path);
+            }
             if (value == null){
                 continue;
             }
@@ -638,6 +686,35 @@ public class LuceneIndexEditor implements IndexEditor, Aggregate.AggregateRoot {
         return fields;
     }
 
+    /**
+     * Extracts the text of the blob on the extraction executor. The field is
+     * added to the document before it gets written
+     */
+    private void addPendingField(final Blob v, final Metadata metadata,
+                                 @Nullable final String nodePath, final String path) {
+        if (pendingFields.isEmpty()) {
+            pendingFields = Lists.newArrayList();
+        }
+        pendingFields.add(context.submitTextExtraction(new Callable<Field>() {
+            @Override
+            public Field call() throws Exception {
+                String value = parseStringValue0(v, metadata, path);
+                if (value == null) {
+                    return null;
+                }
+                return nodePath != null ? newFulltextField(nodePath, value, true) : newFulltextField(value, true);
+            }
+        }));
+    }
+
+    private static Metadata copyOf(Metadata metadata) {
+        Metadata copy = new Metadata();
+        for (String name : metadata.names()) {
+            copy.set(name, metadata.get(name));
+        }
+        return copy;
+    }
+
     private boolean augmentCustomFields(final String path, final List<Field> fields,
                                         final NodeState document) {
         boolean dirty = false;
@@ -936,14 +1013,6 @@ public class LuceneIndexEditor implements IndexEditor, Aggregate.AggregateRoot {
         return context.isSupportedMediaType(type);
     }
 
-    private String parseStringValue(Blob v, Metadata metadata, String path, String propertyName) {
-        String text = context.getExtractedTextCache().get(path, propertyName, v, context.isReindex());
-        if (text == null){
-            text = parseStringValue0(v, metadata, path);
-        }
-        return text;
-    }
-
     private String parseStringValue0(Blob v, Metadata metadata, String path) {
         WriteOutContentHandler handler = new WriteOutContentHandler(context.getDefinition().getMaxExtractLength());
         long start = System.currentTimeMillis();
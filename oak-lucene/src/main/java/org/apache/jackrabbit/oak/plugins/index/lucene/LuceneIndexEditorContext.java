@@ -16,18 +16,30 @@
  */
 package org.apache.jackrabbit.oak.plugins.index.lucene;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.URL;
+import java.util.ArrayDeque;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
 import org.apache.commons.io.IOUtils;
 import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.jackrabbit.oak.api.PropertyState;
@@ -43,11 +55,14 @@ import org.apache.jackrabbit.util.ISO8601;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
 import org.apache.lucene.analysis.shingle.ShingleAnalyzerWrapper;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
 import org.apache.lucene.facet.FacetsConfig;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.SerialMergeScheduler;
+import org.apache.lucene.search.PrefixQuery;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.tika.config.TikaConfig;
@@ -62,6 +77,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.jackrabbit.oak.commons.IOUtils.humanReadableByteCount;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.PERSISTENCE_PATH;
 import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.VERSION;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.TermFactory.newPathTerm;
 import static org.apache.lucene.store.NoLockFactory.getNoLockFactory;
 
 public class LuceneIndexEditorContext {
@@ -72,6 +88,12 @@ public class LuceneIndexEditorContext {
     private static final PerfLogger PERF_LOGGER =
             new PerfLogger(LoggerFactory.getLogger(LuceneIndexEditorContext.class.getName() + ".perf"));
 
+    /**
+     * Number of queued writes after which they are applied to the writer
+     * when text extraction is done asynchronously
+     */
+    static final int PENDING_UPDATES_BATCH_SIZE = 50;
+
     private final FacetsConfig facetsConfig;
 
     static IndexWriterConfig getIndexWriterConfig(IndexDefinition definition, boolean remoteDir) {
@@ -152,11 +174,31 @@ public class LuceneIndexEditorContext {
     private final IndexAugmentorFactory augmentorFactory;
 
     private final NodeState root;
+
+    @Nullable
+    private final NRTIndex nrtIndex;
+
+    @Nullable
+    private final ExecutorService extractionExecutor;
+
+    /**
+     * Writes waiting for the text extraction of the binaries they refer to.
+     * They are applied in the order they were made
+     */
+    private final Deque<PendingUpdate> pendingUpdates = new ArrayDeque<PendingUpdate>();
+
     /**
      * The media types supported by the parser used.
      */
     private Set<MediaType> supportedMediaTypes;
 
+    /**
+     * The paths of the nodes indexed, see {@link #setPartition(Predicate)}.
+     */
+    private Predicate<String> indexedPaths = Predicates.alwaysTrue();
+
+    private boolean partition;
+
     //Intentionally static, so that it can be set without passing around clock objects
     //Set for testing ONLY
     private static Clock clock = Clock.SIMPLE;
@@ -164,6 +206,19 @@ public class LuceneIndexEditorContext {
     LuceneIndexEditorContext(NodeState root, NodeBuilder definition, IndexUpdateCallback updateCallback,
                              @Nullable IndexCopier indexCopier, ExtractedTextCache extractedTextCache,
                              IndexAugmentorFactory augmentorFactory) {
+        this(root, definition, updateCallback, indexCopier, extractedTextCache, augmentorFactory, null);
+    }
+
+    /**
+     * Creates a context which, if an {@code extractionExecutor} is given,
+     * extracts the text of binaries on that executor. The documents waiting
+     * for their text are queued along with the deletions made after them and
+     * written in batches, in the order they were made.
+     */
+    LuceneIndexEditorContext(NodeState root, NodeBuilder definition, IndexUpdateCallback updateCallback,
+                             @Nullable IndexCopier indexCopier, ExtractedTextCache extractedTextCache,
+                             IndexAugmentorFactory augmentorFactory,
+                             @Nullable ExecutorService extractionExecutor) {
         this.root = root;
         this.definitionBuilder = definition;
         this.indexCopier = indexCopier;
@@ -172,12 +227,36 @@ public class LuceneIndexEditorContext {
         this.updateCallback = updateCallback;
         this.extractedTextCache = extractedTextCache;
         this.augmentorFactory = augmentorFactory;
+        this.nrtIndex = null;
+        this.extractionExecutor = extractionExecutor;
         if (this.definition.isOfOldFormat()){
             IndexDefinition.updateDefinition(definition);
         }
         this.facetsConfig = FacetHelper.getFacetsConfig(definition);
     }
 
+    /**
+     * Creates a context writing the documents to the in memory writer of the
+     * given near real time index. The writer is left open on close and no
+     * status is recorded in the definition.
+     */
+    LuceneIndexEditorContext(NodeState root, NodeBuilder definition, NRTIndex nrtIndex,
+                             IndexUpdateCallback updateCallback, ExtractedTextCache extractedTextCache,
+                             IndexAugmentorFactory augmentorFactory) {
+        this.root = root;
+        this.definitionBuilder = definition;
+        this.indexCopier = null;
+        this.definition = nrtIndex.getDefinition();
+        this.indexedNodes = 0;
+        this.updateCallback = updateCallback;
+        this.extractedTextCache = extractedTextCache;
+        this.augmentorFactory = augmentorFactory;
+        this.nrtIndex = nrtIndex;
+        this.extractionExecutor = null;
+        this.writer = nrtIndex.getWriter();
+        this.facetsConfig = FacetHelper.getFacetsConfig(definition);
+    }
+
     Parser getParser() {
         if (parser == null){
             parser = initializeTikaParser(definition);
@@ -202,6 +281,91 @@ public class LuceneIndexEditorContext {
         return writer;
     }
 
+    /**
+     * Replaces the document for the given path. The fields in
+     * {@code pendingFields} get added to the document once their text
+     * extraction completes.
+     */
+    void updateDocument(String path, Document doc, List<Future<Field>> pendingFields) throws IOException {
+        if (pendingFields.isEmpty() && pendingUpdates.isEmpty()) {
+            getWriter().updateDocument(newPathTerm(path), doc);
+            return;
+        }
+        pendingUpdates.add(new PendingUpdate(path, doc, pendingFields));
+        if (pendingUpdates.size() >= PENDING_UPDATES_BATCH_SIZE) {
+            applyPendingUpdates();
+        }
+    }
+
+    /**
+     * Removes the documents of the given path and of all its descendants
+     */
+    void deleteDocuments(String path) throws IOException {
+        if (pendingUpdates.isEmpty()) {
+            deleteDocuments(getWriter(), path);
+        } else {
+            //Keep the order with respect to the updates still waiting
+            pendingUpdates.add(new PendingUpdate(path, null, Collections.<Future<Field>>emptyList()));
+        }
+    }
+
+    boolean isAsyncTextExtractionEnabled() {
+        return extractionExecutor != null;
+    }
+
+    Future<Field> submitTextExtraction(Callable<Field> task) {
+        checkNotNull(extractionExecutor);
+        //Initialize the parser in the indexing thread
+        getParser();
+        return extractionExecutor.submit(task);
+    }
+
+    private void applyPendingUpdates() throws IOException {
+        if (pendingUpdates.isEmpty()) {
+            return;
+        }
+        final long start = PERF_LOGGER.start();
+        int count = pendingUpdates.size();
+        IndexWriter writer = getWriter();
+        PendingUpdate update;
+        while ((update = pendingUpdates.poll()) != null) {
+            if (update.doc == null) {
+                deleteDocuments(writer, update.path);
+                continue;
+            }
+            for (Future<Field> f : update.pendingFields) {
+                Field field = getExtractedField(update.path, f);
+                if (field != null) {
+                    update.doc.add(field);
+                }
+            }
+            writer.updateDocument(newPathTerm(update.path), update.doc);
+        }
+        PERF_LOGGER.end(start, -1, "Applied {} pending updates for directory {}", count, definition);
+    }
+
+    @CheckForNull
+    private Field getExtractedField(String path, Future<Field> f) throws IOException {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException ie = new InterruptedIOException("Interrupted while waiting for text " +
+                    "extraction of " + path);
+            ie.initCause(e);
+            throw ie;
+        } catch (ExecutionException e) {
+            log.warn("[{}] Failed to extract text for {}. The node would be indexed without it",
+                    definition.getIndexName(), path, e.getCause());
+            return null;
+        }
+    }
+
+    private static void deleteDocuments(IndexWriter writer, String path) throws IOException {
+        writer.deleteDocuments(newPathTerm(path));
+        writer.deleteDocuments(new PrefixQuery(newPathTerm(path + "/")));
+    }
+
     private static void trackIndexSizeInfo(@Nonnull IndexWriter writer,
                                            @Nonnull IndexDefinition definition,
                                            @Nonnull Directory directory) throws IOException {
@@ -237,6 +401,13 @@ public class LuceneIndexEditorContext {
      * close writer if it's not null
      */
     void closeWriter() throws IOException {
+        applyPendingUpdates();
+
+        if (nrtIndex != null) {
+            nrtIndex.refreshReader();
+            return;
+        }
+
         //If reindex or fresh index and write is null on close
         //it indicates that the index is empty. In such a case trigger
         //creation of write such that an empty Lucene index state is persisted
@@ -245,7 +416,7 @@ public class LuceneIndexEditorContext {
             getWriter();
         }
 
-        boolean updateSuggestions = shouldUpdateSuggestions();
+        boolean updateSuggestions = !partition && shouldUpdateSuggestions();
         if (writer == null && updateSuggestions) {
             log.debug("Would update suggester dictionary although no index changes were detected in current cycle");
             getWriter();
@@ -282,8 +453,10 @@ public class LuceneIndexEditorContext {
 
             PERF_LOGGER.end(start, -1, "Overall Closed IndexWriter for directory {}", definition);
 
-            textExtractionStats.log(reindex);
-            textExtractionStats.collectStats(extractedTextCache);
+            synchronized (this) {
+                textExtractionStats.log(reindex);
+                textExtractionStats.collectStats(extractedTextCache);
+            }
         }
     }
 
@@ -378,6 +551,34 @@ public class LuceneIndexEditorContext {
         definition = new IndexDefinition(root, definitionBuilder);
     }
 
+    /**
+     * Makes this context index a partition of a parallel reindex. Only the
+     * nodes owned by the partition are indexed, and the suggester is not
+     * updated, as that is done for the merged index.
+     *
+     * @param owned accepts the paths of the nodes owned by the partition
+     */
+    void setPartition(Predicate<String> owned) {
+        this.indexedPaths = checkNotNull(owned);
+        this.partition = true;
+    }
+
+    boolean isIndexed(String path) {
+        return indexedPaths.apply(path);
+    }
+
+    /**
+     * Adds the documents of the given indexes, built by the partitions of a
+     * parallel reindex, to the index of this context.
+     *
+     * @param partitions the indexes of the partitions
+     * @param indexedNodes the number of nodes indexed by the partitions
+     */
+    void addIndexes(Directory[] partitions, long indexedNodes) throws IOException {
+        getWriter().addIndexes(partitions);
+        this.indexedNodes += indexedNodes;
+    }
+
     public long incIndexedNodes() {
         indexedNodes++;
         return indexedNodes;
@@ -412,7 +613,7 @@ public class LuceneIndexEditorContext {
         recordTextExtractionStats(timeInMillis, bytesRead, 0);
     }
 
-    public void recordTextExtractionStats(long timeInMillis, long bytesRead, int textLength) {
+    public synchronized void recordTextExtractionStats(long timeInMillis, long bytesRead, int textLength) {
         textExtractionStats.addStats(timeInMillis, bytesRead, textLength);
     }
 
@@ -479,6 +680,21 @@ public class LuceneIndexEditorContext {
         return TikaConfig.getDefaultConfig();
     }
 
+    private static final class PendingUpdate {
+        final String path;
+        /**
+         * Document to write or null if the documents of the path are to be deleted
+         */
+        final Document doc;
+        final List<Future<Field>> pendingFields;
+
+        PendingUpdate(String path, @Nullable Document doc, List<Future<Field>> pendingFields) {
+            this.path = path;
+            this.doc = doc;
+            this.pendingFields = pendingFields;
+        }
+    }
+
     static class TextExtractionStats {
         /**
          * Log stats only if time spent is more than 2 min
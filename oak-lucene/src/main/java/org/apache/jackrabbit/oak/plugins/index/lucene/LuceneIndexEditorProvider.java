@@ -16,6 +16,8 @@
  */
 package org.apache.jackrabbit.oak.plugins.index.lucene;
 
+import java.util.concurrent.ExecutorService;
+
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -23,6 +25,7 @@ import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.jackrabbit.oak.plugins.index.IndexEditor;
 import org.apache.jackrabbit.oak.plugins.index.IndexEditorProvider;
 import org.apache.jackrabbit.oak.plugins.index.IndexUpdateCallback;
+import org.apache.jackrabbit.oak.plugins.index.PartitionedIndexEditorProvider;
 import org.apache.jackrabbit.oak.spi.commit.Editor;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
@@ -36,10 +39,11 @@ import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstant
  * @see IndexEditorProvider
  * 
  */
-public class LuceneIndexEditorProvider implements IndexEditorProvider {
+public class LuceneIndexEditorProvider implements PartitionedIndexEditorProvider {
     private final IndexCopier indexCopier;
     private final ExtractedTextCache extractedTextCache;
     private final IndexAugmentorFactory augmentorFactory;
+    private final ExecutorService extractionExecutor;
 
     public LuceneIndexEditorProvider() {
         this(null);
@@ -58,9 +62,21 @@ public class LuceneIndexEditorProvider implements IndexEditorProvider {
     public LuceneIndexEditorProvider(@Nullable IndexCopier indexCopier,
                                      ExtractedTextCache extractedTextCache,
                                      IndexAugmentorFactory augmentorFactory) {
+        this(indexCopier, extractedTextCache, augmentorFactory, null);
+    }
+
+    /**
+     * @param extractionExecutor if not null the text of binaries is extracted
+     *                           on this executor while the indexing continues
+     */
+    public LuceneIndexEditorProvider(@Nullable IndexCopier indexCopier,
+                                     ExtractedTextCache extractedTextCache,
+                                     IndexAugmentorFactory augmentorFactory,
+                                     @Nullable ExecutorService extractionExecutor) {
         this.indexCopier = indexCopier;
         this.extractedTextCache = extractedTextCache;
         this.augmentorFactory = augmentorFactory;
+        this.extractionExecutor = extractionExecutor;
     }
 
     @Override
@@ -69,7 +85,18 @@ public class LuceneIndexEditorProvider implements IndexEditorProvider {
             @Nonnull IndexUpdateCallback callback)
             throws CommitFailedException {
         if (TYPE_LUCENE.equals(type)) {
-            return new LuceneIndexEditor(root, definition, callback, indexCopier, extractedTextCache, augmentorFactory);
+            return new LuceneIndexEditor(root, definition, callback, indexCopier, extractedTextCache,
+                    augmentorFactory, extractionExecutor);
+        }
+        return null;
+    }
+
+    @Override
+    public PartitionedReindex getPartitionedReindex(
+            @Nonnull String type, @Nonnull NodeBuilder definition, @Nonnull NodeState root,
+            @Nonnull IndexUpdateCallback callback) {
+        if (TYPE_LUCENE.equals(type)) {
+            return new PartitionedLuceneReindex(root, definition, callback, this);
         }
         return null;
     }
@@ -81,4 +108,12 @@ public class LuceneIndexEditorProvider implements IndexEditorProvider {
     ExtractedTextCache getExtractedTextCache() {
         return extractedTextCache;
     }
+
+    IndexAugmentorFactory getAugmentorFactory() {
+        return augmentorFactory;
+    }
+
+    ExecutorService getExtractionExecutor() {
+        return extractionExecutor;
+    }
 }
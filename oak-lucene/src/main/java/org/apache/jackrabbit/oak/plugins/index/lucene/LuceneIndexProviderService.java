@@ -23,6 +23,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
@@ -50,6 +51,7 @@ import org.apache.jackrabbit.oak.commons.PropertiesUtil;
 import org.apache.jackrabbit.oak.osgi.OsgiWhiteboard;
 import org.apache.jackrabbit.oak.plugins.index.IndexEditorProvider;
 import org.apache.jackrabbit.oak.plugins.index.aggregate.NodeAggregator;
+import org.apache.jackrabbit.oak.plugins.index.fulltext.ExtractedTextStore;
 import org.apache.jackrabbit.oak.plugins.index.fulltext.PreExtractedTextProvider;
 import org.apache.jackrabbit.oak.spi.commit.BackgroundObserver;
 import org.apache.jackrabbit.oak.plugins.index.lucene.score.ScorerProviderFactory;
@@ -189,6 +191,67 @@ public class LuceneIndexProviderService {
     )
     private static final String PROP_BOOLEAN_CLAUSE_LIMIT = "booleanClauseLimit";
 
+    private static final int PROP_BLOCK_CACHE_SIZE_DEFAULT = 64;
+    @Property(
+            intValue = PROP_BLOCK_CACHE_SIZE_DEFAULT,
+            label = "Block cache size (MB)",
+            description = "Cache size in MB for the blocks of index files read from the NodeStore. Only used " +
+                    "when CopyOnRead is disabled. When set to 0 then cache would be disabled"
+    )
+    private static final String PROP_BLOCK_CACHE_SIZE = "blockCacheSizeInMB";
+
+    private static final int PROP_BLOCK_CACHE_READ_AHEAD_DEFAULT = 2;
+    @Property(
+            intValue = PROP_BLOCK_CACHE_READ_AHEAD_DEFAULT,
+            label = "Block cache read ahead",
+            description = "Number of blocks loaded ahead asynchronously when an index file is read sequentially"
+    )
+    private static final String PROP_BLOCK_CACHE_READ_AHEAD = "blockCacheReadAhead";
+
+    private static final int EXECUTOR_THREADS = 5;
+
+    private static final int READ_AHEAD_THREADS = 2;
+
+    private static final int READ_AHEAD_QUEUE_SIZE = 64;
+
+    private static final boolean PROP_HYBRID_INDEXING_DEFAULT = true;
+    @Property(
+            boolValue = PROP_HYBRID_INDEXING_DEFAULT,
+            label = "Enable Hybrid Indexing",
+            description = "Maintains an in memory index of the local changes for the indexes marked with " +
+                    "async = [<lane>, nrt], which is combined with the persisted index at query time"
+    )
+    private static final String PROP_HYBRID_INDEXING = "enableHybridIndexing";
+
+    private static final int PROP_HYBRID_INDEXING_MAX_SIZE_DEFAULT = 50;
+    @Property(
+            intValue = PROP_HYBRID_INDEXING_MAX_SIZE_DEFAULT,
+            label = "Hybrid Indexing Max Size (in MB)",
+            description = "Maximum memory used by the in memory index of the local changes per index. Once " +
+                    "exceeded, for instance because the async lane stalls, the in memory index is discarded " +
+                    "and the local changes only become visible once indexed by the async lane"
+    )
+    private static final String PROP_HYBRID_INDEXING_MAX_SIZE = "hybridIndexingMaxSizeInMB";
+
+    private static final int PROP_SEARCH_THREAD_POOL_SIZE_DEFAULT = 0;
+    @Property(
+            intValue = PROP_SEARCH_THREAD_POOL_SIZE_DEFAULT,
+            label = "Search Thread Pool Size",
+            description = "Size of the thread pool shared by the indexes with parallelSearch enabled to search " +
+                    "the index segments concurrently. When set to 0 the number of available processors is used"
+    )
+    private static final String PROP_SEARCH_THREAD_POOL_SIZE = "searchThreadPoolSize";
+
+    private static final int PROP_EXTRACTION_THREAD_POOL_SIZE_DEFAULT = 2;
+    @Property(
+            intValue = PROP_EXTRACTION_THREAD_POOL_SIZE_DEFAULT,
+            label = "Text Extraction Thread Pool Size",
+            description = "Number of threads used to extract the text of binaries while the index updates " +
+                    "continue. The documents are written in batches once their text is extracted. When set " +
+                    "to 0 the text is extracted in the indexing thread"
+    )
+    private static final String PROP_EXTRACTION_THREAD_POOL_SIZE = "extractionThreadPoolSize";
+
     private Whiteboard whiteboard;
 
     private BackgroundObserver backgroundObserver;
@@ -205,16 +268,34 @@ public class LuceneIndexProviderService {
     )
     private volatile PreExtractedTextProvider extractedTextProvider;
 
+    @Reference(policy = ReferencePolicy.DYNAMIC,
+            cardinality = ReferenceCardinality.OPTIONAL_UNARY,
+            policyOption = ReferencePolicyOption.GREEDY
+    )
+    private volatile ExtractedTextStore extractedTextStore;
+
     private IndexCopier indexCopier;
 
     private File indexDir;
 
     private ExecutorService executorService;
 
+    private ExecutorService searchExecutor;
+
+    private ExecutorService extractionExecutor;
+
+    private ExecutorService readAheadExecutor;
+
     private int threadPoolSize;
 
     private ExtractedTextCache extractedTextCache;
 
+    private OakBlockCache blockCache;
+
+    private NRTIndexFactory nrtIndexFactory;
+
+    private BackgroundObserver localIndexObserver;
+
     @Activate
     private void activate(BundleContext bundleContext, Map<String, ?> config)
             throws NotCompliantMBeanException, IOException {
@@ -236,6 +317,7 @@ public class LuceneIndexProviderService {
 
         regs.add(bundleContext.registerService(QueryIndexProvider.class.getName(), indexProvider, null));
         registerObserver(bundleContext, config);
+        registerLocalIndexObserver(bundleContext);
         registerIndexEditor(bundleContext, config);
 
         oakRegs.add(registerMBean(whiteboard,
@@ -260,11 +342,19 @@ public class LuceneIndexProviderService {
             backgroundObserver.close();
         }
 
+        if (localIndexObserver != null){
+            localIndexObserver.close();
+        }
+
         if (indexProvider != null) {
             indexProvider.close();
             indexProvider = null;
         }
 
+        if (nrtIndexFactory != null){
+            nrtIndexFactory.close();
+        }
+
         //Close the copier first i.e. before executorService
         if (indexCopier != null){
             indexCopier.close();
@@ -275,6 +365,21 @@ public class LuceneIndexProviderService {
             executorService.awaitTermination(1, TimeUnit.MINUTES);
         }
 
+        if (searchExecutor != null){
+            searchExecutor.shutdown();
+            searchExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+
+        if (extractionExecutor != null){
+            extractionExecutor.shutdown();
+            extractionExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+
+        if (readAheadExecutor != null){
+            readAheadExecutor.shutdownNow();
+            readAheadExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+
         InfoStream.setDefault(InfoStream.NO_OUTPUT);
     }
 
@@ -286,6 +391,22 @@ public class LuceneIndexProviderService {
         return extractedTextCache;
     }
 
+    OakBlockCache getBlockCache() {
+        return blockCache;
+    }
+
+    NRTIndexFactory getNRTIndexFactory() {
+        return nrtIndexFactory;
+    }
+
+    ExecutorService getSearchExecutor() {
+        return searchExecutor;
+    }
+
+    ExecutorService getExtractionExecutor() {
+        return extractionExecutor;
+    }
+
     private void initialize(){
         if(indexProvider == null){
             return;
@@ -310,12 +431,15 @@ public class LuceneIndexProviderService {
     private void registerIndexEditor(BundleContext bundleContext, Map<String, ?> config) throws IOException {
         boolean enableCopyOnWrite = PropertiesUtil.toBoolean(config.get(PROP_COPY_ON_WRITE), PROP_COPY_ON_WRITE_DEFAULT);
         LuceneIndexEditorProvider editorProvider;
+        initializeExtractionExecutor(config);
         if (enableCopyOnWrite){
             initializeIndexCopier(bundleContext, config);
-            editorProvider = new LuceneIndexEditorProvider(indexCopier, extractedTextCache, augmentorFactory);
+            editorProvider = new LuceneIndexEditorProvider(indexCopier, extractedTextCache, augmentorFactory,
+                    extractionExecutor);
             log.info("Enabling CopyOnWrite support. Index files would be copied under {}", indexDir.getAbsolutePath());
         } else {
-            editorProvider = new LuceneIndexEditorProvider(null, extractedTextCache, augmentorFactory);
+            editorProvider = new LuceneIndexEditorProvider(null, extractedTextCache, augmentorFactory,
+                    extractionExecutor);
         }
         regs.add(bundleContext.registerService(IndexEditorProvider.class.getName(), editorProvider, null));
         oakRegs.add(registerMBean(whiteboard,
@@ -326,14 +450,100 @@ public class LuceneIndexProviderService {
     }
 
     private IndexTracker createTracker(BundleContext bundleContext, Map<String, ?> config) throws IOException {
+        if (PropertiesUtil.toBoolean(config.get(PROP_HYBRID_INDEXING), PROP_HYBRID_INDEXING_DEFAULT)) {
+            int maxSizeInMB = PropertiesUtil.toInteger(config.get(PROP_HYBRID_INDEXING_MAX_SIZE),
+                    PROP_HYBRID_INDEXING_MAX_SIZE_DEFAULT);
+            nrtIndexFactory = new NRTIndexFactory(maxSizeInMB * ONE_MB);
+            log.info("Hybrid indexing enabled for the indexes marked with the nrt indexing mode");
+        }
+
+        initializeSearchExecutor(config);
+
         boolean enableCopyOnRead = PropertiesUtil.toBoolean(config.get(PROP_COPY_ON_READ), true);
         if (enableCopyOnRead){
             initializeIndexCopier(bundleContext, config);
             log.info("Enabling CopyOnRead support. Index files would be copied under {}", indexDir.getAbsolutePath());
-            return new IndexTracker(indexCopier);
+            return new IndexTracker(indexCopier, null, nrtIndexFactory, searchExecutor);
+        }
+
+        initializeBlockCache(config);
+        return new IndexTracker(null, blockCache, nrtIndexFactory, searchExecutor);
+    }
+
+    private void initializeSearchExecutor(Map<String, ?> config) {
+        int poolSize = PropertiesUtil.toInteger(config.get(PROP_SEARCH_THREAD_POOL_SIZE),
+                PROP_SEARCH_THREAD_POOL_SIZE_DEFAULT);
+        if (poolSize <= 0) {
+            poolSize = Runtime.getRuntime().availableProcessors();
+        }
+
+        //Bounded pool and queue. Once saturated the segments get searched
+        //in the query thread itself
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(poolSize * 4),
+                newThreadFactory("oak-lucene-search-", Thread.NORM_PRIORITY),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        searchExecutor = executor;
+        log.info("Initialized search thread pool of size {} for indexes with parallel search enabled", poolSize);
+    }
+
+    private void initializeExtractionExecutor(Map<String, ?> config) {
+        int poolSize = PropertiesUtil.toInteger(config.get(PROP_EXTRACTION_THREAD_POOL_SIZE),
+                PROP_EXTRACTION_THREAD_POOL_SIZE_DEFAULT);
+        if (poolSize <= 0) {
+            log.info("Text extraction would be done in the indexing thread");
+            return;
         }
 
-        return new IndexTracker();
+        //Bounded pool and queue. Once saturated the text gets extracted
+        //in the indexing thread itself
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(LuceneIndexEditorContext.PENDING_UPDATES_BATCH_SIZE),
+                newThreadFactory("oak-lucene-extraction-", Thread.NORM_PRIORITY),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        extractionExecutor = executor;
+        log.info("Initialized text extraction thread pool of size {}", poolSize);
+    }
+
+    private void initializeBlockCache(Map<String, ?> config) {
+        int cacheSizeInMB = PropertiesUtil.toInteger(config.get(PROP_BLOCK_CACHE_SIZE),
+                PROP_BLOCK_CACHE_SIZE_DEFAULT);
+        int readAhead = PropertiesUtil.toInteger(config.get(PROP_BLOCK_CACHE_READ_AHEAD),
+                PROP_BLOCK_CACHE_READ_AHEAD_DEFAULT);
+        if (cacheSizeInMB <= 0) {
+            return;
+        }
+
+        blockCache = new OakBlockCache(cacheSizeInMB * ONE_MB, readAhead, createReadAheadExecutor());
+        CacheStats stats = blockCache.getCacheStats();
+        oakRegs.add(registerMBean(whiteboard,
+                CacheStatsMBean.class, stats,
+                CacheStatsMBean.TYPE, stats.getName()));
+        oakRegs.add(registerMBean(whiteboard,
+                BlockCacheStatsMBean.class,
+                blockCache,
+                BlockCacheStatsMBean.TYPE,
+                "Lucene block cache statistics"));
+        log.info("Block caching of index files enabled with maxSize {} MB, read ahead {} blocks",
+                cacheSizeInMB, readAhead);
+    }
+
+    /**
+     * Read ahead gets its own small pool, so that it does not delay the
+     * index refresh and copying done by the shared executor. Once the pool
+     * and its queue are saturated read ahead requests get rejected, and
+     * the blocks are read on demand.
+     */
+    private ExecutorService createReadAheadExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(READ_AHEAD_THREADS, READ_AHEAD_THREADS,
+                60L, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(READ_AHEAD_QUEUE_SIZE),
+                newThreadFactory("oak-lucene-readahead-", Thread.MIN_PRIORITY),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        readAheadExecutor = executor;
+        return executor;
     }
 
     private void initializeIndexCopier(BundleContext bundleContext, Map<String, ?> config) throws IOException {
@@ -375,9 +585,23 @@ public class LuceneIndexProviderService {
         return executorService;
     }
 
+    /**
+     * The shared executor for copying index files and the background
+     * observers. With an unbounded queue a pool never grows beyond its
+     * core size, so core and max size are the same, and idle threads
+     * time out instead.
+     */
     private ExecutorService createExecutor() {
-        ThreadPoolExecutor executor = new ThreadPoolExecutor(0, 5, 60L, TimeUnit.SECONDS,
-                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(EXECUTOR_THREADS, EXECUTOR_THREADS,
+                60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                newThreadFactory("oak-lucene-", Thread.MIN_PRIORITY));
+        executor.setKeepAliveTime(1, TimeUnit.MINUTES);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private ThreadFactory newThreadFactory(final String namePrefix, final int priority) {
+        return new ThreadFactory() {
             private final AtomicInteger counter = new AtomicInteger();
             private final Thread.UncaughtExceptionHandler handler = new Thread.UncaughtExceptionHandler() {
                 @Override
@@ -389,18 +613,15 @@ public class LuceneIndexProviderService {
             public Thread newThread(@Nonnull Runnable r) {
                 Thread thread = new Thread(r, createName());
                 thread.setDaemon(true);
-                thread.setPriority(Thread.MIN_PRIORITY);
+                thread.setPriority(priority);
                 thread.setUncaughtExceptionHandler(handler);
                 return thread;
             }
 
             private String createName() {
-                return "oak-lucene-" + counter.getAndIncrement();
+                return namePrefix + counter.getAndIncrement();
             }
-        });
-        executor.setKeepAliveTime(1, TimeUnit.MINUTES);
-        executor.allowCoreThreadTimeOut(true);
-        return executor;
+        };
     }
 
     private void registerObserver(BundleContext bundleContext, Map<String, ?> config) {
@@ -419,6 +640,20 @@ public class LuceneIndexProviderService {
         regs.add(bundleContext.registerService(Observer.class.getName(), observer, null));
     }
 
+    private void registerLocalIndexObserver(BundleContext bundleContext) {
+        if (nrtIndexFactory == null) {
+            return;
+        }
+        localIndexObserver = new BackgroundObserver(new LocalIndexObserver(nrtIndexFactory,
+                extractedTextCache, augmentorFactory), getExecutorService(), 1000);
+        oakRegs.add(registerMBean(whiteboard,
+                BackgroundObserverMBean.class,
+                localIndexObserver.getMBean(),
+                BackgroundObserverMBean.TYPE,
+                "LuceneLocalIndexObserver queue stats"));
+        regs.add(bundleContext.registerService(Observer.class.getName(), localIndexObserver, null));
+    }
+
     private void initializeFactoryClassLoaders(ClassLoader classLoader) {
         ClassLoader originalClassLoader = Thread.currentThread()
                 .getContextClassLoader();
@@ -457,6 +692,9 @@ public class LuceneIndexProviderService {
         if (extractedTextProvider != null){
             registerExtractedTextProvider(extractedTextProvider);
         }
+        if (extractedTextStore != null){
+            registerExtractedTextStore(extractedTextStore);
+        }
         CacheStats stats = extractedTextCache.getCacheStats();
         if (stats != null){
             oakRegs.add(registerMBean(whiteboard,
@@ -481,6 +719,17 @@ public class LuceneIndexProviderService {
         }
     }
 
+    private void registerExtractedTextStore(ExtractedTextStore store){
+        if (extractedTextCache != null){
+            if (store != null){
+                log.info("Registering ExtractedTextStore {} with extracted text cache", store);
+            } else {
+                log.info("Unregistering ExtractedTextStore with extracted text cache");
+            }
+            extractedTextCache.setExtractedTextStore(store);
+        }
+    }
+
     private void configureBooleanClauseLimit(Map<String, ?> config) {
         int booleanClauseLimit = PropertiesUtil.toInteger(config.get(PROP_BOOLEAN_CLAUSE_LIMIT),
                 PROP_BOOLEAN_CLAUSE_LIMIT_DEFAULT);
@@ -521,4 +770,14 @@ public class LuceneIndexProviderService {
         this.extractedTextProvider = null;
         registerExtractedTextProvider(null);
     }
+
+    protected void bindExtractedTextStore(ExtractedTextStore store){
+        this.extractedTextStore = store;
+        registerExtractedTextStore(store);
+    }
+
+    protected void unbindExtractedTextStore(ExtractedTextStore store){
+        this.extractedTextStore = null;
+        registerExtractedTextStore(null);
+    }
 }
@@ -26,6 +26,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -55,6 +56,7 @@ import org.apache.jackrabbit.oak.plugins.index.lucene.util.FacetHelper;
 import org.apache.jackrabbit.oak.plugins.index.lucene.util.MoreLikeThisHelper;
 import org.apache.jackrabbit.oak.plugins.index.lucene.util.SpellcheckHelper;
 import org.apache.jackrabbit.oak.plugins.index.lucene.util.SuggestHelper;
+import org.apache.jackrabbit.oak.plugins.memory.PropertyStates;
 import org.apache.jackrabbit.oak.query.QueryEngineSettings;
 import org.apache.jackrabbit.oak.query.QueryImpl;
 import org.apache.jackrabbit.oak.query.fulltext.FullTextAnd;
@@ -87,9 +89,11 @@ import org.apache.lucene.facet.MultiFacets;
 import org.apache.lucene.facet.sortedset.DefaultSortedSetDocValuesReaderState;
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetCounts;
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
+import org.apache.lucene.index.CompositeReader;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.FieldInfo;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexReaderContext;
 import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.index.MultiFields;
 import org.apache.lucene.index.SortedSetDocValues;
@@ -148,6 +152,7 @@ import static org.apache.jackrabbit.oak.plugins.index.lucene.TermFactory.newAnce
 import static org.apache.jackrabbit.oak.plugins.index.lucene.TermFactory.newPathTerm;
 import static org.apache.jackrabbit.oak.query.QueryImpl.JCR_PATH;
 import static org.apache.jackrabbit.oak.spi.query.QueryIndex.AdvancedQueryIndex;
+import static org.apache.jackrabbit.oak.spi.query.QueryIndex.NamedPlanQueryIndex;
 import static org.apache.jackrabbit.oak.spi.query.QueryIndex.NativeQueryIndex;
 import static org.apache.lucene.search.BooleanClause.Occur.*;
 
@@ -190,7 +195,7 @@ import static org.apache.lucene.search.BooleanClause.Occur.*;
  * @see org.apache.jackrabbit.oak.spi.query.QueryIndex
  *
  */
-public class LucenePropertyIndex implements AdvancedQueryIndex, QueryIndex, NativeQueryIndex,
+public class LucenePropertyIndex implements AdvancedQueryIndex, NamedPlanQueryIndex, QueryIndex, NativeQueryIndex,
         AdvanceFulltextQueryIndex {
 
     private static double MIN_COST = 2.1;
@@ -243,6 +248,22 @@ public class LucenePropertyIndex implements AdvancedQueryIndex, QueryIndex, Nati
     @Override
     public List<IndexPlan> getPlans(Filter filter, List<OrderEntry> sortOrder, NodeState rootState) {
         Collection<String> indexPaths = new LuceneIndexLookup(rootState).collectIndexNodePaths(filter);
+        return getPlans(filter, sortOrder, indexPaths);
+    }
+
+    @Override
+    public List<IndexPlan> getPlans(Filter filter, List<OrderEntry> sortOrder, NodeState rootState,
+                                    String planName) {
+        //The plan name is the index path. Only that index is planned, as long
+        //as it still applies to the filter
+        Collection<String> indexPaths = new LuceneIndexLookup(rootState).collectIndexNodePaths(filter);
+        if (!indexPaths.contains(planName)) {
+            return Collections.emptyList();
+        }
+        return getPlans(filter, sortOrder, Collections.singleton(planName));
+    }
+
+    private List<IndexPlan> getPlans(Filter filter, List<OrderEntry> sortOrder, Collection<String> indexPaths) {
         List<IndexPlan> plans = Lists.newArrayListWithCapacity(indexPaths.size());
         for (String path : indexPaths) {
             IndexNode indexNode = null;
@@ -306,7 +327,7 @@ public class LucenePropertyIndex implements AdvancedQueryIndex, QueryIndex, Nati
     }
 
     @Override
-    public Cursor query(final IndexPlan plan, NodeState rootState) {
+    public Cursor query(final IndexPlan plan, final NodeState rootState) {
         final Filter filter = plan.getFilter();
         final Sort sort = getSort(plan);
         final PlanResult pr = getPlanResult(plan);
@@ -318,6 +339,8 @@ public class LucenePropertyIndex implements AdvancedQueryIndex, QueryIndex, Nati
             private int nextBatchSize = LUCENE_QUERY_BATCH_SIZE;
             private boolean noDocs = false;
             private long lastSearchIndexerVersion;
+            private boolean hybrid;
+            private boolean loadStoredValues;
 
             @Override
             protected LuceneResultRow computeNext() {
@@ -332,7 +355,7 @@ public class LucenePropertyIndex implements AdvancedQueryIndex, QueryIndex, Nati
                 IndexReader reader = searcher.getIndexReader();
                 //TODO Look into usage of field cache for retrieving the path
                 //instead of reading via reader if no of docs in index are limited
-                PathStoredFieldVisitor visitor = new PathStoredFieldVisitor();
+                PathStoredFieldVisitor visitor = new PathStoredFieldVisitor(loadStoredValues);
                 reader.document(doc.doc, visitor);
                 String path = visitor.getPath();
                 if (path != null) {
@@ -354,14 +377,33 @@ public class LucenePropertyIndex implements AdvancedQueryIndex, QueryIndex, Nati
                             return null;
                         }
                         seenPaths.add(path);
+                    } else if (hybrid && !seenPaths.add(path)) {
+                        LOG.trace("Ignoring path {} : Duplicate from near real time index", path);
+                        return null;
                     }
 
                     LOG.trace("Matched path {}", path);
-                    return new LuceneResultRow(path, doc.score, excerpt, facets, explanation);
+                    LuceneResultRow row = new LuceneResultRow(path, doc.score, excerpt, facets, explanation);
+                    if (loadStoredValues) {
+                        row.storedValues = getStoredValues(visitor.getStoredValues());
+                    }
+                    return row;
                 }
                 return null;
             }
 
+            private Map<String, PropertyValue> getStoredValues(Map<String, String> values) {
+                Map<String, PropertyValue> result = new HashMap<String, PropertyValue>();
+                for (Map.Entry<String, String> e : values.entrySet()) {
+                    PropertyDefinition pd = pr.indexingRule.getConfig(e.getKey());
+                    if (pd != null && pd.storeValue) {
+                        result.put(e.getKey(), PropertyValues.create(
+                                PropertyStates.createProperty(e.getKey(), e.getValue(), pd.getType())));
+                    }
+                }
+                return result;
+            }
+
             /**
              * Loads the lucene documents in batches
              * @return true if any document is loaded
@@ -377,7 +419,14 @@ public class LucenePropertyIndex implements AdvancedQueryIndex, QueryIndex, Nati
                 final IndexNode indexNode = acquireIndexNode(plan);
                 checkState(indexNode != null);
                 try {
-                    IndexSearcher searcher = indexNode.getSearcher();
+                    IndexSearcher searcher = indexNode.getHybridSearcher();
+                    hybrid = indexNode.hasNRTIndexes();
+                    //Stored values belong to the indexed node so they can not be used
+                    //if the path gets transformed to some other node. They are only
+                    //loaded if the index reflects the root of the query, otherwise
+                    //they may be stale or belong to removed nodes
+                    loadStoredValues = pr.indexingRule.storedValuesEnabled && !pr.isPathTransformed()
+                            && !hybrid && indexNode.isUpToDate(rootState, pr.indexPath);
                     LuceneRequestFacade luceneRequestFacade = getLuceneRequest(plan, augmentorFactory, searcher.getIndexReader());
                     if (luceneRequestFacade.getLuceneRequest() instanceof Query) {
                         Query query = (Query) luceneRequestFacade.getLuceneRequest();
@@ -412,7 +461,10 @@ public class LucenePropertyIndex implements AdvancedQueryIndex, QueryIndex, Nati
                             nextBatchSize = (int) Math.min(nextBatchSize * 2L, 100000);
 
                             long f = PERF_LOGGER.start();
-                            Facets facets = FacetHelper.getFacets(searcher, query, docs, plan, indexNode.getDefinition().isSecureFacets());
+                            Facets facets = FacetHelper.getFacets(searcher, query, docs, plan,
+                                    indexNode.getDefinition().isSecureFacets(),
+                                    indexNode.getDefinition().getSecureFacetsSampleSize(),
+                                    indexNode.getFacetReaderStates(searcher));
                             PERF_LOGGER.end(f, -1, "facets retrieved");
 
                             PropertyRestriction restriction = filter.getPropertyRestriction(QueryImpl.REP_EXCERPT);
@@ -530,7 +582,7 @@ public class LucenePropertyIndex implements AdvancedQueryIndex, QueryIndex, Nati
                 IndexNode indexNode = acquireIndexNode(plan);
                 checkState(indexNode != null);
                 try {
-                    IndexSearcher searcher = indexNode.getSearcher();
+                    IndexSearcher searcher = indexNode.getHybridSearcher();
                     LuceneRequestFacade luceneRequestFacade = getLuceneRequest(plan, augmentorFactory, searcher.getIndexReader());
                     if (luceneRequestFacade.getLuceneRequest() instanceof Query) {
                         Query query = (Query) luceneRequestFacade.getLuceneRequest();
@@ -1153,6 +1205,20 @@ public class LucenePropertyIndex implements AdvancedQueryIndex, QueryIndex, Nati
         if (reader instanceof DirectoryReader) {
             return ((DirectoryReader) reader).getVersion();
         }
+        if (reader instanceof CompositeReader) {
+            //Hybrid searcher combining the persisted and the near real time readers
+            List<IndexReaderContext> children = reader.getContext().children();
+            if (children != null) {
+                long version = 0;
+                for (IndexReaderContext child : children) {
+                    if (!(child.reader() instanceof DirectoryReader)) {
+                        return -1;
+                    }
+                    version = 31 * version + ((DirectoryReader) child.reader()).getVersion();
+                }
+                return version;
+            }
+        }
         return -1;
     }
 
@@ -1434,6 +1500,11 @@ public class LucenePropertyIndex implements AdvancedQueryIndex, QueryIndex, Nati
         final String excerpt;
         final String explanation;
         final Facets facets;
+        /**
+         * Property values stored in the index for this row, keyed by property name.
+         * Null if the index does not store any values
+         */
+        Map<String, PropertyValue> storedValues;
 
         LuceneResultRow(String path, double score, String excerpt, Facets facets, String explanation) {
             this.explanation = explanation;
@@ -1574,6 +1645,12 @@ public class LucenePropertyIndex implements AdvancedQueryIndex, QueryIndex, Nati
                             throw new RuntimeException(e);
                         }
                     }
+                    if (currentRow.storedValues != null) {
+                        PropertyValue value = currentRow.storedValues.get(columnName);
+                        if (value != null) {
+                            return value;
+                        }
+                    }
                     return pathRow.getValue(columnName);
                 }
 
@@ -1592,14 +1669,32 @@ public class LucenePropertyIndex implements AdvancedQueryIndex, QueryIndex, Nati
 
     static class PathStoredFieldVisitor extends StoredFieldVisitor {
 
+        private final boolean loadStoredValues;
+        private final Map<String, String> storedValues = new HashMap<String, String>();
         private String path;
         private boolean pathVisited;
 
+        PathStoredFieldVisitor() {
+            this(false);
+        }
+
+        /**
+         * @param loadStoredValues whether the property values stored via
+         *                         {@link FieldNames#STORED_VALUE_PREFIX} fields
+         *                         should be loaded along with the path
+         */
+        PathStoredFieldVisitor(boolean loadStoredValues) {
+            this.loadStoredValues = loadStoredValues;
+        }
+
         @Override
         public Status needsField(FieldInfo fieldInfo) throws IOException {
             if (PATH.equals(fieldInfo.name)) {
                 return Status.YES;
             }
+            if (loadStoredValues) {
+                return fieldInfo.name.startsWith(FieldNames.STORED_VALUE_PREFIX) ? Status.YES : Status.NO;
+            }
             return pathVisited ? Status.STOP : Status.NO;
         }
 
@@ -1609,12 +1704,18 @@ public class LucenePropertyIndex implements AdvancedQueryIndex, QueryIndex, Nati
             if (PATH.equals(fieldInfo.name)) {
                 path = value;
                 pathVisited = true;
+            } else if (fieldInfo.name.startsWith(FieldNames.STORED_VALUE_PREFIX)) {
+                storedValues.put(fieldInfo.name.substring(FieldNames.STORED_VALUE_PREFIX.length()), value);
             }
         }
 
         public String getPath() {
             return path;
         }
+
+        public Map<String, String> getStoredValues() {
+            return storedValues;
+        }
     }
 
 }
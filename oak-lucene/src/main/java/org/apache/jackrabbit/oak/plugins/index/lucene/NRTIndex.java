@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.CheckForNull;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.RAMDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkState;
+import static org.apache.jackrabbit.oak.commons.IOUtils.humanReadableByteCount;
+
+/**
+ * In memory Lucene index holding the documents for the changes made on the
+ * local cluster node since the async lane of an index took its checkpoint.
+ * The documents are written by the {@link LocalIndexObserver} and searched
+ * together with the persisted index via {@link IndexNode}.
+ * <p>
+ * Readers must {@link #acquire()} the index before using the reader returned
+ * by {@link #getReader()} and {@link #release()} it afterwards. The reader is
+ * only swapped or closed while no reader holds the index.
+ * <p>
+ * The memory used by an index is capped. Once a refresh finds it above the
+ * limit, for instance because the async lane stalls, the index is discarded
+ * and searches only see the persisted index till the next generation starts.
+ */
+class NRTIndex implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(NRTIndex.class);
+
+    private final IndexDefinition definition;
+
+    private final String indexPath;
+
+    private final int generation;
+
+    private final long maxSize;
+
+    private final RAMDirectory directory = new RAMDirectory();
+
+    private final IndexWriter writer;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Reader for the last refreshed state of the writer. Guarded by
+     * {@link #lock}, null till the first refresh and after close.
+     */
+    private DirectoryReader reader;
+
+    private boolean closed;
+
+    NRTIndex(IndexDefinition definition, String indexPath, int generation, long maxSize) throws IOException {
+        this.definition = definition;
+        this.indexPath = indexPath;
+        this.generation = generation;
+        this.maxSize = maxSize;
+        this.writer = new IndexWriter(directory,
+                LuceneIndexEditorContext.getIndexWriterConfig(definition, true));
+    }
+
+    IndexDefinition getDefinition() {
+        return definition;
+    }
+
+    IndexWriter getWriter() {
+        return writer;
+    }
+
+    /**
+     * Makes the changes done so far via the writer visible to searches. The
+     * index is closed instead if it has grown beyond its maximum size.
+     */
+    void refreshReader() throws IOException {
+        DirectoryReader current;
+        lock.readLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            current = reader;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        long size = getSize();
+        if (size > maxSize) {
+            log.warn("{} uses {} which is more than the allowed {}. Discarding it, recent local " +
+                    "changes only become visible once indexed by the async lane", this,
+                    humanReadableByteCount(size), humanReadableByteCount(maxSize));
+            close();
+            return;
+        }
+
+        DirectoryReader newReader = current == null
+                ? DirectoryReader.open(writer, true)
+                : DirectoryReader.openIfChanged(current, writer, true);
+        if (newReader == null) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            checkState(reader == current, "Concurrent refresh of %s", this);
+            if (closed) {
+                newReader.close();
+                return;
+            }
+            reader = newReader;
+            if (current != null) {
+                current.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the memory used by the indexed documents, including the ones
+     * still buffered by the writer
+     */
+    long getSize() {
+        return directory.sizeInBytes() + writer.ramSizeInBytes();
+    }
+
+    /**
+     * @return {@code true} once the index got closed, either explicitly or
+     * because it exceeded its maximum size
+     */
+    boolean isClosed() {
+        lock.readLock().lock();
+        try {
+            return closed;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void acquire() {
+        lock.readLock().lock();
+    }
+
+    /**
+     * @return the reader over the indexed local changes or {@code null} if
+     * nothing is indexed yet or the index is closed. Only valid while the
+     * index is acquired
+     */
+    @CheckForNull
+    DirectoryReader getReader() {
+        return reader;
+    }
+
+    void release() {
+        lock.readLock().unlock();
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if (reader != null) {
+                    reader.close();
+                    reader = null;
+                }
+                // nothing to be kept, so skip the commit done by close
+                writer.rollback();
+            } finally {
+                directory.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.debug("Closed {}", this);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("NRTIndex(%s, generation %d)", indexPath, generation);
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.CheckForNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Manages the {@link NRTIndex} generations per index path. Each time the
+ * persisted index is reopened after an async indexing cycle a new generation
+ * is started. The previous generation is retained as it still holds the
+ * changes done after the checkpoint of that cycle was taken, while all older
+ * generations are covered by the persisted index and get closed.
+ * <p>
+ * Each generation may use up to the configured maximum size of memory, see
+ * {@link NRTIndex}.
+ */
+class NRTIndexFactory implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(NRTIndexFactory.class);
+
+    /**
+     * Number of generations kept per index, the current and the previous one
+     */
+    private static final int MAX_GENERATIONS = 2;
+
+    /**
+     * Default maximum size in bytes of a single generation
+     */
+    static final long DEFAULT_MAX_SIZE = 50 * 1024 * 1024;
+
+    private final Map<String, List<NRTIndex>> indexes = Maps.newHashMap();
+
+    private final long maxSize;
+
+    private int generationCounter;
+
+    NRTIndexFactory() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize maximum size in bytes of the memory used by a single
+     *                generation of an index
+     */
+    NRTIndexFactory(long maxSize) {
+        checkArgument(maxSize > 0, "maxSize must be positive: %s", maxSize);
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the current generation for the given index, starting a first
+     * one if none exists yet. The returned generation is closed if it
+     * exceeded its maximum size.
+     */
+    synchronized NRTIndex getIndex(String indexPath, NodeState root, NodeState definition) throws IOException {
+        List<NRTIndex> generations = indexes.get(indexPath);
+        if (generations == null || generations.isEmpty()) {
+            return startGeneration(indexPath, new IndexDefinition(root, definition)).get(0);
+        }
+        return generations.get(generations.size() - 1);
+    }
+
+    /**
+     * Starts a new generation for the given index and closes the generations
+     * which are no longer needed.
+     *
+     * @return the retained generations, oldest first
+     */
+    synchronized List<NRTIndex> startGeneration(String indexPath, IndexDefinition definition) throws IOException {
+        List<NRTIndex> generations = indexes.get(indexPath);
+        if (generations == null) {
+            generations = Lists.newArrayList();
+            indexes.put(indexPath, generations);
+        }
+        generations.add(new NRTIndex(definition, indexPath, ++generationCounter, maxSize));
+        while (generations.size() > MAX_GENERATIONS) {
+            close(generations.remove(0));
+        }
+        return ImmutableList.copyOf(generations);
+    }
+
+    /**
+     * @return the retained generations of the given index, oldest first, or
+     * {@code null} if the index has none
+     */
+    @CheckForNull
+    synchronized List<NRTIndex> getGenerations(String indexPath) {
+        List<NRTIndex> generations = indexes.get(indexPath);
+        return generations != null ? ImmutableList.copyOf(generations) : null;
+    }
+
+    /**
+     * Closes all generations of an index which is no longer NRT enabled.
+     */
+    synchronized void remove(String indexPath) {
+        List<NRTIndex> generations = indexes.remove(indexPath);
+        if (generations != null) {
+            for (NRTIndex index : generations) {
+                close(index);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        for (List<NRTIndex> generations : indexes.values()) {
+            for (NRTIndex index : generations) {
+                close(index);
+            }
+        }
+        indexes.clear();
+    }
+
+    private static void close(NRTIndex index) {
+        try {
+            index.close();
+        } catch (IOException e) {
+            log.warn("Error occurred while closing {}", index, e);
+        }
+    }
+}
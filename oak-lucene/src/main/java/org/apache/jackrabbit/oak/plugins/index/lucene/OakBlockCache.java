@@ -0,0 +1,328 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.jackrabbit.oak.cache.CacheStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.jackrabbit.oak.commons.IOUtils.humanReadableByteCount;
+
+/**
+ * Size bounded cache for the blocks of Lucene files stored in the NodeStore.
+ * The blocks are keyed by the content identity of their blob, so all
+ * {@code IndexInput}s and their clones share the cached blocks, even across
+ * index revisions. Blobs without a content identity are not cached.
+ * <p>
+ * A reader reading blocks sequentially can request the following blocks to
+ * be loaded ahead asynchronously. A block is only requested once while it is
+ * being loaded, and requests rejected by the executor are dropped.
+ */
+class OakBlockCache implements BlockCacheStatsMBean {
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final Cache<String, byte[]> cache;
+
+    private final CacheStats cacheStats;
+
+    private final long maxWeight;
+
+    private final int readAheadBlocks;
+
+    private final Executor executor;
+
+    private final ConcurrentMap<String, IndexStats> indexStats = Maps.newConcurrentMap();
+
+    private final AtomicLong readAheadCount = new AtomicLong();
+
+    private final AtomicLong readAheadDropped = new AtomicLong();
+
+    /**
+     * Ids of the blocks currently loaded ahead
+     */
+    private final Set<String> readAheadPending =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    public OakBlockCache(long maxWeight, int readAheadBlocks, @Nonnull Executor executor) {
+        this.maxWeight = maxWeight;
+        this.readAheadBlocks = readAheadBlocks;
+        this.executor = checkNotNull(executor);
+        this.cache = CacheBuilder.newBuilder()
+                .weigher(BlockWeigher.INSTANCE)
+                .maximumWeight(maxWeight)
+                .recordStats()
+                .build();
+        this.cacheStats = new CacheStats(cache, "LuceneBlockCache",
+                BlockWeigher.INSTANCE, maxWeight);
+    }
+
+    /**
+     * Returns the content of the given block, loading it into the cache
+     * if required.
+     *
+     * @param indexName name of the index the block belongs to
+     * @param blob the blob of the block
+     * @param length the number of bytes to read from the blob
+     * @return the content of the block or {@code null} if the blob cannot
+     *          be cached. The returned array must not be modified.
+     */
+    @CheckForNull
+    public byte[] get(String indexName, final Blob blob, final int length) throws IOException {
+        String id = blob.getContentIdentity();
+        if (id == null) {
+            return null;
+        }
+        final boolean[] loaded = new boolean[1];
+        byte[] block;
+        try {
+            block = cache.get(id, new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws IOException {
+                    loaded[0] = true;
+                    return read(blob, length);
+                }
+            });
+        } catch (ExecutionException e) {
+            throw asIOException(e.getCause());
+        } catch (UncheckedExecutionException e) {
+            throw asIOException(e.getCause());
+        }
+        IndexStats stats = getIndexStats(indexName);
+        if (loaded[0]) {
+            stats.misses.incrementAndGet();
+        } else {
+            stats.hits.incrementAndGet();
+        }
+        return block;
+    }
+
+    /**
+     * Loads the given block asynchronously into the cache, unless it is
+     * already cached or being loaded. The request is dropped if the
+     * executor is saturated.
+     */
+    public void readAhead(final String indexName, final Blob blob, final int length) {
+        final String id = blob.getContentIdentity();
+        if (id == null || cache.asMap().containsKey(id) || !readAheadPending.add(id)) {
+            return;
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (cache.getIfPresent(id) != null) {
+                            return;
+                        }
+                        cache.put(id, read(blob, length));
+                        readAheadCount.incrementAndGet();
+                        getIndexStats(indexName).readAhead.incrementAndGet();
+                    } catch (IOException e) {
+                        log.debug("[{}] Failed to read ahead block {}", indexName, id, e);
+                    } finally {
+                        readAheadPending.remove(id);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            readAheadPending.remove(id);
+            readAheadDropped.incrementAndGet();
+        }
+    }
+
+    @Nonnull
+    public CacheStats getCacheStats() {
+        return cacheStats;
+    }
+
+    void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    //~------------------------------------------< BlockCacheStatsMBean >
+
+    @Override
+    public TabularData getIndexStats() {
+        TabularDataSupport tds;
+        try {
+            TabularType tt = new TabularType(IndexStatsData.class.getName(),
+                    "Lucene Block Cache Stats", IndexStatsData.TYPE, new String[]{"index"});
+            tds = new TabularDataSupport(tt);
+            for (Map.Entry<String, IndexStats> e : indexStats.entrySet()) {
+                IndexStats stats = e.getValue();
+                long hits = stats.hits.get();
+                long requests = hits + stats.misses.get();
+                double hitRate = requests == 0 ? 1.0 : (double) hits / requests;
+                tds.put(new CompositeDataSupport(IndexStatsData.TYPE,
+                        IndexStatsData.FIELD_NAMES,
+                        new Object[]{e.getKey(), hits, stats.misses.get(),
+                                hitRate, stats.readAhead.get()}));
+            }
+        } catch (OpenDataException e) {
+            throw new IllegalStateException(e);
+        }
+        return tds;
+    }
+
+    @Override
+    public int getReadAheadBlocks() {
+        return readAheadBlocks;
+    }
+
+    @Override
+    public long getReadAheadCount() {
+        return readAheadCount.get();
+    }
+
+    @Override
+    public long getReadAheadDroppedCount() {
+        return readAheadDropped.get();
+    }
+
+    @Override
+    public String getCacheSize() {
+        return humanReadableByteCount(cacheStats.estimateCurrentWeight());
+    }
+
+    @Override
+    public String getMaxCacheSize() {
+        return humanReadableByteCount(maxWeight);
+    }
+
+    //~------------------------------------------< internal >
+
+    private IndexStats getIndexStats(String indexName) {
+        IndexStats stats = indexStats.get(indexName);
+        if (stats == null) {
+            IndexStats newStats = new IndexStats();
+            stats = indexStats.putIfAbsent(indexName, newStats);
+            if (stats == null) {
+                stats = newStats;
+            }
+        }
+        return stats;
+    }
+
+    private static byte[] read(Blob blob, int length) throws IOException {
+        byte[] block = new byte[length];
+        InputStream stream = blob.getNewStream();
+        try {
+            ByteStreams.readFully(stream, block);
+        } finally {
+            stream.close();
+        }
+        return block;
+    }
+
+    private static IOException asIOException(Throwable t) {
+        if (t instanceof IOException) {
+            return (IOException) t;
+        }
+        return new IOException(t);
+    }
+
+    private static class IndexStats {
+        final AtomicLong hits = new AtomicLong();
+        final AtomicLong misses = new AtomicLong();
+        final AtomicLong readAhead = new AtomicLong();
+    }
+
+    private static class BlockWeigher implements Weigher<String, byte[]> {
+        static final BlockWeigher INSTANCE = new BlockWeigher();
+
+        @Override
+        public int weigh(String key, byte[] value) {
+            return 16 + key.length() * 2 + 16 + value.length;
+        }
+    }
+
+    private static class IndexStatsData {
+        static final String[] FIELD_NAMES = new String[]{
+                "index",
+                "hitCount",
+                "missCount",
+                "hitRate",
+                "readAheadCount",
+        };
+
+        static final String[] FIELD_DESCRIPTIONS = new String[]{
+                "Index",
+                "Hit Count",
+                "Miss Count",
+                "Hit Rate",
+                "Read Ahead Count",
+        };
+
+        static final OpenType[] FIELD_TYPES = new OpenType[]{
+                SimpleType.STRING,
+                SimpleType.LONG,
+                SimpleType.LONG,
+                SimpleType.DOUBLE,
+                SimpleType.LONG,
+        };
+
+        static final CompositeType TYPE = createCompositeType();
+
+        static CompositeType createCompositeType() {
+            try {
+                return new CompositeType(
+                        IndexStatsData.class.getName(),
+                        "Composite data type for Block Cache Index Stats",
+                        IndexStatsData.FIELD_NAMES,
+                        IndexStatsData.FIELD_DESCRIPTIONS,
+                        IndexStatsData.FIELD_TYPES);
+            } catch (OpenDataException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
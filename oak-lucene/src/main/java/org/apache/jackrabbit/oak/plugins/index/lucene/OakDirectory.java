@@ -28,6 +28,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
+import javax.annotation.Nullable;
+
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 import com.google.common.io.ByteStreams;
@@ -83,12 +85,18 @@ class OakDirectory extends Directory {
     private final Set<String> fileNames = Sets.newConcurrentHashSet();
     private final boolean activeDeleteEnabled;
     private final String indexName;
+    private final OakBlockCache blockCache;
 
     public OakDirectory(NodeBuilder builder, IndexDefinition definition, boolean readOnly) {
         this(builder, INDEX_DATA_CHILD_NAME, definition, readOnly);
     }
 
     public OakDirectory(NodeBuilder builder, String dataNodeName, IndexDefinition definition, boolean readOnly) {
+        this(builder, dataNodeName, definition, readOnly, null);
+    }
+
+    public OakDirectory(NodeBuilder builder, String dataNodeName, IndexDefinition definition,
+                        boolean readOnly, @Nullable OakBlockCache blockCache) {
         this.lockFactory = NoLockFactory.getNoLockFactory();
         this.builder = builder;
         this.directoryBuilder = readOnly ? builder.getChildNode(dataNodeName) : builder.child(dataNodeName);
@@ -97,6 +105,7 @@ class OakDirectory extends Directory {
         this.fileNames.addAll(getListing());
         this.activeDeleteEnabled = definition.getActiveDeleteEnabled();
         this.indexName = definition.getIndexName();
+        this.blockCache = blockCache;
     }
 
     @Override
@@ -141,7 +150,7 @@ class OakDirectory extends Directory {
     @Override
     public long fileLength(String name) throws IOException {
         NodeBuilder file = directoryBuilder.getChildNode(name);
-        OakIndexInput input = new OakIndexInput(name, file, indexName);
+        OakIndexInput input = new OakIndexInput(name, file, indexName, null);
         try {
             return input.length();
         } finally {
@@ -174,7 +183,7 @@ class OakDirectory extends Directory {
             throws IOException {
         NodeBuilder file = directoryBuilder.getChildNode(name);
         if (file.exists()) {
-            return new OakIndexInput(name, file, indexName);
+            return new OakIndexInput(name, file, indexName, blockCache);
         } else {
             String msg = String.format("[%s] %s", indexName, name);
             throw new FileNotFoundException(msg);
@@ -295,6 +304,18 @@ class OakDirectory extends Directory {
          * The data of the currently loaded blob.
          */
         private byte[] blob;
+
+        /**
+         * Whether the currently loaded blob is shared with the block cache,
+         * in which case it must not be modified.
+         */
+        private boolean blobShared;
+
+        /**
+         * The cache for the blocks read, or {@code null} if the blocks are
+         * read directly from the blobs.
+         */
+        private final OakBlockCache blockCache;
         
         /**
          * The unique key that is used to make the content unique (to allow removing binaries from the blob store without risking to remove binaries that are still needed).
@@ -309,13 +330,15 @@ class OakDirectory extends Directory {
 
         private final String dirDetails;
 
-        public OakIndexFile(String name, NodeBuilder file, String dirDetails) {
+        public OakIndexFile(String name, NodeBuilder file, String dirDetails,
+                            @Nullable OakBlockCache blockCache) {
             this.name = name;
             this.file = file;
             this.dirDetails = dirDetails;
             this.blobSize = determineBlobSize(file);
             this.uniqueKey = readUniqueKey(file);
-            this.blob = new byte[blobSize];
+            this.blockCache = blockCache;
+            this.blob = newBlob();
 
             PropertyState property = file.getProperty(JCR_DATA);
             if (property != null && property.getType() == BINARIES) {
@@ -340,7 +363,8 @@ class OakDirectory extends Directory {
             this.dirDetails = that.dirDetails;
             this.blobSize = that.blobSize;
             this.uniqueKey = that.uniqueKey;
-            this.blob = new byte[blobSize];
+            this.blockCache = that.blockCache;
+            this.blob = newBlob();
 
             this.position = that.position;
             this.length = that.length;
@@ -354,20 +378,53 @@ class OakDirectory extends Directory {
                 flushBlob();
                 checkState(!blobModified);
 
-                int n = (int) Math.min(blobSize, length - (long)i * blobSize);
-                InputStream stream = data.get(i).getNewStream();
-                try {
-                    ByteStreams.readFully(stream, blob, 0, n);
-                } finally {
-                    stream.close();
+                int n = blockLength(i);
+                byte[] cached = null;
+                if (blockCache != null) {
+                    cached = blockCache.get(dirDetails, data.get(i), n);
+                }
+                if (cached != null) {
+                    blob = cached;
+                    blobShared = true;
+                } else {
+                    if (blobShared) {
+                        blob = new byte[blobSize];
+                        blobShared = false;
+                    }
+                    InputStream stream = data.get(i).getNewStream();
+                    try {
+                        ByteStreams.readFully(stream, blob, 0, n);
+                    } finally {
+                        stream.close();
+                    }
+                }
+                if (blockCache != null && index >= 0 && i == index + 1) {
+                    // sequential access, load the next blocks ahead
+                    int end = Math.min(data.size(), i + 1 + blockCache.getReadAheadBlocks());
+                    for (int j = i + 1; j < end; j++) {
+                        blockCache.readAhead(dirDetails, data.get(j), blockLength(j));
+                    }
                 }
                 index = i;
             }
         }
 
+        private int blockLength(int i) {
+            return (int) Math.min(blobSize, length - (long)i * blobSize);
+        }
+
+        private byte[] newBlob() {
+            if (blockCache != null) {
+                // blocks are usually served by the cache
+                blobShared = true;
+                return new byte[0];
+            }
+            return new byte[blobSize];
+        }
+
         private void flushBlob() throws IOException {
             if (blobModified) {
-                int n = (int) Math.min(blobSize, length - (long)index * blobSize);
+                int n = blockLength(index);
                 InputStream in = new ByteArrayInputStream(blob, 0, n);
                 if (uniqueKey != null) {
                     in = new SequenceInputStream(in, 
@@ -501,10 +558,11 @@ class OakDirectory extends Directory {
         private final WeakIdentityMap<OakIndexInput, Boolean> clones;
         private final String dirDetails;
 
-        public OakIndexInput(String name, NodeBuilder file, String dirDetails) {
+        public OakIndexInput(String name, NodeBuilder file, String dirDetails,
+                             @Nullable OakBlockCache blockCache) {
             super(name);
             this.dirDetails = dirDetails;
-            this.file = new OakIndexFile(name, file, dirDetails);
+            this.file = new OakIndexFile(name, file, dirDetails, blockCache);
             clones = WeakIdentityMap.newConcurrentHashMap();
         }
 
@@ -586,7 +644,7 @@ class OakDirectory extends Directory {
 
         public OakIndexOutput(String name, NodeBuilder file, String dirDetails) throws IOException {
             this.dirDetails = dirDetails;
-            this.file = new OakIndexFile(name, file, dirDetails);
+            this.file = new OakIndexFile(name, file, dirDetails, null);
         }
 
         @Override
@@ -0,0 +1,392 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Calendar;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableMap;
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.plugins.index.IndexUpdateCallback;
+import org.apache.jackrabbit.oak.plugins.memory.MemoryNodeBuilder;
+import org.apache.jackrabbit.oak.spi.commit.CommitHook;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.Editor;
+import org.apache.jackrabbit.oak.spi.commit.ProgressNotificationEditor;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
+import org.apache.jackrabbit.oak.spi.state.NodeStore;
+import org.apache.jackrabbit.util.ISO8601;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.ASYNC_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.REINDEX_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.TYPE_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexUtils.getAsyncLaneName;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.PERSISTENCE_PATH;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.TYPE_LUCENE;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.MISSING_NODE;
+import static org.apache.jackrabbit.oak.spi.commit.EditorDiff.process;
+import static org.apache.jackrabbit.oak.spi.commit.VisibleEditor.wrap;
+
+/**
+ * Builds a Lucene index outside of the async indexing lane. The index is
+ * built from a checkpoint into a local directory with {@link #build(String)}
+ * and later imported into the repository with {@link #importIndex()}. On
+ * import, the changes between the checkpoint the index was built from and
+ * the checkpoint the async lane of the index refers to are indexed, so that
+ * the lane continues with the changes made after its checkpoint. The
+ * checkpoint the index was built from must therefore still exist at import.
+ * <p>
+ * The checkpoint of the async lane cannot be used, as the lane releases it
+ * on its next run. Instead, a checkpoint is created with
+ * {@link #createCheckpoint(NodeStore, String, long)} before the build. Its
+ * lifetime must cover the build and the import, and it is released after a
+ * successful import.
+ */
+public class OutOfBandIndexer {
+
+    private static final Logger log = LoggerFactory.getLogger(OutOfBandIndexer.class);
+
+    /**
+     * Name of the directory within the work directory, which contains the
+     * Lucene index files.
+     */
+    static final String DATA_DIR = "data";
+
+    /**
+     * Name of the file within the work directory, which contains the
+     * information about the index build.
+     */
+    static final String BUILD_INFO_FILE = "index-build.properties";
+
+    private static final String ASYNC = ":async";
+
+    private static final String PROP_INDEX_PATH = "indexPath";
+
+    private static final String PROP_CHECKPOINT = "checkpoint";
+
+    private static final String PROP_INDEXED_NODES = "indexedNodes";
+
+    /**
+     * The checkpoint property identifying checkpoints created by
+     * {@link #createCheckpoint(NodeStore, String, long)}.
+     */
+    private static final String CHECKPOINT_CREATOR = "creator";
+
+    /**
+     * The default lifetime of a checkpoint created for an index build.
+     */
+    public static final long DEFAULT_CHECKPOINT_LIFETIME = TimeUnit.DAYS.toMillis(7);
+
+    /**
+     * The number of attempts to import the index, if the async lane moves
+     * while the index is imported.
+     */
+    private static final int IMPORT_ATTEMPTS = 3;
+
+    private final NodeStore store;
+
+    private final String indexPath;
+
+    private final File workDir;
+
+    private final LuceneIndexEditorProvider provider;
+
+    public OutOfBandIndexer(@Nonnull NodeStore store,
+                            @Nonnull String indexPath,
+                            @Nonnull File workDir) {
+        this(store, indexPath, workDir, new LuceneIndexEditorProvider());
+    }
+
+    public OutOfBandIndexer(@Nonnull NodeStore store,
+                            @Nonnull String indexPath,
+                            @Nonnull File workDir,
+                            @Nonnull LuceneIndexEditorProvider provider) {
+        checkArgument(PathUtils.isAbsolute(indexPath), "Not an absolute path: %s", indexPath);
+        this.store = checkNotNull(store);
+        this.indexPath = indexPath;
+        this.workDir = checkNotNull(workDir);
+        this.provider = checkNotNull(provider);
+    }
+
+    /**
+     * Creates a checkpoint to build the given index from. The checkpoint must
+     * outlive the build and the import of the index. It is released when
+     * the index is imported.
+     *
+     * @param store the node store.
+     * @param indexPath the path of the index definition.
+     * @param lifetime the lifetime of the checkpoint in milliseconds.
+     * @return the checkpoint.
+     */
+    public static String createCheckpoint(@Nonnull NodeStore store,
+                                          @Nonnull String indexPath,
+                                          long lifetime) {
+        checkArgument(lifetime > 0, "Lifetime must be positive: %s", lifetime);
+        getDefinition(store.getRoot(), indexPath);
+        String checkpoint = store.checkpoint(lifetime, ImmutableMap.of(
+                CHECKPOINT_CREATOR, OutOfBandIndexer.class.getSimpleName(),
+                PROP_INDEX_PATH, indexPath));
+        log.info("Created checkpoint {} with lifetime {}ms to build index {}",
+                checkpoint, lifetime, indexPath);
+        return checkpoint;
+    }
+
+    /**
+     * Builds the index from the given checkpoint into the work directory.
+     * Any existing content of the work directory is removed.
+     *
+     * @param checkpoint the checkpoint.
+     * @return the number of indexed nodes.
+     */
+    public long build(@Nonnull String checkpoint)
+            throws IOException, CommitFailedException {
+        NodeState root = store.retrieve(checkpoint);
+        checkArgument(root != null, "Checkpoint %s not found", checkpoint);
+        NodeState definitionState = getDefinition(root);
+
+        FileUtils.deleteDirectory(workDir);
+        File dataDir = new File(workDir, DATA_DIR);
+        checkState(dataDir.mkdirs(), "Cannot create directory %s", dataDir);
+
+        // index into a copy of the definition, with the local directory
+        // as persistence path
+        NodeBuilder definition = new MemoryNodeBuilder(definitionState);
+        removeHiddenNodes(definition);
+        definition.setProperty(PERSISTENCE_PATH, dataDir.getAbsolutePath());
+
+        final AtomicLong indexedNodes = new AtomicLong();
+        Editor editor = provider.getIndexEditor(TYPE_LUCENE, definition, root,
+                new IndexUpdateCallback() {
+                    @Override
+                    public void indexUpdate() {
+                        indexedNodes.incrementAndGet();
+                    }
+                });
+        checkState(editor != null, "No index editor for %s", indexPath);
+
+        log.info("Building index {} from checkpoint {} in {}", indexPath, checkpoint, dataDir);
+        Stopwatch watch = Stopwatch.createStarted();
+        CommitFailedException e = process(wrap(ProgressNotificationEditor.wrap(
+                editor, log, "Indexing " + indexPath)), MISSING_NODE, root);
+        if (e != null) {
+            throw e;
+        }
+        log.info("Built index {} with {} nodes in {}", indexPath, indexedNodes, watch);
+
+        Properties info = new Properties();
+        info.setProperty(PROP_INDEX_PATH, indexPath);
+        info.setProperty(PROP_CHECKPOINT, checkpoint);
+        info.setProperty(PROP_INDEXED_NODES, String.valueOf(indexedNodes.get()));
+        OutputStream out = new FileOutputStream(new File(workDir, BUILD_INFO_FILE));
+        try {
+            info.store(out, "Lucene index build");
+        } finally {
+            out.close();
+        }
+        return indexedNodes.get();
+    }
+
+    /**
+     * Imports the index previously built with {@link #build(String)} into
+     * the repository with a single commit. The existing index content is
+     * replaced. The changes made after the checkpoint the index was built
+     * from, up to the checkpoint of the async lane, are indexed before the
+     * commit. The checkpoint the index was built from is released
+     * afterwards, if it was created with
+     * {@link #createCheckpoint(NodeStore, String, long)}.
+     *
+     * @throws IllegalArgumentException if the checkpoint the index was built
+     *          from does not exist anymore.
+     * @throws CommitFailedException if the index could not be imported.
+     */
+    public void importIndex() throws IOException, CommitFailedException {
+        Properties info = new Properties();
+        InputStream in = new FileInputStream(new File(workDir, BUILD_INFO_FILE));
+        try {
+            info.load(in);
+        } finally {
+            in.close();
+        }
+        checkArgument(indexPath.equals(info.getProperty(PROP_INDEX_PATH)),
+                "Index in %s was built for %s", workDir, info.getProperty(PROP_INDEX_PATH));
+        String checkpoint = info.getProperty(PROP_CHECKPOINT);
+        long indexedNodes = Long.parseLong(info.getProperty(PROP_INDEXED_NODES));
+        NodeState base = store.retrieve(checkpoint);
+        checkArgument(base != null, "Checkpoint %s the index in %s was built from does not exist anymore",
+                checkpoint, workDir);
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                importIndex(base, checkpoint, indexedNodes);
+                break;
+            } catch (CommitFailedException e) {
+                if (attempt >= IMPORT_ATTEMPTS || !e.isOfType("Lucene") || e.getCode() != 6) {
+                    throw e;
+                }
+                log.info("Async lane moved while importing index {}, retrying", indexPath);
+            }
+        }
+
+        // the checkpoint was only needed for this index
+        Map<String, String> checkpointInfo = store.checkpointInfo(checkpoint);
+        if (OutOfBandIndexer.class.getSimpleName().equals(checkpointInfo.get(CHECKPOINT_CREATOR))
+                && indexPath.equals(checkpointInfo.get(PROP_INDEX_PATH))) {
+            store.release(checkpoint);
+            log.info("Released checkpoint {} the index {} was built from", checkpoint, indexPath);
+        }
+    }
+
+    private void importIndex(NodeState base, String checkpoint, long indexedNodes)
+            throws IOException, CommitFailedException {
+        Stopwatch watch = Stopwatch.createStarted();
+        NodeState root = store.getRoot();
+        final String lane = getLane(getDefinition(root));
+        final String laneCheckpoint = lane != null
+                ? root.getChildNode(ASYNC).getString(lane) : null;
+        // the state the imported index must reflect
+        NodeState laneRoot = root;
+        if (laneCheckpoint != null) {
+            laneRoot = store.retrieve(laneCheckpoint);
+            checkState(laneRoot != null, "Checkpoint %s of async lane '%s' not found",
+                    laneCheckpoint, lane);
+        }
+
+        NodeBuilder rootBuilder = root.builder();
+        NodeBuilder definition = rootBuilder;
+        for (String name : PathUtils.elements(indexPath)) {
+            definition = definition.getChildNode(name);
+        }
+        removeHiddenNodes(definition);
+
+        IndexDefinition indexDefinition = new IndexDefinition(rootBuilder.getNodeState(), definition);
+        Directory source = FSDirectory.open(new File(workDir, DATA_DIR));
+        try {
+            Directory target = new OakDirectory(definition, indexDefinition, false);
+            try {
+                for (String file : source.listAll()) {
+                    source.copy(target, file, file, IOContext.DEFAULT);
+                }
+            } finally {
+                target.close();
+            }
+        } finally {
+            source.close();
+        }
+        if (!checkpoint.equals(laneCheckpoint)) {
+            indexedNodes += indexChanges(definition, base, laneRoot);
+        }
+        NodeBuilder status = definition.child(":status");
+        status.setProperty("lastUpdated", ISO8601.format(Calendar.getInstance()), Type.DATE);
+        status.setProperty("indexedNodes", indexedNodes);
+        definition.setProperty(REINDEX_PROPERTY_NAME, false);
+
+        store.merge(rootBuilder, new CommitHook() {
+            @Nonnull
+            @Override
+            public NodeState processCommit(NodeState before, NodeState after,
+                                           CommitInfo info)
+                    throws CommitFailedException {
+                String current = lane != null
+                        ? after.getChildNode(ASYNC).getString(lane) : null;
+                if (lane != null && !Objects.equal(laneCheckpoint, current)) {
+                    throw new CommitFailedException("Lucene", 6,
+                            "The async lane '" + lane + "' of index " + indexPath
+                                    + " moved from checkpoint " + laneCheckpoint
+                                    + " to " + current + " during the import");
+                }
+                return after;
+            }
+        }, CommitInfo.EMPTY);
+        log.info("Imported index {} built from checkpoint {} up to checkpoint {} in {}",
+                indexPath, checkpoint, laneCheckpoint, watch);
+    }
+
+    /**
+     * Indexes the changes between the given states into the index content
+     * of the definition.
+     *
+     * @return the number of nodes indexed.
+     */
+    private long indexChanges(NodeBuilder definition, NodeState before, NodeState after)
+            throws CommitFailedException {
+        final AtomicLong indexedNodes = new AtomicLong();
+        Editor editor = provider.getIndexEditor(TYPE_LUCENE, definition, after,
+                new IndexUpdateCallback() {
+                    @Override
+                    public void indexUpdate() {
+                        indexedNodes.incrementAndGet();
+                    }
+                });
+        checkState(editor != null, "No index editor for %s", indexPath);
+        CommitFailedException e = process(wrap(editor), before, after);
+        if (e != null) {
+            throw e;
+        }
+        log.info("Indexed {} changes to index {} made after it was built", indexedNodes, indexPath);
+        return indexedNodes.get();
+    }
+
+    private NodeState getDefinition(NodeState root) {
+        return getDefinition(root, indexPath);
+    }
+
+    private static NodeState getDefinition(NodeState root, String indexPath) {
+        NodeState definition = NodeStateUtils.getNode(root, indexPath);
+        checkArgument(definition.exists(), "No index definition at %s", indexPath);
+        checkArgument(TYPE_LUCENE.equals(definition.getString(TYPE_PROPERTY_NAME)),
+                "Not a Lucene index definition: %s", indexPath);
+        return definition;
+    }
+
+    private static String getLane(NodeState definition) {
+        return getAsyncLaneName(definition.getProperty(ASYNC_PROPERTY_NAME));
+    }
+
+    private static void removeHiddenNodes(NodeBuilder definition) {
+        for (String name : definition.getChildNodeNames()) {
+            if (NodeStateUtils.isHidden(name)) {
+                definition.getChildNode(name).remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.base.Predicate;
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.plugins.index.IndexUpdateCallback;
+import org.apache.jackrabbit.oak.plugins.index.PartitionedIndexEditorProvider.PartitionedReindex;
+import org.apache.jackrabbit.oak.plugins.memory.MemoryNodeBuilder;
+import org.apache.jackrabbit.oak.spi.commit.Editor;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_PATH;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.PERSISTENCE_PATH;
+
+/**
+ * Reindexes a Lucene index in partitions. Each partition is indexed into
+ * its own index in a temporary directory on the file system. At the end,
+ * the partition indexes are added to the index of the definition, which
+ * also builds the suggester and records the status.
+ */
+class PartitionedLuceneReindex implements PartitionedReindex {
+
+    private static final Logger log = LoggerFactory.getLogger(PartitionedLuceneReindex.class);
+
+    private final NodeState root;
+
+    private final NodeBuilder definition;
+
+    private final IndexUpdateCallback callback;
+
+    private final LuceneIndexEditorProvider provider;
+
+    private final List<File> partitionDirs = newArrayList();
+
+    private final List<LuceneIndexEditorContext> partitions = newArrayList();
+
+    private File workDir;
+
+    PartitionedLuceneReindex(NodeState root, NodeBuilder definition,
+                             IndexUpdateCallback callback,
+                             LuceneIndexEditorProvider provider) {
+        this.root = root;
+        this.definition = definition;
+        this.callback = callback;
+        this.provider = provider;
+    }
+
+    @Nonnull
+    @Override
+    public Editor getPartitionEditor(@Nonnull Predicate<String> owned,
+                                     @Nonnull IndexUpdateCallback callback)
+            throws CommitFailedException {
+        File dir;
+        try {
+            if (workDir == null) {
+                workDir = Files.createTempDirectory("oak-lucene-reindex").toFile();
+            }
+            dir = new File(workDir, String.valueOf(partitionDirs.size()));
+            FileUtils.forceMkdir(dir);
+        } catch (IOException e) {
+            throw new CommitFailedException("Lucene", 7,
+                    "Failed to create the directory of a reindex partition", e);
+        }
+        partitionDirs.add(dir);
+        NodeBuilder copy = new MemoryNodeBuilder(definition.getNodeState());
+        copy.setProperty(PERSISTENCE_PATH, dir.getAbsolutePath());
+        LuceneIndexEditorContext context = new LuceneIndexEditorContext(root, copy,
+                callback, null, provider.getExtractedTextCache(),
+                provider.getAugmentorFactory(), provider.getExtractionExecutor());
+        context.setPartition(owned);
+        partitions.add(context);
+        return new LuceneIndexEditor(root, context);
+    }
+
+    @Override
+    public void merge() throws CommitFailedException {
+        LuceneIndexEditorContext context = new LuceneIndexEditorContext(root, definition,
+                callback, provider.getIndexCopier(), provider.getExtractedTextCache(),
+                provider.getAugmentorFactory(), provider.getExtractionExecutor());
+        context.enableReindexMode();
+        long indexedNodes = 0;
+        for (LuceneIndexEditorContext partition : partitions) {
+            indexedNodes += partition.getIndexedNodes();
+        }
+        List<Directory> dirs = newArrayList();
+        try {
+            for (File dir : partitionDirs) {
+                dirs.add(FSDirectory.open(dir));
+            }
+            context.addIndexes(dirs.toArray(new Directory[dirs.size()]), indexedNodes);
+            context.closeWriter();
+        } catch (IOException e) {
+            throw new CommitFailedException("Lucene", 8,
+                    "Failed to merge the reindex partitions of " + definition.getString(INDEX_PATH), e);
+        } finally {
+            for (Directory dir : dirs) {
+                try {
+                    dir.close();
+                } catch (IOException e) {
+                    log.warn("Failed to close the directory of a reindex partition", e);
+                }
+            }
+        }
+        log.debug("Merged {} reindex partitions with {} nodes", partitionDirs.size(), indexedNodes);
+    }
+
+    @Override
+    public void close() {
+        if (workDir != null) {
+            FileUtils.deleteQuietly(workDir);
+        }
+    }
+}
@@ -88,6 +88,8 @@ class PropertyDefinition {
 
     final boolean facet;
 
+    final boolean storeValue;
+
     final String[] ancestors;
 
     final boolean excludeFromAggregate;
@@ -134,6 +136,7 @@ class PropertyDefinition {
         this.nonRelativeName = determineNonRelativeName();
         this.ancestors = computeAncestors(name);
         this.facet = getOptionalValueIfIndexed(defn, LuceneIndexConstants.PROP_FACETS, false);
+        this.storeValue = getOptionalValueIfIndexed(defn, LuceneIndexConstants.PROP_STORE_VALUE, false);
         validate();
     }
 
@@ -198,6 +201,7 @@ class PropertyDefinition {
                 ", useInSuggest=" + useInSuggest+
                 ", nullCheckEnabled=" + nullCheckEnabled +
                 ", notNullCheckEnabled=" + notNullCheckEnabled +
+                ", storeValue=" + storeValue +
                 '}';
     }
 
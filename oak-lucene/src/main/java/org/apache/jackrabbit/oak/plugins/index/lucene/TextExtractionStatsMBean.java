@@ -38,4 +38,12 @@ public interface TextExtractionStatsMBean {
     String getExtractedTextSize();
 
     String getBytesRead();
+
+    boolean isExtractedTextStoreConfigured();
+
+    long getExtractedTextStoreHitCount();
+
+    long getExtractedTextStoreMissCount();
+
+    String getExtractedTextStoreSize();
 }
@@ -22,6 +22,9 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
 
 import org.apache.jackrabbit.oak.plugins.index.lucene.FieldNames;
 import org.apache.jackrabbit.oak.query.QueryImpl;
@@ -33,6 +36,7 @@ import org.apache.lucene.facet.FacetsConfig;
 import org.apache.lucene.facet.MultiFacets;
 import org.apache.lucene.facet.sortedset.DefaultSortedSetDocValuesReaderState;
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetCounts;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TopDocs;
@@ -56,21 +60,48 @@ public class FacetHelper {
     }
 
     public static Facets getFacets(IndexSearcher searcher, Query query, TopDocs docs, QueryIndex.IndexPlan plan, boolean secure) throws IOException {
+        return getFacets(searcher, query, docs, plan, secure, 0, null);
+    }
+
+    /**
+     * Computes the facets for the given query
+     *
+     * @param secureSampleSize if positive and facets are secure the access
+     *                         check is done for a sample of that many hits
+     *                         and the counts are extrapolated from it
+     * @param stateCache cache of the reader state per facet field for the
+     *                   reader of the given searcher. If null the state is
+     *                   computed for each call
+     */
+    public static Facets getFacets(IndexSearcher searcher, Query query, TopDocs docs, QueryIndex.IndexPlan plan,
+                                   boolean secure, int secureSampleSize,
+                                   @Nullable ConcurrentMap<String, SortedSetDocValuesReaderState> stateCache)
+            throws IOException {
         Facets facets = null;
         @SuppressWarnings("unchecked")
         List<String> facetFields = (List<String>) plan.getAttribute(ATTR_FACET_FIELDS);
         if (facetFields != null && facetFields.size() > 0) {
             Map<String, Facets> facetsMap = new HashMap<String, Facets>();
 
+            //The matching docs are same for all facet fields
+            FacetsCollector facetsCollector = new FacetsCollector();
+            FacetsCollector.search(searcher, query, 10, facetsCollector);
+
             for (String facetField : facetFields) {
-                FacetsCollector facetsCollector = new FacetsCollector();
                 try {
-                    DefaultSortedSetDocValuesReaderState state = new DefaultSortedSetDocValuesReaderState(
-                            searcher.getIndexReader(), FieldNames.createFacetFieldName(facetField));
-                        FacetsCollector.search(searcher, query, 10, facetsCollector);
-                    facetsMap.put(facetField, secure ?
-                            new FilteredSortedSetDocValuesFacetCounts(state, facetsCollector, plan.getFilter(), docs) :
-                            new SortedSetDocValuesFacetCounts(state, facetsCollector));
+                    SortedSetDocValuesReaderState state = getReaderState(searcher,
+                            FieldNames.createFacetFieldName(facetField), stateCache);
+                    Facets counts;
+                    if (!secure) {
+                        counts = new SortedSetDocValuesFacetCounts(state, facetsCollector);
+                    } else if (secureSampleSize > 0) {
+                        counts = new StatisticalSortedSetDocValuesFacetCounts(state, facetsCollector,
+                                plan.getFilter(), docs, secureSampleSize);
+                    } else {
+                        counts = new FilteredSortedSetDocValuesFacetCounts(state, facetsCollector,
+                                plan.getFilter(), docs);
+                    }
+                    facetsMap.put(facetField, counts);
 
                 } catch (IllegalArgumentException iae) {
                     LOGGER.warn("facets for {} not yet indexed", facetField);
@@ -85,6 +116,21 @@ public class FacetHelper {
     }
 
 
+    private static SortedSetDocValuesReaderState getReaderState(IndexSearcher searcher, String field,
+            @Nullable ConcurrentMap<String, SortedSetDocValuesReaderState> stateCache) throws IOException {
+        SortedSetDocValuesReaderState state = stateCache != null ? stateCache.get(field) : null;
+        if (state == null) {
+            state = new DefaultSortedSetDocValuesReaderState(searcher.getIndexReader(), field);
+            if (stateCache != null) {
+                SortedSetDocValuesReaderState existing = stateCache.putIfAbsent(field, state);
+                if (existing != null) {
+                    state = existing;
+                }
+            }
+        }
+        return state;
+    }
+
     public static String parseFacetField(String columnName) {
         return columnName.substring(QueryImpl.REP_FACET.length() + 1, columnName.length() - 1);
     }
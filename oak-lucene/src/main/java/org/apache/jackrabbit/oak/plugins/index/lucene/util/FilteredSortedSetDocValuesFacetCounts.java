@@ -29,7 +29,6 @@ import org.apache.lucene.facet.FacetResult;
 import org.apache.lucene.facet.FacetsCollector;
 import org.apache.lucene.facet.FacetsConfig;
 import org.apache.lucene.facet.LabelAndValue;
-import org.apache.lucene.facet.sortedset.DefaultSortedSetDocValuesReaderState;
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetCounts;
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
 import org.apache.lucene.index.IndexReader;
@@ -48,9 +47,9 @@ class FilteredSortedSetDocValuesFacetCounts extends SortedSetDocValuesFacetCount
     private final IndexReader reader;
     private final SortedSetDocValuesReaderState state;
 
-    public FilteredSortedSetDocValuesFacetCounts(DefaultSortedSetDocValuesReaderState state, FacetsCollector facetsCollector, Filter filter, TopDocs docs) throws IOException {
+    public FilteredSortedSetDocValuesFacetCounts(SortedSetDocValuesReaderState state, FacetsCollector facetsCollector, Filter filter, TopDocs docs) throws IOException {
         super(state, facetsCollector);
-        this.reader = state.origReader;
+        this.reader = state.getOrigReader();
         this.filter = filter;
         this.docs = docs;
         this.state = state;
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.jackrabbit.oak.plugins.index.lucene.FieldNames;
+import org.apache.jackrabbit.oak.spi.query.Filter;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.facet.FacetResult;
+import org.apache.lucene.facet.FacetsCollector;
+import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.facet.LabelAndValue;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetCounts;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * ACL filtered version of {@link SortedSetDocValuesFacetCounts} which checks
+ * the access of a random sample of the hits instead of all of them. For each
+ * label the count is reduced by the fraction of the sampled documents with
+ * that label which are not accessible.
+ */
+class StatisticalSortedSetDocValuesFacetCounts extends SortedSetDocValuesFacetCounts {
+
+    /**
+     * Fixed seed so that repeated queries report the same counts
+     */
+    private static final long SAMPLE_SEED = 42;
+
+    private static final Set<String> PATH_FIELD = Collections.singleton(FieldNames.PATH);
+
+    private final TopDocs docs;
+    private final Filter filter;
+    private final IndexReader reader;
+    private final SortedSetDocValuesReaderState state;
+    private final int sampleSize;
+
+    public StatisticalSortedSetDocValuesFacetCounts(SortedSetDocValuesReaderState state,
+                                                    FacetsCollector facetsCollector, Filter filter,
+                                                    TopDocs docs, int sampleSize) throws IOException {
+        super(state, facetsCollector);
+        this.reader = state.getOrigReader();
+        this.filter = filter;
+        this.docs = docs;
+        this.state = state;
+        this.sampleSize = sampleSize;
+    }
+
+    @Override
+    public FacetResult getTopChildren(int topN, String dim, String... path) throws IOException {
+        FacetResult topChildren = super.getTopChildren(topN, dim, path);
+        if (topChildren == null) {
+            return null;
+        }
+
+        LabelAndValue[] labelAndValues = topChildren.labelValues;
+        SortedSetDocValues docValues = state.getDocValues();
+        long[] ords = new long[labelAndValues.length];
+        for (int i = 0; i < labelAndValues.length; i++) {
+            BytesRef key = new BytesRef(FacetsConfig.pathToString(dim, new String[]{labelAndValues[i].label}));
+            ords[i] = docValues.lookupTerm(key);
+        }
+
+        int[] sampled = new int[labelAndValues.length];
+        int[] hidden = new int[labelAndValues.length];
+        for (ScoreDoc scoreDoc : sample(docs.scoreDocs)) {
+            docValues.setDocument(scoreDoc.doc);
+            boolean accessible = isAccessible(scoreDoc.doc, dim);
+            long ord;
+            while ((ord = docValues.nextOrd()) != SortedSetDocValues.NO_MORE_ORDS) {
+                for (int i = 0; i < ords.length; i++) {
+                    if (ords[i] == ord) {
+                        sampled[i]++;
+                        if (!accessible) {
+                            hidden[i]++;
+                        }
+                    }
+                }
+            }
+        }
+
+        List<LabelAndValue> filtered = new ArrayList<LabelAndValue>(labelAndValues.length);
+        long value = 0;
+        for (int i = 0; i < labelAndValues.length; i++) {
+            long count = labelAndValues[i].value.longValue();
+            if (sampled[i] > 0) {
+                count = Math.round((double) count * (sampled[i] - hidden[i]) / sampled[i]);
+            }
+            if (count > 0) {
+                filtered.add(new LabelAndValue(labelAndValues[i].label, count));
+                value += count;
+            }
+        }
+
+        return new FacetResult(dim, path, value, filtered.toArray(new LabelAndValue[filtered.size()]),
+                filtered.size());
+    }
+
+    private boolean isAccessible(int docId, String dimension) throws IOException {
+        Document document = reader.document(docId, PATH_FIELD);
+        return filter.isAccessible(document.get(FieldNames.PATH) + "/" + dimension);
+    }
+
+    /**
+     * Picks at most sampleSize hits via reservoir sampling
+     */
+    private ScoreDoc[] sample(ScoreDoc[] hits) {
+        if (hits.length <= sampleSize) {
+            return hits;
+        }
+        Random random = new Random(SAMPLE_SEED);
+        ScoreDoc[] sample = new ScoreDoc[sampleSize];
+        System.arraycopy(hits, 0, sample, 0, sampleSize);
+        for (int i = sampleSize; i < hits.length; i++) {
+            int j = random.nextInt(i + 1);
+            if (j < sampleSize) {
+                sample[j] = hits[i];
+            }
+        }
+        return sample;
+    }
+}
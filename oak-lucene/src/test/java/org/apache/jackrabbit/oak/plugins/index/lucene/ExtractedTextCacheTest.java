@@ -23,6 +23,7 @@ import org.apache.commons.io.FileUtils;
 import org.apache.jackrabbit.oak.api.Blob;
 import org.apache.jackrabbit.oak.plugins.index.fulltext.ExtractedText;
 import org.apache.jackrabbit.oak.plugins.index.fulltext.ExtractedText.ExtractionResult;
+import org.apache.jackrabbit.oak.plugins.index.fulltext.ExtractedTextStore;
 import org.apache.jackrabbit.oak.plugins.index.fulltext.PreExtractedTextProvider;
 import org.apache.jackrabbit.oak.plugins.memory.ArrayBasedBlob;
 import org.junit.Test;
@@ -32,7 +33,11 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
@@ -135,6 +140,34 @@ public class ExtractedTextCacheTest {
         assertEquals("bar", text);
     }
 
+    @Test
+    public void extractedTextStore() throws Exception{
+        ExtractedTextCache cache = new ExtractedTextCache(10 * FileUtils.ONE_MB, 100);
+        ExtractedTextStore store = mock(ExtractedTextStore.class);
+        cache.setExtractedTextStore(store);
+
+        Blob b = new IdBlob("hello", "a");
+        assertNull(cache.get("/a", "foo", b, false));
+        assertEquals(1, cache.getStatsMBean().getExtractedTextStoreMissCount());
+
+        ExtractedText text = new ExtractedText(ExtractionResult.SUCCESS, "bar");
+        cache.put(b, text);
+        verify(store).putText(b, text);
+
+        //Error results are not stored
+        cache.put(new IdBlob("world", "b"), ExtractedText.ERROR);
+        verify(store, never()).putText(any(Blob.class), eq(ExtractedText.ERROR));
+
+        //Text found in the store is served from the in memory cache afterwards
+        cache.resetCache();
+        Blob b2 = new IdBlob("hello2", "c");
+        when(store.getText(b2)).thenReturn(new ExtractedText(ExtractionResult.SUCCESS, "baz"));
+        assertEquals("baz", cache.get("/c", "foo", b2, false));
+        assertEquals("baz", cache.get("/c", "foo", b2, false));
+        assertEquals(1, cache.getStatsMBean().getExtractedTextStoreHitCount());
+        verify(store, times(1)).getText(b2);
+    }
+
     private static class IdBlob extends ArrayBasedBlob {
         final String id;
 
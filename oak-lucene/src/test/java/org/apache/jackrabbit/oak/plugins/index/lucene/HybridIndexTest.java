@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.jackrabbit.JcrConstants;
+import org.apache.jackrabbit.oak.Oak;
+import org.apache.jackrabbit.oak.api.ContentRepository;
+import org.apache.jackrabbit.oak.api.Tree;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.plugins.index.AsyncIndexUpdate;
+import org.apache.jackrabbit.oak.plugins.index.CompositeIndexEditorProvider;
+import org.apache.jackrabbit.oak.plugins.index.counter.NodeCounterEditorProvider;
+import org.apache.jackrabbit.oak.plugins.index.property.PropertyIndexEditorProvider;
+import org.apache.jackrabbit.oak.plugins.memory.MemoryNodeStore;
+import org.apache.jackrabbit.oak.plugins.memory.PropertyStates;
+import org.apache.jackrabbit.oak.plugins.nodetype.write.InitialContent;
+import org.apache.jackrabbit.oak.query.AbstractQueryTest;
+import org.apache.jackrabbit.oak.spi.commit.Observer;
+import org.apache.jackrabbit.oak.spi.query.QueryIndexProvider;
+import org.apache.jackrabbit.oak.spi.security.OpenSecurityProvider;
+import org.apache.jackrabbit.oak.spi.state.NodeStore;
+import org.junit.After;
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static org.apache.commons.io.FileUtils.ONE_MB;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.ASYNC_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEXING_MODE_NRT;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NODE_TYPE;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.REINDEX_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.TYPE_PROPERTY_NAME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HybridIndexTest extends AbstractQueryTest {
+    private static final String QUERY = "select [jcr:path] from [nt:base] where [foo] = 'bar'";
+
+    private final NodeStore nodeStore = new MemoryNodeStore();
+
+    /**
+     * Small enough for {@link #recentChangesDiscardedWhenNRTIndexFull()} to
+     * exceed it
+     */
+    private static final long NRT_MAX_SIZE = ONE_MB;
+
+    private final NRTIndexFactory nrtIndexFactory = new NRTIndexFactory(NRT_MAX_SIZE);
+
+    private final IndexTracker tracker = new IndexTracker(null, null, nrtIndexFactory);
+
+    private AsyncIndexUpdate asyncIndexUpdate;
+
+    @Override
+    protected void createTestIndexNode() throws Exception {
+        setTraversalEnabled(false);
+    }
+
+    @Override
+    protected ContentRepository createRepository() {
+        LuceneIndexEditorProvider editorProvider = new LuceneIndexEditorProvider();
+        LuceneIndexProvider provider = new LuceneIndexProvider(tracker);
+        asyncIndexUpdate = new AsyncIndexUpdate("async", nodeStore,
+                new CompositeIndexEditorProvider(editorProvider, new NodeCounterEditorProvider()));
+        return new Oak(nodeStore)
+                .with(new InitialContent())
+                .with(new OpenSecurityProvider())
+                .with((QueryIndexProvider) provider)
+                .with((Observer) provider)
+                .with(new LocalIndexObserver(nrtIndexFactory, new ExtractedTextCache(0, 0), null))
+                .with(new PropertyIndexEditorProvider())
+                .createContentRepository();
+    }
+
+    @After
+    public void closeNRTIndexes() {
+        tracker.close();
+        nrtIndexFactory.close();
+    }
+
+    @Test
+    public void recentChangesVisible() throws Exception {
+        createIndex("fooIndex", true);
+        root.commit();
+        runAsyncIndex();
+
+        root.getTree("/").addChild("a").setProperty("foo", "bar");
+        root.commit();
+        assertQuery(QUERY, asList("/a"));
+
+        runAsyncIndex();
+        root.getTree("/").addChild("b").setProperty("foo", "bar");
+        root.getTree("/a").setProperty("foo", "baz");
+        root.commit();
+        // stale match of /a in the persisted index gets filtered out
+        assertQuery(QUERY, asList("/b"));
+
+        root.getTree("/a").setProperty("foo", "bar");
+        root.commit();
+        // /a is now in the persisted and the in memory index
+        assertQuery(QUERY, asList("/a", "/b"));
+
+        runAsyncIndex();
+        runAsyncIndex();
+        assertQuery(QUERY, asList("/a", "/b"));
+        assertEquals(2, nrtIndexFactory.getGenerations("/oak:index/fooIndex").size());
+    }
+
+    @Test
+    public void recentChangesNotVisibleWithoutNRT() throws Exception {
+        createIndex("fooIndex", false);
+        root.commit();
+        runAsyncIndex();
+
+        root.getTree("/").addChild("a").setProperty("foo", "bar");
+        root.commit();
+        assertQuery(QUERY, Collections.<String>emptyList());
+        assertNull(nrtIndexFactory.getGenerations("/oak:index/fooIndex"));
+
+        runAsyncIndex();
+        assertQuery(QUERY, asList("/a"));
+    }
+
+    @Test
+    public void recentChangesDiscardedWhenNRTIndexFull() throws Exception {
+        createIndex("fooIndex", true);
+        root.commit();
+        runAsyncIndex();
+
+        root.getTree("/").addChild("a").setProperty("foo", "bar");
+        root.commit();
+        assertQuery(QUERY, asList("/a"));
+
+        // the async lane stalls while the local changes exceed the limit
+        Random random = new Random(42);
+        Tree large = root.getTree("/").addChild("large");
+        for (int i = 0; i < 2 * NRT_MAX_SIZE / 1024; i++) {
+            large.addChild("n" + i).setProperty("foo", randomAlphanumeric(1024, random));
+        }
+        root.commit();
+        assertTrue(getCurrentGeneration("/oak:index/fooIndex").isClosed());
+        assertQuery(QUERY, Collections.<String>emptyList());
+
+        root.getTree("/").addChild("b").setProperty("foo", "bar");
+        root.commit();
+        assertQuery(QUERY, Collections.<String>emptyList());
+
+        // the next cycle indexes all changes and starts a new generation
+        runAsyncIndex();
+        assertQuery(QUERY, asList("/a", "/b"));
+
+        root.getTree("/").addChild("c").setProperty("foo", "bar");
+        root.commit();
+        assertQuery(QUERY, asList("/a", "/b", "/c"));
+        assertFalse(getCurrentGeneration("/oak:index/fooIndex").isClosed());
+    }
+
+    private NRTIndex getCurrentGeneration(String indexPath) {
+        List<NRTIndex> generations = nrtIndexFactory.getGenerations(indexPath);
+        return generations.get(generations.size() - 1);
+    }
+
+    private static String randomAlphanumeric(int length, Random random) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(Character.forDigit(random.nextInt(36), 36));
+        }
+        return sb.toString();
+    }
+
+    private void runAsyncIndex() throws Exception {
+        asyncIndexUpdate.run();
+        root.refresh();
+    }
+
+    private Tree createIndex(String name, boolean nrt) {
+        Tree def = root.getTree("/").addChild(INDEX_DEFINITIONS_NAME).addChild(name);
+        def.setProperty(JcrConstants.JCR_PRIMARYTYPE, INDEX_DEFINITIONS_NODE_TYPE, Type.NAME);
+        def.setProperty(TYPE_PROPERTY_NAME, LuceneIndexConstants.TYPE_LUCENE);
+        def.setProperty(REINDEX_PROPERTY_NAME, true);
+        def.setProperty(LuceneIndexConstants.FULL_TEXT_ENABLED, false);
+        def.setProperty(PropertyStates.createProperty(LuceneIndexConstants.INCLUDE_PROPERTY_NAMES,
+                Collections.singleton("foo"), Type.STRINGS));
+        if (nrt) {
+            def.setProperty(ASYNC_PROPERTY_NAME, asList("async", INDEXING_MODE_NRT), Type.STRINGS);
+        } else {
+            def.setProperty(ASYNC_PROPERTY_NAME, "async");
+        }
+        return def;
+    }
+}
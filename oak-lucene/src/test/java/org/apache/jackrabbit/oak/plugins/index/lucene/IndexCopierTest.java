@@ -25,6 +25,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
@@ -158,6 +159,61 @@ public class IndexCopierTest {
 
     }
 
+    @Test
+    public void prefetchInParallel() throws Exception{
+        final List<String> syncedFiles = Collections.synchronizedList(Lists.<String>newArrayList());
+        Directory baseDir = new RAMDirectory(){
+            @Override
+            public void sync(Collection<String> names) throws IOException {
+                syncedFiles.addAll(names);
+                super.sync(names);
+            }
+        };
+        IndexDefinition defn = new IndexDefinition(root, builder.getNodeState());
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        IndexCopier c1 = new RAMIndexCopier(baseDir, executorService, getWorkDir(), true);
+
+        Directory remote = new RAMDirectory();
+        byte[] t1 = writeFile(remote, "t1");
+        byte[] t2 = writeFile(remote, "t2");
+        byte[] t3 = writeFile(remote, "t3");
+
+        Directory wrapped = c1.wrapForRead("/foo", defn, remote);
+        assertThat(syncedFiles, containsInAnyOrder("t1", "t2", "t3"));
+        assertTrue(baseDir.fileExists("t1"));
+        assertTrue(baseDir.fileExists("t2"));
+        assertTrue(baseDir.fileExists("t3"));
+
+        readAndAssert(wrapped, "t1", t1);
+        readAndAssert(wrapped, "t2", t2);
+        readAndAssert(wrapped, "t3", t3);
+        assertEquals(0, c1.getReaderRemoteReadCount());
+
+        executorService.shutdown();
+    }
+
+    @Test
+    public void prefetchWithBusyExecutor() throws Exception{
+        Directory baseDir = new RAMDirectory();
+        IndexDefinition defn = new IndexDefinition(root, builder.getNodeState());
+        //Executor never runs the tasks, so the files must be copied by the caller
+        CollectingExecutor executor = new CollectingExecutor();
+        IndexCopier c1 = new RAMIndexCopier(baseDir, executor, getWorkDir(), true);
+
+        Directory remote = new RAMDirectory();
+        byte[] t1 = writeFile(remote, "t1");
+        writeFile(remote, "t2");
+
+        Directory wrapped = c1.wrapForRead("/foo", defn, remote);
+        assertTrue(baseDir.fileExists("t1"));
+        assertTrue(baseDir.fileExists("t2"));
+        readAndAssert(wrapped, "t1", t1);
+
+        //Pending tasks are already done
+        executor.executeAll();
+        assertEquals(2, c1.getDownloadCount());
+    }
+
     @Test
     public void nonExistentFile() throws Exception{
         Directory baseDir = new RAMDirectory();
@@ -77,6 +77,26 @@ public class IndexDefinitionTest {
     public void defaultConfig() throws Exception{
         IndexDefinition idxDefn = new IndexDefinition(root, builder.getNodeState());
         assertTrue(idxDefn.saveDirListing());
+        assertFalse(idxDefn.isParallelSearchEnabled());
+        assertFalse(idxDefn.isNRTIndexingEnabled());
+    }
+
+    @Test
+    public void parallelSearch() throws Exception{
+        builder.setProperty(LuceneIndexConstants.PARALLEL_SEARCH, true);
+        IndexDefinition idxDefn = new IndexDefinition(root, builder.getNodeState());
+        assertTrue(idxDefn.isParallelSearchEnabled());
+    }
+
+    @Test
+    public void secureFacetsSampleSize() throws Exception{
+        IndexDefinition idxDefn = new IndexDefinition(root, builder.getNodeState());
+        assertEquals(0, idxDefn.getSecureFacetsSampleSize());
+
+        builder.child(LuceneIndexConstants.FACETS).setProperty(LuceneIndexConstants.PROP_SECURE_FACETS_SAMPLE_SIZE, 100);
+        idxDefn = new IndexDefinition(root, builder.getNodeState());
+        assertTrue(idxDefn.isSecureFacets());
+        assertEquals(100, idxDefn.getSecureFacetsSampleSize());
     }
 
     @Test
@@ -816,6 +836,7 @@ public class IndexDefinitionTest {
                 .setProperty(LuceneIndexConstants.PROP_USE_IN_EXCERPT, true)
                 .setProperty(LuceneIndexConstants.PROP_NODE_SCOPE_INDEX, true)
                 .setProperty(LuceneIndexConstants.PROP_ORDERED, true)
+                .setProperty(LuceneIndexConstants.PROP_STORE_VALUE, true)
                 .setProperty(LuceneIndexConstants.PROP_ANALYZED, true);
         IndexDefinition defn = new IndexDefinition(root, builder.getNodeState());
         IndexingRule rule = defn.getApplicableIndexingRule(newTree(newNode("nt:folder")));
@@ -831,6 +852,7 @@ public class IndexDefinitionTest {
         assertFalse(pd.notNullCheckEnabled);
         assertFalse(pd.stored);
         assertFalse(pd.ordered);
+        assertFalse(pd.storeValue);
         assertFalse(pd.analyzed);
 
     }
@@ -33,6 +33,7 @@ import org.apache.jackrabbit.oak.plugins.index.CompositeIndexEditorProvider;
 import org.apache.jackrabbit.oak.plugins.index.IndexConstants;
 import org.apache.jackrabbit.oak.plugins.index.IndexEditor;
 import org.apache.jackrabbit.oak.plugins.index.IndexEditorProvider;
+import org.apache.jackrabbit.oak.plugins.index.IndexUpdate;
 import org.apache.jackrabbit.oak.plugins.index.IndexUpdateCallback;
 import org.apache.jackrabbit.oak.plugins.index.IndexUpdateProvider;
 import org.apache.jackrabbit.oak.plugins.index.IndexUtils;
@@ -40,7 +41,9 @@ import org.apache.jackrabbit.oak.plugins.index.property.PropertyIndexEditorProvi
 import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
 import org.apache.jackrabbit.oak.spi.commit.DefaultEditor;
 import org.apache.jackrabbit.oak.spi.commit.Editor;
+import org.apache.jackrabbit.oak.spi.commit.EditorDiff;
 import org.apache.jackrabbit.oak.spi.commit.EditorHook;
+import org.apache.jackrabbit.oak.spi.commit.VisibleEditor;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.jackrabbit.test.ISO8601;
@@ -178,6 +181,43 @@ public class LuceneIndexEditorTest {
         assertEquals(2, getSearcher().getIndexReader().numDocs());
     }
 
+    @Test
+    public void parallelReindex() throws Exception{
+        NodeBuilder index = builder.child(INDEX_DEFINITIONS_NAME);
+        NodeBuilder nb = newLuceneIndexDefinitionV2(index, "lucene",
+                of(TYPENAME_STRING));
+        nb.setProperty(LuceneIndexConstants.FULL_TEXT_ENABLED, false);
+        nb.setProperty(createProperty(INCLUDE_PROPERTY_NAMES, of("foo"), STRINGS));
+
+        NodeState before = root;
+        // ancestors of the partitions are indexed once
+        builder.child("content").setProperty("foo", "content");
+        for (int i = 0; i < 100; i++) {
+            NodeBuilder c = builder.child("content").child("c" + (i % 5));
+            c.setProperty("foo", "c");
+            c.child("n" + i).setProperty("foo", "v" + (i % 4));
+        }
+        NodeState after = builder.getNodeState();
+
+        NodeBuilder indexedBuilder = after.builder();
+        IndexUpdate update = new IndexUpdate(new LuceneIndexEditorProvider(), null,
+                after, indexedBuilder, new IndexUpdateCallback() {
+            @Override
+            public void indexUpdate() {
+            }
+        }).withReindexThreads(4);
+        assertNull(EditorDiff.process(VisibleEditor.wrap(update), before, after));
+        NodeState indexed = indexedBuilder.getNodeState();
+        tracker.update(indexed);
+
+        assertEquals(106, getSearcher().getIndexReader().numDocs());
+        assertEquals(106, indexed.getChildNode(INDEX_DEFINITIONS_NAME).getChildNode("lucene")
+                .getChildNode(":status").getLong("indexedNodes"));
+        assertEquals(25, getSearcher().search(new TermQuery(new Term("foo", "v1")), 200).totalHits);
+        assertEquals(5, getSearcher().search(new TermQuery(new Term("foo", "c")), 200).totalHits);
+        assertEquals("/content", getPath(new TermQuery(new Term("foo", "content"))));
+    }
+
     @Test
     public void saveDirectoryListing() throws Exception{
         NodeBuilder index = builder.child(INDEX_DEFINITIONS_NAME);
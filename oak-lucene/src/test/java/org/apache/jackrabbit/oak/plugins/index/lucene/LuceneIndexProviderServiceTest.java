@@ -22,12 +22,14 @@ package org.apache.jackrabbit.oak.plugins.index.lucene;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.jackrabbit.oak.api.Blob;
 import org.apache.jackrabbit.oak.api.jmx.CacheStatsMBean;
 import org.apache.jackrabbit.oak.plugins.index.IndexEditorProvider;
 import org.apache.jackrabbit.oak.plugins.index.fulltext.ExtractedText;
+import org.apache.jackrabbit.oak.plugins.index.fulltext.ExtractedTextStore;
 import org.apache.jackrabbit.oak.plugins.index.fulltext.PreExtractedTextProvider;
 import org.apache.jackrabbit.oak.spi.commit.BackgroundObserver;
 import org.apache.jackrabbit.oak.spi.commit.Observer;
@@ -44,7 +46,9 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
 
 public class LuceneIndexProviderServiceTest {
     /*
@@ -78,6 +82,8 @@ public class LuceneIndexProviderServiceTest {
         assertTrue(indexCopier.isPrefetchEnabled());
 
         assertNotNull("CopyOnRead should be enabled by default", context.getService(CopyOnReadStatsMBean.class));
+        assertNull("Block cache is only used without CopyOnRead", service.getBlockCache());
+        assertNotNull("Hybrid indexing should be enabled by default", service.getNRTIndexFactory());
         assertNotNull(context.getService(CacheStatsMBean.class));
 
         assertTrue(context.getService(Observer.class) instanceof BackgroundObserver);
@@ -153,6 +159,74 @@ public class LuceneIndexProviderServiceTest {
         assertNull(context.getService(CacheStatsMBean.class));
     }
 
+    @Test
+    public void blockCacheWithoutCopyOnRead() throws Exception{
+        Map<String,Object> config = getDefaultConfig();
+        config.put("enableCopyOnReadSupport", false);
+        config.put("blockCacheSizeInMB", 7);
+        MockOsgi.activate(service, context.bundleContext(), config);
+
+        OakBlockCache blockCache = service.getBlockCache();
+        assertNotNull(blockCache);
+        assertEquals(7 * FileUtils.ONE_MB, blockCache.getCacheStats().getMaxTotalWeight());
+        assertNotNull(context.getService(BlockCacheStatsMBean.class));
+
+        MockOsgi.deactivate(service);
+
+        assertNull(context.getService(BlockCacheStatsMBean.class));
+    }
+
+    @Test
+    public void searchThreadPoolSize() throws Exception{
+        Map<String,Object> config = getDefaultConfig();
+        config.put("searchThreadPoolSize", 3);
+        MockOsgi.activate(service, context.bundleContext(), config);
+
+        ThreadPoolExecutor searchExecutor = (ThreadPoolExecutor) service.getSearchExecutor();
+        assertEquals(3, searchExecutor.getMaximumPoolSize());
+
+        MockOsgi.deactivate(service);
+        assertTrue(searchExecutor.isShutdown());
+    }
+
+    @Test
+    public void extractionThreadPoolSize() throws Exception{
+        Map<String,Object> config = getDefaultConfig();
+        config.put("extractionThreadPoolSize", 3);
+        MockOsgi.activate(service, context.bundleContext(), config);
+
+        ThreadPoolExecutor extractionExecutor = (ThreadPoolExecutor) service.getExtractionExecutor();
+        assertEquals(3, extractionExecutor.getMaximumPoolSize());
+        LuceneIndexEditorProvider editorProvider =
+                (LuceneIndexEditorProvider) context.getService(IndexEditorProvider.class);
+        assertSame(extractionExecutor, editorProvider.getExtractionExecutor());
+
+        MockOsgi.deactivate(service);
+        assertTrue(extractionExecutor.isShutdown());
+    }
+
+    @Test
+    public void extractionInIndexingThread() throws Exception{
+        Map<String,Object> config = getDefaultConfig();
+        config.put("extractionThreadPoolSize", 0);
+        MockOsgi.activate(service, context.bundleContext(), config);
+
+        assertNull(service.getExtractionExecutor());
+
+        MockOsgi.deactivate(service);
+    }
+
+    @Test
+    public void hybridIndexingDisabled() throws Exception{
+        Map<String,Object> config = getDefaultConfig();
+        config.put("enableHybridIndexing", false);
+        MockOsgi.activate(service, context.bundleContext(), config);
+
+        assertNull(service.getNRTIndexFactory());
+
+        MockOsgi.deactivate(service);
+    }
+
     @Test
     public void preExtractedTextProvider() throws Exception{
         MockOsgi.activate(service, context.bundleContext(), getDefaultConfig());
@@ -168,6 +242,24 @@ public class LuceneIndexProviderServiceTest {
         assertNotNull(editorProvider.getExtractedTextCache().getExtractedTextProvider());
     }
 
+    @Test
+    public void extractedTextStore() throws Exception{
+        MockOsgi.activate(service, context.bundleContext(), getDefaultConfig());
+        LuceneIndexEditorProvider editorProvider =
+                (LuceneIndexEditorProvider) context.getService(IndexEditorProvider.class);
+        ExtractedTextCache cache = editorProvider.getExtractedTextCache();
+        assertNull(cache.getExtractedTextStore());
+        assertFalse(cache.getStatsMBean().isExtractedTextStoreConfigured());
+
+        ExtractedTextStore store = mock(ExtractedTextStore.class);
+        service.bindExtractedTextStore(store);
+        assertSame(store, cache.getExtractedTextStore());
+        assertTrue(cache.getStatsMBean().isExtractedTextStoreConfigured());
+
+        service.unbindExtractedTextStore(store);
+        assertNull(cache.getExtractedTextStore());
+    }
+
     @Test
     public void preExtractedProviderBindBeforeActivate() throws Exception{
         service.bindExtractedTextProvider(new DummyProvider());
@@ -23,12 +23,15 @@ import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Sets.newHashSet;
 import static com.google.common.util.concurrent.MoreExecutors.sameThreadExecutor;
 import static java.util.Arrays.asList;
+import static javax.jcr.PropertyType.TYPENAME_BINARY;
 import static javax.jcr.PropertyType.TYPENAME_STRING;
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
 import static junit.framework.Assert.assertTrue;
 import static junit.framework.Assert.fail;
 import static org.apache.jackrabbit.JcrConstants.JCR_DATA;
+import static org.apache.jackrabbit.JcrConstants.JCR_MIMETYPE;
 import static org.apache.jackrabbit.JcrConstants.JCR_SYSTEM;
 import static org.apache.jackrabbit.JcrConstants.NT_BASE;
 import static org.apache.jackrabbit.JcrConstants.NT_FILE;
@@ -64,6 +67,8 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -73,6 +78,7 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.jackrabbit.oak.api.Blob;
 import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.api.PropertyValue;
 import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.plugins.index.IndexConstants;
 import org.apache.jackrabbit.oak.plugins.index.IndexUpdateProvider;
@@ -236,6 +242,118 @@ public class LuceneIndexTest {
         assertEquals(LuceneIndex.LUCENE_QUERY_BATCH_SIZE + 1, paths.size());
     }
 
+    @Test
+    public void parallelSearch() throws Exception {
+        NodeBuilder index = builder.child(INDEX_DEFINITIONS_NAME);
+        newLucenePropertyIndexDefinition(index, "lucene", ImmutableSet.of("foo"), null)
+                .setProperty(LuceneIndexConstants.PARALLEL_SEARCH, true);
+
+        //Two commits to have more than one segment to search
+        NodeState before = builder.getNodeState();
+        for (int i = 0; i < 10; i++) {
+            builder.child("a").child("child" + i).setProperty("foo", "bar");
+        }
+        NodeState indexed = HOOK.processCommit(before, builder.getNodeState(), CommitInfo.EMPTY);
+        builder = indexed.builder();
+        for (int i = 0; i < 10; i++) {
+            builder.child("b").child("child" + i).setProperty("foo", "bar");
+        }
+        indexed = HOOK.processCommit(indexed, builder.getNodeState(), CommitInfo.EMPTY);
+
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(2);
+        try {
+            tracker = new IndexTracker(null, null, null, executor);
+            tracker.update(indexed);
+            AdvancedQueryIndex queryIndex = new LucenePropertyIndex(tracker);
+            FilterImpl filter = createFilter(NT_BASE);
+            filter.restrictProperty("foo", Operator.EQUAL,
+                    PropertyValues.newString("bar"));
+            List<IndexPlan> plans = queryIndex.getPlans(filter, null, indexed);
+            Cursor cursor = queryIndex.query(plans.get(0), indexed);
+
+            List<String> paths = copyOf(transform(cursor, new Function<IndexRow, String>() {
+                public String apply(IndexRow input) {
+                    return input.getPath();
+                }
+            }));
+            assertEquals(20, paths.size());
+            assertEquals(20, newHashSet(paths).size());
+            assertTrue("Segments should be searched via the executor", executor.getTaskCount() > 0);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void storedValues() throws Exception {
+        NodeBuilder index = newLucenePropertyIndexDefinition(builder.child(INDEX_DEFINITIONS_NAME),
+                "lucene", ImmutableSet.of("foo"), null);
+        NodeBuilder props = index.child(INDEX_RULES).child(NT_BASE).child(LuceneIndexConstants.PROP_NODE);
+        props.child("foo").setProperty(LuceneIndexConstants.PROP_PROPERTY_INDEX, true);
+        props.child("title").setProperty(LuceneIndexConstants.PROP_STORE_VALUE, true);
+        props.child("count").setProperty(LuceneIndexConstants.PROP_TYPE, PropertyType.TYPENAME_LONG)
+                .setProperty(LuceneIndexConstants.PROP_STORE_VALUE, true);
+
+        NodeState before = builder.getNodeState();
+        NodeBuilder a = builder.child("a");
+        a.setProperty("foo", "bar");
+        a.setProperty("title", "hello");
+        a.setProperty("count", 42L);
+        NodeBuilder b = builder.child("b");
+        b.setProperty("foo", "bar");
+        b.setProperty("title", asList("hello", "world"), Type.STRINGS);
+        b.setProperty("count", "not a long");
+        NodeState indexed = HOOK.processCommit(before, builder.getNodeState(), CommitInfo.EMPTY);
+
+        tracker = new IndexTracker();
+        tracker.update(indexed);
+        AdvancedQueryIndex queryIndex = new LucenePropertyIndex(tracker);
+        FilterImpl filter = createFilter(NT_BASE);
+        filter.restrictProperty("foo", Operator.EQUAL, PropertyValues.newString("bar"));
+        List<IndexPlan> plans = queryIndex.getPlans(filter, null, indexed);
+        Cursor cursor = queryIndex.query(plans.get(0), indexed);
+
+        //Row values are only valid while the cursor is positioned on the row
+        Map<String, List<PropertyValue>> values = Maps.newHashMap();
+        while (cursor.hasNext()) {
+            IndexRow row = cursor.next();
+            values.put(row.getPath(), asList(row.getValue("title"), row.getValue("count"), row.getValue("foo")));
+        }
+        assertEquals(2, values.size());
+
+        List<PropertyValue> valuesA = values.get("/a");
+        assertEquals("hello", valuesA.get(0).getValue(Type.STRING));
+        assertEquals(Type.LONG, valuesA.get(1).getType());
+        assertEquals(42L, (long) valuesA.get(1).getValue(Type.LONG));
+        assertNull(valuesA.get(2));
+
+        //Multi valued and values not of the configured type are not stored
+        List<PropertyValue> valuesB = values.get("/b");
+        assertNull(valuesB.get(0));
+        assertNull(valuesB.get(1));
+
+        //No values are returned for a root the tracker has not seen, as they
+        //may be stale
+        NodeBuilder changed = indexed.builder();
+        changed.child("a").setProperty("title", "changed");
+        NodeState later = HOOK.processCommit(indexed, changed.getNodeState(), CommitInfo.EMPTY);
+        cursor = queryIndex.query(plans.get(0), later);
+        assertTrue(cursor.hasNext());
+        while (cursor.hasNext()) {
+            assertNull(cursor.next().getValue("title"));
+        }
+
+        //Once it has, the current values are returned
+        tracker.update(later);
+        cursor = queryIndex.query(queryIndex.getPlans(filter, null, later).get(0), later);
+        values.clear();
+        while (cursor.hasNext()) {
+            IndexRow row = cursor.next();
+            values.put(row.getPath(), asList(row.getValue("title")));
+        }
+        assertEquals("changed", values.get("/a").get(0).getValue(Type.STRING));
+    }
+
     @Test
     public void testLucene2() throws Exception {
         NodeBuilder index = builder.child(INDEX_DEFINITIONS_NAME);
@@ -612,6 +730,51 @@ public class LuceneIndexTest {
         assertFilter(filter, queryIndex, indexed, ImmutableList.of("/"));
     }
 
+    @Test
+    public void asyncTextExtraction() throws Exception{
+        NodeBuilder nb = newLuceneIndexDefinitionV2(builder.child(INDEX_DEFINITIONS_NAME), "lucene",
+                of(TYPENAME_BINARY));
+        int count = LuceneIndexEditorContext.PENDING_UPDATES_BATCH_SIZE + 10;
+        NodeState before = builder.getNodeState();
+        for (int i = 0; i < count; i++) {
+            NodeBuilder file = builder.child("file" + i);
+            file.setProperty(JCR_MIMETYPE, "text/plain");
+            file.setProperty(JCR_DATA, new ArrayBasedBlob(("quick fox " + i).getBytes()));
+        }
+        NodeState after = builder.getNodeState();
+
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(2);
+        try {
+            EditorHook hook = new EditorHook(new IndexUpdateProvider(
+                    new LuceneIndexEditorProvider(null, new ExtractedTextCache(0, 0), null, executor)));
+            NodeState indexed = hook.processCommit(before, after, CommitInfo.EMPTY);
+            assertEquals(count, executor.getCompletedTaskCount());
+
+            tracker = new IndexTracker();
+            tracker.update(indexed);
+            AdvancedQueryIndex queryIndex = new LucenePropertyIndex(tracker);
+
+            FilterImpl filter = createFilter("nt:base");
+            filter.setFullTextConstraint(new FullTextTerm(null, "fox", false, false, null));
+            assertEquals(count, copyOf(queryIndex.query(queryIndex.getPlans(filter, null, indexed).get(0),
+                    indexed)).size());
+
+            //Update followed by a delete of the same subtree must leave nothing behind
+            before = indexed;
+            builder = indexed.builder();
+            builder.child("file0").setProperty(JCR_DATA, new ArrayBasedBlob("lazy dog".getBytes()));
+            builder.child("file1").setProperty(JCR_DATA, new ArrayBasedBlob("lazy dog".getBytes()));
+            builder.child("file1").remove();
+            indexed = hook.processCommit(before, builder.getNodeState(), CommitInfo.EMPTY);
+            tracker.update(indexed);
+
+            filter.setFullTextConstraint(new FullTextTerm(null, "dog", false, false, null));
+            assertFilter(filter, queryIndex, indexed, ImmutableList.of("/file0"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Test
     public void customScoreQuery() throws Exception{
         NodeBuilder nb = newLuceneIndexDefinition(builder.child(INDEX_DEFINITIONS_NAME), "lucene",
@@ -36,6 +36,7 @@ import javax.jcr.PropertyType;
 
 import com.google.common.base.Charsets;
 import com.google.common.collect.ComparisonChain;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
@@ -2109,6 +2110,77 @@ public class LucenePropertyIndexTest extends AbstractQueryTest {
         assertPlanAndQuery(query, "lucene:test1(/oak:index/test1)", Collections.<String>emptyList());
     }
 
+    @Test
+    public void storedValuesAsColumns() throws Exception{
+        Tree idx = createIndex("test1", of("propa"));
+        Tree props = TestUtil.newRulePropTree(idx, "nt:base");
+        props.addChild("propa").setProperty(LuceneIndexConstants.PROP_PROPERTY_INDEX, true);
+        props.addChild("title").setProperty(LuceneIndexConstants.PROP_STORE_VALUE, true);
+        Tree created = props.addChild("created");
+        created.setProperty(LuceneIndexConstants.PROP_TYPE, PropertyType.TYPENAME_DATE);
+        created.setProperty(LuceneIndexConstants.PROP_STORE_VALUE, true);
+        props.addChild("tags").setProperty(LuceneIndexConstants.PROP_STORE_VALUE, true);
+        root.commit();
+
+        Tree test = root.getTree("/").addChild("test");
+        Tree a = test.addChild("a");
+        a.setProperty("propa", "foo");
+        a.setProperty("title", "Title A");
+        a.setProperty("created", "2016-10-01T10:00:00.000Z", Type.DATE);
+        a.setProperty("tags", of("x", "y"), Type.STRINGS);
+        test.addChild("b").setProperty("propa", "bar");
+        root.commit();
+
+        Result result = executeQuery("select [jcr:path], [title], [created] from [nt:base] where [propa] = 'foo'",
+                SQL2, NO_BINDINGS);
+        ResultRow row = Iterables.getOnlyElement(result.getRows());
+        assertEquals("/test/a", row.getPath());
+        assertEquals("Title A", row.getValue("title").getValue(Type.STRING));
+        assertEquals(Type.DATE, row.getValue("created").getType());
+        assertEquals("2016-10-01T10:00:00.000Z", row.getValue("created").getValue(Type.DATE));
+
+        //Multi valued properties are not stored and get read from the node
+        result = executeQuery("select [title], [tags] from [nt:base] where [propa] = 'foo'",
+                SQL2, NO_BINDINGS);
+        row = Iterables.getOnlyElement(result.getRows());
+        assertEquals("Title A", row.getValue("title").getValue(Type.STRING));
+        assertEquals(of("x", "y"), ImmutableSet.copyOf(row.getValue("tags").getValue(Type.STRINGS)));
+
+        //Removed nodes must not show up as long as the session has transient changes
+        root.getTree("/test/a").remove();
+        assertQuery("select [title] from [nt:base] where [propa] = 'foo'", Collections.<String>emptyList());
+    }
+
+    @Test
+    public void storedValuesOfDelayedIndex() throws Exception{
+        Tree idx = createIndex("test1", of("propa"));
+        Tree props = TestUtil.newRulePropTree(idx, "nt:base");
+        props.addChild("propa").setProperty(LuceneIndexConstants.PROP_PROPERTY_INDEX, true);
+        props.addChild("title").setProperty(LuceneIndexConstants.PROP_STORE_VALUE, true);
+        root.commit();
+
+        Tree test = root.getTree("/").addChild("test");
+        test.addChild("a").setProperty("propa", "foo");
+        test.getChild("a").setProperty("title", "Title A");
+        test.addChild("b").setProperty("propa", "foo");
+        test.getChild("b").setProperty("title", "Title B");
+        root.commit();
+
+        //The index is not updated anymore, as no async lane runs
+        root.getTree("/oak:index/test1").setProperty("async", "async");
+        root.commit();
+        root.getTree("/test/a").remove();
+        root.getTree("/test/b").setProperty("title", "Title B2");
+        root.commit();
+
+        //Removed nodes and stale values must not be returned
+        Result result = executeQuery("select [jcr:path], [title] from [nt:base] where [propa] = 'foo'",
+                SQL2, NO_BINDINGS);
+        ResultRow row = Iterables.getOnlyElement(result.getRows());
+        assertEquals("/test/b", row.getPath());
+        assertEquals("Title B2", row.getValue("title").getValue(Type.STRING));
+    }
+
     private void assertPlanAndQuery(String query, String planExpectation, List<String> paths){
         assertThat(explain(query), containsString(planExpectation));
         assertQuery(query, paths);
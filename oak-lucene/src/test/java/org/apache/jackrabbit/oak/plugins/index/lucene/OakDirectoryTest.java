@@ -27,6 +27,10 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.management.openmbean.CompositeData;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.input.NullInputStream;
@@ -55,6 +59,7 @@ import org.junit.rules.TemporaryFolder;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Sets.newHashSet;
+import static com.google.common.util.concurrent.MoreExecutors.sameThreadExecutor;
 import static org.apache.commons.io.FileUtils.ONE_GB;
 import static org.apache.commons.io.FileUtils.ONE_MB;
 import static org.apache.jackrabbit.JcrConstants.JCR_DATA;
@@ -414,6 +419,89 @@ public class OakDirectoryTest {
         store.close();
     }
 
+    @Test
+    public void blockCache() throws Exception{
+        FileStore store = FileStore.builder(tempFolder.getRoot())
+                .withMemoryMapping(false)
+                .build();
+        SegmentNodeStore nodeStore = SegmentNodeStore.builder(store).build();
+        String indexPath = "/foo/bar";
+        builder = nodeStore.getRoot().builder();
+        builder.setProperty(IndexConstants.INDEX_PATH, indexPath);
+        builder.setProperty(LuceneIndexConstants.BLOB_SIZE, 4096);
+
+        byte[] data = randomBytes(4096 * 4 + 100);
+        Directory dir = createDir(builder, false);
+        IndexOutput o = dir.createOutput("test", IOContext.DEFAULT);
+        o.writeBytes(data, data.length);
+        o.close();
+        dir.close();
+
+        OakBlockCache blockCache = new OakBlockCache(ONE_MB, 2, sameThreadExecutor());
+        dir = new OakDirectory(builder, INDEX_DATA_CHILD_NAME,
+                new IndexDefinition(root, builder.getNodeState()), true, blockCache);
+        IndexInput input = dir.openInput("test", IOContext.DEFAULT);
+        byte[] result = new byte[data.length];
+        input.readBytes(result, 0, result.length);
+        assertTrue(Arrays.equals(data, result));
+
+        // first two blocks are loaded on demand, the others read ahead
+        CompositeData stats = blockCache.getIndexStats().get(new Object[]{indexPath});
+        assertEquals(2L, stats.get("missCount"));
+        assertEquals(3L, stats.get("hitCount"));
+        assertEquals(3L, stats.get("readAheadCount"));
+
+        // clones share the cached blocks
+        IndexInput clone = input.clone();
+        clone.seek(0);
+        clone.readBytes(result, 0, result.length);
+        assertTrue(Arrays.equals(data, result));
+        stats = blockCache.getIndexStats().get(new Object[]{indexPath});
+        assertEquals(2L, stats.get("missCount"));
+        assertEquals(8L, stats.get("hitCount"));
+
+        input.close();
+        store.close();
+    }
+
+    @Test
+    public void blockCacheReadAheadPendingAndDropped() throws Exception{
+        final List<Runnable> tasks = newArrayList();
+        final boolean[] saturated = new boolean[1];
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                if (saturated[0]) {
+                    throw new RejectedExecutionException();
+                }
+                tasks.add(command);
+            }
+        };
+        OakBlockCache blockCache = new OakBlockCache(ONE_MB, 2, executor);
+        Blob a = new IdentifiedBlob(randomBytes(100), "a");
+        Blob b = new IdentifiedBlob(randomBytes(100), "b");
+
+        // a block is only requested once while it is loaded
+        blockCache.readAhead("/foo", a, 100);
+        blockCache.readAhead("/foo", a, 100);
+        assertEquals(1, tasks.size());
+
+        // requests rejected by the saturated executor are dropped
+        saturated[0] = true;
+        blockCache.readAhead("/foo", b, 100);
+        assertEquals(1, blockCache.getReadAheadDroppedCount());
+
+        saturated[0] = false;
+        tasks.remove(0).run();
+        assertEquals(1, blockCache.getReadAheadCount());
+        // already cached
+        blockCache.readAhead("/foo", a, 100);
+        assertTrue(tasks.isEmpty());
+        // no longer pending after being dropped
+        blockCache.readAhead("/foo", b, 100);
+        assertEquals(1, tasks.size());
+    }
+
     @Test
     public void readOnlyDirectory() throws Exception{
         Directory dir = new OakDirectory(new ReadOnlyBuilder(builder.getNodeState()),
@@ -493,4 +581,18 @@ public class OakDirectoryTest {
             fail = false;
         }
     }
+
+    private static class IdentifiedBlob extends ArrayBasedBlob {
+        private final String id;
+
+        IdentifiedBlob(byte[] value, String id) {
+            super(value);
+            this.id = id;
+        }
+
+        @Override
+        public String getContentIdentity() {
+            return id;
+        }
+    }
 }
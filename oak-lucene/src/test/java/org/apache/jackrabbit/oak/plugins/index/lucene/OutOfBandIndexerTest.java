@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.index.lucene;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jackrabbit.oak.plugins.index.AsyncIndexUpdate;
+import org.apache.jackrabbit.oak.plugins.index.CompositeIndexEditorProvider;
+import org.apache.jackrabbit.oak.plugins.index.counter.NodeCounterEditorProvider;
+import org.apache.jackrabbit.oak.plugins.memory.MemoryNodeStore;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
+import org.apache.jackrabbit.oak.spi.state.NodeStore;
+import org.apache.jackrabbit.oak.spi.state.ReadOnlyBuilder;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static com.google.common.collect.ImmutableSet.of;
+import static javax.jcr.PropertyType.TYPENAME_STRING;
+import static org.apache.jackrabbit.oak.api.Type.STRINGS;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.ASYNC_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.INCLUDE_PROPERTY_NAMES;
+import static org.apache.jackrabbit.oak.plugins.index.lucene.TestUtil.newLuceneIndexDefinitionV2;
+import static org.apache.jackrabbit.oak.plugins.memory.PropertyStates.createProperty;
+import static org.apache.jackrabbit.oak.plugins.nodetype.write.InitialContent.INITIAL_CONTENT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class OutOfBandIndexerTest {
+
+    private static final String INDEX_PATH = "/oak:index/lucene";
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private NodeStore store;
+
+    private AsyncIndexUpdate async;
+
+    @Before
+    public void setUp() throws Exception {
+        store = new MemoryNodeStore(INITIAL_CONTENT);
+        NodeBuilder builder = store.getRoot().builder();
+        NodeBuilder idx = newLuceneIndexDefinitionV2(builder.child(INDEX_DEFINITIONS_NAME),
+                "lucene", of(TYPENAME_STRING));
+        idx.setProperty(ASYNC_PROPERTY_NAME, "async");
+        idx.setProperty(LuceneIndexConstants.FULL_TEXT_ENABLED, false);
+        idx.setProperty(createProperty(INCLUDE_PROPERTY_NAMES, of("foo"), STRINGS));
+        for (int i = 0; i < 10; i++) {
+            builder.child("test").child("n" + i).setProperty("foo", "bar" + i);
+        }
+        store.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+
+        async = new AsyncIndexUpdate("async", store, new CompositeIndexEditorProvider(
+                new LuceneIndexEditorProvider(), new NodeCounterEditorProvider()));
+        async.run();
+    }
+
+    @Test
+    public void buildAndImport() throws Exception {
+        // remove the index content created by the async lane
+        NodeBuilder builder = store.getRoot().builder();
+        builder.getChildNode(INDEX_DEFINITIONS_NAME).getChildNode("lucene")
+                .getChildNode(":data").remove();
+        store.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        assertEquals(0, numDocs());
+
+        OutOfBandIndexer indexer = new OutOfBandIndexer(store, INDEX_PATH,
+                temporaryFolder.newFolder());
+        String checkpoint = OutOfBandIndexer.createCheckpoint(store, INDEX_PATH,
+                OutOfBandIndexer.DEFAULT_CHECKPOINT_LIFETIME);
+        assertEquals(10, indexer.build(checkpoint));
+        indexer.importIndex();
+
+        assertEquals(10, numDocs());
+        // the checkpoint is released after the import
+        assertNull(store.retrieve(checkpoint));
+    }
+
+    @Test
+    public void importIndexesChangesAfterBuild() throws Exception {
+        File workDir = temporaryFolder.newFolder();
+        OutOfBandIndexer indexer = new OutOfBandIndexer(store, INDEX_PATH, workDir);
+        String laneCheckpoint = store.getRoot().getChildNode(":async").getString("async");
+        String checkpoint = OutOfBandIndexer.createCheckpoint(store, INDEX_PATH,
+                OutOfBandIndexer.DEFAULT_CHECKPOINT_LIFETIME);
+        assertEquals(10, indexer.build(checkpoint));
+
+        NodeBuilder builder = store.getRoot().builder();
+        builder.child("test").child("n10").setProperty("foo", "bar10");
+        builder.child("test").child("n0").remove();
+        store.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        // the lane releases its checkpoint when it moves on, but not the
+        // checkpoint created for the build
+        async.run();
+        assertNull(store.retrieve(laneCheckpoint));
+        assertNotNull(store.retrieve(checkpoint));
+
+        indexer.importIndex();
+        assertEquals(10, numDocs());
+        assertEquals(1, numDocs("bar10"));
+        assertEquals(0, numDocs("bar0"));
+
+        // the lane continues with the changes after its checkpoint
+        builder = store.getRoot().builder();
+        builder.child("test").child("n11").setProperty("foo", "bar11");
+        store.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        async.run();
+        assertEquals(11, numDocs());
+    }
+
+    @Test
+    public void importFailsWithoutCheckpoint() throws Exception {
+        File workDir = temporaryFolder.newFolder();
+        OutOfBandIndexer indexer = new OutOfBandIndexer(store, INDEX_PATH, workDir);
+        String checkpoint = OutOfBandIndexer.createCheckpoint(store, INDEX_PATH,
+                TimeUnit.HOURS.toMillis(1));
+        indexer.build(checkpoint);
+        store.release(checkpoint);
+
+        try {
+            indexer.importIndex();
+            fail("import must fail when the checkpoint is gone");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(10, numDocs());
+    }
+
+    private int numDocs() throws Exception {
+        return numDocs(null);
+    }
+
+    private int numDocs(String foo) throws Exception {
+        NodeState root = store.getRoot();
+        NodeState definition = NodeStateUtils.getNode(root, INDEX_PATH);
+        if (!definition.hasChildNode(":data")) {
+            return 0;
+        }
+        Directory dir = new OakDirectory(new ReadOnlyBuilder(definition),
+                new IndexDefinition(root, definition), true);
+        DirectoryReader reader = DirectoryReader.open(dir);
+        try {
+            if (foo == null) {
+                return reader.numDocs();
+            }
+            return new IndexSearcher(reader).search(
+                    new TermQuery(new Term("foo", foo)), 100).totalHits;
+        } finally {
+            reader.close();
+            dir.close();
+        }
+    }
+}
@@ -18,13 +18,43 @@
  */
 package org.apache.jackrabbit.oak.plugins.index.lucene.util;
 
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.jackrabbit.oak.plugins.index.lucene.FieldFactory;
+import org.apache.jackrabbit.oak.plugins.index.lucene.FieldNames;
+import org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants;
+import org.apache.jackrabbit.oak.spi.query.Filter;
+import org.apache.jackrabbit.oak.spi.query.QueryIndex;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.facet.FacetResult;
+import org.apache.lucene.facet.Facets;
 import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetField;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
+import static org.apache.jackrabbit.oak.plugins.index.lucene.LuceneIndexConstants.VERSION;
 import static org.apache.jackrabbit.oak.plugins.nodetype.write.InitialContent.INITIAL_CONTENT;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 /**
  * Tests for {@link FacetHelper}
@@ -39,6 +69,50 @@ public class FacetHelperTest {
         assertNotNull(facetsConfig);
     }
 
+    @Test
+    public void cachedReaderStateWithSampledSecureFacets() throws Exception {
+        Directory dir = new RAMDirectory();
+        FacetsConfig config = new FacetsConfig();
+        config.setIndexFieldName("tags", FieldNames.createFacetFieldName("tags"));
+        IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(VERSION, LuceneIndexConstants.ANALYZER));
+        for (int i = 0; i < 40; i++) {
+            Document doc = new Document();
+            boolean open = i % 2 == 0;
+            doc.add(FieldFactory.newPathField((open ? "/open/" : "/secret/") + i));
+            doc.add(new SortedSetDocValuesFacetField("tags", open ? "public" : "private"));
+            writer.addDocument(config.build(doc));
+        }
+        writer.close();
+
+        IndexSearcher searcher = new IndexSearcher(DirectoryReader.open(dir));
+        Query query = new MatchAllDocsQuery();
+        TopDocs docs = searcher.search(query, 100);
+
+        Filter filter = mock(Filter.class);
+        when(filter.isAccessible(anyString())).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) throws Throwable {
+                return ((String) invocation.getArguments()[0]).startsWith("/open/");
+            }
+        });
+        QueryIndex.IndexPlan plan = mock(QueryIndex.IndexPlan.class);
+        when(plan.getAttribute(FacetHelper.ATTR_FACET_FIELDS)).thenReturn(Collections.singletonList("tags"));
+        when(plan.getFilter()).thenReturn(filter);
+
+        ConcurrentMap<String, SortedSetDocValuesReaderState> states =
+                new ConcurrentHashMap<String, SortedSetDocValuesReaderState>();
+        Facets facets = FacetHelper.getFacets(searcher, query, docs, plan, true, 10, states);
+        FacetResult result = facets.getTopChildren(10, "tags");
+        assertEquals(1, result.labelValues.length);
+        assertEquals("public", result.labelValues[0].label);
+        assertEquals(20, result.labelValues[0].value.intValue());
+
+        SortedSetDocValuesReaderState state = states.get(FieldNames.createFacetFieldName("tags"));
+        assertNotNull(state);
+        FacetHelper.getFacets(searcher, query, docs, plan, true, 10, states);
+        assertSame(state, states.get(FieldNames.createFacetFieldName("tags")));
+    }
+
     @Test
     public void testParseFacetField() throws Exception {
         String field = FacetHelper.parseFacetField("rep:facet(text)");
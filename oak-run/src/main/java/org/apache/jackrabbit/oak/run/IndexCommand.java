@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.run;
+
+import static org.apache.jackrabbit.oak.plugins.segment.FileStoreHelper.openFileStore;
+import static org.apache.jackrabbit.oak.plugins.segment.FileStoreHelper.openReadOnlyFileStore;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.io.Closer;
+import com.mongodb.MongoClientURI;
+import com.mongodb.MongoURI;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+import org.apache.jackrabbit.core.data.FileDataStore;
+import org.apache.jackrabbit.oak.plugins.blob.datastore.DataStoreBlobStore;
+import org.apache.jackrabbit.oak.plugins.document.DocumentMK;
+import org.apache.jackrabbit.oak.plugins.document.DocumentNodeStore;
+import org.apache.jackrabbit.oak.plugins.document.util.MongoConnection;
+import org.apache.jackrabbit.oak.plugins.index.lucene.OutOfBandIndexer;
+import org.apache.jackrabbit.oak.plugins.segment.SegmentNodeStore;
+import org.apache.jackrabbit.oak.plugins.segment.file.FileStore;
+import org.apache.jackrabbit.oak.spi.blob.BlobStore;
+import org.apache.jackrabbit.oak.spi.state.NodeStore;
+
+/**
+ * Builds a Lucene index from a checkpoint outside of the async indexing lane
+ * and imports it into the repository afterwards. The checkpoint is created
+ * with the {@code checkpoint} operation before the build, and is released
+ * when the index is imported.
+ */
+class IndexCommand implements Command {
+
+    @Override
+    public void execute(String... args) throws Exception {
+        OptionParser parser = new OptionParser();
+        OptionSpec<String> indexPathSpec = parser
+                .accepts("index-path", "Path of the Lucene index definition")
+                .withRequiredArg().ofType(String.class);
+        OptionSpec<File> workDirSpec = parser
+                .accepts("work-dir", "Directory for the index files built out of band")
+                .withRequiredArg().ofType(File.class);
+        OptionSpec<String> checkpointSpec = parser
+                .accepts("checkpoint", "Checkpoint to build the index from, as created by the checkpoint operation")
+                .withRequiredArg().ofType(String.class);
+        OptionSpec<Long> lifetimeSpec = parser
+                .accepts("lifetime", "Lifetime of the created checkpoint in hours")
+                .withRequiredArg().ofType(Long.class)
+                .defaultsTo(TimeUnit.MILLISECONDS.toHours(OutOfBandIndexer.DEFAULT_CHECKPOINT_LIFETIME));
+        OptionSpec<File> fdsDirSpec = parser
+                .accepts("fds-path", "Path of directory used by FileDataStore")
+                .withRequiredArg().ofType(File.class);
+        OptionSpec segmentTar = parser.accepts("segment-tar", "Use oak-segment-tar instead of oak-segment");
+        OptionSet options = parser.parse(args);
+
+        List<?> nonOptions = options.nonOptionArguments();
+        if (nonOptions.size() < 2 || !options.has(indexPathSpec)) {
+            printUsage();
+        }
+        String op = nonOptions.get(0).toString();
+        if (!"checkpoint".equals(op) && !options.has(workDirSpec)
+                || "build".equals(op) && !options.has(checkpointSpec)) {
+            printUsage();
+        }
+
+        boolean success = false;
+        Closer closer = Closer.create();
+        try {
+            if (!"checkpoint".equals(op) && !"build".equals(op) && !"import".equals(op)) {
+                failWith("Unknown command: " + op);
+            }
+
+            BlobStore blobStore = null;
+            if (options.has(fdsDirSpec)) {
+                File fdsDir = fdsDirSpec.value(options);
+                if (!fdsDir.exists()) {
+                    failWith("FileDataStore " + fdsDir.getAbsolutePath() + " does not exist");
+                }
+                final FileDataStore fds = new FileDataStore();
+                fds.setPath(fdsDir.getAbsolutePath());
+                fds.init(null);
+                closer.register(new Closeable() {
+                    @Override
+                    public void close() throws IOException {
+                        fds.close();
+                    }
+                });
+                blobStore = new DataStoreBlobStore(fds);
+            }
+
+            String indexPath = indexPathSpec.value(options);
+            // the index is built from a checkpoint, only creating the
+            // checkpoint and the import write
+            boolean readOnly = "build".equals(op);
+            String src = nonOptions.get(1).toString();
+            NodeStore store;
+            if (options.has(segmentTar) && !src.startsWith(MongoURI.MONGODB_PREFIX)) {
+                store = SegmentTarUtils.bootstrapNodeStore(new File(src), blobStore, readOnly, closer);
+            } else {
+                store = bootstrapNodeStore(src, blobStore, readOnly, closer);
+            }
+            if ("checkpoint".equals(op)) {
+                long lifetime = TimeUnit.HOURS.toMillis(lifetimeSpec.value(options));
+                String checkpoint = OutOfBandIndexer.createCheckpoint(store, indexPath, lifetime);
+                System.out.println("Created checkpoint " + checkpoint + " for " + indexPath
+                        + ", valid for " + lifetimeSpec.value(options) + " hours.");
+            } else if ("build".equals(op)) {
+                OutOfBandIndexer indexer = new OutOfBandIndexer(store, indexPath,
+                        workDirSpec.value(options));
+                String checkpoint = checkpointSpec.value(options);
+                long time = System.currentTimeMillis();
+                long cnt = indexer.build(checkpoint);
+                time = System.currentTimeMillis() - time;
+                System.out.println("Indexed " + cnt + " nodes for " + indexPath
+                        + " from checkpoint " + checkpoint + " in " + time + "ms.");
+            } else {
+                OutOfBandIndexer indexer = new OutOfBandIndexer(store, indexPath,
+                        workDirSpec.value(options));
+                long time = System.currentTimeMillis();
+                indexer.importIndex();
+                time = System.currentTimeMillis() - time;
+                System.out.println("Imported index " + indexPath + " in " + time + "ms.");
+            }
+            success = true;
+        } catch (Throwable t) {
+            t.printStackTrace();
+        } finally {
+            closer.close();
+        }
+        if (!success) {
+            System.exit(1);
+        }
+    }
+
+    private static NodeStore bootstrapNodeStore(String src, BlobStore blobStore,
+                                                boolean readOnly, Closer closer) throws IOException {
+        if (src.startsWith(MongoURI.MONGODB_PREFIX)) {
+            MongoClientURI uri = new MongoClientURI(src);
+            if (uri.getDatabase() == null) {
+                failWith("Database missing in MongoDB URI: " + uri.getURI());
+            }
+            final MongoConnection mongo = new MongoConnection(uri.getURI());
+            closer.register(new Closeable() {
+                @Override
+                public void close() throws IOException {
+                    mongo.close();
+                }
+            });
+            DocumentMK.Builder builder = new DocumentMK.Builder()
+                    .setMongoDB(mongo.getDB());
+            if (blobStore != null) {
+                builder.setBlobStore(blobStore);
+            }
+            if (readOnly) {
+                builder.setReadOnlyMode();
+            }
+            DocumentNodeStore store = builder.getNodeStore();
+            closer.register(Utils.asCloseable(store));
+            return store;
+        }
+
+        FileStore fs;
+        if (readOnly) {
+            fs = blobStore != null
+                    ? openReadOnlyFileStore(new File(src), blobStore) : openReadOnlyFileStore(new File(src));
+        } else {
+            fs = blobStore != null
+                    ? openFileStore(src, false, blobStore) : openFileStore(src);
+        }
+        closer.register(Utils.asCloseable(fs));
+        return SegmentNodeStore.builder(fs).build();
+    }
+
+    private static void printUsage() {
+        System.out.println("usage: index checkpoint {<path>|<mongo-uri>} --index-path <path> [--lifetime <hours>] [--segment-tar]");
+        System.out.println("       index build {<path>|<mongo-uri>} --index-path <path> --work-dir <dir> --checkpoint <checkpoint> [--fds-path <dir>] [--segment-tar]");
+        System.out.println("       index import {<path>|<mongo-uri>} --index-path <path> --work-dir <dir> [--fds-path <dir>] [--segment-tar]");
+        System.out.println("The checkpoint operation creates the checkpoint to build the index from. It must");
+        System.out.println("still exist when the index is imported, so its lifetime must cover the build and");
+        System.out.println("the import. The import releases the checkpoint.");
+        System.exit(1);
+    }
+
+    private static void failWith(String message) {
+        throw new RuntimeException(message);
+    }
+
+}
@@ -35,6 +35,7 @@ enum Mode {
     PRIMARY("primary", new PrimaryCommand()),
     STANDBY("standy", new StandbyCommand()),
     CHECKPOINTS("checkpoints", new CheckpointsCommand()),
+    INDEX("index", new IndexCommand()),
     RECOVERY("recovery", new RecoveryCommand()),
     REPAIR("repair", new RepairCommand()),
     TIKA("tika", new TikaCommand()),
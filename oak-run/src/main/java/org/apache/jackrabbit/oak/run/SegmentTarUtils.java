@@ -115,6 +115,25 @@ final class SegmentTarUtils {
         }
     }
 
+    static NodeStore bootstrapNodeStore(File directory, BlobStore blobStore,
+                                        boolean readOnly, Closer closer) throws IOException {
+        FileStore fs;
+        if (readOnly) {
+            fs = blobStore != null
+                    ? openReadOnlyFileStore(directory, blobStore) : openReadOnlyFileStore(directory);
+        } else {
+            FileStore.Builder builder = FileStore.builder(checkFileStoreVersionOrFail(directory.getPath(), false))
+                    .withCacheSize(TAR_SEGMENT_CACHE_SIZE)
+                    .withMemoryMapping(TAR_STORAGE_MEMORY_MAPPED);
+            if (blobStore != null) {
+                builder.withBlobStore(blobStore);
+            }
+            fs = builder.build();
+        }
+        closer.register(asCloseable(fs));
+        return SegmentNodeStore.builder(fs).build();
+    }
+
     static void restore(File source, File target) throws IOException {
         FileStoreRestore.restore(source, target);
     }
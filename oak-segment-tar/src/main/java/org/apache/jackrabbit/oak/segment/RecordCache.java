@@ -19,23 +19,75 @@
 
 package org.apache.jackrabbit.oak.segment;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.Lists.newArrayListWithCapacity;
+
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
+import javax.annotation.Nonnull;
+
 import com.google.common.base.Supplier;
 
 // FIXME OAK-4277: Finalise de-duplication caches
 // implement configuration, monitoring and management
 // add unit tests
 // document, nullability
+/**
+ * Cache of record ids of recently written records. The cache is split into
+ * a number of stripes, each guarded by its own lock, such that concurrent
+ * writers looking up different keys mostly do not contend with each other.
+ * Each stripe evicts its entries according to the {@link EvictionPolicy}
+ * of the cache.
+ */
 public class RecordCache<T> {
-    private final Map<T, RecordId> records;
+
+    /**
+     * Default number of stripes of a record cache.
+     */
+    public static final int DEFAULT_CONCURRENCY = Integer.getInteger(
+            "oak.segment.writer.cacheConcurrency", 16);
+
+    /**
+     * Eviction policy applied to each stripe of a {@link RecordCache}.
+     */
+    public enum EvictionPolicy {
+
+        /**
+         * Evict the least recently accessed entry.
+         */
+        LRU(true),
+
+        /**
+         * Evict the least recently inserted entry. Lookups do not reorder
+         * the entries of a stripe.
+         */
+        FIFO(false);
+
+        private final boolean accessOrder;
+
+        EvictionPolicy(boolean accessOrder) {
+            this.accessOrder = accessOrder;
+        }
+    }
+
+    private final List<Map<T, RecordId>> stripes;
+
+    private final int mask;
 
     public static final <T> Supplier<RecordCache<T>> factory(final int size) {
+        return factory(size, DEFAULT_CONCURRENCY, EvictionPolicy.LRU);
+    }
+
+    public static final <T> Supplier<RecordCache<T>> factory(
+            final int size, final int concurrency, @Nonnull final EvictionPolicy policy) {
+        checkNotNull(policy);
         return new Supplier<RecordCache<T>>() {
             @Override
             public RecordCache<T> get() {
-                return new RecordCache<>(size);
+                return new RecordCache<>(size, concurrency, policy);
             }
         };
     }
@@ -46,29 +98,66 @@ public class RecordCache<T> {
             public RecordCache<T> get() {
                 return new RecordCache<T>(0) {
                     @Override
-                    public synchronized void put(T key, RecordId value) { }
+                    public void put(T key, RecordId value) { }
 
                     @Override
-                    public synchronized RecordId get(T key) { return null; }
+                    public RecordId get(T key) { return null; }
                 };
             }
         };
     }
 
     public RecordCache(final int size) {
-        records = new LinkedHashMap<T, RecordId>(size * 4 / 3, 0.75f, true) {
-            @Override
-            protected boolean removeEldestEntry(Map.Entry<T, RecordId> eldest) {
-                return size() >= size;
-            }
-        };
+        this(size, DEFAULT_CONCURRENCY, EvictionPolicy.LRU);
+    }
+
+    /**
+     * @param size         the maximum number of entries of the cache
+     * @param concurrency  the number of stripes, rounded up to the next
+     *                     power of two and reduced if the cache is too small
+     *                     to be split that often
+     * @param policy       the eviction policy of each stripe
+     */
+    public RecordCache(int size, int concurrency, @Nonnull EvictionPolicy policy) {
+        checkArgument(concurrency > 0);
+        checkNotNull(policy);
+        int n = 1;
+        while (n < concurrency && n * 2 <= Math.max(1, size)) {
+            n *= 2;
+        }
+        this.mask = n - 1;
+        this.stripes = newArrayListWithCapacity(n);
+        for (int k = 0; k < n; k++) {
+            // spread the remainder over the first stripes, such that the
+            // stripes together hold exactly size entries
+            final int stripeSize = size / n + (k < size % n ? 1 : 0);
+            stripes.add(new LinkedHashMap<T, RecordId>(
+                    stripeSize * 4 / 3 + 1, 0.75f, policy.accessOrder) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<T, RecordId> eldest) {
+                    return size() > stripeSize;
+                }
+            });
+        }
+    }
+
+    public void put(T key, RecordId value) {
+        Map<T, RecordId> stripe = getStripe(key);
+        synchronized (stripe) {
+            stripe.put(key, value);
+        }
     }
 
-    public synchronized void put(T key, RecordId value) {
-        records.put(key, value);
+    public RecordId get(T key) {
+        Map<T, RecordId> stripe = getStripe(key);
+        synchronized (stripe) {
+            return stripe.get(key);
+        }
     }
 
-    public synchronized RecordId get(T key) {
-        return records.get(key);
+    private Map<T, RecordId> getStripe(T key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return stripes.get(h & mask);
     }
 }
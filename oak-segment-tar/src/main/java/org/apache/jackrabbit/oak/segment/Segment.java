@@ -382,6 +382,19 @@ public class Segment {
         return data.remaining();
     }
 
+    /**
+     * Copy the data of this segment to a direct buffer allocated outside
+     * of the Java heap.
+     * @return  a new direct buffer with the data of this segment
+     */
+    @Nonnull
+    ByteBuffer copyToDirectBuffer() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(data.remaining());
+        buffer.put(data.duplicate());
+        buffer.rewind();
+        return buffer;
+    }
+
     public void collectBlobReferences(ReferenceCollector collector) {
         int refcount = getRefCount();
         int rootcount =
@@ -20,16 +20,21 @@
 package org.apache.jackrabbit.oak.segment;
 
 import java.io.IOException;
+import java.util.List;
+
+import javax.annotation.Nonnull;
 
 import org.apache.jackrabbit.oak.plugins.blob.BlobReferenceRetriever;
+import org.apache.jackrabbit.oak.plugins.blob.PartitionedBlobReferenceRetriever;
 import org.apache.jackrabbit.oak.plugins.blob.ReferenceCollector;
 import org.apache.jackrabbit.oak.segment.file.FileStore;
 
 /**
  * Implementation of {@link BlobReferenceRetriever} to retrieve blob references from the
- * {@link SegmentTracker}.
+ * {@link SegmentTracker}. Its partitions are the individual tar files of the
+ * {@link FileStore}.
  */
-public class SegmentBlobReferenceRetriever implements BlobReferenceRetriever {
+public class SegmentBlobReferenceRetriever implements PartitionedBlobReferenceRetriever {
 
     private final FileStore store;
 
@@ -46,5 +51,15 @@ public class SegmentBlobReferenceRetriever implements BlobReferenceRetriever {
             throw new IllegalStateException(e);
         }
     }
-}
 
+    @Nonnull
+    @Override
+    public List<BlobReferenceRetriever> getPartitions() {
+        try {
+            return store.getBlobReferenceRetrievers();
+        } catch (IOException e) {
+            // FIXME OAK-4314: BlobReferenceRetriever#collectReferences should allow exceptions
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -19,13 +19,17 @@
 
 package org.apache.jackrabbit.oak.segment;
 
+import java.nio.ByteBuffer;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.RemovalCause;
+import com.google.common.cache.Weigher;
 import org.apache.jackrabbit.oak.cache.CacheLIRS;
 import org.apache.jackrabbit.oak.cache.CacheLIRS.EvictionCallback;
 import org.apache.jackrabbit.oak.cache.CacheStats;
@@ -34,17 +38,59 @@ import org.slf4j.LoggerFactory;
 
 /**
  * FIXME OAK-4373 document, add monitoring, management, tests, logging
+ * <p>
+ * Segments are kept in an on-heap cache of recently accessed segments. When
+ * an off-heap cache size is given, segments evicted from the on-heap cache
+ * because of its size limit move to a second tier, which keeps the segment
+ * data in direct buffers outside of the Java heap. A segment found in the
+ * off-heap tier moves back to the on-heap cache on its next access.
  */
 public class SegmentCache {
     private static final Logger LOG = LoggerFactory.getLogger(SegmentCache.class);
 
+    private static final Weigher<SegmentId, ByteBuffer> OFF_HEAP_WEIGHER =
+            new Weigher<SegmentId, ByteBuffer>() {
+                @Override
+                public int weigh(@Nonnull SegmentId id, @Nonnull ByteBuffer buffer) {
+                    return buffer.capacity();
+                }
+            };
+
     /**
      * Cache of recently accessed segments
      */
     @Nonnull
     private final CacheLIRS<SegmentId, Segment> cache;
 
+    /**
+     * Cache of the data of segments evicted from {@link #cache} or
+     * {@code null} if the off-heap tier is disabled.
+     */
+    @CheckForNull
+    private final Cache<SegmentId, ByteBuffer> offHeapCache;
+
+    private final long offHeapCacheSize;
+
     public SegmentCache(long cacheSizeMB) {
+        this(cacheSizeMB, 0);
+    }
+
+    /**
+     * @param cacheSizeMB          size of the on-heap cache in MB
+     * @param offHeapCacheSizeMB   size of the off-heap cache in MB. {@code 0}
+     *                             disables the off-heap cache.
+     */
+    public SegmentCache(long cacheSizeMB, long offHeapCacheSizeMB) {
+        this.offHeapCacheSize = Math.max(0, offHeapCacheSizeMB) * 1024 * 1024;
+        if (offHeapCacheSize > 0) {
+            this.offHeapCache = CacheBuilder.newBuilder()
+                .maximumWeight(offHeapCacheSize)
+                .weigher(OFF_HEAP_WEIGHER)
+                .recordStats()
+                .build();
+        } else {
+            this.offHeapCache = null;
+        }
         this.cache = CacheLIRS.<SegmentId, Segment>newBuilder()
             .module("SegmentCache")
             .maximumWeight(cacheSizeMB * 1024 * 1024)
@@ -54,6 +100,9 @@ public class SegmentCache {
                 public void evicted(SegmentId id, Segment segment, RemovalCause cause) {
                     if (segment != null) {
                         id.unloaded();
+                        if (offHeapCache != null && cause == RemovalCause.SIZE) {
+                            offHeapCache.put(id, segment.copyToDirectBuffer());
+                        }
                     }
                 } })
             .build();
@@ -75,9 +124,22 @@ public class SegmentCache {
     }
 
     @Nonnull
-    public Segment geSegment(@Nonnull SegmentId id, @Nonnull Callable<Segment> loader)
+    public Segment geSegment(@Nonnull final SegmentId id, @Nonnull final Callable<Segment> loader)
     throws ExecutionException {
-        return cache.get(id, loader);
+        if (offHeapCache == null) {
+            return cache.get(id, loader);
+        }
+        return cache.get(id, new Callable<Segment>() {
+            @Override
+            public Segment call() throws Exception {
+                ByteBuffer buffer = offHeapCache.getIfPresent(id);
+                if (buffer != null) {
+                    offHeapCache.invalidate(id);
+                    return new Segment(id.getSegmentStore(), id, buffer);
+                }
+                return loader.call();
+            }
+        });
     }
 
     public void putSegment(@Nonnull Segment segment) {
@@ -87,10 +149,26 @@ public class SegmentCache {
 
     public void clear() {
         cache.invalidateAll();
+        if (offHeapCache != null) {
+            offHeapCache.invalidateAll();
+        }
     }
 
     @Nonnull
     public CacheStats getCacheStats() {
         return new CacheStats(cache, "Segment Cache", null, -1);
     }
-}
\ No newline at end of file
+
+    /**
+     * @return  statistics of the off-heap cache or {@code null} if the
+     *          off-heap cache is disabled.
+     */
+    @CheckForNull
+    public CacheStats getOffHeapCacheStats() {
+        if (offHeapCache == null) {
+            return null;
+        }
+        return new CacheStats(offHeapCache, "Segment Off-Heap Cache",
+                OFF_HEAP_WEIGHER, offHeapCacheSize);
+    }
+}
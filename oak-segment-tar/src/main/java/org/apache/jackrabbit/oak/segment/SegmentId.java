@@ -143,6 +143,14 @@ public class SegmentId implements Comparable<SegmentId> {
         this.segment = null;
     }
 
+    /**
+     * @return  the store this instance belongs to
+     */
+    @Nonnull
+    SegmentStore getSegmentStore() {
+        return store;
+    }
+
     /**
      * Determine whether this instance belongs to the passed {@code store}
      * @param store
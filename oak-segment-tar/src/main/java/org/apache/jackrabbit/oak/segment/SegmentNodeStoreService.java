@@ -59,7 +59,6 @@ import org.apache.jackrabbit.oak.osgi.ObserverTracker;
 import org.apache.jackrabbit.oak.osgi.OsgiWhiteboard;
 import org.apache.jackrabbit.oak.plugins.blob.BlobGC;
 import org.apache.jackrabbit.oak.plugins.blob.BlobGCMBean;
-import org.apache.jackrabbit.oak.plugins.blob.BlobGarbageCollector;
 import org.apache.jackrabbit.oak.plugins.blob.MarkSweepGarbageCollector;
 import org.apache.jackrabbit.oak.plugins.blob.SharedDataStore;
 import org.apache.jackrabbit.oak.plugins.blob.datastore.SharedDataStoreUtils;
@@ -139,6 +138,14 @@ public class SegmentNodeStoreService extends ProxyNodeStore
     )
     public static final String CACHE = "cache";
 
+    @Property(
+            intValue = 0,
+            label = "Off-heap cache size (MB)",
+            description = "Cache size for storing Segments evicted from the segment cache outside of " +
+                    "the Java heap. A value of 0 disables the off-heap cache."
+    )
+    public static final String OFF_HEAP_CACHE = "offHeapCache";
+
     @Property(
             byteValue = MEMORY_THRESHOLD_DEFAULT,
             label = "Memory Multiplier",
@@ -230,6 +237,7 @@ public class SegmentNodeStoreService extends ProxyNodeStore
     private Registration blobGCRegistration;
     private Registration gcOptionsRegistration;
     private Registration segmentCacheMBean;
+    private Registration segmentOffHeapCacheMBean;
     private Registration stringCacheMBean;
     private Registration fsgcMonitorMBean;
     private Registration fileStoreStatsMBean;
@@ -335,6 +343,7 @@ public class SegmentNodeStoreService extends ProxyNodeStore
         // Build the FileStore
         Builder builder = FileStore.builder(getDirectory())
                 .withCacheSize(getCacheSize())
+                .withOffHeapCacheSize(getOffHeapCacheSize())
                 .withMaxFileSize(getMaxFileSize())
                 .withMemoryMapping(getMode().equals("64"))
                 .withGCMonitor(gcMonitor)
@@ -369,6 +378,19 @@ public class SegmentNodeStoreService extends ProxyNodeStore
                 segmentCacheStats.getName()
         );
 
+        // Expose stats about the off-heap segment cache, if available
+
+        CacheStats segmentOffHeapCacheStats = store.getSegmentOffHeapCacheStats();
+        if (segmentOffHeapCacheStats != null) {
+            segmentOffHeapCacheMBean = registerMBean(
+                    whiteboard,
+                    CacheStatsMBean.class,
+                    segmentOffHeapCacheStats,
+                    CacheStats.TYPE,
+                    segmentOffHeapCacheStats.getName()
+            );
+        }
+
         // Expose stats about the string cache, if available
 
         CacheStats stringCacheStats = store.getReader().getStringCacheStats();
@@ -499,13 +521,14 @@ public class SegmentNodeStoreService extends ProxyNodeStore
         }
 
         if (store.getBlobStore() instanceof GarbageCollectableBlobStore) {
-            BlobGarbageCollector gc = new MarkSweepGarbageCollector(
+            MarkSweepGarbageCollector gc = new MarkSweepGarbageCollector(
                     new SegmentBlobReferenceRetriever(store),
                     (GarbageCollectableBlobStore) store.getBlobStore(),
                     executor,
                     TimeUnit.SECONDS.toMillis(blobGcMaxAgeInSecs),
                     repoId
             );
+            gc.setStatisticsProvider(statisticsProvider);
 
             blobGCRegistration = registerMBean(
                     whiteboard,
@@ -533,6 +556,10 @@ public class SegmentNodeStoreService extends ProxyNodeStore
             segmentCacheMBean.unregister();
             segmentCacheMBean = null;
         }
+        if (segmentOffHeapCacheMBean != null) {
+            segmentOffHeapCacheMBean.unregister();
+            segmentOffHeapCacheMBean = null;
+        }
         if (stringCacheMBean != null) {
             stringCacheMBean.unregister();
             stringCacheMBean = null;
@@ -613,6 +640,20 @@ public class SegmentNodeStoreService extends ProxyNodeStore
         return Integer.parseInt(getCacheSizeProperty());
     }
 
+    private String getOffHeapCacheSizeProperty() {
+        String cache = property(OFF_HEAP_CACHE);
+
+        if (cache != null) {
+            return cache;
+        }
+
+        return System.getProperty(OFF_HEAP_CACHE, "0");
+    }
+
+    private int getOffHeapCacheSize() {
+        return Integer.parseInt(getOffHeapCacheSizeProperty());
+    }
+
     private String getMaxFileSizeProperty() {
         String size = property(SIZE);
 
@@ -21,12 +21,14 @@ package org.apache.jackrabbit.oak.segment;
 
 import static com.google.common.base.Suppliers.memoize;
 import static com.google.common.collect.Maps.newConcurrentMap;
+import static org.apache.jackrabbit.oak.segment.RecordCache.DEFAULT_CONCURRENCY;
 
 import java.util.Iterator;
 import java.util.concurrent.ConcurrentMap;
 
 import com.google.common.base.Predicate;
 import com.google.common.base.Supplier;
+import org.apache.jackrabbit.oak.segment.RecordCache.EvictionPolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,6 +39,13 @@ import org.slf4j.LoggerFactory;
 public class WriterCacheManager {
     private static final Logger LOG = LoggerFactory.getLogger(WriterCacheManager.class);
 
+    /**
+     * Eviction policy of the string and template caches, {@code LRU} or
+     * {@code FIFO}.
+     */
+    private static final EvictionPolicy RECORDS_CACHE_EVICTION_POLICY = EvictionPolicy.valueOf(
+            System.getProperty("oak.segment.writer.cacheEvictionPolicy", EvictionPolicy.LRU.name()));
+
     private static final int STRING_RECORDS_CACHE_SIZE = Integer.getInteger(
             "oak.segment.writer.stringsCacheSize", 15000);
 
@@ -47,7 +56,8 @@ public class WriterCacheManager {
     private final Generation<RecordCache<String>> stringCaches =
             new Generation<>(STRING_RECORDS_CACHE_SIZE <= 0
                     ? RecordCache.<String>empty()
-                    : RecordCache.<String>factory(STRING_RECORDS_CACHE_SIZE));
+                    : RecordCache.<String>factory(STRING_RECORDS_CACHE_SIZE,
+                            DEFAULT_CONCURRENCY, RECORDS_CACHE_EVICTION_POLICY));
 
     private static final int TPL_RECORDS_CACHE_SIZE = Integer.getInteger(
             "oak.segment.writer.templatesCacheSize", 3000);
@@ -59,7 +69,8 @@ public class WriterCacheManager {
     private final Generation<RecordCache<Template>> templateCaches =
             new Generation<>(TPL_RECORDS_CACHE_SIZE <= 0
                     ? RecordCache.<Template>empty()
-                    : RecordCache.<Template>factory(TPL_RECORDS_CACHE_SIZE));
+                    : RecordCache.<Template>factory(TPL_RECORDS_CACHE_SIZE,
+                            DEFAULT_CONCURRENCY, RECORDS_CACHE_EVICTION_POLICY));
 
     private final Generation<NodeCache> nodeCaches =
             new Generation<>(NodeCache.factory(1000000, 20));
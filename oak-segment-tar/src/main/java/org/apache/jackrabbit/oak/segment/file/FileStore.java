@@ -63,6 +63,7 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 
 import com.google.common.base.Predicate;
@@ -72,6 +73,7 @@ import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
 import org.apache.jackrabbit.oak.api.Blob;
 import org.apache.jackrabbit.oak.cache.CacheStats;
+import org.apache.jackrabbit.oak.plugins.blob.BlobReferenceRetriever;
 import org.apache.jackrabbit.oak.plugins.blob.BlobStoreBlob;
 import org.apache.jackrabbit.oak.plugins.blob.ReferenceCollector;
 import org.apache.jackrabbit.oak.segment.RecordId;
@@ -260,6 +262,8 @@ public class FileStore implements SegmentStore {
 
         private int cacheSize;   // 0 -> DEFAULT_MEMORY_CACHE_SIZE
 
+        private int offHeapCacheSize;   // 0 -> no off-heap cache
+
         private boolean memoryMapping;
 
         private final LoggingGCMonitor gcMonitor = new LoggingGCMonitor();
@@ -318,6 +322,19 @@ public class FileStore implements SegmentStore {
             return this;
         }
 
+        /**
+         * Size of the off-heap segment cache in MB. Segments evicted from the
+         * on-heap segment cache are kept in this cache. {@code 0} disables
+         * the off-heap cache.
+         * @param offHeapCacheSize
+         * @return this instance
+         */
+        @Nonnull
+        public Builder withOffHeapCacheSize(int offHeapCacheSize) {
+            this.offHeapCacheSize = offHeapCacheSize;
+            return this;
+        }
+
         /**
          * Turn caching off
          * @return this instance
@@ -440,9 +457,9 @@ public class FileStore implements SegmentStore {
         if (builder.cacheSize < 0) {
             this.segmentCache = new SegmentCache(0);
         } else if (builder.cacheSize > 0) {
-            this.segmentCache = new SegmentCache(builder.cacheSize);
+            this.segmentCache = new SegmentCache(builder.cacheSize, builder.offHeapCacheSize);
         } else {
-            this.segmentCache = new SegmentCache(DEFAULT_STRING_CACHE_MB);
+            this.segmentCache = new SegmentCache(DEFAULT_STRING_CACHE_MB, builder.offHeapCacheSize);
         }
         if (builder.cacheSize < 0) {
             this.segmentReader = new SegmentReaderImpl(this, 0);
@@ -621,6 +638,11 @@ public class FileStore implements SegmentStore {
         return segmentCache.getCacheStats();
     }
 
+    @CheckForNull
+    public CacheStats getSegmentOffHeapCacheStats() {
+        return segmentCache.getOffHeapCacheStats();
+    }
+
     public void maybeCompact(boolean cleanup) throws IOException {
         gcMonitor.info("TarMK GC #{}: started", GC_COUNT.incrementAndGet());
 
@@ -1020,6 +1042,22 @@ public class FileStore implements SegmentStore {
      * @param collector  reference collector called back for each blob reference found
      */
     public void collectBlobReferences(ReferenceCollector collector) throws IOException {
+        for (BlobReferenceRetriever retriever : getBlobReferenceRetrievers()) {
+            retriever.collectReferences(collector);
+        }
+    }
+
+    /**
+     * Flushes the pending changes, switches to a new tar writer and returns
+     * one {@link BlobReferenceRetriever} per tar file, which collects the
+     * blob references of the segments in that file. The retrievers can be
+     * used concurrently.
+     *
+     * @return the retrievers for the blob references of the individual tar files
+     * @throws IOException
+     */
+    @Nonnull
+    public List<BlobReferenceRetriever> getBlobReferenceRetrievers() throws IOException {
         segmentWriter.flush();
         List<TarReader> tarReaders = newArrayList();
         fileStoreLock.writeLock().lock();
@@ -1030,10 +1068,17 @@ public class FileStore implements SegmentStore {
             fileStoreLock.writeLock().unlock();
         }
 
-        int minGeneration = getGcGeneration() - gcOptions.getRetainedGenerations() + 1;
-        for (TarReader tarReader : tarReaders) {
-            tarReader.collectBlobReferences(tracker, collector, minGeneration);
+        final int minGeneration = getGcGeneration() - gcOptions.getRetainedGenerations() + 1;
+        List<BlobReferenceRetriever> retrievers = newArrayList();
+        for (final TarReader tarReader : tarReaders) {
+            retrievers.add(new BlobReferenceRetriever() {
+                @Override
+                public void collectReferences(ReferenceCollector collector) {
+                    tarReader.collectBlobReferences(tracker, collector, minGeneration);
+                }
+            });
         }
+        return retrievers;
     }
 
     /**
@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.common.collect.Lists;
+import org.apache.jackrabbit.oak.segment.memory.MemoryStore;
+
+/**
+ * Compares the throughput of the striped {@link RecordCache} with a single
+ * synchronized {@code LinkedHashMap} for an increasing number of threads
+ * concurrently looking up and adding string records.
+ */
+public class RecordCacheBenchmark {
+    private static final int CACHE_SIZE = 15000;
+    private static final int KEY_COUNT = 50000;
+    private static final int OPS_PER_THREAD = 2000000;
+
+    public static void main(String... args) throws Exception {
+        for (int run = 0; run < 3; run++) {
+            for (int threads = 8; threads <= 64; threads *= 2) {
+                test(threads);
+            }
+        }
+    }
+
+    private static void test(int threads) throws Exception {
+        String[] keys = new String[KEY_COUNT];
+        for (int k = 0; k < keys.length; k++) {
+            keys[k] = "key-" + k;
+        }
+        RecordId value = newRecordId();
+
+        long time = run(threads, new SynchronizedCache(CACHE_SIZE), keys, value);
+        System.out.println("SynchronizedCache (" + threads + " threads): " + time);
+
+        final RecordCache<String> recordCache = new RecordCache<>(CACHE_SIZE);
+        time = run(threads, new Cache() {
+            @Override
+            public void put(String key, RecordId value) {
+                recordCache.put(key, value);
+            }
+
+            @Override
+            public RecordId get(String key) {
+                return recordCache.get(key);
+            }
+        }, keys, value);
+        System.out.println("RecordCache (" + threads + " threads): " + time);
+    }
+
+    private static long run(int threads, final Cache cache, final String[] keys,
+                            final RecordId value) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            long time = System.currentTimeMillis();
+            List<Future<Void>> futures = Lists.newArrayList();
+            for (int t = 0; t < threads; t++) {
+                final Random r = new Random(t);
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        for (int i = 0; i < OPS_PER_THREAD; i++) {
+                            // skewed key distribution like for string records
+                            String key = keys[(int) Math.abs(r.nextGaussian() * KEY_COUNT / 4) % KEY_COUNT];
+                            if (cache.get(key) == null) {
+                                cache.put(key, value);
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> f : futures) {
+                f.get();
+            }
+            return System.currentTimeMillis() - time;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static RecordId newRecordId() throws IOException {
+        return new RecordId(new MemoryStore().getTracker().newDataSegmentId(), 0);
+    }
+
+    interface Cache {
+        void put(String key, RecordId value);
+        RecordId get(String key);
+    }
+
+    /**
+     * The previous implementation of {@link RecordCache}
+     */
+    static class SynchronizedCache implements Cache {
+        private final Map<String, RecordId> records;
+
+        SynchronizedCache(final int size) {
+            records = new LinkedHashMap<String, RecordId>(size * 4 / 3, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, RecordId> eldest) {
+                    return size() >= size;
+                }
+            };
+        }
+
+        @Override
+        public synchronized void put(String key, RecordId value) {
+            records.put(key, value);
+        }
+
+        @Override
+        public synchronized RecordId get(String key) {
+            return records.get(key);
+        }
+    }
+}
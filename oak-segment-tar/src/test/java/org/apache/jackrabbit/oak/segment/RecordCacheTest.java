@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.apache.jackrabbit.oak.segment.RecordCache.EvictionPolicy;
+import org.apache.jackrabbit.oak.segment.memory.MemoryStore;
+import org.junit.Test;
+
+public class RecordCacheTest {
+    private final SegmentId segmentId;
+
+    public RecordCacheTest() throws IOException {
+        segmentId = new MemoryStore().getTracker().newDataSegmentId();
+    }
+
+    @Test
+    public void putAndGet() {
+        RecordCache<String> cache = new RecordCache<>(1000);
+        for (int k = 0; k < 100; k++) {
+            cache.put("key-" + k, newRecordId(k));
+        }
+        for (int k = 0; k < 100; k++) {
+            assertEquals(newRecordId(k), cache.get("key-" + k));
+        }
+        assertNull(cache.get("missing"));
+    }
+
+    @Test
+    public void bounded() {
+        RecordCache<String> cache = new RecordCache<>(100, 4, EvictionPolicy.LRU);
+        for (int k = 0; k < 10000; k++) {
+            cache.put("key-" + k, newRecordId(k % 1000));
+        }
+        int count = 0;
+        for (int k = 0; k < 10000; k++) {
+            if (cache.get("key-" + k) != null) {
+                count++;
+            }
+        }
+        assertTrue(count + " > 100", count <= 100);
+    }
+
+    @Test
+    public void smallCacheKeepsEntries() {
+        RecordCache<String> cache = new RecordCache<>(16, 16, EvictionPolicy.LRU);
+        for (int k = 0; k < 16; k++) {
+            cache.put("key-" + k, newRecordId(k));
+        }
+        int count = 0;
+        for (int k = 0; k < 16; k++) {
+            if (cache.get("key-" + k) != null) {
+                count++;
+            }
+        }
+        assertTrue(count + " == 0", count > 0);
+    }
+
+    @Test
+    public void lruKeepsAccessedEntries() {
+        RecordCache<String> cache = new RecordCache<>(10, 1, EvictionPolicy.LRU);
+        cache.put("hot", newRecordId(0));
+        for (int k = 0; k < 100; k++) {
+            assertEquals(newRecordId(0), cache.get("hot"));
+            cache.put("key-" + k, newRecordId(k));
+        }
+        assertEquals(newRecordId(0), cache.get("hot"));
+    }
+
+    @Test
+    public void fifoEvictsOldestEntries() {
+        RecordCache<String> cache = new RecordCache<>(10, 1, EvictionPolicy.FIFO);
+        cache.put("first", newRecordId(0));
+        for (int k = 0; k < 100; k++) {
+            cache.get("first");
+            cache.put("key-" + k, newRecordId(k));
+        }
+        assertNull(cache.get("first"));
+    }
+
+    @Test
+    public void empty() {
+        RecordCache<String> cache = RecordCache.<String>empty().get();
+        cache.put("key", newRecordId(0));
+        assertNull(cache.get("key"));
+    }
+
+    private RecordId newRecordId(int k) {
+        return new RecordId(segmentId, k << Segment.RECORD_ALIGN_BITS);
+    }
+}
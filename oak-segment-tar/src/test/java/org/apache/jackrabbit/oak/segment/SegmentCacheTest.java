@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static org.apache.commons.lang.RandomStringUtils.randomAlphanumeric;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.jackrabbit.oak.cache.CacheStats;
+import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SegmentCacheTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void noOffHeapCacheByDefault() throws Exception {
+        FileStore store = FileStore.builder(folder.getRoot()).build();
+        try {
+            assertNull(store.getSegmentOffHeapCacheStats());
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void evictedSegmentsMoveOffHeap() throws Exception {
+        FileStore store = FileStore.builder(folder.getRoot())
+                .withCacheSize(1)
+                .withOffHeapCacheSize(64)
+                .build();
+        try {
+            SegmentNodeStore nodeStore = SegmentNodeStore.builder(store).build();
+            NodeBuilder builder = nodeStore.getRoot().builder();
+            for (int i = 0; i < 2000; i++) {
+                builder.child("c-" + i).setProperty("p", randomAlphanumeric(2000));
+            }
+            nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+
+            CacheStats offHeapStats = store.getSegmentOffHeapCacheStats();
+            assertNotNull(offHeapStats);
+            assertTrue(offHeapStats.getElementCount() > 0);
+
+            NodeState root = nodeStore.getRoot();
+            for (ChildNodeEntry entry : root.getChildNodeEntries()) {
+                assertNotNull(entry.getNodeState().getString("p"));
+            }
+            assertTrue(offHeapStats.getHitCount() > 0);
+        } finally {
+            store.close();
+        }
+    }
+}
@@ -21,6 +21,8 @@ import java.io.InputStream;
 import java.util.LinkedList;
 import java.util.List;
 
+import javax.annotation.Nullable;
+
 import org.apache.jackrabbit.JcrConstants;
 import org.apache.jackrabbit.oak.api.Blob;
 import org.apache.jackrabbit.oak.api.CommitFailedException;
@@ -29,6 +31,9 @@ import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.plugins.index.IndexEditor;
 import org.apache.jackrabbit.oak.plugins.index.IndexUpdateCallback;
+import org.apache.jackrabbit.oak.plugins.index.fulltext.ExtractedText;
+import org.apache.jackrabbit.oak.plugins.index.fulltext.ExtractedText.ExtractionResult;
+import org.apache.jackrabbit.oak.plugins.index.fulltext.ExtractedTextStore;
 import org.apache.jackrabbit.oak.plugins.index.solr.configuration.OakSolrConfiguration;
 import org.apache.jackrabbit.oak.spi.commit.Editor;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
@@ -78,18 +83,34 @@ class SolrIndexEditor implements IndexEditor {
 
     private final IndexUpdateCallback updateCallback;
 
+    /**
+     * Store consulted for already extracted text, {@code null} if none is configured.
+     */
+    private final ExtractedTextStore extractedTextStore;
+
     private static final Parser parser = new AutoDetectParser();
 
+    private static final String TEXT_EXTRACTION_ERROR = "TextExtractionError";
+
     SolrIndexEditor(
             SolrServer solrServer,
             OakSolrConfiguration configuration,
             IndexUpdateCallback callback) {
+        this(solrServer, configuration, callback, null);
+    }
+
+    SolrIndexEditor(
+            SolrServer solrServer,
+            OakSolrConfiguration configuration,
+            IndexUpdateCallback callback,
+            @Nullable ExtractedTextStore extractedTextStore) {
         this.parent = null;
         this.name = null;
         this.path = "/";
         this.solrServer = solrServer;
         this.configuration = configuration;
         this.updateCallback = callback;
+        this.extractedTextStore = extractedTextStore;
     }
 
     private SolrIndexEditor(SolrIndexEditor parent, String name) {
@@ -99,6 +120,7 @@ class SolrIndexEditor implements IndexEditor {
         this.solrServer = parent.solrServer;
         this.configuration = parent.configuration;
         this.updateCallback = parent.updateCallback;
+        this.extractedTextStore = parent.extractedTextStore;
     }
 
     String getPath() {
@@ -295,6 +317,29 @@ class SolrIndexEditor implements IndexEditor {
     }
 
     private String parseStringValue(Blob v, Metadata metadata) {
+        if (extractedTextStore != null) {
+            try {
+                ExtractedText text = extractedTextStore.getText(v);
+                if (text != null && text.getExtractionResult() == ExtractionResult.SUCCESS) {
+                    return text.getExtractedText().toString();
+                }
+            } catch (IOException e) {
+                log.warn("Failed to read the stored extracted text", e);
+            }
+        }
+
+        String text = parseStringValue0(v, metadata);
+        if (extractedTextStore != null && !TEXT_EXTRACTION_ERROR.equals(text)) {
+            try {
+                extractedTextStore.putText(v, new ExtractedText(ExtractionResult.SUCCESS, text));
+            } catch (IOException e) {
+                log.warn("Failed to store the extracted text", e);
+            }
+        }
+        return text;
+    }
+
+    private String parseStringValue0(Blob v, Metadata metadata) {
         WriteOutContentHandler handler = new WriteOutContentHandler();
         try {
             InputStream stream = v.getNewStream();
@@ -316,7 +361,7 @@ class SolrIndexEditor implements IndexEditor {
                         + " This is a fairly common case, and nothing to"
                         + " worry about. The stack trace is included to"
                         + " help improve the text extraction feature.", t);
-                return "TextExtractionError";
+                return TEXT_EXTRACTION_ERROR;
             }
         }
         return handler.toString();
@@ -17,10 +17,12 @@
 package org.apache.jackrabbit.oak.plugins.index.solr.index;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.jackrabbit.oak.plugins.index.IndexEditorProvider;
 import org.apache.jackrabbit.oak.plugins.index.IndexUpdateCallback;
+import org.apache.jackrabbit.oak.plugins.index.fulltext.ExtractedTextStore;
 import org.apache.jackrabbit.oak.plugins.index.solr.configuration.OakSolrConfiguration;
 import org.apache.jackrabbit.oak.plugins.index.solr.configuration.OakSolrConfigurationProvider;
 import org.apache.jackrabbit.oak.plugins.index.solr.configuration.SolrServerConfigurationProvider;
@@ -49,11 +51,21 @@ public class SolrIndexEditorProvider implements IndexEditorProvider {
 
     private final OakSolrConfigurationProvider oakSolrConfigurationProvider;
 
+    private final ExtractedTextStore extractedTextStore;
+
     public SolrIndexEditorProvider(
             @Nonnull SolrServerProvider solrServerProvider,
             @Nonnull OakSolrConfigurationProvider oakSolrConfigurationProvider) {
+        this(solrServerProvider, oakSolrConfigurationProvider, null);
+    }
+
+    public SolrIndexEditorProvider(
+            @Nonnull SolrServerProvider solrServerProvider,
+            @Nonnull OakSolrConfigurationProvider oakSolrConfigurationProvider,
+            @Nullable ExtractedTextStore extractedTextStore) {
         this.solrServerProvider = solrServerProvider;
         this.oakSolrConfigurationProvider = oakSolrConfigurationProvider;
+        this.extractedTextStore = extractedTextStore;
     }
 
     @Override
@@ -90,7 +102,7 @@ public class SolrIndexEditorProvider implements IndexEditorProvider {
         SolrIndexEditor editor = null;
         try {
             if (solrServer != null) {
-                editor = new SolrIndexEditor(solrServer, configuration, callback);
+                editor = new SolrIndexEditor(solrServer, configuration, callback, extractedTextStore);
             } else {
                 if (log.isWarnEnabled()) {
                     log.warn("no SolrServer provided, cannot perform indexing");
@@ -21,10 +21,14 @@ import javax.annotation.Nonnull;
 
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.ReferenceCardinality;
+import org.apache.felix.scr.annotations.ReferencePolicy;
+import org.apache.felix.scr.annotations.ReferencePolicyOption;
 import org.apache.felix.scr.annotations.Service;
 import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.jackrabbit.oak.plugins.index.IndexEditorProvider;
 import org.apache.jackrabbit.oak.plugins.index.IndexUpdateCallback;
+import org.apache.jackrabbit.oak.plugins.index.fulltext.ExtractedTextStore;
 import org.apache.jackrabbit.oak.plugins.index.solr.configuration.OakSolrConfigurationProvider;
 import org.apache.jackrabbit.oak.plugins.index.solr.index.SolrIndexEditorProvider;
 import org.apache.jackrabbit.oak.plugins.index.solr.server.SolrServerProvider;
@@ -48,13 +52,19 @@ public class SolrIndexEditorProviderService implements IndexEditorProvider {
     @Reference
     private OakSolrConfigurationProvider oakSolrConfigurationProvider;
 
+    @Reference(policy = ReferencePolicy.DYNAMIC,
+            cardinality = ReferenceCardinality.OPTIONAL_UNARY,
+            policyOption = ReferencePolicyOption.GREEDY
+    )
+    private volatile ExtractedTextStore extractedTextStore;
+
     @Override
     @CheckForNull
     public Editor getIndexEditor(@Nonnull String type, @Nonnull NodeBuilder definition,
                                  @Nonnull NodeState root, @Nonnull IndexUpdateCallback callback) throws CommitFailedException {
         if (solrServerProvider != null && oakSolrConfigurationProvider != null) {
             return new SolrIndexEditorProvider(solrServerProvider,
-                    oakSolrConfigurationProvider).getIndexEditor(type, definition, root, callback);
+                    oakSolrConfigurationProvider, extractedTextStore).getIndexEditor(type, definition, root, callback);
         } else {
             return null;
         }